@@ -0,0 +1,80 @@
+package org.apis.bench;
+
+import org.apis.vm.DataWord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DataWord} arithmetic with full width operands, as in hashing and fixed point math.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DataWordBenchmark {
+
+    DataWord a;
+    DataWord b;
+    DataWord selectorShift;
+    DataWord exponent;
+
+    @Setup
+    public void setup() {
+        a = new DataWord("c7a4d9b1e3f20a5b8c6d4e2f1a3b5c7d9e0f1a2b3c4d5e6f708192a3b4c5d6e7");
+        b = new DataWord("000000000000000000000000000000003b5c7d9e0f1a2b3c4d5e6f708192a3b5");
+        selectorShift = new DataWord("0000000100000000000000000000000000000000000000000000000000000000");
+        exponent = new DataWord(0xff);
+    }
+
+    @Benchmark
+    public DataWord add() {
+        DataWord word = a.clone();
+        word.add(b);
+        return word;
+    }
+
+    @Benchmark
+    public DataWord sub() {
+        DataWord word = a.clone();
+        word.sub(b);
+        return word;
+    }
+
+    @Benchmark
+    public DataWord mul() {
+        DataWord word = a.clone();
+        word.mul(b);
+        return word;
+    }
+
+    @Benchmark
+    public DataWord div() {
+        DataWord word = a.clone();
+        word.div(b);
+        return word;
+    }
+
+    /**
+     * The function selector extraction of solidity dispatchers
+     */
+    @Benchmark
+    public DataWord divSelector() {
+        DataWord word = a.clone();
+        word.div(selectorShift);
+        return word;
+    }
+
+    @Benchmark
+    public DataWord mod() {
+        DataWord word = a.clone();
+        word.mod(b);
+        return word;
+    }
+
+    @Benchmark
+    public DataWord exp() {
+        DataWord word = a.clone();
+        word.exp(exponent);
+        return word;
+    }
+}
@@ -0,0 +1,84 @@
+package org.apis.bench;
+
+import org.apis.config.SystemProperties;
+import org.apis.crypto.HashUtil;
+import org.apis.datasource.*;
+import org.apis.datasource.rocksdb.RocksDbDataSource;
+import org.apis.db.DbFlushManager;
+import org.apis.util.FileUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DbFlushManager#flush} of a filled write cache into {@link RocksDbDataSource},
+ * using the same source chain as {@link org.apis.config.CommonConfig#cachedDbSource(String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DbFlushManagerBenchmark {
+
+    @Param({"1000", "20000"})
+    int entries;
+
+    String dbDir;
+    RocksDbDataSource db;
+    Source<byte[], byte[]> source;
+    DbFlushManager flushManager;
+    Random rnd = new Random(42);
+
+    @Setup
+    public void setup() throws IOException {
+        dbDir = Files.createTempDirectory("apisj-bench-db").toString();
+        SystemProperties config = SystemProperties.getDefault();
+        config.setDataBaseDir(dbDir);
+
+        db = new RocksDbDataSource("blockchain");
+        db.init(DbSettings.DEFAULT);
+
+        WriteCache.BytesKey<byte[]> dbCache = new WriteCache.BytesKey<>(new BatchSourceWriter<>(db), WriteCache.CacheType.SIMPLE);
+        dbCache.setFlushSource(true);
+
+        AbstractCachedSource<byte[], byte[]> writeCache = new AsyncWriteCache<byte[], byte[]>(
+                new XorDataSource<>(dbCache, HashUtil.sha3("bench".getBytes()))) {
+            @Override
+            protected WriteCache<byte[], byte[]> createCache(Source<byte[], byte[]> source) {
+                WriteCache.BytesKey<byte[]> ret = new WriteCache.BytesKey<>(source, WriteCache.CacheType.SIMPLE);
+                ret.withSizeEstimators(MemSizeEstimator.ByteArrayEstimator, MemSizeEstimator.ByteArrayEstimator);
+                ret.setFlushSource(true);
+                return ret;
+            }
+        }.withName("bench");
+        source = writeCache;
+
+        flushManager = new DbFlushManager(config, Collections.<DbSource>singleton(db), dbCache);
+        flushManager.addCache(writeCache);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCache() {
+        for (int i = 0; i < entries; i++) {
+            byte[] key = new byte[32];
+            rnd.nextBytes(key);
+            byte[] value = new byte[100];
+            rnd.nextBytes(value);
+            source.put(key, value);
+        }
+    }
+
+    @Benchmark
+    public void flush() {
+        flushManager.flushSync();
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+        FileUtil.recursiveDelete(dbDir);
+    }
+}
@@ -0,0 +1,31 @@
+package org.apis.bench;
+
+import org.apis.crypto.ECKey;
+import org.apis.crypto.HashUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SignatureException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Public key recovery from a transaction signature, done once for every transaction sender.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ECKeyBenchmark {
+
+    byte[] messageHash;
+    ECKey.ECDSASignature signature;
+
+    @Setup
+    public void setup() {
+        messageHash = HashUtil.sha3("apis benchmark".getBytes());
+        signature = new ECKey().sign(messageHash);
+    }
+
+    @Benchmark
+    public byte[] signatureToKeyBytes() throws SignatureException {
+        return ECKey.signatureToKeyBytes(messageHash, signature);
+    }
+}
@@ -0,0 +1,60 @@
+package org.apis.bench;
+
+import org.apis.vm.DataWord;
+import org.apis.vm.program.Memory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Memory} access in the memory sizes of ABI decoding and string building.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemoryBenchmark {
+
+    @Param({"4096", "65536"})
+    int memorySize;
+
+    Memory memory;
+    byte[] word;
+    byte[] block;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        memory = new Memory();
+        word = new DataWord(0x1234).getData();
+        block = new byte[4096];
+    }
+
+    /**
+     * MSTORE and MLOAD over the whole memory, growing it word by word
+     */
+    @Benchmark
+    public int storeAndLoadWords() {
+        int sum = 0;
+        for (int address = 0; address < memorySize; address += 32) {
+            memory.write(address, word, 32, false);
+        }
+        for (int address = memorySize - 32; address >= 0; address -= 32) {
+            sum += memory.readWord(address).intValue();
+        }
+        return sum;
+    }
+
+    /**
+     * CALLDATACOPY / RETURN sized copies into and out of the memory
+     */
+    @Benchmark
+    public int copyBlocks() {
+        int sum = 0;
+        for (int address = 0; address < memorySize; address += block.length) {
+            memory.extendAndWrite(address, block.length, block);
+        }
+        for (int address = 0; address < memorySize; address += block.length) {
+            sum += memory.read(address, block.length).length;
+        }
+        return sum;
+    }
+}
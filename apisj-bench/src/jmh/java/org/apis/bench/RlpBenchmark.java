@@ -0,0 +1,51 @@
+package org.apis.bench;
+
+import org.apis.core.Transaction;
+import org.apis.crypto.ECKey;
+import org.apis.util.RLP;
+import org.apis.util.RLPList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.apis.util.ByteUtil.longToBytesNoLeadZeroes;
+
+/**
+ * RLP encoding and decoding of a block-sized list of signed transactions,
+ * which is what every received block and every block read from the store goes through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RlpBenchmark {
+
+    @Param({"10", "200"})
+    int txCount;
+
+    byte[][] encodedTxs;
+    byte[] encodedList;
+
+    @Setup
+    public void setup() {
+        ECKey sender = ECKey.fromPrivate(new byte[] {1});
+        encodedTxs = new byte[txCount][];
+        for (int i = 0; i < txCount; i++) {
+            Transaction tx = new Transaction(longToBytesNoLeadZeroes(i), longToBytesNoLeadZeroes(50_000_000_000L),
+                    longToBytesNoLeadZeroes(200_000), new ECKey().getAddress(), longToBytesNoLeadZeroes(1_000_000L + i),
+                    new byte[64], null);
+            tx.sign(sender);
+            encodedTxs[i] = tx.getEncoded();
+        }
+        encodedList = RLP.encodeList(encodedTxs);
+    }
+
+    @Benchmark
+    public RLPList decode2() {
+        return RLP.decode2(encodedList);
+    }
+
+    @Benchmark
+    public byte[] encodeList() {
+        return RLP.encodeList(encodedTxs);
+    }
+}
@@ -0,0 +1,100 @@
+package org.apis.bench;
+
+import org.apis.config.BlockchainConfig;
+import org.apis.config.SystemProperties;
+import org.apis.core.Block;
+import org.apis.core.Repository;
+import org.apis.core.Transaction;
+import org.apis.core.TransactionExecutor;
+import org.apis.crypto.ECKey;
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.db.RepositoryRoot;
+import org.apis.vm.program.invoke.ProgramInvokeFactoryImpl;
+import org.openjdk.jmh.annotations.*;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import static org.apis.util.ByteUtil.longToBytesNoLeadZeroes;
+
+/**
+ * {@link TransactionExecutor} end to end (init, execute, go, finalization) against {@link RepositoryRoot},
+ * for a plain value transfer and for a call into a contract that reads and writes storage.
+ * Every invocation runs on a fresh track that is rolled back, so the state does not drift.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionExecutorBenchmark {
+
+    /**
+     * for (n = 64; n != 0; n--) { sstore(n, sload(n) + n); }
+     */
+    private static final byte[] STORAGE_LOOP = Hex.decode("60405b808054018155600190038060025700");
+
+    private static final long BLOCK_NUMBER = 1;
+
+    ECKey sender = ECKey.fromPrivate(new byte[] {1});
+    byte[] receiver = new ECKey().getAddress();
+    byte[] contract = new ECKey().getAddress();
+    byte[] coinbase = new ECKey().getAddress();
+
+    Repository repository;
+    Block block;
+    Transaction transfer;
+    Transaction contractCall;
+
+    @Setup
+    public void setup() {
+        BlockchainConfig blockchainConfig = SystemProperties.getDefault().getBlockchainConfig().getConfigForBlock(BLOCK_NUMBER);
+
+        repository = new RepositoryRoot(new HashMapDB<byte[]>());
+        repository.addBalance(sender.getAddress(), new BigInteger("1000000000000000000000000"));
+        repository.createAccount(contract);
+        repository.saveCode(contract, STORAGE_LOOP);
+        repository.commit();
+
+        block = new Block(new byte[32], coinbase, new byte[256], BigInteger.ZERO, BigInteger.ZERO, BLOCK_NUMBER,
+                longToBytesNoLeadZeroes(100_000_000L), 0, BigInteger.ZERO, System.currentTimeMillis() / 1000,
+                new byte[0], new byte[0], new byte[0], BigInteger.ZERO, new byte[0],
+                null, null, null, null, null, null, null);
+
+        transfer = createTx(blockchainConfig, receiver, 200_000L);
+        contractCall = createTx(blockchainConfig, contract, 5_000_000L);
+    }
+
+    private Transaction createTx(BlockchainConfig blockchainConfig, byte[] to, long gasLimit) {
+        Transaction tx = new Transaction(longToBytesNoLeadZeroes(0), longToBytesNoLeadZeroes(50_000_000_000L),
+                longToBytesNoLeadZeroes(gasLimit), to, longToBytesNoLeadZeroes(1_000L), new byte[0],
+                blockchainConfig.getChainId());
+        tx.sign(sender);
+        // recover the sender once, signature recovery has its own benchmark
+        tx.getSender();
+        return tx;
+    }
+
+    @Benchmark
+    public TransactionExecutor transfer() {
+        return execute(transfer);
+    }
+
+    @Benchmark
+    public TransactionExecutor contractCall() {
+        return execute(contractCall);
+    }
+
+    private TransactionExecutor execute(Transaction tx) {
+        Repository track = repository.startTracking();
+        TransactionExecutor executor = new TransactionExecutor(tx, coinbase, track, null,
+                new ProgramInvokeFactoryImpl(), block);
+
+        executor.init();
+        executor.execute();
+        executor.go();
+        executor.finalization();
+
+        track.rollback();
+        return executor;
+    }
+}
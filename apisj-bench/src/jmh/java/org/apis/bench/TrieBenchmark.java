@@ -0,0 +1,60 @@
+package org.apis.bench;
+
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.trie.SecureTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link org.apis.trie.TrieImpl} put/get through {@link SecureTrie}, the way account state is accessed.
+ * The node source is in memory so the numbers reflect trie traversal, hashing and node encoding only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrieBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    byte[][] keys;
+    byte[][] values;
+    SecureTrie trie;
+    int idx;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        keys = new byte[size][];
+        values = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            keys[i] = new byte[20];
+            rnd.nextBytes(keys[i]);
+            values[i] = new byte[70];
+            rnd.nextBytes(values[i]);
+        }
+
+        trie = new SecureTrie(new HashMapDB<byte[]>());
+        for (int i = 0; i < size; i++) {
+            trie.put(keys[i], values[i]);
+        }
+        trie.flush();
+    }
+
+    /**
+     * Updates one existing key and recalculates the root, as a single account change in a block does
+     */
+    @Benchmark
+    public byte[] putAndRootHash() {
+        int i = idx++ % size;
+        trie.put(keys[i], values[(i + 1) % size]);
+        return trie.getRootHash();
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return trie.get(keys[idx++ % size]);
+    }
+}
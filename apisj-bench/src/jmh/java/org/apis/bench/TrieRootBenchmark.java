@@ -0,0 +1,52 @@
+package org.apis.bench;
+
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.trie.TrieImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.apis.crypto.HashUtil.sha3;
+import static org.apis.util.ByteUtil.intToBytes;
+
+/**
+ * {@link TrieImpl#getRootHash()} after a block touching a tenth of the trie, per {@link TrieImpl#setParallelDepth(int)}.
+ * Only the hashing of the modified nodes is measured, the updates are made in the invocation setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrieRootBenchmark {
+
+    @Param({"10000", "100000", "500000"})
+    int size;
+
+    @Param({"0", "1", "2", "3"})
+    int parallelDepth;
+
+    TrieImpl trie;
+    int round;
+
+    @Setup
+    public void setup() {
+        trie = new TrieImpl(new HashMapDB<>(), null);
+        trie.setParallelDepth(parallelDepth);
+        for (int i = 0; i < size; i++) {
+            trie.put(sha3(intToBytes(i)), new byte[100]);
+        }
+        trie.getRootHash();
+    }
+
+    @Setup(Level.Invocation)
+    public void update() {
+        round++;
+        for (int i = 0; i < size / 10; i++) {
+            trie.put(sha3(intToBytes(i * 7)), intToBytes(round * size + i));
+        }
+    }
+
+    @Benchmark
+    public byte[] rootHash() {
+        return trie.getRootHash();
+    }
+}
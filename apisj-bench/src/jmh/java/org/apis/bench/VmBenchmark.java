@@ -0,0 +1,63 @@
+package org.apis.bench;
+
+import org.apis.vm.VM;
+import org.apis.vm.program.Program;
+import org.apis.vm.program.invoke.ProgramInvokeMockImpl;
+import org.openjdk.jmh.annotations.*;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VM#step} over short loops that exercise the stack, memory and storage paths
+ * the way ABI decoding and token bookkeeping do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VmBenchmark {
+
+    /**
+     * for (n = 256; n != 0; n--) { mstore(n * 32, n * n); sha3(0, 64); }
+     */
+    private static final byte[] MEMORY_LOOP = Hex.decode("6101005b8080028160200252604060002050600190038060035700");
+
+    /**
+     * for (n = 64; n != 0; n--) { sstore(n, sload(n) + n); }
+     */
+    private static final byte[] STORAGE_LOOP = Hex.decode("60405b808054018155600190038060025700");
+
+    VM vm;
+    ProgramInvokeMockImpl invoke;
+
+    @Setup
+    public void setup() {
+        vm = new VM();
+        invoke = new ProgramInvokeMockImpl();
+        invoke.setGas(100_000_000L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        invoke.getRepository().close();
+    }
+
+    @Benchmark
+    public Program memoryLoop() {
+        return play(MEMORY_LOOP);
+    }
+
+    @Benchmark
+    public Program storageLoop() {
+        return play(STORAGE_LOOP);
+    }
+
+    private Program play(byte[] code) {
+        Program program = new Program(code, invoke);
+        vm.play(program);
+        if (program.getResult().getException() != null) {
+            throw program.getResult().getException();
+        }
+        return program;
+    }
+}
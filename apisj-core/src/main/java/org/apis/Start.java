@@ -82,8 +82,10 @@ public class Start {
 
 
         final boolean actionBlocksLoader = !config.blocksLoader().equals("");
+        final boolean actionStateExport = !config.stateArchiveExport().equals("");
+        final boolean actionStateImport = !config.stateArchiveImport().equals("");
 
-        if (actionBlocksLoader) {
+        if (actionBlocksLoader || actionStateExport || actionStateImport) {
             config.setSyncEnabled(false);
             config.setDiscoveryEnabled(false);
         }
@@ -104,6 +106,12 @@ public class Start {
             mApis.getBlockLoader().loadBlocks();
         }
 
+        if (actionStateExport) {
+            mApis.getStateArchiveLoader().exportState();
+        } else if (actionStateImport) {
+            mApis.getStateArchiveLoader().importState();
+        }
+
 
         // Set Max Peers
         rpcServerManager.setApis(mApis);
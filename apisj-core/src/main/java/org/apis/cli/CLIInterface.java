@@ -67,6 +67,10 @@ public class CLIInterface {
                     continue;
                 if (processDbReset(arg, args[i + 1], cliOptions))
                     continue;
+                if (processStateExport(arg, args[i + 1], cliOptions))
+                    continue;
+                if (processStateImport(arg, args[i + 1], cliOptions))
+                    continue;
             }
 
             if (cliOptions.size() > 0) {
@@ -114,6 +118,30 @@ public class CLIInterface {
         return true;
     }
 
+    // write the state archive and exit
+    private static boolean processStateExport(String arg, String file, Map<String, Object> cliOptions) {
+        if (!"-exportState".equals(arg))
+            return false;
+
+        logger.info("State archive export to [{}]", file);
+
+        cliOptions.put(SystemProperties.PROPERTY_STATE_ARCHIVE_EXPORT, file);
+
+        return true;
+    }
+
+    // restore the state archive and exit
+    private static boolean processStateImport(String arg, String file, Map<String, Object> cliOptions) {
+        if (!"-importState".equals(arg))
+            return false;
+
+        logger.info("State archive import from [{}]", file);
+
+        cliOptions.put(SystemProperties.PROPERTY_STATE_ARCHIVE_IMPORT, file);
+
+        return true;
+    }
+
     private static void processMiningStart(String arg) throws IOException {
         if(!"-mining".equals(arg))
             return;
@@ -196,6 +224,8 @@ public class CLIInterface {
         System.out.println("-rpc                  -- to setup the path for the database directory ");
         System.out.println("-reset <yes/no>       -- reset yes/no the all database ");
         System.out.println("-db <db>              -- to setup the path for the database directory ");
+        System.out.println("-exportState <file>   -- write the state of the best block to the file and exit ");
+        System.out.println("-importState <file>   -- restore the state from the file into an empty database and exit ");
         System.out.println("-connectOnly <enode://pubKey@host:port>  -- like 'connect', but will not attempt to connect to other peers  ");
         System.out.println();
         System.out.println("e.g: cli -reset no -db db-1");
@@ -17,6 +17,7 @@
  */
 package org.apis.config;
 
+import com.typesafe.config.Config;
 import org.apis.core.BlockHeader;
 import org.apis.core.Repository;
 import org.apis.crypto.HashUtil;
@@ -41,6 +42,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import static java.util.Arrays.asList;
 
@@ -52,6 +54,7 @@ import static java.util.Arrays.asList;
 public class CommonConfig {
     private static final Logger logger = LoggerFactory.getLogger("general");
     private Set<DbSource> dbSources = new HashSet<>();
+    private StateSnapshot stateSnapshot;
 
     private static CommonConfig defaultInstance;
 
@@ -85,12 +88,32 @@ public class CommonConfig {
 
     @Bean
     public Repository defaultRepository() {
-        return new RepositoryRoot(stateSource(), null);
+        return createRepository(null);
     }
 
     @Bean @Scope("prototype")
     public Repository repository(byte[] stateRoot) {
-        return new RepositoryRoot(stateSource(), stateRoot);
+        return createRepository(stateRoot);
+    }
+
+    private RepositoryRoot createRepository(byte[] stateRoot) {
+        RepositoryRoot repository = new RepositoryRoot(stateSource(), stateRoot, stateSnapshot());
+        repository.setTrieParallelDepth(systemProperties().trieParallelDepth());
+        return repository;
+    }
+
+    /**
+     * Flat copy of the state, see {@link StateSnapshot}, null unless database.snapshot.enabled is set. <br/>
+     * Diff layers are written along with the state via the flush manager,
+     * the generator writes directly to the database. <br/>
+     * Not a bean, so that neither the snapshot nor its write cache are created when it's disabled
+     */
+    public synchronized StateSnapshot stateSnapshot() {
+        if (stateSnapshot == null && systemProperties().databaseSnapshotEnabled()) {
+            stateSnapshot = new StateSnapshot(cachedDbSource("snapshot"), blockchainSource(blockchainDB(), "snapshot"),
+                    stateSource(), systemProperties().databaseSnapshotDiffLayers());
+        }
+        return stateSnapshot;
     }
 
     /**
@@ -111,16 +134,26 @@ public class CommonConfig {
     public Source<byte[], byte[]> trieNodeSource() {
         DbSource<byte[]> db = blockchainDB();
         Source<byte[], byte[]> src = new PrefixLookupSource<>(db, NodeKeyCompositor.PREFIX_BYTES);
-        return new XorDataSource<>(src, HashUtil.sha3("state".getBytes()));
+        return blockchainSource(src, "state");
     }
 
 
     @Bean
     public StateSource stateSource() {
         fastSyncCleanUp();
-        StateSource stateSource = new StateSource(blockchainSource("state"), systemProperties().databasePruneDepth() >= 0);
+        boolean pruningEnabled = systemProperties().databasePruneDepth() >= 0;
+        StateSource stateSource;
+        if (systemProperties().getConfig().getBoolean("cache.offHeap")) {
+            long size = systemProperties().getConfig().getLong("cache.stateCacheSize") * 1024 * 1024;
+            stateSource = new StateSource(new OffHeapReadCache(blockchainSource("state"), size), pruningEnabled);
+        } else {
+            stateSource = new StateSource(blockchainSource("state"), pruningEnabled);
+        }
 
         dbFlushManager().addCache(stateSource.getWriteCache());
+        if (stateSource.getReadCache() != null) {
+            dbFlushManager().addReadCache("state", stateSource.getReadCache());
+        }
 
         return stateSource;
     }
@@ -144,7 +177,24 @@ public class CommonConfig {
     @Bean
     @Scope("prototype")
     public Source<byte[], byte[]> blockchainSource(String name) {
-        return new XorDataSource<>(blockchainDbCache(), HashUtil.sha3(name.getBytes()));
+        return blockchainSource(blockchainDbCache(), name);
+    }
+
+    /**
+     * Keys of the source are XORed with its name, or prefixed with the id of its column family if it has one
+     */
+    private Source<byte[], byte[]> blockchainSource(Source<byte[], byte[]> db, String name) {
+        DbSettings settings = blockchainDbSettings();
+        if (settings.getColumnFamilies().isEmpty()) {
+            return new XorDataSource<>(db, HashUtil.sha3(name.getBytes()));
+        }
+
+        DbSettings.ColumnFamily family = settings.getColumnFamily(name);
+        if (family != null) {
+            return new FamilyKeySource<>(db, family.getId());
+        } else {
+            return new XorDataSource<>(new FamilyKeySource<>(db, (byte) 0), HashUtil.sha3(name.getBytes()));
+        }
     }
 
     @Bean
@@ -275,11 +325,30 @@ public class CommonConfig {
 
     @Bean
     public DbSource<byte[]> blockchainDB() {
-        DbSettings settings = DbSettings.newInstance()
-                .withMaxOpenFiles(systemProperties().getConfig().getInt("database.maxOpenFiles"))
-                .withMaxThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        return keyValueDataSource("blockchain", blockchainDbSettings());
+    }
 
-        return keyValueDataSource("blockchain", settings);
+    @Bean
+    public DbSettings blockchainDbSettings() {
+        Config config = systemProperties().getConfig();
+        DbSettings settings = DbSettings.newInstance()
+                .withMaxOpenFiles(config.getInt("database.maxOpenFiles"))
+                .withMaxThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                .withBlockCacheSize(config.getLong("database.rocksdb.blockCacheSize") * 1024 * 1024)
+                .withWriteBufferSize(config.getLong("database.rocksdb.writeBufferSize") * 1024 * 1024);
+
+        if (config.getBoolean("database.rocksdb.columnFamilies.enabled")) {
+            // the ids of the families are given in the order of their names
+            Config families = config.getConfig("database.rocksdb.columnFamilies.families");
+            for (String name : new TreeSet<>(families.root().keySet())) {
+                Config family = families.getConfig(name);
+                settings.withColumnFamily(name, new DbSettings.ColumnFamily()
+                        .withBloomBits(family.getInt("bloomBits"))
+                        .withPrefixLookup(family.getBoolean("prefixLookup"))
+                        .withCompression(DbSettings.ColumnFamily.Compression.valueOf(family.getString("compression").toUpperCase())));
+            }
+        }
+        return settings;
     }
 
     @Bean
@@ -19,6 +19,7 @@ package org.apis.config;
 
 import org.apis.datasource.Source;
 import org.apis.db.BlockStore;
+import org.apis.db.BloomBitsIndex;
 import org.apis.db.IndexedBlockStore;
 import org.apis.db.PruneManager;
 import org.apis.db.TransactionStore;
@@ -71,9 +72,20 @@ public class DefaultConfig {
         return new TransactionStore(commonConfig.cachedDbSource("transactions"));
     }
 
+    @Bean
+    public BloomBitsIndex bloomBitsIndex() {
+        BloomBitsIndex bloomBitsIndex = new BloomBitsIndex(commonConfig.cachedDbSource("bloombits"), blockStore());
+        bloomBitsIndex.start();
+        return bloomBitsIndex;
+    }
+
     @Bean
     public PruneManager pruneManager() {
-        if (config.databasePruneDepth() >= 0) {
+        if (config.databasePruneDepth() >= 0 && config.databasePruneDeletesPerBlock() > 0) {
+            return new PruneManager((IndexedBlockStore) blockStore(), commonConfig.stateSource().getJournalSource(),
+                    commonConfig.stateSource().getNoJournalSource(), config.databasePruneDepth(),
+                    config.databasePruneDeletesPerBlock());
+        } else if (config.databasePruneDepth() >= 0) {
             return new PruneManager((IndexedBlockStore) blockStore(), commonConfig.stateSource().getJournalSource(),
                     commonConfig.stateSource().getNoJournalSource(), config.databasePruneDepth());
         } else {
@@ -80,6 +80,8 @@ public class SystemProperties {
     public final static String PROPERTY_LISTEN_PORT = "peer.listen.port";
     public final static String PROPERTY_PEER_ACTIVE = "peer.active";
     public final static String PROPERTY_DB_RESET = "database.reset";
+    public final static String PROPERTY_STATE_ARCHIVE_EXPORT = "state.archive.export";
+    public final static String PROPERTY_STATE_ARCHIVE_IMPORT = "state.archive.import";
     public final static String PROPERTY_PEER_DISCOVERY_ENABLED = "peer.discovery.enabled";
     public final static String PROPERTY_SYNC_PEER_COUNT = "sync.peer.count";
 
@@ -474,6 +476,21 @@ public class SystemProperties {
         return config.getBoolean("database.prune.enabled") ? config.getInt("database.prune.maxDepth") : -1;
     }
 
+    @ValidateMe
+    public int databasePruneDeletesPerBlock() {
+        return config.getInt("database.prune.deletesPerBlock");
+    }
+
+    @ValidateMe
+    public boolean databaseSnapshotEnabled() {
+        return config.getBoolean("database.snapshot.enabled");
+    }
+
+    @ValidateMe
+    public int databaseSnapshotDiffLayers() {
+        return config.getInt("database.snapshot.diffLayers");
+    }
+
     @ValidateMe
     public List<Node> peerActive() {
         if (!config.hasPath("peer.active")) {
@@ -541,6 +558,11 @@ public class SystemProperties {
         return config.getInt("cache.headerQueueSize") * 1024 * 1024;
     }
 
+    @ValidateMe
+    public int trieParallelDepth() {
+        return config.getInt("cache.trieParallelDepth");
+    }
+
     @ValidateMe
     public Integer peerChannelReadTimeout() {
         return config.getInt("peer.channel.read.timeout");
@@ -644,6 +666,11 @@ public class SystemProperties {
         return config.getBoolean("blockchain.only");
     }
 
+    @ValidateMe
+    public boolean parallelExecution() {
+        return config.getBoolean("blockchain.parallel.execution");
+    }
+
     @ValidateMe
     public int syncPeerCount() {
         return config.getInt(PROPERTY_SYNC_PEER_COUNT);
@@ -901,6 +928,11 @@ public class SystemProperties {
         return config.getInt("transaction.outdated.threshold");
     }
 
+    @ValidateMe
+    public int txPendingCapacity() {
+        return config.getInt("transaction.pending.capacity");
+    }
+
     public void setGenesisInfo(String genesisInfo){
         this.genesisInfo = genesisInfo;
     }
@@ -1055,6 +1087,16 @@ public class SystemProperties {
                 config.getString("blocks.loader") : DEFAULT_BLOCKS_LOADER;
     }
 
+    @ValidateMe
+    public String stateArchiveExport() {
+        return config.getString(PROPERTY_STATE_ARCHIVE_EXPORT);
+    }
+
+    @ValidateMe
+    public String stateArchiveImport() {
+        return config.getString(PROPERTY_STATE_ARCHIVE_IMPORT);
+    }
+
     public String githubTestsPath() {
         return config.hasPath("GitHubTests.testPath") ?
                 config.getString("GitHubTests.testPath") : "";
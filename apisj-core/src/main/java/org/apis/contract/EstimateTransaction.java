@@ -1,5 +1,6 @@
 package org.apis.contract;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apis.core.*;
 import org.apis.crypto.ECKey;
 import org.apis.db.BlockStore;
@@ -15,6 +16,13 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public class EstimateTransaction {
 
@@ -25,6 +33,14 @@ public class EstimateTransaction {
     private static final int DEFAULT_MAX_REPEAT = 50;
     private static final long DEFAULT_MIN_OFFSET = 1_000L;
 
+    /**
+     * 이진 탐색의 한 단계에서 동시에 실행하는 gas limit 의 수
+     */
+    private static final int PARALLEL_PROBES = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final ExecutorService probeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("estimate-probe-%d").build());
+
     private Logger logger = LoggerFactory.getLogger("estimate");
 
     private ApisImpl apis;
@@ -117,6 +133,21 @@ public class EstimateTransaction {
     }
 
     public EstimateTransactionResult estimate(Repository repo, BlockStore blockStore, Block callBlock, Transaction tx, int maxRepeat, long minOffset, boolean isLocalCall) {
+        return estimate(repo, null, blockStore, callBlock, tx, maxRepeat, minOffset, isLocalCall);
+    }
+
+    /**
+     * 트랜잭션을 한 번 실행한 뒤, 성공하는 가장 작은 gas limit 을 이진 탐색으로 찾는다.
+     *
+     * 모든 실행은 같은 스냅샷(repo) 위의 track 에서 이뤄지고 곧바로 rollback 된다.
+     * 첫 실행에서 읽은 계정과 스토리지는 스냅샷의 캐시에 남기 때문에 이후의 실행은 trie 를 다시 읽지 않는다.
+     *
+     * @param snapshots 같은 상태의 스냅샷을 새로 만든다. null 이 아니면 한 번에 여러 gas limit 을 병렬로 실행하고,
+     *                  각 스레드는 자신의 스냅샷을 탐색이 끝날 때까지 재사용한다.
+     * @param maxRepeat 탐색 횟수의 최대값
+     * @param minOffset 성공한 gas limit 과 실패한 gas limit 의 차이가 이 값 이하가 되면 탐색을 멈춘다.
+     */
+    private EstimateTransactionResult estimate(Repository repo, Supplier<Repository> snapshots, BlockStore blockStore, Block callBlock, Transaction tx, int maxRepeat, long minOffset, boolean isLocalCall) {
         if(maxRepeat < 0) {
             maxRepeat = DEFAULT_MAX_REPEAT;
         }
@@ -126,43 +157,81 @@ public class EstimateTransaction {
 
         TransactionExecutor executor = getExecutor(repo, blockStore, callBlock, tx, isLocalCall);
         TransactionReceipt receipt = executor.getReceipt();
+        if(!receipt.isSuccessful() || maxRepeat == 0) {
+            return new EstimateTransactionResult(executor, executor.getGasUsed());
+        }
 
-        long newGasLimit = BIUtil.toBI(receipt.getGasUsed()).longValue();
-        boolean isSuccess = receipt.isSuccessful();
-
-        long offset = (long)(newGasLimit*0.4f);
-        boolean lastSuccess = isSuccess;
-
-        TransactionExecutor lastSuccessExecutor = executor;
-        long lastSuccessGasUsed = executor.getGasUsed();
+        long gasUsed = BIUtil.toBI(receipt.getGasUsed()).longValue();
 
-        for(int i = 0; i < maxRepeat && isSuccess; i++) {
+        // 대부분의 트랜잭션은 사용한 가스만큼의 limit 으로도 성공한다.
+        TransactionExecutor usedExecutor = probe(repo, blockStore, callBlock, tx, gasUsed, isLocalCall);
+        if(usedExecutor.getReceipt().isSuccessful()) {
+            return new EstimateTransactionResult(usedExecutor, gasUsed);
+        }
 
-            executor = getExecutor(repo, blockStore, callBlock, tx.getSender(), tx.getReceiveAddress(), ByteUtil.bytesToBigInteger(tx.getValue()), newGasLimit, tx.getData(), isLocalCall);
-            receipt = executor.getReceipt();
+        // 환급(refund)이나 하위 호출에 넘겨지는 가스 때문에 더 큰 limit 이 필요한 경우
+        // failLimit 에서는 실패하고 successLimit 에서는 성공한다.
+        long failLimit = gasUsed;
+        long successLimit = ByteUtil.byteArrayToLong(tx.getGasLimit());
+        TransactionExecutor successExecutor = executor;
+
+        List<Repository> probeRepos = new ArrayList<>();
+        probeRepos.add(repo);
+        int probes = snapshots == null ? 1 : PARALLEL_PROBES;
+
+        for(int i = 1; i < maxRepeat && successLimit - failLimit > Math.max(minOffset, 1); i++) {
+            int count = (int) Math.min(probes, successLimit - failLimit - 1);
+            long[] limits = new long[count];
+            for(int j = 0; j < count; j++) {
+                limits[j] = failLimit + (successLimit - failLimit)*(j + 1)/(count + 1);
+            }
+            while(probeRepos.size() < count) {
+                probeRepos.add(snapshots.get());
+            }
 
-            if(receipt.isSuccessful()) {
-                lastSuccessExecutor = executor;
-                lastSuccessGasUsed = newGasLimit;
+            TransactionExecutor[] executors = probe(probeRepos, blockStore, callBlock, tx, limits, isLocalCall);
 
-                if(i == 0 || offset < minOffset) {
+            for(int j = 0; j < count; j++) {
+                if(executors[j].getReceipt().isSuccessful()) {
+                    successLimit = limits[j];
+                    successExecutor = executors[j];
                     break;
-                } else {
-                    newGasLimit -= offset;
                 }
-            } else {
-                newGasLimit += offset;
+                failLimit = limits[j];
             }
+        }
 
+        return new EstimateTransactionResult(successExecutor, successLimit);
+    }
 
-            if (receipt.isSuccessful() != lastSuccess) {
-                offset = (long) (offset*0.4);
-            }
+    private TransactionExecutor probe(Repository repo, BlockStore blockStore, Block callBlock, Transaction tx, long gasLimit, boolean isLocalCall) {
+        return getExecutor(repo, blockStore, callBlock, tx.getSender(), tx.getReceiveAddress(), ByteUtil.bytesToBigInteger(tx.getValue()), gasLimit, tx.getData(), isLocalCall);
+    }
 
-            lastSuccess = receipt.isSuccessful();
+    /**
+     * limits[i] 는 repos[i] 에서 실행된다. 첫 번째는 호출한 스레드에서, 나머지는 probeExecutor 에서 실행된다.
+     */
+    private TransactionExecutor[] probe(List<Repository> repos, BlockStore blockStore, Block callBlock, Transaction tx, long[] limits, boolean isLocalCall) {
+        List<Future<TransactionExecutor>> futures = new ArrayList<>();
+        for(int i = 1; i < limits.length; i++) {
+            Repository repo = repos.get(i);
+            long gasLimit = limits[i];
+            futures.add(probeExecutor.submit(() -> probe(repo, blockStore, callBlock, tx, gasLimit, isLocalCall)));
         }
 
-        return new EstimateTransactionResult(lastSuccessExecutor, lastSuccessGasUsed);
+        TransactionExecutor[] executors = new TransactionExecutor[limits.length];
+        executors[0] = probe(repos.get(0), blockStore, callBlock, tx, limits[0], isLocalCall);
+        try {
+            for(int i = 1; i < limits.length; i++) {
+                executors[i] = futures.get(i - 1).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return executors;
     }
 
     public EstimateTransactionResult estimate(String abi, byte[] from, byte[] to, BigInteger value, String functionName, Object ... args) {
@@ -217,9 +286,29 @@ public class EstimateTransaction {
     public EstimateTransactionResult estimate(Transaction tx, int maxRepeat, long maxOffset, boolean isLocalCall) {
         Block callBlock = apis.getBlockchain().getBestBlock();
         Repository repo = ((Repository)apis.getRepository()).getSnapshotTo(callBlock.getStateRoot());
+
+        return estimate(repo, callBlock, tx, maxRepeat, maxOffset, isLocalCall);
+    }
+
+    /**
+     * callBlock 의 상태를 조회하는 repo 위에서 트랜잭션을 실행한다.
+     * 여러 요청이 같은 스냅샷을 조회해야 하는 경우(예: RPC 배치 요청)에 사용한다.
+     */
+    public EstimateTransactionResult estimate(Repository repo, Block callBlock, byte[] from, byte[] to, long nonce, BigInteger value, long gasLimit, byte[] data) {
+        Transaction tx = makeTransaction(from, to, nonce, gasLimit, value, data);
+        return estimate(repo, callBlock, tx, -1, -1, true);
+    }
+
+    public EstimateTransactionResult estimate(Repository repo, Block callBlock, ECKey from, byte[] to, long nonce, BigInteger value, long gasLimit, byte[] data, boolean isLocalCall) {
+        Transaction tx = makeTransaction(from, to, nonce, gasLimit, value, data);
+        return estimate(repo, callBlock, tx, -1, -1, isLocalCall);
+    }
+
+    private EstimateTransactionResult estimate(Repository repo, Block callBlock, Transaction tx, int maxRepeat, long maxOffset, boolean isLocalCall) {
+        Supplier<Repository> snapshots = () -> ((Repository)apis.getRepository()).getSnapshotTo(callBlock.getStateRoot());
         BlockStore blockStore = apis.getBlockchain().getBlockStore();
 
-        return estimate(repo, blockStore, callBlock, tx, maxRepeat, maxOffset, isLocalCall);
+        return estimate(repo, snapshots, blockStore, callBlock, tx, maxRepeat, maxOffset, isLocalCall);
     }
 
 
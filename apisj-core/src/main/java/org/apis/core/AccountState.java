@@ -123,6 +123,69 @@ public class AccountState {
 
     private final BigInteger totalReward;
 
+    /**
+     * 마지막으로 계산한 미네랄 양과 그 블록 번호
+     */
+    private volatile MineralAt mineralAt;
+
+    private static class MineralAt {
+        private final long blockNumber;
+        private final BigInteger value;
+
+        private MineralAt(long blockNumber, BigInteger value) {
+            this.blockNumber = blockNumber;
+            this.value = value;
+        }
+    }
+
+    // 잔고가 COLLECT_RATE_BALANCES[i] 보다 적으면 블록마다 COLLECT_RATES[i] 만큼 미네랄이 모인다.
+    private static final BigInteger[] COLLECT_RATE_BALANCES = {
+            ApisUtil.convert(1, ApisUtil.Unit.APIS),
+            ApisUtil.convert(10, ApisUtil.Unit.APIS),
+            ApisUtil.convert(1000, ApisUtil.Unit.APIS),
+            ApisUtil.convert(1_000, ApisUtil.Unit.APIS),
+            ApisUtil.convert(10_000, ApisUtil.Unit.APIS),
+            ApisUtil.convert(50_000, ApisUtil.Unit.APIS),
+            ApisUtil.convert(200_000, ApisUtil.Unit.APIS),
+            ApisUtil.convert(500_000, ApisUtil.Unit.APIS)
+    };
+
+    private static final BigInteger[] COLLECT_RATES = {
+            BigInteger.ZERO,
+            ApisUtil.convert(167, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(334, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(584, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(778, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(1167, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(4_000, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(6_000, ApisUtil.Unit.nAPIS),
+            ApisUtil.convert(10_000, ApisUtil.Unit.nAPIS)
+    };
+
+    private static final BigInteger MASTERNODE_COLLECT_RATE = ApisUtil.convert(4_000L, ApisUtil.Unit.nAPIS);
+
+    // nonce가 LIMIT_MINERAL_NONCES[i] 보다 적으면 미네랄 한도는 LIMIT_MINERALS[i] 이다.
+    private static final BigInteger[] LIMIT_MINERAL_NONCES = {
+            BigInteger.valueOf(3),
+            BigInteger.valueOf(10),
+            BigInteger.valueOf(20),
+            BigInteger.valueOf(50),
+            BigInteger.valueOf(100),
+            BigInteger.valueOf(1_000),
+            BigInteger.valueOf(10_000)
+    };
+
+    private static final BigInteger[] LIMIT_MINERALS = {
+            ApisUtil.convert(20, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(40, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(60, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(80, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(100, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(1_000, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(4_000, ApisUtil.Unit.mAPIS),
+            ApisUtil.convert(10_000, ApisUtil.Unit.mAPIS)
+    };
+
     public AccountState(SystemProperties config) {
         this(config.getBlockchainConfig().getCommonConstants().getInitialNonce(), BigInteger.ZERO);
     }
@@ -293,6 +356,18 @@ public class AccountState {
     }
 
     public BigInteger getMineral(long blockNumber) {
+        // 같은 블록에 대해서는 한 번만 계산한다. 미네랄이 바뀌면 새 AccountState가 만들어지므로 따로 무효화할 필요가 없다.
+        MineralAt cached = mineralAt;
+        if(cached != null && cached.blockNumber == blockNumber) {
+            return cached.value;
+        }
+
+        BigInteger value = calcMineral(blockNumber);
+        mineralAt = new MineralAt(blockNumber, value);
+        return value;
+    }
+
+    private BigInteger calcMineral(long blockNumber) {
         if(lastBlock.compareTo(BigInteger.valueOf(blockNumber)) > 0) {
             return BigInteger.ZERO;
         }
@@ -324,40 +399,17 @@ public class AccountState {
      * @return 현재 블럭까지 생성된 Mineral 양
      */
     private BigInteger getCollectedMineral(BigInteger countCollected) {
-        BigInteger collectRate;
-
-        if(balance.compareTo(ApisUtil.convert(1, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = BigInteger.ZERO;
-        }
-        else if(balance.compareTo(ApisUtil.convert(10, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(167, ApisUtil.Unit.nAPIS);
-        }
-        else if(balance.compareTo(ApisUtil.convert(1000, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(334, ApisUtil.Unit.nAPIS);
-        }
-        else if(balance.compareTo(ApisUtil.convert(1_000, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(584, ApisUtil.Unit.nAPIS);
-        }
-        else if(balance.compareTo(ApisUtil.convert(10_000, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(778, ApisUtil.Unit.nAPIS);
-        }
-        else if(balance.compareTo(ApisUtil.convert(50_000, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(1167, ApisUtil.Unit.nAPIS);
-        }
-        else if(balance.compareTo(ApisUtil.convert(200_000, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(4_000, ApisUtil.Unit.nAPIS);
-        }
-        else if(balance.compareTo(ApisUtil.convert(500_000, ApisUtil.Unit.APIS)) < 0) {
-            collectRate = ApisUtil.convert(6_000, ApisUtil.Unit.nAPIS);
-        }
-        else {
-            collectRate = ApisUtil.convert(10_000, ApisUtil.Unit.nAPIS);
+        BigInteger collectRate = COLLECT_RATES[COLLECT_RATES.length - 1];
+        for(int i = 0; i < COLLECT_RATE_BALANCES.length; i++) {
+            if(balance.compareTo(COLLECT_RATE_BALANCES[i]) < 0) {
+                collectRate = COLLECT_RATES[i];
+                break;
+            }
         }
 
         if(mnStartBlock.longValue() > 0) {
-            BigInteger mnCollectRate = ApisUtil.convert(4_000L, ApisUtil.Unit.nAPIS);
-            if(collectRate.compareTo(mnCollectRate) < 0) {
-                collectRate = mnCollectRate;
+            if(collectRate.compareTo(MASTERNODE_COLLECT_RATE) < 0) {
+                collectRate = MASTERNODE_COLLECT_RATE;
             }
         }
 
@@ -365,23 +417,12 @@ public class AccountState {
     }
 
     private BigInteger getLimitMineral() {
-        if(nonce.compareTo(BigInteger.valueOf(3)) < 0) {
-            return ApisUtil.convert(20, ApisUtil.Unit.mAPIS);
-        } else if(nonce.compareTo(BigInteger.valueOf(10)) < 0) {
-            return ApisUtil.convert(40, ApisUtil.Unit.mAPIS);
-        } else if(nonce.compareTo(BigInteger.valueOf(20)) < 0) {
-            return ApisUtil.convert(60, ApisUtil.Unit.mAPIS);
-        } else if(nonce.compareTo(BigInteger.valueOf(50)) < 0) {
-            return ApisUtil.convert(80, ApisUtil.Unit.mAPIS);
-        } else if(nonce.compareTo(BigInteger.valueOf(100)) < 0) {
-            return ApisUtil.convert(100, ApisUtil.Unit.mAPIS);
-        } else if(nonce.compareTo(BigInteger.valueOf(1_000)) < 0) {
-            return ApisUtil.convert(1_000, ApisUtil.Unit.mAPIS);
-        } else if(nonce.compareTo(BigInteger.valueOf(10_000)) < 0) {
-            return ApisUtil.convert(4_000, ApisUtil.Unit.mAPIS);
-        } else {
-            return ApisUtil.convert(10_000, ApisUtil.Unit.mAPIS);
+        for(int i = 0; i < LIMIT_MINERAL_NONCES.length; i++) {
+            if(nonce.compareTo(LIMIT_MINERAL_NONCES[i]) < 0) {
+                return LIMIT_MINERALS[i];
+            }
         }
+        return LIMIT_MINERALS[LIMIT_MINERALS.length - 1];
     }
 
     public BigInteger getLastBlock() {
@@ -41,6 +41,7 @@ import org.apis.util.blockchain.MasternodeRewardData;
 import org.apis.validator.DependentBlockHeaderRule;
 import org.apis.validator.ParentBlockHeaderValidator;
 import org.apis.vm.LogInfo;
+import org.apis.vm.program.ProgramPrecompileCache;
 import org.apis.vm.program.invoke.ProgramInvokeFactory;
 import org.apis.vm.program.invoke.ProgramInvokeFactoryImpl;
 import org.slf4j.Logger;
@@ -56,6 +57,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.Future;
 
 import static java.lang.Runtime.getRuntime;
 import static java.math.BigInteger.ONE;
@@ -172,6 +174,9 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
 
     private Stack<State> stateStack = new Stack<>();
 
+    // the speculative execution of the last block applied, null if it was executed in order
+    private volatile SpeculativeBlockExecutor lastSpeculativeExecutor;
+
     /** Tests only **/
     public BlockchainImpl() {
     }
@@ -559,14 +564,12 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
 
 
         // 블록의 RewardPoint를 계산한다.
-        Repository repo = RewardPointUtil.getRewardPointBalanceRepo(repository, parent, blockStore);
-        BigInteger balance = repo.getBalance(block.getCoinbase());
-        byte[] seed = RewardPointUtil.calcSeed(block.getCoinbase(), balance, parent.getHash());
-        BigInteger rp = RewardPointUtil.calcRewardPoint(seed, balance);
+        RewardPoint rewardPoint = RewardPointUtil.getRewardPoint(repository, parent, block.getCoinbase(), blockStore);
+        BigInteger rp = rewardPoint.getRP();
         BigInteger cumulativeRP = parent.getCumulativeRewardPoint().add(rp);
 
-        block.setNonce(ByteUtil.bigIntegerToBytes(balance));
-        block.setMixHash(seed);
+        block.setNonce(rewardPoint.getBalance());
+        block.setMixHash(rewardPoint.getSeed());
         block.setRewardPoint(rp);
         block.setCumulativeRewardPoint(cumulativeRP);
 
@@ -730,20 +733,10 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
 
         Block parentBlock = blockStore.getBlockByHash(block.getParentHash());
 
-        Block balanceBlock = parentBlock;
-        for(int i = 0 ; i < 10 ; i++) {
-            if(balanceBlock.getNumber() > 0) {
-                balanceBlock = getBlockByHash(balanceBlock.getParentHash());
-            } else {
-                break;
-            }
-        }
-        Repository balanceRepo = repo.getSnapshotTo(balanceBlock.getStateRoot());
-
-        BigInteger balance = balanceRepo.getBalance(block.getCoinbase());
-        byte[] seed = RewardPointUtil.calcSeed(block.getCoinbase(), balance, block.getParentHash());
-        BigInteger calculatedRP = RewardPointUtil.calcRewardPoint(seed, balance);
-        //RewardPoint calculatedRP = RewardPointUtil.genRewardPoint(parentBlock, block.getCoinbase(), parentRepo);
+        RewardPoint rewardPoint = RewardPointUtil.getRewardPoint(repo, parentBlock, block.getCoinbase(), blockStore);
+        BigInteger balance = rewardPoint.getBalanceBI();
+        byte[] seed = rewardPoint.getSeed();
+        BigInteger calculatedRP = rewardPoint.getRP();
 
 
         if(!FastByteComparisons.equal(block.getNonce(), ByteUtil.bigIntegerToBytes(balance))) {
@@ -1181,6 +1174,13 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
         }
     }
 
+    /**
+     * @return the speculative execution of the last block applied, null if its transactions were executed in order
+     */
+    SpeculativeBlockExecutor getLastSpeculativeExecutor() {
+        return lastSpeculativeExecutor;
+    }
+
     private BlockSummary applyBlock(Repository track, Block block) {
 
         logger.debug("applyBlock: block: [{}] tx.list: [{}]", block.getNumber(), block.getTransactionsList().size());
@@ -1192,6 +1192,16 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
         List<TransactionReceipt> receipts = new ArrayList<>();
         List<TransactionExecutionSummary> summaries = new ArrayList<>();
 
+        // 트랜잭션들을 미리 병렬로 실행해둔다.
+        SpeculativeBlockExecutor speculativeExecutor = null;
+        List<Future<SpeculativeBlockExecutor.Execution>> speculative = null;
+        if (config.parallelExecution() && !config.vmTrace()) {
+            Block parent = blockStore.getBlockByHash(block.getParentHash());
+            speculativeExecutor = new SpeculativeBlockExecutor(repository, blockStore, programInvokeFactory, commonConfig);
+            speculative = speculativeExecutor.start(block, parent == null ? null : parent.getStateRoot());
+        }
+        lastSpeculativeExecutor = speculative == null ? null : speculativeExecutor;
+
         // 마스터노드 목록 중에 유효기간이 지난 노드를 정리한다.
         track.cleaningMasterNodes(block.getNumber());
 
@@ -1199,22 +1209,35 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
             stateLogger.debug("apply block: [{}] tx: [{}] nonce: [{}] ", block.getNumber(), txIndex, ByteUtil.bytesToBigInteger(tx.getNonce()));
 
             Repository txTrack = track.startTracking();
-            TransactionExecutor executor = new TransactionExecutor(
-                    tx,
-                    block.getCoinbase(),
-                    txTrack,
-                    blockStore,
-                    programInvokeFactory,
-                    block,
-                    listener,
-                    totalGasUsed,
-                    totalMineralUsed)
-                    .withCommonConfig(commonConfig);
-
-            executor.init();
-            executor.execute();
-            executor.go();
-            TransactionExecutionSummary summary = executor.finalization();
+            TransactionExecutor executor;
+            TransactionExecutionSummary summary;
+
+            SpeculativeBlockExecutor.Execution execution = speculative == null ? null :
+                    speculativeExecutor.commit(speculative.get(txIndex - 1), block, txTrack, totalGasUsed, totalMineralUsed);
+            if (execution != null) {
+                executor = execution.getExecutor();
+                summary = execution.getSummary();
+                if (summary != null) {
+                    listener.onTransactionExecuted(summary);
+                }
+            } else {
+                executor = new TransactionExecutor(
+                        tx,
+                        block.getCoinbase(),
+                        txTrack,
+                        blockStore,
+                        programInvokeFactory,
+                        block,
+                        listener,
+                        totalGasUsed,
+                        totalMineralUsed)
+                        .withCommonConfig(commonConfig);
+
+                executor.init();
+                executor.execute();
+                executor.go();
+                summary = executor.finalization();
+            }
 
             totalGasUsed += executor.getGasUsed();
             totalMineralUsed = totalMineralUsed.add(executor.getMineralUsed());
@@ -1268,6 +1291,11 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
         }
 
 
+        if (speculative != null) {
+            logger.debug("block: [{}] executed {} of {} transactions again after the speculative execution",
+                    block.getNumber(), speculativeExecutor.getReExecuted(), speculative.size());
+        }
+
         Map<byte[], BigInteger> rewards = addReward(track, block, summaries);
 
         stateLogger.info("applied reward for block: [{}]  \n  state: [{}]",
@@ -1277,6 +1305,11 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
         long totalTime = System.nanoTime() - saveTime;
         adminInfo.addBlockExecTime(totalTime);
         logger.debug("block: num: [{}] hash: [{}], executed after: [{}]nano", block.getNumber(), block.getShortHash(), totalTime);
+        if (logger.isDebugEnabled()) {
+            logger.debug("precompile cache: hit ratio: [{}%], hits: [{}], misses: [{}]",
+                    String.format("%.1f", ProgramPrecompileCache.getHitRatio() * 100),
+                    ProgramPrecompileCache.getHits(), ProgramPrecompileCache.getMisses());
+        }
 
         return new BlockSummary(block, rewards, receipts, summaries);
     }
@@ -1475,6 +1508,9 @@ public class BlockchainImpl implements Blockchain, org.apis.facade.Blockchain {
 
     @Override
     public synchronized void close() {
+        if (pruneManager != null) {
+            pruneManager.close();
+        }
         blockStore.close();
     }
 
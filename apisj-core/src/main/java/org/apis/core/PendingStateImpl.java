@@ -87,17 +87,17 @@ public class PendingStateImpl implements PendingState {
 
 //    private Repository repository;
 
-    private final List<PendingTransaction> pendingTransactions = new ArrayList<>();
+    private final PendingTransactionPool pendingTransactions = new PendingTransactionPool();
 
 
     // to filter out the transactions we have already processed
     // transactions could be sent by peers even if they were already included into blocks
-    private final Map<ByteArrayWrapper, Object> receivedTxs = new LRUMap<>(100000);
+    private final Map<ByteArrayWrapper, Object> receivedTxs = Collections.synchronizedMap(new LRUMap<>(100000));
     private final Object dummyObject = new Object();
 
     private Repository pendingState;
 
-    private Block best = null;
+    private volatile Block best = null;
 
     @Autowired
     public PendingStateImpl(final EthereumListener listener) {
@@ -121,16 +121,12 @@ public class PendingStateImpl implements PendingState {
         return pendingState;
     }
 
+    /**
+     * @return nonce 순서로 정렬된 보류중인 트랜잭션들, 변경할 수 없는 목록이며 잠금 없이 반환된다.
+     */
     @Override
-    public synchronized List<Transaction> getPendingTransactions() {
-
-        List<Transaction> txs = new ArrayList<>();
-
-        for (PendingTransaction tx : pendingTransactions) {
-            txs.add(tx.getTransaction());
-        }
-
-        return txs;
+    public List<Transaction> getPendingTransactions() {
+        return pendingTransactions.getTransactions();
     }
 
     public Block getBestBlock() {
@@ -150,21 +146,43 @@ public class PendingStateImpl implements PendingState {
     }
 
     @Override
-    public synchronized List<Transaction> addPendingTransactions(List<Transaction> transactions) {
+    public List<Transaction> addPendingTransactions(List<Transaction> transactions) {
+        // recover senders before taking the lock so that signature checks of
+        // incoming batches don't block processBest() and each other
+        TransactionSenderRecovery.recover(transactions);
+
+        // the checks which don't need the pending state are done off the lock too
         int unknownTx = 0;
-        List<Transaction> newPending = new ArrayList<>();
+        List<Transaction> valid = new ArrayList<>();
         for (Transaction tx : transactions) {
             if (addNewTxIfNotExist(tx)) {
                 unknownTx++;
-                if (addPendingTransactionImpl(tx)) {
-                    newPending.add(tx);
+                String err = validate(tx);
+                if (err != null) {
+                    fireTxUpdate(createDroppedReceipt(tx, err), DROPPED, getBestBlock());
+                } else {
+                    valid.add(tx);
                 }
             }
         }
 
+        List<Transaction> newPending = valid.isEmpty() ? new ArrayList<>() : addPendingTransactionsImpl(valid);
+
         logger.debug("Wire transaction list added: total: {}, new: {}, valid (added to pending): {} (current #of known txs: {})",
                 transactions.size(), unknownTx, newPending, receivedTxs.size());
 
+        return newPending;
+    }
+
+    private synchronized List<Transaction> addPendingTransactionsImpl(List<Transaction> transactions) {
+        List<Transaction> newPending = new ArrayList<>();
+        for (Transaction tx : transactions) {
+            if (addPendingTransactionImpl(tx)) {
+                newPending.add(tx);
+            }
+        }
+        pendingTransactions.publish();
+
         if (!newPending.isEmpty()) {
             listener.onPendingTransactionsReceived(newPending);
             listener.onPendingStateChanged(PendingStateImpl.this);
@@ -173,7 +191,7 @@ public class PendingStateImpl implements PendingState {
         return newPending;
     }
 
-    public synchronized void trackTransaction(Transaction tx) {
+    public void trackTransaction(Transaction tx) {
         List<TransactionInfo> infos = transactionStore.get(tx.getHash());
         if (!infos.isEmpty()) {
             for (TransactionInfo info : infos) {
@@ -203,29 +221,35 @@ public class PendingStateImpl implements PendingState {
     /**
      * Executes pending tx on the latest best block
      * Fires pending state update
-     * @param tx    Transaction
+     * @param tx    Transaction validated by {@link #validate(Transaction)}
      * @return True if transaction gets NEW_PENDING state, False if DROPPED
      */
     private boolean addPendingTransactionImpl(final Transaction tx) {
-        TransactionReceipt newReceipt = new TransactionReceipt();
-        newReceipt.setTransaction(tx);
-
-        String err = validate(tx);
+        int capacity = config.txPendingCapacity();
 
         TransactionReceipt txReceipt;
-        if (err != null) {
-            txReceipt = createDroppedReceipt(tx, err);
+        if (!pendingTransactions.hasRoomFor(tx, capacity)) {
+            txReceipt = createDroppedReceipt(tx, "Pending transaction pool is full (" + capacity + " txs)");
         } else {
             txReceipt = executeTx(tx);
         }
 
         if (!txReceipt.isValid()) {
             fireTxUpdate(txReceipt, DROPPED, getBestBlock());
-        } else {
-            pendingTransactions.add(new PendingTransaction(tx, getBestBlock().getNumber()));
-            fireTxUpdate(txReceipt, NEW_PENDING, getBestBlock());
+            return false;
+        }
+
+        pendingTransactions.add(new PendingTransaction(tx, getBestBlock().getNumber()));
+        fireTxUpdate(txReceipt, NEW_PENDING, getBestBlock());
+
+        // the evicted transactions stay in the pending state until it is rebuilt on the next block
+        boolean evictedSelf = false;
+        for (PendingTransaction evicted : pendingTransactions.evict(capacity)) {
+            evictedSelf |= evicted.getTransaction() == tx;
+            fireTxUpdate(createDroppedReceipt(evicted.getTransaction(),
+                    "Evicted from the full pending transaction pool (" + capacity + " txs)"), DROPPED, getBestBlock());
         }
-        return txReceipt.isValid();
+        return !evictedSelf;
     }
 
     private TransactionReceipt createDroppedReceipt(Transaction tx, String error) {
@@ -282,12 +306,10 @@ public class PendingStateImpl implements PendingState {
             // first return back the transactions from forked blocks
             Block rollback = getBestBlock();
             while(!rollback.isEqual(commonAncestor)) {
-                List<PendingTransaction> blockTxs = new ArrayList<>();
                 for (Transaction tx : rollback.getTransactionsList()) {
                     logger.trace("Returning transaction back to pending: " + tx);
-                    blockTxs.add(new PendingTransaction(tx, commonAncestor.getNumber()));
+                    pendingTransactions.add(new PendingTransaction(tx, commonAncestor.getNumber()));
                 }
-                pendingTransactions.addAll(0, blockTxs);
                 rollback = blockchain.getBlockByHash(rollback.getParentHash());
             }
 
@@ -313,6 +335,8 @@ public class PendingStateImpl implements PendingState {
 
         best = newBlock;
 
+        pendingTransactions.publish();
+
         updateState(newBlock);
 
         listener.onPendingStateChanged(PendingStateImpl.this);
@@ -326,16 +350,12 @@ public class PendingStateImpl implements PendingState {
     }
 
     private void clearOutdated(final long blockNumber) {
-        List<PendingTransaction> outdated = new ArrayList<>();
-
-        for (PendingTransaction tx : pendingTransactions) {
-            if (blockNumber - tx.getBlockNumber() > config.txOutdatedThreshold()) {
-                outdated.add(tx);
+        List<PendingTransaction> outdated = pendingTransactions.removeOutdated(blockNumber, config.txOutdatedThreshold());
 
-                fireTxUpdate(createDroppedReceipt(tx.getTransaction(),
-                        "Tx was not included into last " + config.txOutdatedThreshold() + " blocks"),
-                        DROPPED, getBestBlock());
-            }
+        for (PendingTransaction tx : outdated) {
+            fireTxUpdate(createDroppedReceipt(tx.getTransaction(),
+                    "Tx was not included into last " + config.txOutdatedThreshold() + " blocks"),
+                    DROPPED, getBestBlock());
         }
 
         if (outdated.isEmpty()) return;
@@ -347,29 +367,38 @@ public class PendingStateImpl implements PendingState {
                         tx.getBlockNumber(),
                         toHexString(tx.getHash())
                 );
-
-        pendingTransactions.removeAll(outdated);
     }
 
     private void clearPending(Block block, List<TransactionReceipt> receipts) {
         for (int i = 0; i < block.getTransactionsList().size(); i++) {
             Transaction tx = block.getTransactionsList().get(i);
-            PendingTransaction pend = new PendingTransaction(tx);
-
-            if (pendingTransactions.remove(pend)) {
-                try {
-                    logger.trace("Clear pending transaction, hash: [{}]", toHexString(tx.getHash()));
-                    TransactionReceipt receipt;
-                    if (receipts != null) {
-                        receipt = receipts.get(i);
-                    } else {
-                        TransactionInfo info = getTransactionInfo(tx.getHash(), block.getHash());
-                        receipt = info.getReceipt();
-                    }
-                    fireTxUpdate(receipt, INCLUDED, block);
-                } catch (Exception e) {
-                    logger.error("Exception creating onPendingTransactionUpdate (block: " + block.getShortDescr() + ", tx: " + i, e);
+
+            PendingTransaction removed = pendingTransactions.remove(tx);
+            if (removed == null) {
+                continue;
+            }
+
+            // 같은 주소와 nonce의 다른 트랜잭션이 포함되어서 보류중인 트랜잭션은 더 이상 포함될 수 없다.
+            if (!FastByteComparisons.equal(removed.getHash(), tx.getHash())) {
+                logger.trace("Drop pending transaction replaced by the block, hash: [{}]", toHexString(removed.getHash()));
+                fireTxUpdate(createDroppedReceipt(removed.getTransaction(),
+                        "Tx was replaced by the tx " + toHexString(tx.getHash()) + " with the same nonce in the block " + block.getNumber()),
+                        DROPPED, block);
+                continue;
+            }
+
+            try {
+                logger.trace("Clear pending transaction, hash: [{}]", toHexString(tx.getHash()));
+                TransactionReceipt receipt;
+                if (receipts != null) {
+                    receipt = receipts.get(i);
+                } else {
+                    TransactionInfo info = getTransactionInfo(tx.getHash(), block.getHash());
+                    receipt = info.getReceipt();
                 }
+                fireTxUpdate(receipt, INCLUDED, block);
+            } catch (Exception e) {
+                logger.error("Exception creating onPendingTransactionUpdate (block: " + block.getShortDescr() + ", tx: " + i, e);
             }
         }
     }
@@ -387,12 +416,13 @@ public class PendingStateImpl implements PendingState {
 
         long t = System.nanoTime();
 
-        for (PendingTransaction tx : pendingTransactions) {
+        List<PendingTransaction> txs = pendingTransactions.getPendingTransactions();
+        for (PendingTransaction tx : txs) {
             TransactionReceipt receipt = executeTx(tx.getTransaction());
             fireTxUpdate(receipt, PENDING, block);
         }
 
-        logger.debug("Successfully processed #{}, txs: {}, time: {}s", block.getNumber(), pendingTransactions.size(),
+        logger.debug("Successfully processed #{}, txs: {}, time: {}s", block.getNumber(), txs.size(),
                 String.format("%.3f", (System.nanoTime() - t) / 1_000_000_000d));
     }
 
@@ -0,0 +1,225 @@
+package org.apis.core;
+
+import org.apis.db.ByteArrayWrapper;
+import org.apis.util.ByteUtil;
+import org.apis.util.FastByteComparisons;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 보류중인 트랜잭션들을 보관한다.
+ *
+ * <p>
+ *     트랜잭션은 보낸 주소 별로 nonce 순서대로 보관되고, 풀이 가득 차면 가스 가격이 가장 낮은 트랜잭션부터 제거된다.
+ *     nonce 사이에 빈 자리가 생기지 않도록, 제거되는 트랜잭션보다 nonce가 큰 같은 주소의 트랜잭션들도 함께 제거된다.
+ *
+ * <p>
+ *     변경은 {@link PendingStateImpl} 의 잠금 안에서 한 스레드씩 이루어지고, 변경이 끝나면 {@link #publish()} 로
+ *     목록을 새로 만들어둔다. {@link #getTransactions()} 는 잠금 없이 만들어진 목록을 그대로 반환한다.
+ *     nonce 순서의 목록은 변경될 때마다 함께 갱신되므로, 목록은 정렬 없이 변경이 있었을 때만 새로 만들어진다.
+ */
+public class PendingTransactionPool {
+
+    // 가스 가격이 낮은 것부터, 같은 가격이면 nonce가 큰 것부터 제거된다.
+    private static final Comparator<Entry> EVICTION_ORDER = (e1, e2) -> {
+        int cmp = e1.gasPrice.compareTo(e2.gasPrice);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Long.compare(e2.nonce, e1.nonce);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = e1.sender.compareTo(e2.sender);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return FastByteComparisons.compareTo(e1.hash, 0, e1.hash.length, e2.hash, 0, e2.hash.length);
+    };
+
+    // PendingStateImpl.TransactionSortedSet 과 같은 순서
+    private static final Comparator<Entry> NONCE_ORDER = (e1, e2) -> {
+        int cmp = Long.compare(e1.nonce, e2.nonce);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return FastByteComparisons.compareTo(e1.hash, 0, e1.hash.length, e2.hash, 0, e2.hash.length);
+    };
+
+    private final Map<ByteArrayWrapper, ConcurrentNavigableMap<Long, Entry>> bySender = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> byPrice = new ConcurrentSkipListSet<>(EVICTION_ORDER);
+    private final ConcurrentSkipListSet<Entry> byNonce = new ConcurrentSkipListSet<>(NONCE_ORDER);
+
+    // 마지막 publish() 이후에 변경이 있었으면 true
+    private volatile boolean changed = false;
+
+    private volatile List<PendingTransaction> pendingSnapshot = Collections.emptyList();
+    private volatile List<Transaction> transactionSnapshot = Collections.emptyList();
+
+    /**
+     * @return 트랜잭션의 수
+     */
+    public int size() {
+        return byPrice.size();
+    }
+
+    /**
+     * @return 마지막으로 {@link #publish()} 할 때의 트랜잭션들, nonce 순서
+     */
+    public List<Transaction> getTransactions() {
+        return transactionSnapshot;
+    }
+
+    /**
+     * @return 마지막으로 {@link #publish()} 할 때의 트랜잭션들, nonce 순서
+     */
+    public List<PendingTransaction> getPendingTransactions() {
+        return pendingSnapshot;
+    }
+
+    /**
+     * @return 같은 주소와 nonce의 트랜잭션이 있으면 true
+     */
+    public boolean contains(Transaction tx) {
+        Map<Long, Entry> txs = bySender.get(new ByteArrayWrapper(tx.getSender()));
+        return txs != null && txs.containsKey(ByteUtil.byteArrayToLong(tx.getNonce()));
+    }
+
+    /**
+     * @return 트랜잭션을 추가할 자리가 있거나, 트랜잭션의 가스 가격이 풀에서 가장 낮은 가격보다 높으면 true
+     */
+    public boolean hasRoomFor(Transaction tx, int capacity) {
+        if (byPrice.size() < capacity) {
+            return true;
+        }
+        Entry cheapest = byPrice.isEmpty() ? null : byPrice.first();
+        return cheapest != null && ByteUtil.bytesToBigInteger(tx.getGasPrice()).compareTo(cheapest.gasPrice) > 0;
+    }
+
+    /**
+     * 트랜잭션을 추가한다. 같은 주소와 nonce의 트랜잭션이 있으면 대체된다.
+     */
+    public void add(PendingTransaction tx) {
+        Entry entry = new Entry(tx);
+        ConcurrentNavigableMap<Long, Entry> txs = bySender.computeIfAbsent(entry.sender, s -> new ConcurrentSkipListMap<>());
+        Entry replaced = txs.put(entry.nonce, entry);
+        if (replaced != null) {
+            removeEntry(replaced);
+        }
+        byPrice.add(entry);
+        byNonce.add(entry);
+        changed = true;
+    }
+
+    private void removeEntry(Entry entry) {
+        byPrice.remove(entry);
+        byNonce.remove(entry);
+        changed = true;
+    }
+
+    /**
+     * 트랜잭션과 같은 주소와 nonce의 트랜잭션을 제거한다.
+     * @return 제거된 트랜잭션, 없으면 null
+     */
+    public PendingTransaction remove(Transaction tx) {
+        ByteArrayWrapper sender = new ByteArrayWrapper(tx.getSender());
+        Map<Long, Entry> txs = bySender.get(sender);
+        if (txs == null) {
+            return null;
+        }
+        Entry removed = txs.remove(ByteUtil.byteArrayToLong(tx.getNonce()));
+        if (removed == null) {
+            return null;
+        }
+        removeEntry(removed);
+        if (txs.isEmpty()) {
+            bySender.remove(sender);
+        }
+        return removed.tx;
+    }
+
+    /**
+     * 가스 가격이 낮은 트랜잭션부터 제거해서 트랜잭션의 수를 capacity 이하로 줄인다.
+     * @return 제거된 트랜잭션들
+     */
+    public List<PendingTransaction> evict(int capacity) {
+        List<PendingTransaction> evicted = new ArrayList<>();
+        while (byPrice.size() > capacity) {
+            Entry cheapest = byPrice.first();
+            ConcurrentNavigableMap<Long, Entry> txs = bySender.get(cheapest.sender);
+
+            // nonce 순서가 끊어지지 않도록 뒤의 트랜잭션들도 함께 제거한다.
+            Map<Long, Entry> tail = txs.tailMap(cheapest.nonce, true);
+            for (Entry entry : new ArrayList<>(tail.values())) {
+                removeEntry(entry);
+                evicted.add(entry.tx);
+            }
+            tail.clear();
+            if (txs.isEmpty()) {
+                bySender.remove(cheapest.sender);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return blockNumber 까지 threshold 개의 블록보다 오래 포함되지 않아서 제거된 트랜잭션들
+     */
+    public List<PendingTransaction> removeOutdated(long blockNumber, int threshold) {
+        List<PendingTransaction> outdated = new ArrayList<>();
+        for (Entry entry : byPrice) {
+            if (blockNumber - entry.tx.getBlockNumber() > threshold) {
+                outdated.add(entry.tx);
+            }
+        }
+        for (PendingTransaction tx : outdated) {
+            remove(tx.getTransaction());
+        }
+        return outdated;
+    }
+
+    /**
+     * 변경된 내용으로 {@link #getTransactions()} 가 반환할 목록을 새로 만든다.
+     * 마지막 publish() 이후에 변경이 없었으면 이전 목록을 그대로 둔다.
+     */
+    public void publish() {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+
+        List<PendingTransaction> pending = new ArrayList<>(byNonce.size());
+        List<Transaction> transactions = new ArrayList<>(byNonce.size());
+        for (Entry entry : byNonce) {
+            pending.add(entry.tx);
+            transactions.add(entry.tx.getTransaction());
+        }
+        pendingSnapshot = Collections.unmodifiableList(pending);
+        transactionSnapshot = Collections.unmodifiableList(transactions);
+    }
+
+    private static class Entry {
+        private final PendingTransaction tx;
+        private final ByteArrayWrapper sender;
+        private final long nonce;
+        private final BigInteger gasPrice;
+        private final byte[] hash;
+
+        private Entry(PendingTransaction tx) {
+            this.tx = tx;
+            this.sender = new ByteArrayWrapper(tx.getSender());
+            this.nonce = ByteUtil.byteArrayToLong(tx.getTransaction().getNonce());
+            this.gasPrice = ByteUtil.bytesToBigInteger(tx.getTransaction().getGasPrice());
+            this.hash = tx.getHash();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.apis.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apis.config.CommonConfig;
+import org.apis.db.BlockStore;
+import org.apis.db.RepositoryImpl;
+import org.apis.db.SpeculativeTrack;
+import org.apis.listener.EthereumListenerAdapter;
+import org.apis.vm.program.invoke.ProgramInvokeFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.apis.util.BIUtil.toBI;
+
+/**
+ * Executes the transactions of a block on a worker pool before the block is applied.
+ *
+ * <p>
+ *     Each worker runs its transactions on its own snapshot of the state before the block,
+ *     in a {@link SpeculativeTrack} which records what the transaction has read.
+ *     {@link BlockchainImpl} still goes through the transactions in the block order and takes
+ *     the speculative result with {@link #commit} only if the transaction has read the same state
+ *     it would have read at its turn. Otherwise the transaction is executed again on the block's track,
+ *     so the state root and the receipts are the same as when every transaction is executed in order.
+ *
+ * <p>
+ *     Most transactions are transfers between unrelated accounts, those are applied
+ *     without being executed on the importing thread.
+ */
+public class SpeculativeBlockExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger("blockchain");
+
+    // smaller blocks are not worth handing off to the pool
+    private static final int MIN_TRANSACTIONS = 4;
+
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS,
+            new ThreadFactoryBuilder().setNameFormat("SpeculativeTxThread-%d").setDaemon(true).build());
+
+    /**
+     * Result of a transaction executed ahead of its turn
+     */
+    public static class Execution {
+        private final Transaction tx;
+        private final SpeculativeTrack track;
+        private final TransactionExecutor executor;
+        private final TransactionExecutionSummary summary;
+
+        Execution(Transaction tx, SpeculativeTrack track, TransactionExecutor executor, TransactionExecutionSummary summary) {
+            this.tx = tx;
+            this.track = track;
+            this.executor = executor;
+            this.summary = summary;
+        }
+
+        public TransactionExecutor getExecutor() {
+            return executor;
+        }
+
+        public TransactionExecutionSummary getSummary() {
+            return summary;
+        }
+    }
+
+    private final Repository repository;
+    private final BlockStore blockStore;
+    private final ProgramInvokeFactory programInvokeFactory;
+    private final CommonConfig commonConfig;
+
+    private int committed;
+    private int reExecuted;
+
+    public SpeculativeBlockExecutor(Repository repository, BlockStore blockStore,
+                                    ProgramInvokeFactory programInvokeFactory, CommonConfig commonConfig) {
+        this.repository = repository;
+        this.blockStore = blockStore;
+        this.programInvokeFactory = programInvokeFactory;
+        this.commonConfig = commonConfig;
+    }
+
+    /**
+     * Starts executing the transactions of the block on the state with the given root.
+     *
+     * @return result of each transaction in the block order, null if the block is not worth it
+     */
+    public List<Future<Execution>> start(Block block, byte[] stateRoot) {
+        final List<Transaction> txs = block.getTransactionsList();
+        if (txs.size() < MIN_TRANSACTIONS || stateRoot == null) {
+            return null;
+        }
+
+        final List<CompletableFuture<Execution>> results = new ArrayList<>(txs.size());
+        for (int i = 0; i < txs.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+
+        // the transactions are dealt out, so the early ones are ready first
+        int workers = Math.min(THREADS, txs.size());
+        for (int w = 0; w < workers; w++) {
+            final int first = w;
+            final int step = workers;
+            executor.execute(() -> {
+                RepositoryImpl snapshot;
+                try {
+                    snapshot = (RepositoryImpl) repository.getSnapshotTo(stateRoot);
+                } catch (RuntimeException e) {
+                    for (int i = first; i < txs.size(); i += step) {
+                        results.get(i).completeExceptionally(e);
+                    }
+                    return;
+                }
+                for (int i = first; i < txs.size(); i += step) {
+                    try {
+                        results.get(i).complete(execute(txs.get(i), block, snapshot));
+                    } catch (Throwable e) {
+                        results.get(i).completeExceptionally(e);
+                    }
+                }
+            });
+        }
+
+        return new ArrayList<>(results);
+    }
+
+    private Execution execute(Transaction tx, Block block, RepositoryImpl snapshot) {
+        SpeculativeTrack track = new SpeculativeTrack(snapshot);
+
+        // the gas used by the earlier transactions is checked when the result is committed
+        TransactionExecutor executor = new TransactionExecutor(
+                tx,
+                block.getCoinbase(),
+                track,
+                blockStore,
+                programInvokeFactory,
+                block,
+                new EthereumListenerAdapter(),
+                0,
+                BigInteger.ZERO)
+                .withCommonConfig(commonConfig);
+
+        executor.init();
+        executor.execute();
+        executor.go();
+        TransactionExecutionSummary summary = executor.finalization();
+
+        return new Execution(tx, track, executor, summary);
+    }
+
+    /**
+     * Moves the result of the speculative execution to the track of the transaction,
+     * if the transaction would have had the same result on it.
+     *
+     * @param gasUsedInTheBlock gas used by the earlier transactions of the block
+     * @param mineralUsedInTheBlock mineral used by the earlier transactions of the block
+     * @return the execution if it has been committed to the track, null if the transaction has to be executed again
+     */
+    public Execution commit(Future<Execution> future, Block block, Repository txTrack,
+                            long gasUsedInTheBlock, BigInteger mineralUsedInTheBlock) {
+        Execution execution = tryCommit(future, block, txTrack, gasUsedInTheBlock, mineralUsedInTheBlock);
+        if (execution == null) {
+            reExecuted++;
+        } else {
+            committed++;
+        }
+        return execution;
+    }
+
+    /**
+     * @return the number of transactions taken from the speculative execution
+     */
+    public int getCommitted() {
+        return committed;
+    }
+
+    /**
+     * @return the number of transactions which had to be executed again in the block order
+     */
+    public int getReExecuted() {
+        return reExecuted;
+    }
+
+    private Execution tryCommit(Future<Execution> future, Block block, Repository txTrack,
+                                long gasUsedInTheBlock, BigInteger mineralUsedInTheBlock) {
+        Execution execution;
+        try {
+            execution = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.debug("Speculative execution failed: {}", e.getCause().toString());
+            return null;
+        }
+
+        // the block gas limit check depends on the earlier transactions
+        BigInteger cumulativeGasLimit = toBI(execution.tx.getGasLimit()).add(BigInteger.valueOf(gasUsedInTheBlock));
+        if (cumulativeGasLimit.compareTo(toBI(block.getGasLimit())) > 0) {
+            return null;
+        }
+
+        if (!(txTrack instanceof RepositoryImpl) || !execution.track.isValidOn((RepositoryImpl) txTrack)) {
+            return null;
+        }
+        execution.track.commitTo((RepositoryImpl) txTrack);
+
+        TransactionReceipt receipt = execution.executor.getReceipt();
+        receipt.setCumulativeGas(gasUsedInTheBlock + execution.executor.getGasUsed());
+        receipt.setCumulativeMineral(mineralUsedInTheBlock.add(execution.executor.getMineralUsed()));
+        return execution;
+    }
+}
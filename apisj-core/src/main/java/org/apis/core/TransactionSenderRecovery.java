@@ -0,0 +1,84 @@
+package org.apis.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Recovers transaction senders (and 2FA proof codes) on a shared worker pool.
+ *
+ * ECDSA public key recovery is the most expensive part of handling a transaction.
+ * {@link Transaction#getSender()} and {@link Transaction#getProofCode()} cache their results,
+ * so running them in parallel before a block is imported or a batch of pending transactions
+ * is executed takes that work off the single importing thread.
+ */
+public class TransactionSenderRecovery {
+
+    private static final Logger logger = LoggerFactory.getLogger("blockchain");
+
+    // smaller chunks are not worth handing off to the pool
+    private static final int MIN_CHUNK_SIZE = 8;
+
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS,
+            new ThreadFactoryBuilder().setNameFormat("SenderRecoveryThread-%d").setDaemon(true).build());
+
+    private TransactionSenderRecovery() {
+    }
+
+    /**
+     * Recovers senders of all the transactions in parallel and returns when all of them are done.
+     * The calling thread takes a share of the work itself.
+     * Failures are ignored here, they surface again when the transaction is validated.
+     */
+    public static void recover(final List<Transaction> txs) {
+        int chunks = Math.min(THREADS, txs.size() / MIN_CHUNK_SIZE);
+        if (chunks <= 1) {
+            recover(txs, 0, txs.size());
+            return;
+        }
+
+        int chunkSize = (txs.size() + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        for (int from = chunkSize; from < txs.size(); from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(from + chunkSize, txs.size());
+            futures.add(executor.submit(() -> recover(txs, start, end)));
+        }
+
+        recover(txs, 0, chunkSize);
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Unexpected error while recovering transaction senders", e.getCause());
+            }
+        }
+    }
+
+    private static void recover(List<Transaction> txs, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Transaction tx = txs.get(i);
+            try {
+                tx.getSender();
+                if (tx.getCertificate() != null) {
+                    tx.getProofCode();
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Failed to recover sender of tx {}: {}", i, e.getMessage());
+            }
+        }
+    }
+}
@@ -50,6 +50,9 @@ public class HashUtil {
     private static final String HASH_256_ALGORITHM_NAME;
     private static final String HASH_512_ALGORITHM_NAME;
 
+    // looking up a digest in the provider is costly, each thread reuses its own instance
+    private static final ThreadLocal<MessageDigest> SHA3_DIGEST = ThreadLocal.withInitial(HashUtil::newSha3Digest);
+
     static {
         SystemProperties props = SystemProperties.getDefault();
         Security.addProvider(SpongyCastleProvider.getInstance());
@@ -76,30 +79,26 @@ public class HashUtil {
         }
     }
 
-    public static byte[] sha3(byte[] input) {
-        MessageDigest digest;
+    private static MessageDigest newSha3Digest() {
         try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input);
-            return digest.digest();
+            return MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
         } catch (NoSuchAlgorithmException e) {
             LOG.error("Can't find such algorithm", e);
             throw new RuntimeException(e);
         }
+    }
 
+    public static byte[] sha3(byte[] input) {
+        MessageDigest digest = SHA3_DIGEST.get();
+        digest.update(input);
+        return digest.digest();
     }
 
     public static byte[] sha3(byte[] input1, byte[] input2) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input1, 0, input1.length);
-            digest.update(input2, 0, input2.length);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
-        }
+        MessageDigest digest = SHA3_DIGEST.get();
+        digest.update(input1, 0, input1.length);
+        digest.update(input2, 0, input2.length);
+        return digest.digest();
     }
 
     /**
@@ -114,15 +113,9 @@ public class HashUtil {
      * @return - keccak hash of the chunk
      */
     public static byte[] sha3(byte[] input, int start, int length) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input, start, length);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
-        }
+        MessageDigest digest = SHA3_DIGEST.get();
+        digest.update(input, start, length);
+        return digest.digest();
     }
 
     public static byte[] sha512(byte[] input) {
@@ -0,0 +1,329 @@
+package org.apis.datasource;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe Map with limited capacity to be used as a cache
+ *
+ * Reads are lock-free. Entries are split into shards by key hash, each shard
+ * is managed under its own lock (W-TinyLFU):
+ * a new entry is always stored in the small admission window, the entry which leaves the window
+ * moves on to the main space only if it was accessed more often than the entry the main space
+ * would purge for it with the CLOCK algorithm (an approximation of LRU).
+ * So a one-time scan over many entries doesn't push frequently used entries out of the cache,
+ * while the recent entries get the time in the window to prove they are used.
+ * Access frequencies of the reads of cached entries and the writes are approximated with a count-min sketch
+ */
+public class ConcurrentCacheMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int MAX_SHARDS = 16;
+    // the share of the capacity taken by the admission window, in percents
+    private static final int WINDOW_PERCENT = 1;
+
+    private final Shard<K, V>[] shards;
+    private final int shardBits;
+    private final FrequencySketch sketch;
+
+    public ConcurrentCacheMap(int maxCapacity) {
+        int bits = 0;
+        while (bits < 4 && (2 << bits) <= Math.min(maxCapacity, MAX_SHARDS)) {
+            bits++;
+        }
+        shardBits = bits;
+        @SuppressWarnings("unchecked")
+        Shard<K, V>[] s = (Shard<K, V>[]) new Shard<?, ?>[1 << bits];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = new Shard<>(Math.max(1, maxCapacity >> bits));
+        }
+        shards = s;
+        sketch = new FrequencySketch(maxCapacity);
+    }
+
+    /**
+     * Invoked when an entry is purged to free room for another one
+     */
+    protected void onEvicted(K key, V value) {
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Shard<K, V> shard(int hash) {
+        return shardBits == 0 ? shards[0] : shards[(hash * 0x9E3779B9) >>> (32 - shardBits)];
+    }
+
+    @Override
+    public V get(Object key) {
+        int hash = hash(key);
+        Node<K, V> node = shard(hash).map.get(key);
+        if (node == null) {
+            // the miss is counted when the entry is put then
+            return null;
+        }
+        sketch.increment(hash);
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shard(hash(key)).map.containsKey(key);
+    }
+
+    /**
+     * The entry is always stored, it may be purged later when it leaves the admission window
+     */
+    @Override
+    public V put(K key, V value) {
+        int hash = hash(key);
+        sketch.increment(hash);
+        Shard<K, V> shard = shard(hash);
+        Node<K, V> evicted;
+        synchronized (shard) {
+            Node<K, V> node = shard.map.get(key);
+            if (node != null) {
+                V old = node.value;
+                node.value = value;
+                node.referenced = true;
+                return old;
+            }
+
+            shard.addToWindow(new Node<>(key, value));
+            evicted = shard.windowSize > shard.windowCapacity ? admit(shard, shard.pollWindow()) : null;
+        }
+        if (evicted != null) {
+            onEvicted(evicted.key, evicted.value);
+        }
+        return null;
+    }
+
+    /**
+     * Moves the candidate out of the window to the main space if it is used more often than the main space victim
+     * @return the purged entry, the candidate or the victim, or null if the main space had room for the candidate
+     */
+    private Node<K, V> admit(Shard<K, V> shard, Node<K, V> candidate) {
+        if (shard.mainSize < shard.mainCapacity) {
+            shard.addToMain(candidate);
+            return null;
+        }
+        if (shard.mainCapacity > 0) {
+            Node<K, V> victim = shard.nextVictim();
+            if (sketch.frequency(hash(candidate.key)) > sketch.frequency(hash(victim.key))) {
+                shard.remove(victim);
+                shard.addToMain(candidate);
+                return victim;
+            }
+        }
+        // already out of the window
+        shard.map.remove(candidate.key);
+        candidate.removed = true;
+        return candidate;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Shard<K, V> shard = shard(hash(key));
+        synchronized (shard) {
+            Node<K, V> node = shard.map.get(key);
+            if (node == null) {
+                return null;
+            }
+            shard.remove(node);
+            return node.value;
+        }
+    }
+
+    @Override
+    public int size() {
+        int ret = 0;
+        for (Shard<K, V> shard : shards) {
+            ret += shard.map.size();
+        }
+        return ret;
+    }
+
+    @Override
+    public void clear() {
+        for (Shard<K, V> shard : shards) {
+            synchronized (shard) {
+                shard.map.clear();
+                shard.window.clear();
+                shard.queue.clear();
+                shard.windowSize = 0;
+                shard.mainSize = 0;
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the entries
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Map<K, V> ret = new HashMap<>();
+        for (Shard<K, V> shard : shards) {
+            for (Node<K, V> node : shard.map.values()) {
+                ret.put(node.key, node.value);
+            }
+        }
+        return ret.entrySet();
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile boolean referenced;
+        boolean inWindow;
+        boolean removed;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class Shard<K, V> {
+        final int windowCapacity;
+        final int mainCapacity;
+        final Map<K, Node<K, V>> map = new ConcurrentHashMap<>();
+        // FIFO order of the window, removed nodes are dropped lazily
+        final ArrayDeque<Node<K, V>> window = new ArrayDeque<>();
+        // CLOCK order of the main space, removed nodes are dropped lazily
+        final ArrayDeque<Node<K, V>> queue = new ArrayDeque<>();
+        int windowSize;
+        int mainSize;
+
+        Shard(int capacity) {
+            this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENT / 100);
+            this.mainCapacity = capacity - windowCapacity;
+        }
+
+        void addToWindow(Node<K, V> node) {
+            map.put(node.key, node);
+            node.inWindow = true;
+            windowSize++;
+            window.addLast(node);
+            if (window.size() > windowCapacity * 2) {
+                window.removeIf(n -> n.removed);
+            }
+        }
+
+        Node<K, V> pollWindow() {
+            while (true) {
+                Node<K, V> node = window.pollFirst();
+                if (!node.removed) {
+                    node.inWindow = false;
+                    windowSize--;
+                    return node;
+                }
+            }
+        }
+
+        void addToMain(Node<K, V> node) {
+            mainSize++;
+            queue.addLast(node);
+            if (queue.size() > mainCapacity * 2) {
+                queue.removeIf(n -> n.removed);
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            map.remove(node.key);
+            node.removed = true;
+            if (node.inWindow) {
+                windowSize--;
+            } else {
+                mainSize--;
+            }
+        }
+
+        Node<K, V> nextVictim() {
+            while (true) {
+                Node<K, V> node = queue.pollFirst();
+                if (node.removed) {
+                    continue;
+                }
+                if (node.referenced) {
+                    // second chance
+                    node.referenced = false;
+                    queue.addLast(node);
+                    continue;
+                }
+                queue.addFirst(node);
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Count-min sketch with 4 bit counters, which are halved periodically
+     * so that the old accesses are forgotten. Concurrent updates may be lost,
+     * this only makes the estimate a bit less accurate
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+                0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int counters = 64;
+            while (counters < capacity * 16L && counters < (1 << 30)) {
+                counters <<= 1;
+            }
+            table = new long[counters >>> 4];
+            mask = counters - 1;
+            sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        }
+
+        private int index(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                int shift = (index & 15) << 2;
+                if (((table[index >>> 4] >>> shift) & 15) < 15) {
+                    table[index >>> 4] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int ret = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                ret = Math.min(ret, (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 15));
+            }
+            return ret;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -17,6 +17,10 @@
  */
 package org.apis.datasource;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Defines configurable database settings
  *
@@ -27,10 +31,14 @@ public class DbSettings {
 
     public static final DbSettings DEFAULT = new DbSettings()
             .withMaxThreads(1)
-            .withMaxOpenFiles(32);
+            .withMaxOpenFiles(32)
+            .withBlockCacheSize(32 * 1024 * 1024);
 
     int maxOpenFiles;
     int maxThreads;
+    long blockCacheSize;
+    long writeBufferSize;
+    Map<String, ColumnFamily> columnFamilies = Collections.emptyMap();
 
     private DbSettings() {
     }
@@ -39,6 +47,8 @@ public class DbSettings {
         DbSettings settings = new DbSettings();
         settings.maxOpenFiles = DEFAULT.maxOpenFiles;
         settings.maxThreads = DEFAULT.maxThreads;
+        settings.blockCacheSize = DEFAULT.blockCacheSize;
+        settings.writeBufferSize = DEFAULT.writeBufferSize;
         return settings;
     }
 
@@ -59,4 +69,119 @@ public class DbSettings {
         this.maxThreads = maxThreads;
         return this;
     }
+
+    /**
+     * Block cache size in bytes, split between the column families if there are any
+     */
+    public long getBlockCacheSize() {
+        return blockCacheSize;
+    }
+
+    public DbSettings withBlockCacheSize(long blockCacheSize) {
+        this.blockCacheSize = blockCacheSize;
+        return this;
+    }
+
+    /**
+     * Size in bytes of all memtables of the DB together, 0 for no limit
+     */
+    public long getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public DbSettings withWriteBufferSize(long writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+        return this;
+    }
+
+    /**
+     * @return memory the DB is allowed to use for caches and memtables, 0 if it is not limited
+     */
+    public long getMemoryBudget() {
+        return writeBufferSize <= 0 ? 0 : blockCacheSize + writeBufferSize;
+    }
+
+    /**
+     * Column families by source name, in the order of their ids.
+     * Empty if the sources share a single key space
+     */
+    public Map<String, ColumnFamily> getColumnFamilies() {
+        return columnFamilies;
+    }
+
+    public DbSettings withColumnFamily(String name, ColumnFamily family) {
+        if (columnFamilies.isEmpty()) {
+            columnFamilies = new LinkedHashMap<>();
+        }
+        if (columnFamilies.size() >= 255) {
+            throw new IllegalArgumentException("Too many column families");
+        }
+        family.id = (byte) (columnFamilies.size() + 1);
+        columnFamilies.put(name, family);
+        return this;
+    }
+
+    /**
+     * @return the column family of the source or null if the source is kept in the default one
+     */
+    public ColumnFamily getColumnFamily(String name) {
+        return columnFamilies.get(name);
+    }
+
+    /**
+     * Settings of a column family, which keeps the data of one source
+     * in its own key space with its own table options.
+     *
+     * <p>
+     * The keys written to the DB start with the {@link #getId()} byte,
+     * see {@link FamilyKeySource}
+     */
+    public static class ColumnFamily {
+
+        public enum Compression {
+            NONE, SNAPPY, LZ4, ZSTD
+        }
+
+        byte id;
+        int bloomBits = 10;
+        boolean prefixLookup = false;
+        Compression compression = Compression.LZ4;
+
+        public byte getId() {
+            return id;
+        }
+
+        public int getBloomBits() {
+            return bloomBits;
+        }
+
+        /**
+         * Bits per key of the bloom filter, 0 for no filter
+         */
+        public ColumnFamily withBloomBits(int bloomBits) {
+            this.bloomBits = bloomBits;
+            return this;
+        }
+
+        public boolean isPrefixLookup() {
+            return prefixLookup;
+        }
+
+        /**
+         * Whether the source is read by {@link DbSource#prefixLookup}, with {@link NodeKeyCompositor} keys
+         */
+        public ColumnFamily withPrefixLookup(boolean prefixLookup) {
+            this.prefixLookup = prefixLookup;
+            return this;
+        }
+
+        public Compression getCompression() {
+            return compression;
+        }
+
+        public ColumnFamily withCompression(Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+    }
 }
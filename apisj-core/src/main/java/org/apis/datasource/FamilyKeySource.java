@@ -0,0 +1,47 @@
+package org.apis.datasource;
+
+/**
+ * When propagating changes to the backing Source prepends the id
+ * of a column family to the keys
+ *
+ * Like {@link XorDataSource} it merges several Sources into a single one,
+ * which keeps them in a single write batch, while a DB with column families
+ * can still tell them apart and keep each of them in its own family
+ *
+ * @see DbSettings.ColumnFamily
+ */
+public class FamilyKeySource<V> extends AbstractChainedSource<byte[], V, byte[], V> {
+    private final byte family;
+
+    public FamilyKeySource(Source<byte[], V> source, byte family) {
+        super(source);
+        this.family = family;
+    }
+
+    private byte[] convertKey(byte[] key) {
+        byte[] ret = new byte[key.length + 1];
+        ret[0] = family;
+        System.arraycopy(key, 0, ret, 1, key.length);
+        return ret;
+    }
+
+    @Override
+    public V get(byte[] key) {
+        return getSource().get(convertKey(key));
+    }
+
+    @Override
+    public void put(byte[] key, V value) {
+        getSource().put(convertKey(key), value);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        getSource().delete(convertKey(key));
+    }
+
+    @Override
+    protected boolean flushImpl() {
+        return false;
+    }
+}
@@ -0,0 +1,351 @@
+package org.apis.datasource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Read cache with byte[] keys and values which keeps cached entries
+ * outside of the Java heap, so that a large cache doesn't add up to GC pauses
+ *
+ * The cache is split into segments, each segment has its own direct buffer (arena)
+ * used as a ring: entries are appended to the tail, and when there is no room left
+ * the oldest entries are purged from the head. An entry which is read while it is
+ * in the older half of the ring is moved to the tail, so frequently read entries
+ * stay cached (like LRU).
+ * Entries are located via an open addressing index kept in primitive arrays.
+ *
+ * Unlike {@link ReadCache} the size of the cache is limited in bytes, and
+ * {@link #estimateCacheSize()} returns the exact number of arena bytes in use
+ */
+public class OffHeapReadCache extends AbstractCachedSource<byte[], byte[]>
+        implements CachedSource.BytesKey<byte[]> {
+
+    private static final int MIN_SEGMENTS = 16;
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    // marks cached null values
+    private static final byte[] NULL = new byte[0];
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    /**
+     * @param maxSize total size in bytes of the off-heap memory the cache may occupy
+     */
+    public OffHeapReadCache(Source<byte[], byte[]> src, long maxSize) {
+        super(src);
+        int count = MIN_SEGMENTS;
+        while (maxSize / count > MAX_SEGMENT_SIZE) {
+            count <<= 1;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((int) (maxSize / count));
+        }
+        segmentMask = count - 1;
+    }
+
+    static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segment(int hash) {
+        // the index uses lower bits of the hash
+        return segments[(hash >>> 24) & segmentMask];
+    }
+
+    @Override
+    public void put(byte[] key, byte[] val) {
+        if (val == null) {
+            delete(key);
+        } else {
+            int hash = hash(key);
+            segment(hash).put(key, hash, val);
+            getSource().put(key, val);
+        }
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        int hash = hash(key);
+        Segment segment = segment(hash);
+        byte[] ret = segment.get(key, hash);
+        if (ret == NULL) {
+            return null;
+        }
+        if (ret == null) {
+            ret = getSource().get(key);
+            segment.put(key, hash, ret == null ? NULL : ret);
+        }
+        return ret;
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        int hash = hash(key);
+        segment(hash).remove(key, hash);
+        getSource().delete(key);
+    }
+
+    @Override
+    protected boolean flushImpl() {
+        return false;
+    }
+
+    @Override
+    public Collection<byte[]> getModified() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean hasModified() {
+        return false;
+    }
+
+    @Override
+    Entry<byte[]> getCached(byte[] key) {
+        int hash = hash(key);
+        byte[] value = segment(hash).get(key, hash);
+        return value == null ? null : new SimpleEntry<>(value == NULL ? null : value);
+    }
+
+    /**
+     * @return the number of bytes occupied in the off-heap arenas
+     */
+    @Override
+    public long estimateCacheSize() {
+        long ret = 0;
+        for (Segment segment : segments) {
+            ret += segment.getUsed();
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size() {
+        int ret = 0;
+        for (Segment segment : segments) {
+            ret += segment.getCount();
+        }
+        return ret;
+    }
+
+    /**
+     * Arena entry layout: [hash][key length][value length or -1 for null][key][value]
+     * The skipped rest of the arena is marked with the key length of -1, the hash may have any value
+     */
+    private static final class Segment {
+        private static final int HEADER = 12;
+        private static final int WRAP = -1;
+
+        private final ByteBuffer data;
+        private final int capacity;
+        private int head;
+        private int tail;
+        private int used;
+
+        // entry offset + 1, 0 for an empty slot
+        private int[] slots = new int[1024];
+        private int[] hashes = new int[1024];
+        private int count;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.data = ByteBuffer.allocateDirect(capacity);
+        }
+
+        synchronized int getUsed() {
+            return used;
+        }
+
+        synchronized int getCount() {
+            return count;
+        }
+
+        synchronized byte[] get(byte[] key, int hash) {
+            int i = find(key, hash);
+            if (i < 0) {
+                return null;
+            }
+            int offset = slots[i] - 1;
+            int valueLen = data.getInt(offset + 8);
+            byte[] value;
+            if (valueLen < 0) {
+                value = NULL;
+            } else {
+                value = new byte[valueLen];
+                ByteBuffer buf = data.duplicate();
+                buf.position(offset + HEADER + key.length);
+                buf.get(value);
+            }
+
+            // keep the entry from being purged soon
+            if (Math.floorMod(tail - offset, capacity) > capacity / 2) {
+                removeAt(i);
+                append(key, hash, value);
+            }
+            return value;
+        }
+
+        synchronized void put(byte[] key, int hash, byte[] value) {
+            int i = find(key, hash);
+            if (i >= 0) {
+                removeAt(i);
+            }
+            append(key, hash, value);
+        }
+
+        synchronized void remove(byte[] key, int hash) {
+            int i = find(key, hash);
+            if (i >= 0) {
+                removeAt(i);
+            }
+        }
+
+        private void append(byte[] key, int hash, byte[] value) {
+            int size = HEADER + key.length + value.length;
+            if (size > capacity / 4) {
+                return;
+            }
+            int offset = allocate(size);
+            data.putInt(offset, hash);
+            data.putInt(offset + 4, key.length);
+            data.putInt(offset + 8, value == NULL ? -1 : value.length);
+            ByteBuffer buf = data.duplicate();
+            buf.position(offset + HEADER);
+            buf.put(key);
+            buf.put(value);
+            insert(hash, offset);
+        }
+
+        private int allocate(int size) {
+            while (true) {
+                if (used == 0) {
+                    head = tail = 0;
+                }
+                if (tail > head || used == 0) {
+                    if (capacity - tail >= size) {
+                        break;
+                    }
+                    // the rest of the arena is skipped
+                    if (capacity - tail >= HEADER) {
+                        data.putInt(tail + 4, WRAP);
+                    }
+                    used += capacity - tail;
+                    tail = 0;
+                } else if (head - tail >= size) {
+                    break;
+                } else {
+                    purgeHead();
+                }
+            }
+            int offset = tail;
+            tail += size;
+            used += size;
+            return offset;
+        }
+
+        private void purgeHead() {
+            if (capacity - head < HEADER || data.getInt(head + 4) == WRAP) {
+                used -= capacity - head;
+                head = 0;
+                return;
+            }
+            int hash = data.getInt(head);
+            int size = HEADER + data.getInt(head + 4) + Math.max(data.getInt(head + 8), 0);
+
+            // the entry may be already replaced or removed
+            int mask = slots.length - 1;
+            for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == head + 1) {
+                    removeAt(i);
+                    break;
+                }
+            }
+            used -= size;
+            head += size;
+        }
+
+        private int find(byte[] key, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash && keyEquals(slots[i] - 1, key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean keyEquals(int offset, byte[] key) {
+            if (data.getInt(offset + 4) != key.length) {
+                return false;
+            }
+            for (int j = 0; j < key.length; j++) {
+                if (data.get(offset + HEADER + j) != key[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void insert(int hash, int offset) {
+            if ((count + 1) * 2 > slots.length) {
+                resize();
+            }
+            int mask = slots.length - 1;
+            int i = hash & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = offset + 1;
+            hashes[i] = hash;
+            count++;
+        }
+
+        private void removeAt(int i) {
+            int mask = slots.length - 1;
+            slots[i] = 0;
+            count--;
+
+            // shift back the following entries of the probe sequence
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (slots[j] == 0) {
+                    return;
+                }
+                int k = hashes[j] & mask;
+                boolean inPlace = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+                if (!inPlace) {
+                    slots[i] = slots[j];
+                    hashes[i] = hashes[j];
+                    slots[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        private void resize() {
+            int[] oldSlots = slots;
+            int[] oldHashes = hashes;
+            slots = new int[oldSlots.length * 2];
+            hashes = new int[oldSlots.length * 2];
+            int mask = slots.length - 1;
+            for (int j = 0; j < oldSlots.length; j++) {
+                if (oldSlots[j] != 0) {
+                    int i = oldHashes[j] & mask;
+                    while (slots[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    slots[i] = oldSlots[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+    }
+}
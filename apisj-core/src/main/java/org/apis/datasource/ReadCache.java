@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Caches entries get/updated and use LRU algo to purge them if the number
@@ -47,6 +48,10 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
     private Map<Key, Value> cache;
     private boolean byteKeyMap;
 
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
     public ReadCache(Source<Key, Value> src) {
         super(src);
         withCache(new HashMap<Key, Value>());
@@ -56,8 +61,16 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
      * Installs the specific cache Map implementation
      */
     public ReadCache<Key, Value> withCache(Map<Key, Value> cache) {
+        return withCache(cache, false);
+    }
+
+    /**
+     * Installs the specific cache Map implementation
+     * @param threadSafe if the Map can be accessed concurrently without synchronization
+     */
+    protected ReadCache<Key, Value> withCache(Map<Key, Value> cache, boolean threadSafe) {
         byteKeyMap = cache instanceof ByteArrayMap;
-        this.cache = Collections.synchronizedMap(cache);
+        this.cache = threadSafe ? cache : Collections.synchronizedMap(cache);
         return this;
     }
 
@@ -68,12 +81,35 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
         return withCache(new LRUMap<Key, Value>(maxCapacity) {
             @Override
             protected boolean removeLRU(LinkEntry<Key, Value> entry) {
-                cacheRemoved(entry.getKey(), entry.getValue());
+                cacheEvicted(entry.getKey(), entry.getValue());
                 return super.removeLRU(entry);
             }
         });
     }
 
+    /**
+     * Sets the max number of entries to cache.
+     * Unlike {@link #withMaxCapacity(int)} the cache can be read without locking
+     * and entries accessed only once are less likely to replace frequently used entries
+     * @see ConcurrentCacheMap
+     */
+    public ReadCache<Key, Value> withConcurrentCache(int maxCapacity) {
+        return withCache(new ConcurrentCacheMap<Key, Value>(maxCapacity) {
+            @Override
+            protected void onEvicted(Key key, Value value) {
+                cacheEvicted(key, value);
+            }
+        }, true);
+    }
+
+    /**
+     * Needs to be called by the cache Map when an entry is purged
+     */
+    protected void cacheEvicted(Key key, Value value) {
+        evictions.increment();
+        cacheRemoved(key, value);
+    }
+
     // the guard against incorrect Map implementation for byte[] keys
     private boolean checked = false;
     private void checkByteArrKey(Key key) {
@@ -93,7 +129,11 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
         if (val == null) {
             delete(key);
         } else {
-            cache.put(key, val);
+            // the cache Maps store every entry put, the replaced one is not cached anymore
+            Value old = cache.put(key, val);
+            if (old != null) {
+                cacheRemoved(key, old == NULL ? null : old);
+            }
             cacheAdded(key, val);
             getSource().put(key, val);
         }
@@ -104,12 +144,16 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
         checkByteArrKey(key);
         Value ret = cache.get(key);
         if (ret == NULL) {
+            hits.increment();
             return null;
         }
         if (ret == null) {
+            misses.increment();
             ret = getSource().get(key);
             cache.put(key, ret == null ? NULL : ret);
             cacheAdded(key, ret);
+        } else {
+            hits.increment();
         }
         return ret;
     }
@@ -137,11 +181,35 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
     }
 
     @Override
-    public synchronized Entry<Value> getCached(Key key) {
+    public Entry<Value> getCached(Key key) {
         Value value = cache.get(key);
         return value == null ? null : new SimpleEntry<>(value == NULL ? null : value);
     }
 
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries purged from the cache to free room for other entries
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the share of {@link #get(Object)} calls served from the cache
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
     /**
      * Shortcut for ReadCache with byte[] keys. Also prevents accidental
      * usage of regular Map implementation (non byte[])
@@ -157,11 +225,21 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
             withCache(new ByteArrayMap<V>(new LRUMap<ByteArrayWrapper, V>(maxCapacity) {
                 @Override
                 protected boolean removeLRU(LinkEntry<ByteArrayWrapper, V> entry) {
-                    cacheRemoved(entry.getKey().getData(), entry.getValue());
+                    cacheEvicted(entry.getKey().getData(), entry.getValue());
                     return super.removeLRU(entry);
                 }
             }));
             return this;
         }
+
+        public ReadCache.BytesKey<V> withConcurrentCache(int maxCapacity) {
+            withCache(new ByteArrayMap<V>(new ConcurrentCacheMap<ByteArrayWrapper, V>(maxCapacity) {
+                @Override
+                protected void onEvicted(ByteArrayWrapper key, V value) {
+                    cacheEvicted(key.getData(), value);
+                }
+            }), true);
+            return this;
+        }
     }
 }
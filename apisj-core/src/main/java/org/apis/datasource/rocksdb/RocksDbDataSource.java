@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -42,6 +43,13 @@ import static java.lang.System.arraycopy;
 import static org.apis.util.ByteUtil.toHexString;
 
 /**
+ * <p>
+ *     If {@link DbSettings#getColumnFamilies()} are set, keys starting with the id of a family
+ *     are kept in that column family without the id byte, see {@link org.apis.datasource.FamilyKeySource}.
+ *     Other keys are kept in the default column family as they are. All families are written
+ *     in the same batch by {@link #updateBatch(Map)}, and share the memtable budget
+ *     of {@link DbSettings#getWriteBufferSize()}.
+ *
  * @author Mikhail Kalinin
  * @since 28.11.2017
  */
@@ -49,6 +57,12 @@ public class RocksDbDataSource implements DbSource<byte[]> {
 
     private static final Logger logger = LoggerFactory.getLogger("db");
 
+    private static final String[] MEMORY_PROPERTIES = {
+            "rocksdb.cur-size-all-mem-tables",
+            "rocksdb.estimate-table-readers-mem",
+            "rocksdb.block-cache-usage"
+    };
+
     @Autowired
     SystemProperties config  = SystemProperties.getDefault(); // initialized for standalone test
 
@@ -57,6 +71,11 @@ public class RocksDbDataSource implements DbSource<byte[]> {
     ReadOptions readOpts;
     boolean alive;
 
+    // handles of the column families by their ids, the id of the default family is 0
+    List<ColumnFamilyHandle> handles = new ArrayList<>();
+    ColumnFamilyHandle defaultFamily;
+    ColumnFamilyHandle[] families = new ColumnFamilyHandle[0];
+
     DbSettings settings = DbSettings.DEFAULT;
 
     // The native RocksDB insert/update/delete are normally thread-safe
@@ -103,29 +122,32 @@ public class RocksDbDataSource implements DbSource<byte[]> {
 
             if (name == null) throw new NullPointerException("no name set to the db");
 
-            try (Options options = new Options()) {
+            try (DBOptions options = new DBOptions()) {
 
                 // most of these options are suggested by https://github.com/facebook/rocksdb/wiki/Set-Up-Options
 
                 // general options
                 options.setCreateIfMissing(true);
-                options.setCompressionType(CompressionType.LZ4_COMPRESSION);
-                options.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
-                options.setLevelCompactionDynamicLevelBytes(true);
+                options.setCreateMissingColumnFamilies(true);
                 options.setMaxOpenFiles(settings.getMaxOpenFiles());
                 options.setIncreaseParallelism(settings.getMaxThreads());
+                if (settings.getWriteBufferSize() > 0) {
+                    // memtables of all the column families together
+                    options.setDbWriteBufferSize(settings.getWriteBufferSize());
+                }
 
-                // key prefix for state node lookups
-                options.useFixedLengthPrefixExtractor(NodeKeyCompositor.PREFIX_BYTES);
+                Map<String, DbSettings.ColumnFamily> columnFamilies = settings.getColumnFamilies();
+                long blockCacheSize = settings.getBlockCacheSize() / (columnFamilies.size() + 1);
 
-                // table options
-                final BlockBasedTableConfig tableCfg;
-                options.setTableFormatConfig(tableCfg = new BlockBasedTableConfig());
-                tableCfg.setBlockSize(16 * 1024);
-                tableCfg.setBlockCacheSize(32 * 1024 * 1024);
-                tableCfg.setCacheIndexAndFilterBlocks(true);
-                tableCfg.setPinL0FilterAndIndexBlocksInCache(true);
-                tableCfg.setFilter(new BloomFilter(10, false));
+                List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+                // key prefix for state node lookups
+                descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY,
+                        columnFamilyOptions(10, true, DbSettings.ColumnFamily.Compression.LZ4, blockCacheSize)));
+                for (Map.Entry<String, DbSettings.ColumnFamily> family : columnFamilies.entrySet()) {
+                    descriptors.add(new ColumnFamilyDescriptor(family.getKey().getBytes(StandardCharsets.UTF_8),
+                            columnFamilyOptions(family.getValue().getBloomBits(), family.getValue().isPrefixLookup(),
+                                    family.getValue().getCompression(), blockCacheSize)));
+                }
 
                 // read options
                 readOpts = new ReadOptions().setPrefixSameAsStart(true)
@@ -152,12 +174,27 @@ public class RocksDbDataSource implements DbSource<byte[]> {
                         }
                     }
 
+                    checkColumnFamilies(dbPath, descriptors);
+
                     logger.debug("Initializing new or existing database: '{}'", name);
                     try {
-                        db = RocksDB.open(options, dbPath.toString());
+                        handles = new ArrayList<>();
+                        db = RocksDB.open(options, dbPath.toString(), descriptors, handles);
                     } catch (RocksDBException e) {
                         logger.error(e.getMessage(), e);
                         throw new RuntimeException("Failed to initialize database", e);
+                    } finally {
+                        for (ColumnFamilyDescriptor descriptor : descriptors) {
+                            descriptor.columnFamilyOptions().close();
+                        }
+                    }
+
+                    defaultFamily = handles.get(0);
+                    families = columnFamilies.isEmpty() ? new ColumnFamilyHandle[0] : handles.toArray(new ColumnFamilyHandle[0]);
+
+                    if (!columnFamilies.isEmpty() || settings.getMemoryBudget() > 0) {
+                        logger.info("Database '{}' column families: {}, block cache: {} MB, write buffers: {} MB",
+                                name, columnFamilies.keySet(), settings.getBlockCacheSize() >> 20, settings.getWriteBufferSize() >> 20);
                     }
 
                     alive = true;
@@ -174,6 +211,117 @@ public class RocksDbDataSource implements DbSource<byte[]> {
         }
     }
 
+    private ColumnFamilyOptions columnFamilyOptions(int bloomBits, boolean prefixLookup,
+                                                    DbSettings.ColumnFamily.Compression compression, long blockCacheSize) {
+        ColumnFamilyOptions options = new ColumnFamilyOptions();
+        switch (compression) {
+            case NONE:
+                options.setCompressionType(CompressionType.NO_COMPRESSION);
+                options.setBottommostCompressionType(CompressionType.NO_COMPRESSION);
+                break;
+            case SNAPPY:
+                options.setCompressionType(CompressionType.SNAPPY_COMPRESSION);
+                options.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+                break;
+            case ZSTD:
+                options.setCompressionType(CompressionType.ZSTD_COMPRESSION);
+                options.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+                break;
+            default:
+                options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+                options.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+        }
+        options.setLevelCompactionDynamicLevelBytes(true);
+
+        if (prefixLookup) {
+            options.useFixedLengthPrefixExtractor(NodeKeyCompositor.PREFIX_BYTES);
+        }
+
+        // table options
+        final BlockBasedTableConfig tableCfg = new BlockBasedTableConfig();
+        tableCfg.setBlockSize(16 * 1024);
+        tableCfg.setBlockCacheSize(blockCacheSize);
+        tableCfg.setCacheIndexAndFilterBlocks(true);
+        tableCfg.setPinL0FilterAndIndexBlocksInCache(true);
+        if (bloomBits > 0) {
+            tableCfg.setFilter(new BloomFilter(bloomBits, false));
+        }
+        options.setTableFormatConfig(tableCfg);
+
+        return options;
+    }
+
+    /**
+     * RocksDB has to open all the column families of an existing database,
+     * and the keys of the sources would be looked up in the wrong families if they changed
+     */
+    private void checkColumnFamilies(Path dbPath, List<ColumnFamilyDescriptor> descriptors) {
+        if (!Files.exists(dbPath.resolve("CURRENT"))) {
+            return;
+        }
+
+        Set<String> existing = new TreeSet<>();
+        try (Options options = new Options()) {
+            for (byte[] family : RocksDB.listColumnFamilies(options, dbPath.toString())) {
+                existing.add(new String(family, StandardCharsets.UTF_8));
+            }
+        } catch (RocksDBException e) {
+            logger.warn("Failed to list column families of database '{}'", name, e);
+            return;
+        }
+
+        Set<String> configured = new TreeSet<>();
+        for (ColumnFamilyDescriptor descriptor : descriptors) {
+            configured.add(new String(descriptor.columnFamilyName(), StandardCharsets.UTF_8));
+        }
+
+        if (!existing.equals(configured)) {
+            throw new RuntimeException("Database '" + name + "' has column families " + existing + " but " + configured
+                    + " are configured, set database.reset = true to resync the database with the new layout");
+        }
+    }
+
+    /**
+     * @return column family of the key, or -1 if the key is kept in the default family as it is
+     */
+    private int familyId(byte[] key) {
+        if (key.length == 0) return -1;
+        int id = key[0] & 0xFF;
+        return id < families.length ? id : -1;
+    }
+
+    private ColumnFamilyHandle familyHandle(int id) {
+        return id < 0 ? defaultFamily : families[id];
+    }
+
+    private static byte[] familyKey(byte[] key, int id) {
+        return id < 0 ? key : Arrays.copyOfRange(key, 1, key.length);
+    }
+
+    /**
+     * @return estimated memory used by memtables, index and filter blocks and block caches, in bytes
+     */
+    public long getMemoryUsage() {
+        resetDbLock.readLock().lock();
+        try {
+            if (!isAlive()) return 0;
+
+            long ret = 0;
+            for (ColumnFamilyHandle handle : handles) {
+                for (String property : MEMORY_PROPERTIES) {
+                    try {
+                        ret += db.getLongProperty(handle, property);
+                    } catch (RocksDBException e) {
+                        // not supported by this version
+                    }
+                }
+            }
+            return ret;
+        } finally {
+            resetDbLock.readLock().unlock();
+        }
+    }
+
     public void backup() {
         resetDbLock.readLock().lock();
         if (logger.isTraceEnabled()) logger.trace("~> RocksDbDataSource.backup(): " + name);
@@ -210,6 +358,11 @@ public class RocksDbDataSource implements DbSource<byte[]> {
             if (!isAlive()) return;
 
             logger.debug("Close db: {}", name);
+            for (ColumnFamilyHandle handle : handles) {
+                handle.close();
+            }
+            handles = new ArrayList<>();
+            families = new ColumnFamilyHandle[0];
             db.close();
 
             alive = false;
@@ -226,18 +379,29 @@ public class RocksDbDataSource implements DbSource<byte[]> {
         resetDbLock.readLock().lock();
         try {
             if (logger.isTraceEnabled()) logger.trace("~> RocksDbDataSource.keys(): " + name);
-            try (RocksIterator iterator = db.newIterator()) {
-                Set<byte[]> result = new HashSet<>();
-                for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
-                    result.add(iterator.key());
+            Set<byte[]> result = new HashSet<>();
+            for (int id = -1; id < families.length; id++) {
+                // the default family is listed once, its keys are returned as they are stored
+                if (id == 0) continue;
+                try (RocksIterator iterator = db.newIterator(familyHandle(id))) {
+                    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                        byte[] key = iterator.key();
+                        if (id > 0) {
+                            byte[] familyKey = new byte[key.length + 1];
+                            familyKey[0] = (byte) id;
+                            arraycopy(key, 0, familyKey, 1, key.length);
+                            key = familyKey;
+                        }
+                        result.add(key);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error iterating db '{}'", name, e);
+                    hintOnTooManyOpenFiles(e);
+                    throw new RuntimeException(e);
                 }
-                if (logger.isTraceEnabled()) logger.trace("<~ RocksDbDataSource.keys(): " + name + ", " + result.size());
-                return result;
-            } catch (Exception e) {
-                logger.error("Error iterating db '{}'", name, e);
-                hintOnTooManyOpenFiles(e);
-                throw new RuntimeException(e);
             }
+            if (logger.isTraceEnabled()) logger.trace("<~ RocksDbDataSource.keys(): " + name + ", " + result.size());
+            return result;
         } finally {
             resetDbLock.readLock().unlock();
         }
@@ -264,10 +428,11 @@ public class RocksDbDataSource implements DbSource<byte[]> {
                 try (WriteBatch batch = new WriteBatch();
                      WriteOptions writeOptions = new WriteOptions()) {
                     for (Map.Entry<byte[], byte[]> entry : rows.entrySet()) {
+                        int id = familyId(entry.getKey());
                         if (entry.getValue() == null) {
-                            batch.remove(entry.getKey());
+                            batch.remove(familyHandle(id), familyKey(entry.getKey(), id));
                         } else {
-                            batch.put(entry.getKey(), entry.getValue());
+                            batch.put(familyHandle(id), familyKey(entry.getKey(), id), entry.getValue());
                         }
                     }
                     db.write(writeOptions, batch);
@@ -289,10 +454,11 @@ public class RocksDbDataSource implements DbSource<byte[]> {
         resetDbLock.readLock().lock();
         try {
             if (logger.isTraceEnabled()) logger.trace("~> RocksDbDataSource.put(): " + name + ", key: " + toHexString(key) + ", " + (val == null ? "null" : val.length));
+            int id = familyId(key);
             if (val != null) {
-                db.put(key, val);
+                db.put(familyHandle(id), familyKey(key, id), val);
             } else {
-                db.delete(key);
+                db.delete(familyHandle(id), familyKey(key, id));
             }
             if (logger.isTraceEnabled()) logger.trace("<~ RocksDbDataSource.put(): " + name + ", key: " + toHexString(key) + ", " + (val == null ? "null" : val.length));
         } catch (RocksDBException e) {
@@ -309,7 +475,8 @@ public class RocksDbDataSource implements DbSource<byte[]> {
         resetDbLock.readLock().lock();
         try {
             if (logger.isTraceEnabled()) logger.trace("~> RocksDbDataSource.get(): " + name + ", key: " + toHexString(key));
-            byte[] ret = db.get(readOpts, key);
+            int id = familyId(key);
+            byte[] ret = db.get(familyHandle(id), readOpts, familyKey(key, id));
             if (logger.isTraceEnabled()) logger.trace("<~ RocksDbDataSource.get(): " + name + ", key: " + toHexString(key) + ", " + (ret == null ? "null" : ret.length));
             return ret;
         } catch (RocksDBException e) {
@@ -326,7 +493,8 @@ public class RocksDbDataSource implements DbSource<byte[]> {
         resetDbLock.readLock().lock();
         try {
             if (logger.isTraceEnabled()) logger.trace("~> RocksDbDataSource.delete(): " + name + ", key: " + toHexString(key));
-            db.delete(key);
+            int id = familyId(key);
+            db.delete(familyHandle(id), familyKey(key, id));
             if (logger.isTraceEnabled()) logger.trace("<~ RocksDbDataSource.delete(): " + name + ", key: " + toHexString(key));
         } catch (RocksDBException e) {
             logger.error("Failed to delete from db '{}'", name, e);
@@ -350,11 +518,12 @@ public class RocksDbDataSource implements DbSource<byte[]> {
             // RocksDB sets initial position of iterator to the first key which is greater or equal to the seek key
             // since keys in RocksDB are ordered in asc order iterator must be initiated with the lowest key
             // thus bytes with indexes greater than PREFIX_BYTES must be nullified
+            int id = familyId(key);
             byte[] prefix = new byte[NodeKeyCompositor.PREFIX_BYTES];
-            arraycopy(key, 0, prefix, 0, NodeKeyCompositor.PREFIX_BYTES);
+            arraycopy(key, id < 0 ? 0 : 1, prefix, 0, NodeKeyCompositor.PREFIX_BYTES);
 
             byte[] ret = null;
-            try (RocksIterator it = db.newIterator(readOpts)) {
+            try (RocksIterator it = db.newIterator(familyHandle(id), readOpts)) {
 
                 it.seek(prefix);
                 if (it.isValid())
@@ -0,0 +1,269 @@
+package org.apis.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apis.core.Block;
+import org.apis.core.Bloom;
+import org.apis.datasource.Source;
+import org.apis.util.ByteUtil;
+import org.apis.util.FastByteComparisons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of the main chain log blooms used to find the blocks that may contain the searched logs.
+ *
+ * <p>
+ *     Blooms are stored column-wise in sections of {@link #SECTION_SIZE} blocks.
+ *     For each of the 2048 bloom bits a section keeps a bit vector of the blocks having that bit set,
+ *     so looking up a topic reads 3 vectors per section instead of every block of the range.
+ *     All zero vectors are not stored.
+ *
+ * <p>
+ *     A section is indexed once its last block is {@link #CONFIRMATIONS} blocks behind the best block.
+ *     Blocks after the last indexed section are matched against their own header bloom.
+ */
+public class BloomBitsIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    public static final int SECTION_SIZE = 4096;
+    static final int CONFIRMATIONS = 256;
+
+    private static final int BLOOM_BITS = 256 * 8;
+    private static final byte[] SECTIONS_KEY = "bloomBitsSections".getBytes();
+    private static final byte[] HEAD_PREFIX = "bloomBitsHead".getBytes();
+
+    private final Source<byte[], byte[]> source;
+    private final BlockStore blockStore;
+
+    private volatile long sections;
+
+    private ScheduledExecutorService indexer;
+
+    public BloomBitsIndex(Source<byte[], byte[]> source, BlockStore blockStore) {
+        this.source = source;
+        this.blockStore = blockStore;
+
+        byte[] stored = source.get(SECTIONS_KEY);
+        this.sections = stored == null ? 0 : ByteUtil.byteArrayToLong(stored);
+    }
+
+    /**
+     * Starts indexing new sections in the background as the chain grows
+     */
+    public synchronized void start() {
+        if (indexer != null) {
+            return;
+        }
+        indexer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("BloomBitsIndexer-%d").setDaemon(true).build());
+        indexer.scheduleWithFixedDelay(() -> {
+            try {
+                update();
+            } catch (Throwable t) {
+                logger.error("Bloom bits indexing failed", t);
+            }
+        }, 0, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the background indexing and waits for the section being indexed,
+     * so that nothing is written to the source after it is flushed
+     */
+    public synchronized void close() {
+        if (indexer == null) return;
+        indexer.shutdownNow();
+        try {
+            if (!indexer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Bloom bits indexer has not stopped in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        indexer = null;
+    }
+
+    /**
+     * @return number of the first block which is not covered by the indexed sections
+     */
+    public long getIndexedBlocks() {
+        return sections * SECTION_SIZE;
+    }
+
+    /**
+     * Drops the sections which are no more on the main chain and indexes the confirmed ones
+     */
+    void update() {
+        while (sections > 0 && !isSectionOnMainChain(sections - 1)) {
+            logger.info("Bloom bits section {} is not on the main chain anymore, reindexing", sections - 1);
+            setSections(sections - 1);
+        }
+
+        while ((sections + 1) * SECTION_SIZE - 1 <= blockStore.getMaxNumber() - CONFIRMATIONS) {
+            if (!indexSection(sections)) {
+                return;
+            }
+        }
+    }
+
+    private boolean isSectionOnMainChain(long section) {
+        byte[] head = source.get(headKey(section));
+        byte[] chainHash = blockStore.getBlockHashByNumber((section + 1) * SECTION_SIZE - 1);
+        return head != null && chainHash != null && FastByteComparisons.equal(head, chainHash);
+    }
+
+    private boolean indexSection(long section) {
+        long started = System.currentTimeMillis();
+        byte[][] vectors = new byte[BLOOM_BITS][];
+
+        long first = section * SECTION_SIZE;
+        byte[] head = null;
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            Block block = blockStore.getChainBlockByNumber(first + i);
+            if (block == null) {
+                return false;
+            }
+
+            byte[] bloom = block.getLogBloom();
+            for (int bit = 0; bit < BLOOM_BITS; bit++) {
+                if ((bloom[bit >> 3] & (1 << (bit & 7))) != 0) {
+                    if (vectors[bit] == null) {
+                        vectors[bit] = new byte[SECTION_SIZE / 8];
+                    }
+                    vectors[bit][i >> 3] |= 1 << (i & 7);
+                }
+            }
+            head = block.getHash();
+        }
+
+        for (int bit = 0; bit < BLOOM_BITS; bit++) {
+            if (vectors[bit] != null) {
+                source.put(vectorKey(section, bit), vectors[bit]);
+            } else {
+                source.delete(vectorKey(section, bit));
+            }
+        }
+        source.put(headKey(section), head);
+        setSections(section + 1);
+
+        logger.info("Bloom bits section {} indexed (blocks {} - {}) in {} ms",
+                section, first, first + SECTION_SIZE - 1, System.currentTimeMillis() - started);
+        return true;
+    }
+
+    private void setSections(long sections) {
+        this.sections = sections;
+        source.put(SECTIONS_KEY, ByteUtil.longToBytes(sections));
+    }
+
+    /**
+     * Creates a matcher of the blocks whose bloom contains all bits of the filter
+     *
+     * @param filter bloom with the bits to look for, an empty bloom matches every block
+     */
+    public Matcher matcher(Bloom filter) {
+        return new Matcher(filter);
+    }
+
+    public class Matcher {
+        private final byte[] filter;
+        private final int[] bits;
+
+        private long cachedSection = -1;
+        private BitSet cachedCandidates;
+
+        Matcher(Bloom filter) {
+            this.filter = filter.getData();
+
+            List<Integer> bits = new ArrayList<>();
+            for (int bit = 0; bit < BLOOM_BITS; bit++) {
+                if ((this.filter[bit >> 3] & (1 << (bit & 7))) != 0) {
+                    bits.add(bit);
+                }
+            }
+            this.bits = bits.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * @return the first block in [from, to] that may contain the filtered logs, or -1 if there is none
+         */
+        public long next(long from, long to) {
+            if (bits.length == 0) {
+                return from <= to ? from : -1;
+            }
+
+            long number = from;
+            while (number <= to) {
+                long section = number / SECTION_SIZE;
+
+                if (section < sections) {
+                    BitSet candidates = getCandidates(section);
+                    int next = candidates.nextSetBit((int) (number - section * SECTION_SIZE));
+                    if (next >= 0) {
+                        long candidate = section * SECTION_SIZE + next;
+                        return candidate <= to ? candidate : -1;
+                    }
+                    number = (section + 1) * SECTION_SIZE;
+                } else {
+                    Block block = blockStore.getChainBlockByNumber(number);
+                    if (block == null) {
+                        return -1;
+                    }
+                    if (matches(block.getLogBloom())) {
+                        return number;
+                    }
+                    number++;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches(byte[] bloom) {
+            for (int i = 0; i < filter.length; i++) {
+                if ((bloom[i] & filter[i]) != filter[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private BitSet getCandidates(long section) {
+            if (section == cachedSection) {
+                return cachedCandidates;
+            }
+
+            BitSet candidates = null;
+            for (int bit : bits) {
+                byte[] vector = source.get(vectorKey(section, bit));
+                if (vector == null) {
+                    candidates = new BitSet();
+                    break;
+                }
+                if (candidates == null) {
+                    candidates = BitSet.valueOf(vector);
+                } else {
+                    candidates.and(BitSet.valueOf(vector));
+                }
+            }
+
+            cachedSection = section;
+            cachedCandidates = candidates;
+            return candidates;
+        }
+    }
+
+    private static byte[] vectorKey(long section, int bit) {
+        return ByteUtil.merge(ByteUtil.longToBytes(section), ByteUtil.shortToBytes((short) bit));
+    }
+
+    private static byte[] headKey(long section) {
+        return ByteUtil.merge(HEAD_PREFIX, ByteUtil.longToBytes(section));
+    }
+}
@@ -33,10 +33,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
 
 /**
+ * Flushes write caches to the DBs on a separate thread.
+ *
+ * Async caches are double buffered: the next generation is collected while
+ * the previous one is written. Caches over the blockchain DB end up in the single
+ * blockchainDbCache, which is written to the DB with one atomic batch
+ * (spanning all column families if they are configured).
+ *
+ * When a flush is due while the previous one is still being written the import
+ * just carries on, until the write caches grow up to the
+ * cache.flush.maxPendingSize limit. After that {@link #commit()} blocks
+ * until the writer catches up (back-pressure).
+ *
  * Created by Anton Nashatyrev on 01.12.2016.
  */
 public class DbFlushManager {
@@ -44,10 +57,12 @@ public class DbFlushManager {
 
     List<AbstractCachedSource<byte[], ?>> writeCaches = new CopyOnWriteArrayList<>();
     List<Source<byte[], ?>> sources = new CopyOnWriteArrayList<>();
+    Map<String, ReadCache<byte[], ?>> readCaches = new ConcurrentHashMap<>();
     Set<DbSource> dbSources = new HashSet<>();
     AbstractCachedSource<byte[], byte[]> stateDbCache;
 
     long sizeThreshold;
+    long maxPendingSize;
     int commitsCountThreshold;
     boolean syncDone = false;
     boolean flushAfterSyncDone;
@@ -55,6 +70,10 @@ public class DbFlushManager {
     SystemProperties config;
 
     int commitCount = 0;
+    boolean flushPending = false;
+
+    long stallCount = 0;
+    long stallTime = 0;
 
     private final BlockingQueue<Runnable> executorQueue = new ArrayBlockingQueue<>(1);
     private final ExecutorService flushThread = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
@@ -65,6 +84,7 @@ public class DbFlushManager {
         this.config = config;
         this.dbSources = dbSources;
         sizeThreshold = config.getConfig().getInt("cache.flush.writeCacheSize") * 1024 * 1024;
+        maxPendingSize = config.getConfig().getLong("cache.flush.maxPendingSize") * 1024 * 1024;
         commitsCountThreshold = config.getConfig().getInt("cache.flush.blocks");
         flushAfterSyncDone = config.getConfig().getBoolean("cache.flush.shortSyncFlush");
         this.stateDbCache = stateDbCache;
@@ -88,6 +108,24 @@ public class DbFlushManager {
         this.sizeThreshold = sizeThreshold;
     }
 
+    public void setMaxPendingSize(long maxPendingSize) {
+        this.maxPendingSize = maxPendingSize;
+    }
+
+    /**
+     * @return how many times the import was blocked waiting for the previous flush
+     */
+    public long getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * @return total time in ms the import was blocked waiting for the previous flush
+     */
+    public long getStallTime() {
+        return stallTime;
+    }
+
     public void addCache(AbstractCachedSource<byte[], ?> cache) {
         writeCaches.add(cache);
     }
@@ -96,12 +134,18 @@ public class DbFlushManager {
         sources.add(src);
     }
 
+    /**
+     * The statistics of the read cache are logged after each flush
+     */
+    public void addReadCache(String name, ReadCache<byte[], ?> cache) {
+        readCaches.put(name, cache);
+    }
+
     public long getCacheSize() {
         long ret = 0;
-        synchronized (writeCaches) {
-            for (AbstractCachedSource<byte[], ?> writeCache : writeCaches) {
-                ret += writeCache.estimateCacheSize();
-            }
+        // not locking writeCaches here: it is held by the flush thread while writing
+        for (AbstractCachedSource<byte[], ?> writeCache : writeCaches) {
+            ret += writeCache.estimateCacheSize();
         }
         return ret;
     }
@@ -113,20 +157,44 @@ public class DbFlushManager {
 
     public synchronized void commit() {
         long cacheSize = getCacheSize();
+        String reason = null;
         if (sizeThreshold >= 0 && cacheSize >= sizeThreshold) {
-            logger.info("DbFlushManager: flushing db due to write cache size (" + cacheSize + ") reached threshold (" + sizeThreshold + ")");
-            flush();
+            reason = "write cache size (" + cacheSize + ") reached threshold (" + sizeThreshold + ")";
         } else if (commitsCountThreshold > 0 && commitCount >= commitsCountThreshold) {
-            logger.info("DbFlushManager: flushing db due to commits (" + commitCount + ") reached threshold (" + commitsCountThreshold + ")");
-            flush();
-            commitCount = 0;
+            reason = "commits (" + commitCount + ") reached threshold (" + commitsCountThreshold + ")";
         } else if (flushAfterSyncDone && syncDone) {
-            logger.debug("DbFlushManager: flushing db due to short sync");
-            flush();
+            reason = "short sync";
+        } else if (flushPending) {
+            reason = "pending flush";
+        }
+
+        if (reason != null) {
+            if (lastFlush.isDone()) {
+                logger.debug("DbFlushManager: flushing db due to " + reason);
+                startFlush();
+            } else if (cacheSize >= maxPendingSize) {
+                // the writer falls behind: don't let the caches grow any further
+                long s = System.nanoTime();
+                startFlush();
+                long stall = (System.nanoTime() - s) / 1000000;
+                stallCount++;
+                stallTime += stall;
+                logger.warn("DbFlushManager: import stalled for " + stall + " ms, write cache size (" + cacheSize +
+                        ") reached pending limit (" + maxPendingSize + ")");
+            } else {
+                // keep importing while the previous flush is being written
+                flushPending = true;
+            }
         }
         commitCount++;
     }
 
+    private void startFlush() {
+        flush();
+        flushPending = false;
+        commitCount = 0;
+    }
+
     public synchronized void flushSync() {
         try {
             flush().get();
@@ -179,19 +247,26 @@ public class DbFlushManager {
                     }
                 }
             }
-            synchronized (stateDbCache) {
-                if (stateDbCache != null) {
+            if (stateDbCache != null) {
+                synchronized (stateDbCache) {
                     logger.debug("Flushing to DB");
                     stateDbCache.flush();
                 }
             }
             logger.info("Flush completed in " + (System.nanoTime() - s) / 1000000 + " ms");
+            logReadCacheStats();
 
             return ret;
         });
 
     }
 
+    private void logReadCacheStats() {
+        readCaches.forEach((name, cache) -> logger.info(String.format(
+                "Read cache '%s': hit ratio %.1f%% (%d hits, %d misses), %d evictions",
+                name, cache.getHitRatio() * 100, cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount())));
+    }
+
     /**
      * Flushes all caches and closes all databases
      */
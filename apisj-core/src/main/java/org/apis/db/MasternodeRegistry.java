@@ -0,0 +1,196 @@
+package org.apis.db;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apis.core.AccountState;
+import org.apis.util.FastByteComparisons;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Masternode lists by state root.
+ *
+ * <p>
+ *     Masternodes are kept in the account state as linked lists starting from the base nodes,
+ *     so walking a list costs one trie lookup per masternode.
+ *     A {@link Snapshot} keeps the lists of one state once they are walked.
+ *     The lists only depend on the next node and the start block of the accounts, so the repository
+ *     records the {@link Link} of every account where these change and the snapshot of the next state root
+ *     is derived from the previous one with these diffs, without walking the lists again.
+ *
+ * <p>
+ *     The state root identifies the state, so snapshots are shared between all repositories.
+ */
+public class MasternodeRegistry {
+
+    private static final int MAX_SNAPSHOTS = 256;
+
+    private static final Map<ByteArrayWrapper, Snapshot> snapshots = Collections.synchronizedMap(new LRUMap<>(MAX_SNAPSHOTS));
+
+    private MasternodeRegistry() {}
+
+    /**
+     * @return snapshot of the masternode lists for the given state root
+     */
+    static Snapshot getSnapshot(byte[] root) {
+        if (root == null) {
+            return new Snapshot();
+        }
+        return snapshots.computeIfAbsent(new ByteArrayWrapper(root), r -> new Snapshot());
+    }
+
+    /**
+     * Registers the snapshot for the state root, the masternode lists have not changed to get there
+     */
+    static void putSnapshot(byte[] root, Snapshot snapshot) {
+        snapshots.put(new ByteArrayWrapper(root), snapshot);
+    }
+
+    /**
+     * The part of the account state the masternode lists are made of
+     */
+    static final class Link {
+        final byte[] nextNode;
+        final long startBlock;
+
+        /**
+         * @param state account state, null if the account is deleted
+         */
+        Link(AccountState state) {
+            this.nextNode = state == null ? null : state.getMnNextNode();
+            this.startBlock = state == null ? 0 : state.getMnStartBlock().longValue();
+        }
+
+        /**
+         * @return true if the masternode lists are the same with either account state
+         */
+        static boolean isSame(AccountState state1, AccountState state2) {
+            Link link1 = new Link(state1);
+            Link link2 = new Link(state2);
+            return link1.startBlock == link2.startBlock &&
+                    (link1.nextNode == null ? link2.nextNode == null :
+                            link2.nextNode != null && FastByteComparisons.equal(link1.nextNode, link2.nextNode));
+        }
+    }
+
+    public static class Snapshot {
+        private final Map<ByteArrayWrapper, MasternodeList> lists = new ConcurrentHashMap<>();
+
+        /**
+         * Applies the changed links to the lists walked so far.
+         * A list which can't be derived from the changes is left out and walked again when it is requested
+         *
+         * @return snapshot of the state with the changes applied, this one is not modified
+         */
+        Snapshot update(Map<ByteArrayWrapper, Link> changes) {
+            Snapshot ret = new Snapshot();
+            for (Map.Entry<ByteArrayWrapper, MasternodeList> entry : lists.entrySet()) {
+                MasternodeList list = entry.getValue().update(entry.getKey(), changes);
+                if (list != null) {
+                    ret.lists.put(entry.getKey(), list);
+                }
+            }
+            return ret;
+        }
+
+        MasternodeList get(byte[] baseNode, Function<byte[], MasternodeList> loader) {
+            ByteArrayWrapper key = new ByteArrayWrapper(baseNode);
+            MasternodeList list = lists.get(key);
+            if (list == null) {
+                list = loader.apply(baseNode);
+                lists.put(key, list);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Masternodes linked to a base node, in the order of the list
+     */
+    public static class MasternodeList {
+        private final List<byte[]> nodes = new ArrayList<>();
+        private final List<Long> startBlocks = new ArrayList<>();
+
+        void add(byte[] node, long startBlock) {
+            nodes.add(node);
+            startBlocks.add(startBlock);
+        }
+
+        /**
+         * Follows the list from the base node taking the changed links first and the links of this list otherwise
+         *
+         * @return the updated list, this one if none of its links has changed,
+         *          or null if the list leads to a node which is neither in this list nor changed
+         */
+        MasternodeList update(ByteArrayWrapper baseNode, Map<ByteArrayWrapper, Link> changes) {
+            boolean changed = changes.containsKey(baseNode);
+            Map<ByteArrayWrapper, Integer> positions = new HashMap<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                ByteArrayWrapper node = new ByteArrayWrapper(nodes.get(i));
+                positions.put(node, i);
+                changed |= changes.containsKey(node);
+            }
+            if (!changed) {
+                return this;
+            }
+
+            MasternodeList ret = new MasternodeList();
+            ByteArrayWrapper current = baseNode;
+            while (true) {
+                byte[] next;
+                Link link = changes.get(current);
+                if (link != null) {
+                    next = link.nextNode;
+                } else if (current == baseNode) {
+                    next = nodes.isEmpty() ? null : nodes.get(0);
+                } else {
+                    Integer position = positions.get(current);
+                    if (position == null) {
+                        return null;
+                    }
+                    next = position + 1 < nodes.size() ? nodes.get(position + 1) : null;
+                }
+                if (next == null) {
+                    return ret;
+                }
+
+                current = new ByteArrayWrapper(next);
+                Link nextLink = changes.get(current);
+                Integer position = positions.get(current);
+                if (nextLink == null && position == null) {
+                    return null;
+                }
+                ret.add(next, nextLink != null ? nextLink.startBlock : startBlocks.get(position));
+
+                // broken links must not loop forever, the list is walked again then
+                if (ret.size() > nodes.size() + changes.size()) {
+                    return null;
+                }
+            }
+        }
+
+        public int size() {
+            return nodes.size();
+        }
+
+        public byte[] get(int index) {
+            return nodes.get(index);
+        }
+
+        public long getStartBlock(int index) {
+            return startBlocks.get(index);
+        }
+
+        /**
+         * @return copy of the masternode addresses
+         */
+        public List<byte[]> getNodes() {
+            return new ArrayList<>(nodes);
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.apis.db;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apis.config.SystemProperties;
 import org.apis.core.Block;
 import org.apis.core.BlockHeader;
@@ -24,10 +25,18 @@ import org.apis.datasource.JournalSource;
 import org.apis.datasource.Source;
 import org.apis.db.prune.Segment;
 import org.apis.db.prune.Pruner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +45,24 @@ import java.util.stream.Collectors;
  * <p>
  *     Constructs chain segments and prune them when they are complete
  *
+ * <p>
+ *     In the background mode segments are tracked and pruned by a separate thread,
+ *     so that large prune rounds don't pause the block import.
+ *     Journal updates are still committed and fed to the {@link Pruner} on the import thread,
+ *     this way nodes inserted by imported blocks are always protected from deletion.
+ *     Nodes and journal updates to be deleted are handed back to the import thread
+ *     which deletes them, at most [deletesPerBlock] nodes per block, after checking
+ *     the nodes are still unused. Journal updates are deleted only after their nodes,
+ *     and both go to the DB with the same flush, so prune interrupted by a crash
+ *     leaves some garbage behind but never a missing node.
+ *
+ * <p>
+ *     The reference counts of the nodes are not stored on disk: the journal updates of the blocks
+ *     within the prune depth are already persisted, and the {@link Pruner} filters are rebuilt from them
+ *     when the first segment after the start is complete. Counts kept on disk would cost a write
+ *     for every inserted and deleted node on the import thread, only to duplicate what the journal keeps,
+ *     and would need the same crash recovery as the journal since they can't be updated with the nodes atomically.
+ *
  * Created by Anton Nashatyrev on 10.11.2016.
  *
  * @see Segment
@@ -43,7 +70,11 @@ import java.util.stream.Collectors;
  */
 public class PruneManager {
 
+    private static final Logger logger = LoggerFactory.getLogger("prune");
+
     private static final int LONGEST_CHAIN = 192;
+    private static final int MAX_PENDING_BLOCKS = 32;
+    private static final int MAX_PENDING_BATCHES = 64;
 
     private JournalSource<?> journalSource;
 
@@ -55,6 +86,19 @@ public class PruneManager {
     private Segment segment;
     private Pruner pruner;
 
+    // background mode
+    private final Object feedLock = new Object();
+    private ExecutorService pruneThread;
+    private BlockingQueue<BlockHeader> pendingBlocks;
+    private BlockingQueue<PruneBatch> pendingBatches;
+    private PruneBatch currentBatch;
+    private Source<byte[], ?> pruneStorage;
+    private Source<byte[], JournalSource.Update> journal;
+    private int deletesPerBlock;
+    private final Object progress = new Object();
+    private long queuedBlocks;
+    private long processedBlocks;
+
     @Autowired
     private PruneManager(SystemProperties config) {
         pruneBlocksCnt = config.databasePruneDepth();
@@ -70,6 +114,31 @@ public class PruneManager {
             this.pruner = new Pruner(journalSource.getJournal(), pruneStorage);
     }
 
+    /**
+     * Creates PruneManager which prunes in the background
+     *
+     * @param deletesPerBlock max number of nodes deleted from the storage per block commit
+     */
+    public PruneManager(IndexedBlockStore blockStore, JournalSource<?> journalSource,
+                        Source<byte[], ?> pruneStorage, int pruneBlocksCnt, int deletesPerBlock) {
+        this.blockStore = blockStore;
+        this.journalSource = journalSource;
+        this.pruneBlocksCnt = pruneBlocksCnt;
+        this.pruneStorage = pruneStorage;
+        this.journal = journalSource.getJournal();
+        this.deletesPerBlock = deletesPerBlock;
+
+        this.currentBatch = new PruneBatch();
+        this.pendingBlocks = new ArrayBlockingQueue<>(MAX_PENDING_BLOCKS);
+        this.pendingBatches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+        this.pruner = new Pruner(new DeferredDeleteSource<>(journal, key -> currentBatch.updates.add(key)),
+                new DeferredDeleteSource<>(pruneStorage, key -> currentBatch.nodes.add(key)));
+
+        pruneThread = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("PruneManagerThread-%d").setDaemon(true).build());
+        pruneThread.submit(this::pruneLoop);
+    }
+
     @Autowired
     public void setStateSource(StateSource stateSource) {
         journalSource = stateSource.getJournalSource();
@@ -80,9 +149,101 @@ public class PruneManager {
     public void blockCommitted(BlockHeader block) {
         if (pruneBlocksCnt < 0) return; // pruning disabled
 
-        JournalSource.Update update = journalSource.commitUpdates(block.getHash());
-        pruner.feed(update);
+        synchronized (feedLock) {
+            JournalSource.Update update = journalSource.commitUpdates(block.getHash());
+            pruner.feed(update);
+        }
+
+        if (pruneThread == null) {
+            processBlock(block);
+            return;
+        }
+
+        applyDeletes(deletesPerBlock);
+        try {
+            while (!pendingBlocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+                // pruner falls behind, help it to move on
+                applyDeletes(deletesPerBlock);
+            }
+            synchronized (progress) {
+                queuedBlocks++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the background pruner has processed the blocks committed so far
+     * and applies all the deletes left by it, regardless of [deletesPerBlock]
+     */
+    void awaitPruned() throws InterruptedException {
+        if (pruneThread == null) return;
+        while (true) {
+            applyDeletes(Integer.MAX_VALUE);
+            synchronized (progress) {
+                if (processedBlocks == queuedBlocks) break;
+                progress.wait(10);
+            }
+        }
+        applyDeletes(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops the background pruner, the deletes not applied yet are left in the storage
+     */
+    public void close() {
+        if (pruneThread == null) return;
+        pruneThread.shutdownNow();
+        try {
+            if (!pruneThread.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Prune thread has not stopped in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pruneLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                processBlock(pendingBlocks.take());
+                if (!currentBatch.isEmpty()) {
+                    pendingBatches.put(currentBatch);
+                    currentBatch = new PruneBatch();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("Error while pruning", e);
+            }
+            synchronized (progress) {
+                processedBlocks++;
+                progress.notifyAll();
+            }
+        }
+    }
 
+    /**
+     * Deletes nodes and journal updates left by the background pruning
+     */
+    private void applyDeletes(int budget) {
+        PruneBatch batch;
+        while (budget > 0 && (batch = pendingBatches.peek()) != null) {
+            for (; budget > 0 && batch.applied < batch.nodes.size(); budget--) {
+                byte[] key = batch.nodes.get(batch.applied++);
+                if (pruner.isDeletable(key)) {
+                    pruneStorage.delete(key);
+                }
+            }
+            if (batch.applied < batch.nodes.size()) return;
+
+            batch.updates.forEach(journal::delete);
+            pendingBatches.poll();
+        }
+    }
+
+    private void processBlock(BlockHeader block) {
         long forkBlockNum = block.getNumber() - getForkBlocksCnt();
         if (forkBlockNum < 0) return;
 
@@ -109,14 +270,17 @@ public class PruneManager {
 
         if (segment.isComplete()) {
             if (!pruner.isReady()) {
-                List<byte[]> forkWindow = getAllChainsHashes(segment.getRootNumber() + 1, blockStore.getMaxNumber());
-                pruner.init(forkWindow, getForkBlocksCnt());
-
-                int mainChainWindowSize = pruneBlocksCnt - getForkBlocksCnt();
-                if (mainChainWindowSize > 0) {
-                    List<byte[]> mainChainWindow = getMainChainHashes(Math.max(1, segment.getRootNumber() - mainChainWindowSize + 1),
-                            segment.getRootNumber());
-                    pruner.withSecondStep(mainChainWindow, mainChainWindowSize);
+                // blocks committed meanwhile must be either in the window or fed after init
+                synchronized (feedLock) {
+                    List<byte[]> forkWindow = getAllChainsHashes(segment.getRootNumber() + 1, blockStore.getMaxNumber());
+                    pruner.init(forkWindow, getForkBlocksCnt());
+
+                    int mainChainWindowSize = pruneBlocksCnt - getForkBlocksCnt();
+                    if (mainChainWindowSize > 0) {
+                        List<byte[]> mainChainWindow = getMainChainHashes(Math.max(1, segment.getRootNumber() - mainChainWindowSize + 1),
+                                segment.getRootNumber());
+                        pruner.withSecondStep(mainChainWindow, mainChainWindowSize);
+                    }
                 }
             }
             pruner.prune(segment);
@@ -160,4 +324,47 @@ public class PruneManager {
         }
         return ret;
     }
+
+    private static class PruneBatch {
+        final List<byte[]> nodes = new ArrayList<>();
+        final List<byte[]> updates = new ArrayList<>();
+        int applied = 0;
+
+        boolean isEmpty() {
+            return nodes.isEmpty() && updates.isEmpty();
+        }
+    }
+
+    /**
+     * Passes reads through to the source and hands deleted keys to the consumer
+     */
+    private static class DeferredDeleteSource<V> implements Source<byte[], V> {
+        private final Source<byte[], V> source;
+        private final Consumer<byte[]> onDelete;
+
+        DeferredDeleteSource(Source<byte[], V> source, Consumer<byte[]> onDelete) {
+            this.source = source;
+            this.onDelete = onDelete;
+        }
+
+        @Override
+        public void put(byte[] key, V val) {
+            source.put(key, val);
+        }
+
+        @Override
+        public V get(byte[] key) {
+            return source.get(key);
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            onDelete.accept(key);
+        }
+
+        @Override
+        public boolean flush() {
+            return false;
+        }
+    }
 }
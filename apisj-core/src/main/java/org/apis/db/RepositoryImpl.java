@@ -51,6 +51,21 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     Source<byte[], byte[]> addressMaskCache;
     MultiCache<? extends CachedSource<DataWord, DataWord>> storageCache;
 
+    /**
+     * Masternode lists of the state root this repository is at.
+     * Only the root repository keeps them, tracking repositories use their parent's
+     */
+    MasternodeRegistry.Snapshot masternodes;
+
+    /**
+     * Links of the accounts changed since, the lists of this repository are derived from the parent's ones with them
+     */
+    private Map<ByteArrayWrapper, MasternodeRegistry.Link> masternodeChanges;
+    // the changes which are not applied to the derived lists yet
+    private Map<ByteArrayWrapper, MasternodeRegistry.Link> pendingMasternodeChanges;
+    private MasternodeRegistry.Snapshot changedMasternodes;
+    private MasternodeRegistry.Snapshot changedMasternodesBase;
+
     @Autowired
     protected SystemProperties config = SystemProperties.getDefault();
 
@@ -70,17 +85,36 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public synchronized AccountState createAccount(byte[] addr) {
         AccountState state = new AccountState(config.getBlockchainConfig().getCommonConstants().getInitialNonce(), BigInteger.ZERO);
-        accountStateCache.put(addr, state);
+        putAccountState(addr, state);
         return state;
     }
 
     @Override
     public synchronized AccountState createAccount(byte[] addr, long blockNumber) {
         AccountState state = new AccountState(config.getBlockchainConfig().getCommonConstants().getInitialNonce(), config.getBlockchainConfig().getCommonConstants().getINIT_BALANCE(), BigInteger.valueOf(blockNumber));
-        accountStateCache.put(addr, state);
+        putAccountState(addr, state);
         return state;
     }
 
+    /**
+     * Every account state is written here, so the changes of the masternode lists are not missed
+     */
+    private synchronized void putAccountState(byte[] addr, AccountState state) {
+        AccountState prevState = accountStateCache.get(addr);
+        accountStateCache.put(addr, state);
+        if (!MasternodeRegistry.Link.isSame(prevState, state)) {
+            masternodeChanged(addr, state);
+        }
+    }
+
+    private synchronized void deleteAccountState(byte[] addr) {
+        AccountState prevState = accountStateCache.get(addr);
+        accountStateCache.delete(addr);
+        if (!MasternodeRegistry.Link.isSame(prevState, null)) {
+            masternodeChanged(addr, null);
+        }
+    }
+
     @Override
     public synchronized boolean isExist(byte[] addr) {
         return getAccountState(addr) != null;
@@ -109,21 +143,21 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
 
     @Override
     public synchronized void delete(byte[] addr) {
-        accountStateCache.delete(addr);
+        deleteAccountState(addr);
         storageCache.delete(addr);
     }
 
     @Override
     public synchronized BigInteger increaseNonce(byte[] addr) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withIncrementedNonce());
+        putAccountState(addr, accountState.withIncrementedNonce());
         return accountState.getNonce();
     }
 
     @Override
     public synchronized BigInteger setNonce(byte[] addr, BigInteger nonce) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withNonce(nonce));
+        putAccountState(addr, accountState.withNonce(nonce));
         return accountState.getNonce();
     }
 
@@ -149,7 +183,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
         byte[] codeHash = HashUtil.sha3(code);
         codeCache.put(codeHash, code);
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withCodeHash(codeHash));
+        putAccountState(addr, accountState.withCodeHash(codeHash));
     }
 
     @Override
@@ -186,7 +220,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     }
 
     @Override
-    public synchronized BigInteger getMineral(byte[] addr, long blockNumber) {
+    public BigInteger getMineral(byte[] addr, long blockNumber) {
         AccountState accountState = getAccountState(addr);
 
         if(accountState == null) {
@@ -212,21 +246,21 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
             value = value.add(config.getBlockchainConfig().getCommonConstants().getINIT_BALANCE());
         }
 
-        accountStateCache.put(addr, accountState.withBalanceIncrement(value));
+        putAccountState(addr, accountState.withBalanceIncrement(value));
         return accountState.getBalance();
     }
 
     @Override
     public synchronized BigInteger addBalance(byte[] addr, BigInteger value, long blockNumber) {
         AccountState accountState = getOrCreateAccountState(addr, blockNumber);
-        accountStateCache.put(addr, accountState.withBalanceIncrement(value));
+        putAccountState(addr, accountState.withBalanceIncrement(value));
         return accountState.getBalance();
     }
 
     @Override
     public BigInteger addReward(byte[] addr, BigInteger reward) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withTotalRewardIncrement(reward));
+        putAccountState(addr, accountState.withTotalRewardIncrement(reward));
         return accountState.getTotalReward();
     }
 
@@ -235,7 +269,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
         //System.out.println(String.format("RepositoryImpl 190 SetMineral value{%d} blockNumber{%d}", value, blockNumber));
 
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withMineral(value).withLastBlock(BigInteger.valueOf(blockNumber)));
+        putAccountState(addr, accountState.withMineral(value).withLastBlock(BigInteger.valueOf(blockNumber)));
         return accountState.getMineral(blockNumber);
     }
 
@@ -244,7 +278,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
         //ConsoleUtil.printlnRed(String.format("RepositoryImpl AddMineral value{%d} blockNumber{%d}", value, blockNumber));
 
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withMineralIncrement(value, blockNumber).withLastBlock(BigInteger.valueOf(blockNumber)));
+        putAccountState(addr, accountState.withMineralIncrement(value, blockNumber).withLastBlock(BigInteger.valueOf(blockNumber)));
         return accountState.getMineral(blockNumber);
     }
 
@@ -279,7 +313,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
         }
 
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withAddressMask(mask));
+        putAccountState(addr, accountState.withAddressMask(mask));
 
         byte[] maskBytes = mask.getBytes(Charset.forName("UTF-8"));
         byte[] maskHash = HashUtil.sha3(maskBytes);
@@ -299,7 +333,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public byte[] setProofKey(byte[] addr, byte[] proofKey) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withProofKey(proofKey));
+        putAccountState(addr, accountState.withProofKey(proofKey));
         return accountState.getProofKey();
     }
 
@@ -316,7 +350,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public long setMnStartBlock(byte[] addr, long blockNumber) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withMnStartBlock(BigInteger.valueOf(blockNumber)));
+        putAccountState(addr, accountState.withMnStartBlock(BigInteger.valueOf(blockNumber)));
         return accountState.getMnStartBlock().longValue();
     }
 
@@ -330,7 +364,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public long setMnLastBlock(byte[] addr, long blockNumber) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withMnLastBlock(BigInteger.valueOf(blockNumber)));
+        putAccountState(addr, accountState.withMnLastBlock(BigInteger.valueOf(blockNumber)));
         return accountState.getMnLastBlock().longValue();
     }
 
@@ -343,7 +377,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public byte[] setMnRecipient(byte[] addr, byte[] recipient) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withMnRecipient(recipient));
+        putAccountState(addr, accountState.withMnRecipient(recipient));
         return accountState.getMnRecipient();
     }
 
@@ -356,7 +390,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public BigInteger setMnStartBalance(byte[] addr, BigInteger balance) {
         AccountState accountState = getOrCreateAccountState(addr);
-        accountStateCache.put(addr, accountState.withMnStartBalance(balance));
+        putAccountState(addr, accountState.withMnStartBalance(balance));
         return accountState.getMnStartBalance();
     }
 
@@ -402,24 +436,22 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public long getMasternodeSize(BigInteger collateral) {
         Constants constants = config.getBlockchainConfig().getCommonConstants();
-        List<byte[]> allNodes = new ArrayList<>();
 
         if(collateral.equals(constants.getMASTERNODE_BALANCE_GENERAL())) {
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_GENERAL_BASE_EARLY_RUN()));
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_GENERAL_BASE_NORMAL()));
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_GENERAL_BASE_LATE()));
+            return getMasternodes(constants.getMASTERNODE_GENERAL_BASE_EARLY_RUN()).size()
+                    + getMasternodes(constants.getMASTERNODE_GENERAL_BASE_NORMAL()).size()
+                    + getMasternodes(constants.getMASTERNODE_GENERAL_BASE_LATE()).size();
         } else if(collateral.equals(constants.getMASTERNODE_BALANCE_MAJOR())) {
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_MAJOR_BASE_EARLY_RUN()));
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_MAJOR_BASE_NORMAL()));
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_MAJOR_BASE_LATE()));
+            return getMasternodes(constants.getMASTERNODE_MAJOR_BASE_EARLY_RUN()).size()
+                    + getMasternodes(constants.getMASTERNODE_MAJOR_BASE_NORMAL()).size()
+                    + getMasternodes(constants.getMASTERNODE_MAJOR_BASE_LATE()).size();
         } else if(collateral.equals(constants.getMASTERNODE_BALANCE_PRIVATE())) {
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_PRIVATE_BASE_EARLY_RUN()));
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_PRIVATE_BASE_NORMAL()));
-            allNodes.addAll(getMasterNodeList(constants.getMASTERNODE_PRIVATE_BASE_LATE()));
+            return getMasternodes(constants.getMASTERNODE_PRIVATE_BASE_EARLY_RUN()).size()
+                    + getMasternodes(constants.getMASTERNODE_PRIVATE_BASE_NORMAL()).size()
+                    + getMasternodes(constants.getMASTERNODE_PRIVATE_BASE_LATE()).size();
         } else {
             return 0;
         }
-        return allNodes.size();
     }
 
     /**
@@ -519,12 +551,11 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public void insertMnState(byte[] parentMn, byte[] currentMn, long startBlock, BigInteger startBalance, byte[] recipient) {
         BigInteger blockNumberBi = BigInteger.valueOf(startBlock);
-
         AccountState parentState = getOrCreateAccountState(parentMn);
-        accountStateCache.put(parentMn, parentState.withMnNextNode(currentMn));
+        putAccountState(parentMn, parentState.withMnNextNode(currentMn));
 
         AccountState accountState = getOrCreateAccountState(currentMn);
-        accountStateCache.put(currentMn, accountState.withMnStartBlock(blockNumberBi).withMnLastBlock(blockNumberBi).withMnStartBalance(startBalance).withMnRecipient(recipient).withMnPrevNode(parentMn));
+        putAccountState(currentMn, accountState.withMnStartBlock(blockNumberBi).withMnLastBlock(blockNumberBi).withMnStartBalance(startBalance).withMnRecipient(recipient).withMnPrevNode(parentMn));
     }
 
 
@@ -535,15 +566,14 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
      * @param targetNode 마스터노드 정보를 제거하려는 주소
      */
     private void removeMasternode(byte[] targetNode, long blockNumber) {
-
         AccountState targetState = getOrCreateAccountState(targetNode);
         byte[] prevNode = targetState.getMnPrevNode();
 
         if(prevNode == null) {
             if(blockNumber > config.getBlockchainConfig().getConfigForBlock(blockNumber).getConstants().getINIT_MINERAL_APPLY_BLOCK()) {
-                accountStateCache.put(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withMnLastBlock(BigInteger.ZERO).withMnNextNode(null));
+                putAccountState(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withMnLastBlock(BigInteger.ZERO).withMnNextNode(null));
             } else {
-                accountStateCache.put(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withLastBlock(BigInteger.ZERO).withMnNextNode(null));
+                putAccountState(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withLastBlock(BigInteger.ZERO).withMnNextNode(null));
             }
         }
 
@@ -552,30 +582,30 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
 
             if(targetState.getMnNextNode() == null) {
                 if(blockNumber > config.getBlockchainConfig().getConfigForBlock(blockNumber).getConstants().getINIT_MINERAL_APPLY_BLOCK()) {
-                    accountStateCache.put(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withMnLastBlock(BigInteger.ZERO).withMnPrevNode(null));
+                    putAccountState(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withMnLastBlock(BigInteger.ZERO).withMnPrevNode(null));
                 } else {
-                    accountStateCache.put(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withLastBlock(BigInteger.ZERO).withMnPrevNode(null));
+                    putAccountState(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withLastBlock(BigInteger.ZERO).withMnPrevNode(null));
                 }
 
                 if(prevState.getMnNextNode() != null && FastByteComparisons.equal(prevState.getMnNextNode(), targetNode)) {
-                    accountStateCache.put(prevNode, prevState.withMnNextNode(null));
+                    putAccountState(prevNode, prevState.withMnNextNode(null));
                 }
             }
             else {
                 byte[] nextMn = targetState.getMnNextNode();
                 AccountState nextState = getOrCreateAccountState(nextMn);
                 if(blockNumber > config.getBlockchainConfig().getConfigForBlock(blockNumber).getConstants().getINIT_MINERAL_APPLY_BLOCK()) {
-                    accountStateCache.put(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withMnLastBlock(BigInteger.ZERO).withMnPrevNode(null).withMnNextNode(null));
+                    putAccountState(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withMnLastBlock(BigInteger.ZERO).withMnPrevNode(null).withMnNextNode(null));
                 } else {
-                    accountStateCache.put(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withLastBlock(BigInteger.ZERO).withMnPrevNode(null).withMnNextNode(null));
+                    putAccountState(targetNode, targetState.withMnStartBlock(BigInteger.ZERO).withMnStartBalance(BigInteger.ZERO).withLastBlock(BigInteger.ZERO).withMnPrevNode(null).withMnNextNode(null));
                 }
 
                 if(prevState.getMnNextNode() != null && FastByteComparisons.equal(prevState.getMnNextNode(), targetNode)) {
-                    accountStateCache.put(prevNode, prevState.withMnNextNode(nextMn));
+                    putAccountState(prevNode, prevState.withMnNextNode(nextMn));
                 }
 
                 if(nextState.getMnPrevNode() != null && FastByteComparisons.equal(nextState.getMnPrevNode(), targetNode)) {
-                    accountStateCache.put(nextMn, nextState.withMnPrevNode(prevNode));
+                    putAccountState(nextMn, nextState.withMnPrevNode(prevNode));
                 }
             }
         }
@@ -584,27 +614,60 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
 
     @Override
     public List<byte[]> getMasterNodeList(byte[] baseNode) {
-        List<byte[]> mnList = new ArrayList<>();
-
-        byte[] prevMn = baseNode;
-        while(true) {
-            AccountState currentState = getAccountState(prevMn);
-            byte[] currentMn = currentState.getMnNextNode();
-
-            if(currentMn == null) {
-                return mnList;
-            }
-            else {
-                mnList.add(currentMn);
-                prevMn = currentMn;
-            }
-        }
+        return getMasternodes(baseNode).getNodes();
     }
 
     @Override
     public List<byte[]> getMasterNodeList(byte[] baseNode, long blockNumber) {
         Constants constants = config.getBlockchainConfig().getCommonConstants();
+
+        MasternodeRegistry.MasternodeList masternodes = getMasternodes(baseNode);
+        if(baseNode != constants.getMASTERNODE_GENERAL_BASE_LATE()
+                && baseNode != constants.getMASTERNODE_MAJOR_BASE_LATE()
+                && baseNode != constants.getMASTERNODE_PRIVATE_BASE_LATE()) {
+            return masternodes.getNodes();
+        }
+
         List<byte[]> mnList = new ArrayList<>();
+        for(int i = 0; i < masternodes.size(); i++) {
+            if(blockNumber - masternodes.getStartBlock(i) >= constants.getMASTERNODE_REWARD_PERIOD()) {
+                mnList.add(masternodes.get(i));
+            }
+        }
+        return mnList;
+    }
+
+    /**
+     * @return masternodes linked to the base node, from the registry if the lists have not changed in this state
+     */
+    private MasternodeRegistry.MasternodeList getMasternodes(byte[] baseNode) {
+        MasternodeRegistry.Snapshot snapshot = getMasternodeSnapshot();
+        if(snapshot == null) {
+            return loadMasternodes(baseNode);
+        }
+        return snapshot.get(baseNode, this::loadMasternodes);
+    }
+
+    /**
+     * @return masternode lists of this repository, null if there are none to derive them from
+     */
+    synchronized MasternodeRegistry.Snapshot getMasternodeSnapshot() {
+        MasternodeRegistry.Snapshot base = parent == null ? masternodes : parent.getMasternodeSnapshot();
+        if(masternodeChanges == null || base == null) {
+            return masternodeChanges == null ? base : null;
+        }
+        if(changedMasternodes == null || changedMasternodesBase != base) {
+            changedMasternodes = base.update(masternodeChanges);
+            changedMasternodesBase = base;
+        } else if(pendingMasternodeChanges != null) {
+            changedMasternodes = changedMasternodes.update(pendingMasternodeChanges);
+        }
+        pendingMasternodeChanges = null;
+        return changedMasternodes;
+    }
+
+    private MasternodeRegistry.MasternodeList loadMasternodes(byte[] baseNode) {
+        MasternodeRegistry.MasternodeList mnList = new MasternodeRegistry.MasternodeList();
 
         byte[] prevMn = baseNode;
         while(true) {
@@ -614,22 +677,34 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
             if(currentMn == null) {
                 return mnList;
             }
-            else {
-                currentState = getAccountState(currentMn);
+            mnList.add(currentMn, getAccountState(currentMn).getMnStartBlock().longValue());
+            prevMn = currentMn;
+        }
+    }
 
-                if(baseNode == constants.getMASTERNODE_GENERAL_BASE_LATE()
-                        || baseNode == constants.getMASTERNODE_MAJOR_BASE_LATE()
-                        || baseNode == constants.getMASTERNODE_PRIVATE_BASE_LATE()) {
+    private void masternodeChanged(byte[] addr, AccountState state) {
+        masternodesChanged(Collections.singletonMap(new ByteArrayWrapper(addr), new MasternodeRegistry.Link(state)));
+    }
 
-                    if(blockNumber - currentState.getMnStartBlock().longValue() >= constants.getMASTERNODE_REWARD_PERIOD()) {
-                        mnList.add(currentMn);
-                    }
-                } else {
-                    mnList.add(currentMn);
-                }
-                prevMn = currentMn;
-            }
+    /**
+     * Records the changed links, the lists of this repository are derived with them from now on
+     */
+    protected synchronized void masternodesChanged(Map<ByteArrayWrapper, MasternodeRegistry.Link> changes) {
+        if(masternodeChanges == null) {
+            masternodeChanges = new HashMap<>();
         }
+        masternodeChanges.putAll(changes);
+        if(pendingMasternodeChanges == null) {
+            pendingMasternodeChanges = new HashMap<>();
+        }
+        pendingMasternodeChanges.putAll(changes);
+    }
+
+    void clearMasternodesChanged() {
+        masternodeChanges = null;
+        pendingMasternodeChanges = null;
+        changedMasternodes = null;
+        changedMasternodesBase = null;
     }
 
 
@@ -699,19 +774,11 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
 
     @Override
     public MasternodeSize sizeofMasterNode(byte[] baseNode) {
-        MasternodeSize mnSize = new MasternodeSize();
-        byte[] currNode = baseNode;
-        while(true) {
-            mnSize.setLastNode(currNode);
-            AccountState currState = getAccountState(currNode);
-            byte[] nextNode = currState.getMnNextNode();
+        MasternodeRegistry.MasternodeList masternodes = getMasternodes(baseNode);
 
-            if(nextNode == null) {
-                break;
-            }
-            mnSize.setSize(mnSize.getSize() + 1);
-            currNode = nextNode;
-        }
+        MasternodeSize mnSize = new MasternodeSize();
+        mnSize.setSize(masternodes.size());
+        mnSize.setLastNode(masternodes.size() == 0 ? baseNode : masternodes.get(masternodes.size() - 1));
         return mnSize;
     }
 
@@ -824,10 +891,10 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
         String mask = String.valueOf(event.args[0]);
 
         AccountState accountState = getOrCreateAccountState(oldAddress);
-        accountStateCache.put(oldAddress, accountState.withAddressMask(""));
+        putAccountState(oldAddress, accountState.withAddressMask(""));
 
         AccountState nextAccountState = getOrCreateAccountState(newAddress);
-        accountStateCache.put(newAddress, nextAccountState.withAddressMask(mask));
+        putAccountState(newAddress, nextAccountState.withAddressMask(mask));
 
         byte[] maskBytes = mask.getBytes(Charset.forName("UTF-8"));
         byte[] maskHash = HashUtil.sha3(maskBytes);
@@ -1111,6 +1178,11 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
             codeCache.flush();
             accountStateCache.flush();
             addressMaskCache.flush();
+
+            if(masternodeChanges != null && parent != null) {
+                parent.masternodesChanged(masternodeChanges);
+                clearMasternodesChanged();
+            }
         }
     }
 
@@ -1314,7 +1386,7 @@ public class RepositoryImpl implements org.apis.core.Repository, Repository {
     @Override
     public void updateBatch(HashMap<ByteArrayWrapper, AccountState> accountStates, HashMap<ByteArrayWrapper, ContractDetails> contractDetailes) {
         for (Map.Entry<ByteArrayWrapper, AccountState> entry : accountStates.entrySet()) {
-            accountStateCache.put(entry.getKey().getData(), entry.getValue());
+            putAccountState(entry.getKey().getData(), entry.getValue());
         }
         for (Map.Entry<ByteArrayWrapper, ContractDetails> entry : contractDetailes.entrySet()) {
             ContractDetails details = getContractDetails(entry.getKey().getData());
@@ -23,8 +23,15 @@ import org.apis.datasource.*;
 import org.apis.trie.SecureTrie;
 import org.apis.trie.Trie;
 import org.apis.trie.TrieImpl;
+import org.apis.util.FastByteComparisons;
 import org.apis.vm.DataWord;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apis.crypto.HashUtil.EMPTY_TRIE_HASH;
+import static org.apis.crypto.HashUtil.sha3;
+
 /**
  * Created by Anton Nashatyrev on 07.10.2016.
  */
@@ -33,8 +40,8 @@ public class RepositoryRoot extends RepositoryImpl {
     private static class StorageCache extends ReadWriteCache<DataWord, DataWord> {
         Trie<byte[]> trie;
 
-        public StorageCache(Trie<byte[]> trie) {
-            super(new SourceCodec<>(trie, Serializers.StorageKeySerializer, Serializers.StorageValueSerializer), WriteCache.CacheType.SIMPLE);
+        public StorageCache(Trie<byte[]> trie, Source<byte[], byte[]> src) {
+            super(new SourceCodec<>(src, Serializers.StorageKeySerializer, Serializers.StorageValueSerializer), WriteCache.CacheType.SIMPLE);
             this.trie = trie;
         }
     }
@@ -48,8 +55,13 @@ public class RepositoryRoot extends RepositoryImpl {
             AccountState accountState = accountStateCache.get(key);
             Serializer<byte[], byte[]> keyCompositor = new NodeKeyCompositor(key);
             Source<byte[], byte[]> composingSrc = new SourceCodec.KeyOnly<>(trieCache, keyCompositor);
-            TrieImpl storageTrie = createTrie(composingSrc, accountState == null ? null : accountState.getStateRoot());
-            return new StorageCache(storageTrie);
+            byte[] storageRoot = accountState == null ? EMPTY_TRIE_HASH : accountState.getStateRoot();
+            TrieImpl storageTrie = createTrie(composingSrc, storageRoot);
+            storageTrie.setParallelDepth(trieParallelDepth);
+            if (snapshot == null) {
+                return new StorageCache(storageTrie, storageTrie);
+            }
+            return new StorageCache(storageTrie, new SnapshotStorageSource(sha3(key), storageTrie, storageRoot));
         }
 
         @Override
@@ -61,6 +73,9 @@ public class RepositoryRoot extends RepositoryImpl {
                     childCache.trie.flush();
                     byte[] rootHash = childCache.trie.getRootHash();
                     accountStateCache.put(key, storageOwnerAcct.withStateRoot(rootHash));
+                    if (snapshot != null) {
+                        snapshotDiff.getStorage(sha3(key)).setRoot(rootHash);
+                    }
                     return true;
                 } else {
                     // account was deleted
@@ -73,14 +88,130 @@ public class RepositoryRoot extends RepositoryImpl {
         }
     }
 
+    /**
+     * Reads the state from the snapshot, falls back to the trie when the snapshot doesn't know the value
+     */
+    private class SnapshotStateSource implements Source<byte[], byte[]> {
+        @Override
+        public void put(byte[] key, byte[] val) {
+            stateTrie.put(key, val);
+            if (val == null || val.length == 0) {
+                snapshotDiff.deleteAccount(sha3(key));
+            } else {
+                snapshotDiff.putAccount(sha3(key), val);
+            }
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            byte[] addrHash = sha3(key);
+            if (snapshotDiff.hasAccount(addrHash)) {
+                return snapshotDiff.getAccount(addrHash);
+            }
+            byte[] ret = snapshot.getAccount(snapshotRoot, addrHash);
+            return ret != StateSnapshot.UNKNOWN ? ret : stateTrie.get(key);
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            stateTrie.delete(key);
+            snapshotDiff.deleteAccount(sha3(key));
+        }
+
+        @Override
+        public boolean flush() {
+            return stateTrie.flush();
+        }
+    }
+
+    /**
+     * Reads the contract storage from the snapshot, falls back to the trie when the snapshot doesn't know the value
+     */
+    private class SnapshotStorageSource implements Source<byte[], byte[]> {
+        private final byte[] addrHash;
+        private final Trie<byte[]> trie;
+
+        SnapshotStorageSource(byte[] addrHash, Trie<byte[]> trie, byte[] storageRoot) {
+            this.addrHash = addrHash;
+            this.trie = trie;
+
+            StateSnapshot.StorageDiff storage = snapshotDiff.getStorage(addrHash);
+            if (storage.isWiped()) {
+                // the account is recreated
+                if (!FastByteComparisons.equal(storageRoot, EMPTY_TRIE_HASH)) {
+                    storage.setUnknown();
+                }
+            } else if (storage.getBase() == null) {
+                // checked against the previous state on commit
+                storage.setBase(storageRoot);
+            } else if (!FastByteComparisons.equal(storage.getBase(), storageRoot)) {
+                if (FastByteComparisons.equal(storageRoot, EMPTY_TRIE_HASH)) {
+                    storage.wipe();
+                } else {
+                    storage.setUnknown();
+                }
+            }
+        }
+
+        @Override
+        public void put(byte[] key, byte[] val) {
+            changed().putSlot(sha3(key), val == null || val.length == 0 ? null : val);
+            trie.put(key, val);
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            byte[] slotHash = sha3(key);
+            StateSnapshot.StorageDiff storage = snapshotDiff.findStorage(addrHash);
+            if (storage != null) {
+                if (storage.hasSlot(slotHash)) return storage.getSlot(slotHash);
+                if (storage.isUnknown()) return trie.get(key);
+                if (storage.isWiped()) return null;
+            }
+            byte[] ret = snapshot.getStorage(snapshotRoot, addrHash, slotHash);
+            return ret != StateSnapshot.UNKNOWN ? ret : trie.get(key);
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            changed().putSlot(sha3(key), null);
+            trie.delete(key);
+        }
+
+        private StateSnapshot.StorageDiff changed() {
+            StateSnapshot.StorageDiff storage = snapshotDiff.getStorage(addrHash);
+            if (storage.getBase() == null && !storage.isWiped() && !storage.isUnknown()) {
+                // the storage is changed after the previous commit
+                storage.setBase(trie.getRootHash());
+            }
+            return storage;
+        }
+
+        @Override
+        public boolean flush() {
+            return trie.flush();
+        }
+    }
+
     private Source<byte[], byte[]> stateDS;
     private CachedSource.BytesKey<byte[]> trieCache;
     private Trie<byte[]> stateTrie;
 
+    private StateSnapshot snapshot;
+    // the state the snapshot diff is made on
+    private byte[] snapshotRoot;
+    private StateSnapshot.Diff snapshotDiff;
+
+    private int trieParallelDepth = TrieImpl.DEFAULT_PARALLEL_DEPTH;
+
     public RepositoryRoot(Source<byte[], byte[]> stateDS) {
         this(stateDS, null);
     }
 
+    public RepositoryRoot(final Source<byte[], byte[]> stateDS, byte[] root) {
+        this(stateDS, root, null);
+    }
+
     /**
      * Building the following structure for snapshot Repository:
      *
@@ -90,16 +221,27 @@ public class RepositoryRoot extends RepositoryImpl {
      *    \--> codeCache
      *
      *
+     * With the state snapshot accounts and storage are read from it rather than from the tries
+     *
      * @param stateDS
      * @param root
+     * @param snapshot state snapshot or null
      */
-    public RepositoryRoot(final Source<byte[], byte[]> stateDS, byte[] root) {
+    public RepositoryRoot(final Source<byte[], byte[]> stateDS, byte[] root, StateSnapshot snapshot) {
         this.stateDS = stateDS;
 
         trieCache = new WriteCache.BytesKey<>(stateDS, WriteCache.CacheType.COUNTING);
         stateTrie = new SecureTrie(trieCache, root);
 
-        SourceCodec.BytesKey<AccountState, byte[]> accountStateCodec = new SourceCodec.BytesKey<>(stateTrie, Serializers.AccountStateSerializer);
+        Source<byte[], byte[]> stateSrc = stateTrie;
+        if (snapshot != null) {
+            this.snapshot = snapshot;
+            snapshotRoot = root == null ? EMPTY_TRIE_HASH : root;
+            snapshotDiff = new StateSnapshot.Diff();
+            stateSrc = new SnapshotStateSource();
+        }
+
+        SourceCodec.BytesKey<AccountState, byte[]> accountStateCodec = new SourceCodec.BytesKey<>(stateSrc, Serializers.AccountStateSerializer);
         final ReadWriteCache.BytesKey<AccountState> accountStateCache = new ReadWriteCache.BytesKey<>(accountStateCodec, WriteCache.CacheType.SIMPLE);
 
         final MultiCache<StorageCache> storageCache = new MultiStorageCache();
@@ -110,6 +252,7 @@ public class RepositoryRoot extends RepositoryImpl {
         Source<byte[], byte[]> addressMaskCache = new WriteCache.BytesKey<>(stateDS, WriteCache.CacheType.SIMPLE);
 
         init(accountStateCache, codeCache, storageCache, addressMaskCache);
+        masternodes = MasternodeRegistry.getSnapshot(root);
     }
 
     @Override
@@ -118,6 +261,63 @@ public class RepositoryRoot extends RepositoryImpl {
 
         stateTrie.flush();
         trieCache.flush();
+
+        if (snapshot != null) {
+            updateSnapshot();
+        }
+    }
+
+    /**
+     * Hands the changes over to the snapshot as the diff leading to the new root
+     */
+    private void updateSnapshot() {
+        byte[] root = stateTrie.getRootHash();
+        if (FastByteComparisons.equal(root, snapshotRoot)) return;
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : snapshotDiff.accounts.entrySet()) {
+            if (entry.getValue() == null) continue;
+            byte[] addrHash = entry.getKey().getData();
+            StateSnapshot.StorageDiff storage = snapshotDiff.findStorage(addrHash);
+            if (storage != null && storage.isUnknown()) continue;
+
+            byte[] storageRoot = new AccountState(entry.getValue()).getStateRoot();
+            byte[] prevRoot = getPrevStorageRoot(addrHash);
+            if (storage != null && storage.getRoot() != null && FastByteComparisons.equal(storage.getRoot(), storageRoot)) {
+                // the changes lead from the previous storage to the current one
+                if (storage.isWiped() || FastByteComparisons.equal(storage.getBase(), prevRoot)) continue;
+                // or from the empty storage of the recreated account
+                if (FastByteComparisons.equal(storage.getBase(), EMPTY_TRIE_HASH)) {
+                    Map<ByteArrayWrapper, byte[]> slots = new HashMap<>(storage.slots);
+                    storage.wipe();
+                    storage.slots.putAll(slots);
+                    continue;
+                }
+            }
+            if ((storage == null || (storage.slots.isEmpty() && !storage.isWiped())) &&
+                    FastByteComparisons.equal(storageRoot, prevRoot)) {
+                continue;
+            }
+
+            // the storage was replaced along with the account
+            storage = snapshotDiff.getStorage(addrHash);
+            if (FastByteComparisons.equal(storageRoot, EMPTY_TRIE_HASH)) {
+                storage.wipe();
+            } else {
+                storage.setUnknown();
+            }
+        }
+
+        snapshot.update(snapshotRoot, root, snapshotDiff);
+        snapshotRoot = root;
+        snapshotDiff = new StateSnapshot.Diff();
+    }
+
+    private byte[] getPrevStorageRoot(byte[] addrHash) {
+        byte[] account = snapshot.getAccount(snapshotRoot, addrHash);
+        if (account == StateSnapshot.UNKNOWN) {
+            account = new TrieImpl(trieCache, snapshotRoot).get(addrHash);
+        }
+        return account == null ? EMPTY_TRIE_HASH : new AccountState(account).getStateRoot();
     }
 
     @Override
@@ -126,7 +326,18 @@ public class RepositoryRoot extends RepositoryImpl {
         accountStateCache.flush();
         addressMaskCache.flush();
 
-        return stateTrie.getRootHash();
+        byte[] root = stateTrie.getRootHash();
+        updateMasternodeSnapshot(root);
+        return root;
+    }
+
+    /**
+     * Hands the masternode lists over to the new root, with the changed links applied if there are some
+     */
+    private void updateMasternodeSnapshot(byte[] root) {
+        masternodes = getMasternodeSnapshot();
+        clearMasternodesChanged();
+        MasternodeRegistry.putSnapshot(root, masternodes);
     }
 
     @Override
@@ -136,7 +347,19 @@ public class RepositoryRoot extends RepositoryImpl {
 
     @Override
     public Repository getSnapshotTo(byte[] root) {
-        return new RepositoryRoot(stateDS, root);
+        RepositoryRoot ret = new RepositoryRoot(stateDS, root, snapshot);
+        ret.setTrieParallelDepth(trieParallelDepth);
+        return ret;
+    }
+
+    /**
+     * Sets how many upper levels of the state and storage tries hash their modified subtrees in parallel
+     *
+     * @see TrieImpl#setParallelDepth(int)
+     */
+    public synchronized void setTrieParallelDepth(int trieParallelDepth) {
+        this.trieParallelDepth = trieParallelDepth;
+        ((TrieImpl) stateTrie).setParallelDepth(trieParallelDepth);
     }
 
     @Override
@@ -147,6 +370,12 @@ public class RepositoryRoot extends RepositoryImpl {
     @Override
     public synchronized void syncToRoot(byte[] root) {
         stateTrie.setRoot(root);
+        if (snapshot != null) {
+            snapshotRoot = root;
+            snapshotDiff = new StateSnapshot.Diff();
+        }
+        masternodes = MasternodeRegistry.getSnapshot(root);
+        clearMasternodesChanged();
     }
 
     protected TrieImpl createTrie(Source<byte[], byte[]> trieCache, byte[] root) {
@@ -0,0 +1,176 @@
+package org.apis.db;
+
+import org.apis.core.AccountState;
+import org.apis.datasource.CachedSource;
+import org.apis.datasource.MultiCache;
+import org.apis.datasource.Source;
+import org.apis.datasource.WriteCache;
+import org.apis.vm.DataWord;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Tracking repository for executing a transaction ahead of its turn.
+ *
+ * <p>
+ *     The track is started on a snapshot of the state before the block and records every value
+ *     it reads from the snapshot: account states (balances, nonces, minerals, masks and masternode fields),
+ *     storage rows and address masks. When it is the transaction's turn, {@link #isValidOn(RepositoryImpl)}
+ *     compares the recorded values with the repository the transaction would have run on.
+ *     If they are the same the execution would have been the same too, and {@link #commitTo(RepositoryImpl)}
+ *     moves the changes there as if the transaction was executed on it.
+ *
+ * <p>
+ *     Masternode lists are walked through the account states here instead of taken from {@link MasternodeRegistry},
+ *     so they are validated the same way.
+ *
+ * <p>
+ *     Code is stored by its hash and never changes, so code reads are not recorded.
+ */
+public class SpeculativeTrack extends RepositoryImpl {
+
+    private final RecordingSource<byte[], AccountState> accountStates;
+    private final RecordingSource<byte[], byte[]> code;
+    private final RecordingSource<byte[], byte[]> addressMasks;
+    private final RecordingSource<byte[], CachedSource<DataWord, DataWord>> storages;
+    private final Map<ByteArrayWrapper, RecordingSource<DataWord, DataWord>> storageRows = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public SpeculativeTrack(RepositoryImpl snapshot) {
+        this.config = snapshot.config;
+        this.parent = snapshot;
+
+        accountStates = new RecordingSource<>(snapshot.accountStateCache, true);
+        code = new RecordingSource<>(snapshot.codeCache, false);
+        addressMasks = new RecordingSource<>(snapshot.addressMaskCache, true);
+        // the storages are only read through this source
+        storages = new RecordingSource<>((Source<byte[], CachedSource<DataWord, DataWord>>) (Source<byte[], ?>) snapshot.storageCache, false);
+
+        MultiCache<CachedSource<DataWord, DataWord>> trackStorageCache = new MultiCache<CachedSource<DataWord, DataWord>>(storages) {
+            @Override
+            protected CachedSource<DataWord, DataWord> create(byte[] key, CachedSource<DataWord, DataWord> srcCache) {
+                if (srcCache == null) {
+                    // the storage was deleted in this track, it doesn't depend on the snapshot anymore
+                    return new WriteCache<>(null, WriteCache.CacheType.SIMPLE);
+                }
+                RecordingSource<DataWord, DataWord> rows = new RecordingSource<>(srcCache, true);
+                storageRows.put(new ByteArrayWrapper(key), rows);
+                return new WriteCache<>(rows, WriteCache.CacheType.SIMPLE);
+            }
+        };
+
+        init(new WriteCache.BytesKey<>(accountStates, WriteCache.CacheType.SIMPLE),
+                new WriteCache.BytesKey<>(code, WriteCache.CacheType.SIMPLE),
+                trackStorageCache,
+                new WriteCache.BytesKey<>(addressMasks, WriteCache.CacheType.SIMPLE));
+    }
+
+    @Override
+    MasternodeRegistry.Snapshot getMasternodeSnapshot() {
+        return null;
+    }
+
+    /**
+     * @return true if the repository returns the same values for everything this track has read
+     */
+    public synchronized boolean isValidOn(RepositoryImpl repository) {
+        for (Map.Entry<Object, AccountState> read : accountStates.reads.entrySet()) {
+            AccountState actual = repository.accountStateCache.get(((ByteArrayWrapper) read.getKey()).getData());
+            if (!sameAccountState(read.getValue(), actual)) {
+                return false;
+            }
+        }
+
+        for (Map.Entry<Object, byte[]> read : addressMasks.reads.entrySet()) {
+            byte[] actual = repository.addressMaskCache.get(((ByteArrayWrapper) read.getKey()).getData());
+            if (!Arrays.equals(read.getValue(), actual)) {
+                return false;
+            }
+        }
+
+        for (Map.Entry<ByteArrayWrapper, RecordingSource<DataWord, DataWord>> storage : storageRows.entrySet()) {
+            if (storage.getValue().reads.isEmpty()) {
+                continue;
+            }
+            Source<DataWord, DataWord> rows = repository.storageCache.get(storage.getKey().getData());
+            for (Map.Entry<Object, DataWord> read : storage.getValue().reads.entrySet()) {
+                if (!Objects.equals(read.getValue(), rows.get((DataWord) read.getKey()))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the changes of this track to the repository.
+     * Should be called only if {@link #isValidOn(RepositoryImpl)} is true for it.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void commitTo(RepositoryImpl repository) {
+        accountStates.setSource(repository.accountStateCache);
+        code.setSource(repository.codeCache);
+        addressMasks.setSource(repository.addressMaskCache);
+        storages.setSource((Source) repository.storageCache);
+        for (Map.Entry<ByteArrayWrapper, RecordingSource<DataWord, DataWord>> storage : storageRows.entrySet()) {
+            storage.getValue().setSource(repository.storageCache.get(storage.getKey().getData()));
+        }
+        parent = repository;
+
+        commit();
+    }
+
+    private static boolean sameAccountState(AccountState expected, AccountState actual) {
+        if (expected == null || actual == null) {
+            return expected == actual;
+        }
+        return expected == actual || Arrays.equals(expected.getEncoded(), actual.getEncoded());
+    }
+
+    /**
+     * Passes everything to the source, and records the first value read for each key
+     */
+    private static class RecordingSource<K, V> implements Source<K, V> {
+        private Source<K, V> source;
+        private final Map<Object, V> reads;
+
+        RecordingSource(Source<K, V> source, boolean recording) {
+            this.source = source;
+            this.reads = recording ? new HashMap<>() : null;
+        }
+
+        void setSource(Source<K, V> source) {
+            this.source = source;
+        }
+
+        @Override
+        public void put(K key, V val) {
+            source.put(key, val);
+        }
+
+        @Override
+        public V get(K key) {
+            V value = source.get(key);
+            if (reads != null) {
+                Object readKey = key instanceof byte[] ? new ByteArrayWrapper((byte[]) key) : key;
+                if (!reads.containsKey(readKey)) {
+                    reads.put(readKey, value);
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public void delete(K key) {
+            source.delete(key);
+        }
+
+        @Override
+        public boolean flush() {
+            return false;
+        }
+    }
+}
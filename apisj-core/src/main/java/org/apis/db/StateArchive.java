@@ -0,0 +1,484 @@
+package org.apis.db;
+
+import org.apis.core.AccountState;
+import org.apis.core.Block;
+import org.apis.datasource.NodeKeyCompositor;
+import org.apis.datasource.Source;
+import org.apis.datasource.SourceCodec;
+import org.apis.trie.TrieKey;
+import org.apis.util.ByteUtil;
+import org.apis.util.ExecutorPipeline;
+import org.apis.util.FastByteComparisons;
+import org.apis.util.RLP;
+import org.apis.util.RLPElement;
+import org.apis.util.RLPItem;
+import org.apis.util.RLPList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+import org.xerial.snappy.Snappy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apis.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.apis.crypto.HashUtil.EMPTY_TRIE_HASH;
+import static org.apis.crypto.HashUtil.sha3;
+
+/**
+ * Archive of the state at some block along with the recent blocks, used to bring up
+ * a node without syncing it from the network.
+ *
+ * <p>
+ *     The archive holds the nodes of the state trie and of the contract storage tries,
+ *     contract codes and the address masks index. Masternode data is a part of the account
+ *     states, so it's included as well. Entries are written in chunks compressed with Snappy:
+ *     <pre>
+ *     magic | version | chunk... | end chunk
+ *     chunk: [type 1B][uncompressed size 4B][compressed size 4B][RLP list of entries]
+ *     </pre>
+ *
+ * <p>
+ *     Keys are not stored, an entry is verified by computing its key from the content
+ *     while restoring. Chunks are decompressed and verified in parallel,
+ *     then the whole trie is walked checking the hash of every node.
+ *     The address masks can't be derived from the content, they are held back and written
+ *     only for the walked accounts which carry the mask and hash to the address
+ */
+public class StateArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    private static final byte[] MAGIC = "APISSTAT".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private static final int CHUNK_HEADER = 0;
+    private static final int CHUNK_BLOCKS = 1;
+    private static final int CHUNK_ENTRIES = 2;
+    private static final int CHUNK_END = 3;
+
+    private static final int ENTRY_STATE_NODE = 0;
+    private static final int ENTRY_STORAGE_NODE = 1;
+    private static final int ENTRY_CODE = 2;
+    private static final int ENTRY_MASK = 3;
+
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private final Source<byte[], byte[]> stateDS;
+    private int chunkSize = 1024 * 1024;
+
+    /**
+     * @param stateDS source of the trie nodes, codes and masks
+     */
+    public StateArchive(Source<byte[], byte[]> stateDS) {
+        this.stateDS = stateDS;
+    }
+
+    /**
+     * @param chunkSize approximate size in bytes of the entries in a chunk before the compression
+     */
+    public StateArchive withChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Writes the state of the last block along with the blocks
+     *
+     * @param blocks recent blocks in ascending order
+     * @return number of written entries
+     */
+    public long export(OutputStream out, List<Block> blocks) throws IOException {
+        Block pivot = blocks.get(blocks.size() - 1);
+        final ChunkWriter writer = new ChunkWriter(new DataOutputStream(out));
+        writer.out.write(MAGIC);
+        writer.out.writeInt(VERSION);
+
+        writer.writeChunk(CHUNK_HEADER, RLP.encodeList(RLP.encodeElement(pivot.getStateRoot()),
+                RLP.encodeElement(ByteUtil.longToBytesNoLeadZeroes(pivot.getNumber())), RLP.encodeElement(pivot.getHash())));
+        byte[][] encodedBlocks = new byte[blocks.size()][];
+        for (int i = 0; i < blocks.size(); i++) {
+            encodedBlocks[i] = blocks.get(i).getEncoded();
+        }
+        writer.writeChunk(CHUNK_BLOCKS, RLP.encodeList(encodedBlocks));
+
+        final Set<ByteArrayWrapper> codes = new HashSet<>();
+        walk(stateDS, pivot.getStateRoot(), new TrieVisitor() {
+            @Override
+            public void onNode(byte[] rlp) throws IOException {
+                writer.add(RLP.encodeList(RLP.encodeInt(ENTRY_STATE_NODE), RLP.encodeElement(rlp)));
+            }
+
+            @Override
+            public void onValue(byte[] addrHash, byte[] value) throws IOException {
+                AccountState account = new AccountState(value);
+
+                Source<byte[], byte[]> storageDS = new SourceCodec.KeyOnly<>(stateDS, new NodeKeyCompositor(addrHash));
+                byte[] encodedAddrHash = RLP.encodeElement(addrHash);
+                walk(storageDS, account.getStateRoot(), new TrieVisitor() {
+                    @Override
+                    public void onNode(byte[] rlp) throws IOException {
+                        writer.add(RLP.encodeList(RLP.encodeInt(ENTRY_STORAGE_NODE), encodedAddrHash, RLP.encodeElement(rlp)));
+                    }
+
+                    @Override
+                    public void onValue(byte[] key, byte[] value) {
+                    }
+                });
+
+                byte[] codeHash = account.getCodeHash();
+                if (!FastByteComparisons.equal(codeHash, EMPTY_DATA_HASH) && codes.add(new ByteArrayWrapper(codeHash))) {
+                    byte[] code = stateDS.get(codeHash);
+                    if (code == null) {
+                        throw new IOException("Missing code " + Hex.toHexString(codeHash));
+                    }
+                    writer.add(RLP.encodeList(RLP.encodeInt(ENTRY_CODE), RLP.encodeElement(code)));
+                }
+
+                String mask = account.getAddressMask();
+                if (mask != null && !mask.isEmpty()) {
+                    byte[] maskBytes = mask.getBytes(StandardCharsets.UTF_8);
+                    byte[] address = stateDS.get(sha3(maskBytes));
+                    if (address != null) {
+                        writer.add(RLP.encodeList(RLP.encodeInt(ENTRY_MASK), RLP.encodeElement(maskBytes), RLP.encodeElement(address)));
+                    }
+                }
+            }
+        });
+        writer.flushEntries();
+
+        writer.writeChunk(CHUNK_END, RLP.encodeList(RLP.encodeElement(ByteUtil.longToBytesNoLeadZeroes(writer.entries))));
+        writer.out.flush();
+        return writer.entries;
+    }
+
+    /**
+     * Writes the entries of the archive to the source, each entry is keyed by its own content.
+     * After all the entries are written the restored state is walked to check it is complete
+     *
+     * @param threads number of threads decompressing and verifying the chunks
+     * @param onChunk invoked on the writing thread after each chunk of entries is written,
+     *                e.g. to flush the written entries
+     * @return the blocks of the archive, the state is the one of the last block
+     */
+    public List<Block> restore(InputStream in, int threads, Runnable onChunk) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        dataIn.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a state archive");
+        }
+        int version = dataIn.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported state archive version: " + version);
+        }
+
+        RLPList header = readChunk(dataIn, CHUNK_HEADER);
+        byte[] root = header.get(0).getRLPData();
+        long pivotNumber = ByteUtil.byteArrayToLong(header.get(1).getRLPData());
+        byte[] pivotHash = header.get(2).getRLPData();
+
+        List<Block> blocks = new ArrayList<>();
+        for (RLPElement element : readChunk(dataIn, CHUNK_BLOCKS)) {
+            blocks.add(new Block(element.getRLPData()));
+        }
+        Block pivot = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (pivot == null || pivot.getNumber() != pivotNumber || !FastByteComparisons.equal(pivot.getHash(), pivotHash) ||
+                !FastByteComparisons.equal(pivot.getStateRoot(), root)) {
+            throw new IOException("State archive blocks don't match the state");
+        }
+        for (int i = 1; i < blocks.size(); i++) {
+            if (!FastByteComparisons.equal(blocks.get(i).getParentHash(), blocks.get(i - 1).getHash())) {
+                throw new IOException("State archive blocks are not a chain: " + blocks.get(i).getShortDescr());
+            }
+        }
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final AtomicLong restored = new AtomicLong();
+        // written by the single writer thread, read after the pipeline is joined
+        final Map<ByteArrayWrapper, byte[]> masks = new HashMap<>();
+        ExecutorPipeline<byte[], List<byte[][]>> verifier = new ExecutorPipeline<>(threads, threads * 2, false,
+                StateArchive::verifyChunk, e -> error.compareAndSet(null, e)).setThreadPoolName("StateArchiveVerifier");
+        verifier.add(1, threads * 2, entries -> {
+            for (byte[][] entry : entries) {
+                if (entry.length == 2) {
+                    stateDS.put(entry[0], entry[1]);
+                } else {
+                    masks.put(new ByteArrayWrapper(entry[0]), entry[1]);
+                }
+            }
+            restored.addAndGet(entries.size());
+            if (onChunk != null) {
+                onChunk.run();
+            }
+        });
+
+        long expected = -1;
+        try {
+            while (true) {
+                int type = dataIn.readUnsignedByte();
+                byte[] compressed = readChunkData(dataIn);
+                if (type == CHUNK_ENTRIES) {
+                    verifier.push(compressed);
+                } else if (type == CHUNK_END) {
+                    RLPList end = (RLPList) RLP.decode2(uncompress(compressed)).get(0);
+                    expected = ByteUtil.byteArrayToLong(end.get(0).getRLPData());
+                    break;
+                } else {
+                    throw new IOException("Unexpected state archive chunk: " + type);
+                }
+                if (error.get() != null) break;
+            }
+        } catch (EOFException e) {
+            throw new IOException("State archive is truncated", e);
+        } finally {
+            try {
+                verifier.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+
+        if (error.get() != null) {
+            throw new IOException("State archive is corrupted", error.get());
+        }
+        if (restored.get() != expected) {
+            throw new IOException("State archive entries count mismatch: " + restored.get() + " != " + expected);
+        }
+
+        long s = System.currentTimeMillis();
+        verifyState(root, masks);
+        logger.info("State archive restored: {} entries, state {} verified in {} sec",
+                expected, Hex.toHexString(root), (System.currentTimeMillis() - s) / 1000);
+        return blocks;
+    }
+
+    /**
+     * Checks that all the nodes of the state and storage tries are present and match their hashes,
+     * writes the address masks of the accounts
+     *
+     * @param masks [sha3(mask) -> address] entries of the archive, the ones left are rejected
+     */
+    private void verifyState(byte[] root, Map<ByteArrayWrapper, byte[]> masks) throws IOException {
+        walk(stateDS, root, new TrieVisitor() {
+            @Override
+            public void onNode(byte[] rlp) {
+            }
+
+            @Override
+            public void onValue(byte[] addrHash, byte[] value) throws IOException {
+                AccountState account = new AccountState(value);
+                Source<byte[], byte[]> storageDS = new SourceCodec.KeyOnly<>(stateDS, new NodeKeyCompositor(addrHash));
+                walk(storageDS, account.getStateRoot(), new TrieVisitor() {
+                    @Override
+                    public void onNode(byte[] rlp) {
+                    }
+
+                    @Override
+                    public void onValue(byte[] key, byte[] value) {
+                    }
+                });
+                if (!FastByteComparisons.equal(account.getCodeHash(), EMPTY_DATA_HASH) && stateDS.get(account.getCodeHash()) == null) {
+                    throw new IOException("Missing code " + Hex.toHexString(account.getCodeHash()));
+                }
+
+                String mask = account.getAddressMask();
+                if (mask != null && !mask.isEmpty()) {
+                    byte[] maskHash = sha3(mask.getBytes(StandardCharsets.UTF_8));
+                    byte[] address = masks.remove(new ByteArrayWrapper(maskHash));
+                    // the source may have no index for the mask, then it's not restored either
+                    if (address != null) {
+                        if (!FastByteComparisons.equal(sha3(address), addrHash)) {
+                            throw new IOException("Address mask " + mask + " doesn't point to its account");
+                        }
+                        stateDS.put(maskHash, address);
+                    }
+                }
+            }
+        });
+        if (!masks.isEmpty()) {
+            throw new IOException("State archive has " + masks.size() + " address masks of no account");
+        }
+    }
+
+    /**
+     * @return [key, value] pairs of the chunk entries, [sha3(mask), address, mask] for the address masks
+     */
+    private static List<byte[][]> verifyChunk(byte[] compressed) {
+        try {
+            RLPList entries = (RLPList) RLP.decode2(uncompress(compressed)).get(0);
+            List<byte[][]> ret = new ArrayList<>(entries.size());
+            for (RLPElement element : entries) {
+                RLPList entry = (RLPList) element;
+                int kind = ByteUtil.byteArrayToInt(entry.get(0).getRLPData());
+                switch (kind) {
+                    case ENTRY_STATE_NODE:
+                    case ENTRY_CODE: {
+                        byte[] value = entry.get(1).getRLPData();
+                        ret.add(new byte[][] {sha3(value), value});
+                        break;
+                    }
+                    case ENTRY_STORAGE_NODE: {
+                        byte[] value = entry.get(2).getRLPData();
+                        ret.add(new byte[][] {NodeKeyCompositor.compose(sha3(value), entry.get(1).getRLPData()), value});
+                        break;
+                    }
+                    case ENTRY_MASK: {
+                        byte[] mask = entry.get(1).getRLPData();
+                        ret.add(new byte[][] {sha3(mask), entry.get(2).getRLPData(), mask});
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("Unknown state archive entry: " + kind);
+                }
+            }
+            return ret;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static RLPList readChunk(DataInputStream in, int type) throws IOException {
+        int actual = in.readUnsignedByte();
+        if (actual != type) {
+            throw new IOException("Unexpected state archive chunk: " + actual + " instead of " + type);
+        }
+        return (RLPList) RLP.decode2(uncompress(readChunkData(in))).get(0);
+    }
+
+    /**
+     * @return the size prefixed compressed data
+     */
+    private static byte[] readChunkData(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        int compressedSize = in.readInt();
+        if (size < 0 || size > MAX_CHUNK_SIZE || compressedSize < 0 || compressedSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid state archive chunk size: " + size);
+        }
+        byte[] ret = new byte[4 + compressedSize];
+        System.arraycopy(ByteUtil.intToBytes(size), 0, ret, 0, 4);
+        in.readFully(ret, 4, compressedSize);
+        return ret;
+    }
+
+    private static byte[] uncompress(byte[] data) throws IOException {
+        int size = ByteUtil.byteArrayToInt(Arrays.copyOfRange(data, 0, 4));
+        if (Snappy.uncompressedLength(data, 4, data.length - 4) != size) {
+            throw new IOException("State archive chunk size mismatch");
+        }
+        byte[] ret = new byte[size];
+        Snappy.rawUncompress(data, 4, data.length - 4, ret, 0);
+        return ret;
+    }
+
+    private interface TrieVisitor {
+        void onNode(byte[] rlp) throws IOException;
+
+        void onValue(byte[] key, byte[] value) throws IOException;
+    }
+
+    /**
+     * Walks the trie depth first reading the nodes as they are, unlike
+     * {@link org.apis.trie.TrieImpl#scanTree} it doesn't keep the visited nodes in memory
+     */
+    private static void walk(Source<byte[], byte[]> src, byte[] root, TrieVisitor visitor) throws IOException {
+        if (root == null || FastByteComparisons.equal(root, EMPTY_TRIE_HASH)) return;
+        walkHash(src, root, TrieKey.empty(false), visitor);
+    }
+
+    private static void walkHash(Source<byte[], byte[]> src, byte[] hash, TrieKey path, TrieVisitor visitor) throws IOException {
+        byte[] rlp = src.get(hash);
+        if (rlp == null) {
+            throw new IOException("Missing trie node " + Hex.toHexString(hash));
+        }
+        if (!FastByteComparisons.equal(sha3(rlp), hash)) {
+            throw new IOException("Invalid trie node " + Hex.toHexString(hash));
+        }
+        visitor.onNode(rlp);
+        walkNode(src, (RLPList) RLP.decode2(rlp).get(0), path, visitor);
+    }
+
+    private static void walkNode(Source<byte[], byte[]> src, RLPList node, TrieKey path, TrieVisitor visitor) throws IOException {
+        if (node.size() == 17) {
+            for (int i = 0; i < 16; i++) {
+                walkChild(src, node.get(i), path.concat(TrieKey.singleHex(i)), visitor);
+            }
+            byte[] value = node.get(16).getRLPData();
+            if (value != null) {
+                visitor.onValue(path.toNormal(), value);
+            }
+        } else {
+            TrieKey key = path.concat(TrieKey.fromPacked(node.get(0).getRLPData()));
+            if (key.isTerminal()) {
+                visitor.onValue(key.toNormal(), node.get(1).getRLPData());
+            } else {
+                walkChild(src, node.get(1), key, visitor);
+            }
+        }
+    }
+
+    private static void walkChild(Source<byte[], byte[]> src, RLPElement child, TrieKey path, TrieVisitor visitor) throws IOException {
+        if (child instanceof RLPList) {
+            // embedded node
+            walkNode(src, (RLPList) child, path, visitor);
+        } else {
+            byte[] hash = ((RLPItem) child).getRLPData();
+            if (hash != null) {
+                walkHash(src, hash, path, visitor);
+            }
+        }
+    }
+
+    /**
+     * Collects the entries into chunks of about [chunkSize] bytes
+     */
+    private class ChunkWriter {
+        final DataOutputStream out;
+        final List<byte[]> pending = new ArrayList<>();
+        int pendingSize = 0;
+        long entries = 0;
+
+        ChunkWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void add(byte[] entry) throws IOException {
+            pending.add(entry);
+            pendingSize += entry.length;
+            entries++;
+            if (pendingSize >= chunkSize) {
+                flushEntries();
+            }
+        }
+
+        void flushEntries() throws IOException {
+            if (pending.isEmpty()) return;
+            writeChunk(CHUNK_ENTRIES, RLP.encodeList(pending.toArray(new byte[0][])));
+            pending.clear();
+            pendingSize = 0;
+        }
+
+        void writeChunk(int type, byte[] data) throws IOException {
+            byte[] compressed = Snappy.compress(data);
+            out.writeByte(type);
+            out.writeInt(data.length);
+            out.writeInt(compressed.length);
+            out.write(compressed);
+        }
+    }
+}
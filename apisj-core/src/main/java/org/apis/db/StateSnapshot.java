@@ -0,0 +1,659 @@
+package org.apis.db;
+
+import org.apis.core.AccountState;
+import org.apis.datasource.NodeKeyCompositor;
+import org.apis.datasource.Source;
+import org.apis.datasource.SourceCodec;
+import org.apis.trie.TrieImpl;
+import org.apis.util.ByteUtil;
+import org.apis.util.FastByteComparisons;
+import org.apis.util.RLP;
+import org.apis.util.RLPElement;
+import org.apis.util.RLPList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.apis.crypto.HashUtil.EMPTY_TRIE_HASH;
+import static org.apis.util.ByteUtil.EMPTY_BYTE_ARRAY;
+
+/**
+ * Flat snapshot of the state: account and contract storage values by their hashed keys,
+ * so that a value is read with a single lookup instead of descending the trie.
+ *
+ * <p>
+ *     The snapshot consists of the disk layer and in-memory diff layers on top of it.
+ *     A diff layer keeps the changes of one repository commit (i.e. of a block)
+ *     and is identified by the state root they lead to. The disk layer lags behind
+ *     the head by [diffLayers] blocks, so any of the recent states can be read,
+ *     older layers are merged into the disk one. Diff layers are journaled
+ *     to the DB as well, so they survive restarts.
+ *
+ * <p>
+ *     The disk layer is generated from the trie in a background thread when there is none
+ *     or it doesn't lead to the head state. A new generation overwrites the values of the previous one
+ *     in place, so the snapshot never takes more space than a copy of every account and slot ever stored.
+ *     Values are tagged with the number of their generation: the leftovers of the previous one,
+ *     e.g. of the accounts deleted meanwhile, are not trusted and read as {@link #UNKNOWN}.
+ *     Merged deletions are stored as empty tagged values for the same reason.
+ *
+ * <p>
+ *     When the snapshot can't tell a value it returns {@link #UNKNOWN},
+ *     the value should be read from the trie then
+ */
+public class StateSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    public static final byte[] UNKNOWN = new byte[0];
+
+    private static final byte[] META_KEY = "stateSnapshot".getBytes();
+    // the number of the last generation started, written directly so that it's never reused after a crash
+    private static final byte[] GENERATION_KEY = "stateSnapshotGeneration".getBytes();
+    private static final byte ACCOUNT_PREFIX = 1;
+    private static final byte STORAGE_PREFIX = 2;
+    private static final byte JOURNAL_PREFIX = 3;
+
+    private static final int WIPED = 1;
+    private static final int UNKNOWN_STORAGE = 2;
+
+    private final Source<byte[], byte[]> db;
+    private final Source<byte[], byte[]> generationDb;
+    private final Source<byte[], byte[]> stateDS;
+    private final int maxDiffLayers;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<ByteArrayWrapper, DiffLayer> layers = new HashMap<>();
+    private volatile boolean initialized = false;
+    private volatile boolean closed = false;
+    private int generation = 0;
+    private byte[] diskRoot;
+    private boolean diskReady = false;
+    private boolean generationFailed = false;
+    private byte[] headRoot;
+
+    /**
+     * @param db source for the snapshot, writes are expected to be flushed together with the state
+     * @param generationDb source writing directly to the same DB, used to generate the disk layer
+     * @param stateDS source of the trie nodes
+     * @param maxDiffLayers number of recent states kept in memory
+     */
+    public StateSnapshot(Source<byte[], byte[]> db, Source<byte[], byte[]> generationDb,
+                         Source<byte[], byte[]> stateDS, int maxDiffLayers) {
+        this.db = db;
+        this.generationDb = generationDb;
+        this.stateDS = stateDS;
+        this.maxDiffLayers = maxDiffLayers;
+    }
+
+    /**
+     * Loads the snapshot, or starts generating it when it doesn't lead to the head state
+     */
+    public void init(byte[] headRoot) {
+        headRoot = normalize(headRoot);
+        lock.writeLock().lock();
+        try {
+            byte[] meta = db.get(META_KEY);
+            if (meta != null) {
+                RLPList list = (RLPList) RLP.decode2(meta).get(0);
+                generation = ByteUtil.byteArrayToInt(list.get(0).getRLPData());
+                diskRoot = list.get(1).getRLPData();
+                diskReady = ByteUtil.byteArrayToInt(list.get(2).getRLPData()) == 1;
+                loadJournal((RLPList) list.get(3));
+            }
+            this.headRoot = headRoot;
+            initialized = true;
+
+            if (diskReady && (layers.containsKey(new ByteArrayWrapper(headRoot)) || equal(headRoot, diskRoot))) {
+                logger.info("State snapshot loaded: {} diff layers on top of the state {}",
+                        layers.size(), Hex.toHexString(diskRoot));
+            } else {
+                startGeneration(headRoot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the generation if it is in progress
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return diskReady;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return RLP of the account in the state, null if there is no account
+     *         or {@link #UNKNOWN} if the snapshot doesn't know the state
+     */
+    public byte[] getAccount(byte[] root, byte[] addrHash) {
+        if (!initialized) return UNKNOWN;
+        ByteArrayWrapper key = new ByteArrayWrapper(addrHash);
+
+        lock.readLock().lock();
+        try {
+            DiffLayer layer = layers.get(new ByteArrayWrapper(normalize(root)));
+            if (layer == null && !equal(normalize(root), diskRoot)) return UNKNOWN;
+            for (; layer != null; layer = layer.parent) {
+                if (layer.diff.accounts.containsKey(key)) {
+                    return layer.diff.accounts.get(key);
+                }
+            }
+            return diskReady ? getDisk(accountKey(addrHash)) : UNKNOWN;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return RLP of the storage value of the account in the state, null if there is no value
+     *         or {@link #UNKNOWN} if the snapshot doesn't know the state
+     */
+    public byte[] getStorage(byte[] root, byte[] addrHash, byte[] slotHash) {
+        if (!initialized) return UNKNOWN;
+        ByteArrayWrapper key = new ByteArrayWrapper(addrHash);
+        ByteArrayWrapper slot = new ByteArrayWrapper(slotHash);
+
+        lock.readLock().lock();
+        try {
+            DiffLayer layer = layers.get(new ByteArrayWrapper(normalize(root)));
+            if (layer == null && !equal(normalize(root), diskRoot)) return UNKNOWN;
+            for (; layer != null; layer = layer.parent) {
+                StorageDiff storage = layer.diff.storage.get(key);
+                if (storage != null) {
+                    if (storage.slots.containsKey(slot)) return storage.slots.get(slot);
+                    if (storage.unknown) return UNKNOWN;
+                    if (storage.wiped) return null;
+                }
+            }
+            return diskReady ? getDisk(storageKey(addrHash, slotHash)) : UNKNOWN;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the changes leading from the parent state to the new one as a diff layer,
+     * merges the layers which are too old into the disk layer.
+     * The snapshot is generated again for the new state if the parent state is not known
+     */
+    public void update(byte[] parentRoot, byte[] root, Diff diff) {
+        if (!initialized) return;
+        parentRoot = normalize(parentRoot);
+        root = normalize(root);
+
+        lock.writeLock().lock();
+        try {
+            ByteArrayWrapper rootKey = new ByteArrayWrapper(root);
+            if (layers.containsKey(rootKey) || equal(root, diskRoot)) return;
+            DiffLayer parent = layers.get(new ByteArrayWrapper(parentRoot));
+            if (parent == null && !equal(parentRoot, diskRoot)) {
+                // the parent state is not known, e.g. it's too old, the snapshot can't follow the state otherwise
+                logger.info("Parent of the state {} is not in the snapshot", Hex.toHexString(root));
+                headRoot = root;
+                startGeneration(root);
+                return;
+            }
+
+            DiffLayer layer = new DiffLayer(root, parentRoot, parent, diff);
+            layers.put(rootKey, layer);
+            db.put(journalKey(root), layer.encode());
+            headRoot = root;
+
+            if (generationFailed) {
+                startGeneration(root);
+            } else if (diskReady) {
+                capLayers(layer);
+            }
+            writeMeta();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges layers below the given one into the disk layer until
+     * there are at most [maxDiffLayers] of them
+     */
+    private void capLayers(DiffLayer top) {
+        while (true) {
+            int depth = 1;
+            DiffLayer bottom = top;
+            while (bottom.parent != null) {
+                bottom = bottom.parent;
+                depth++;
+            }
+            if (depth <= maxDiffLayers) return;
+
+            try {
+                flatten(bottom);
+            } catch (RuntimeException e) {
+                // the trie of a replaced storage is not available anymore
+                logger.warn("Failed to merge the state snapshot layer, regenerating the snapshot", e);
+                startGeneration(top.root);
+                return;
+            }
+        }
+    }
+
+    private void flatten(DiffLayer bottom) {
+        for (Map.Entry<ByteArrayWrapper, StorageDiff> entry : bottom.diff.storage.entrySet()) {
+            byte[] addrHash = entry.getKey().getData();
+            StorageDiff storage = entry.getValue();
+            if (storage.wiped || storage.unknown) {
+                byte[] oldAccount = getDisk(accountKey(addrHash));
+                if (oldAccount == UNKNOWN) {
+                    oldAccount = new TrieImpl(stateDS, diskRoot).get(addrHash);
+                }
+                if (oldAccount != null && oldAccount.length > 0) {
+                    scanStorage(addrHash, new AccountState(oldAccount).getStateRoot(),
+                            (slotHash, value) -> putOrDelete(storageKey(addrHash, slotHash), null));
+                }
+            }
+            if (storage.unknown) {
+                byte[] account = bottom.diff.accounts.get(entry.getKey());
+                if (account != null) {
+                    scanStorage(addrHash, new AccountState(account).getStateRoot(),
+                            (slotHash, value) -> db.put(storageKey(addrHash, slotHash), tagged(generation, value)));
+                }
+            } else {
+                for (Map.Entry<ByteArrayWrapper, byte[]> slot : storage.slots.entrySet()) {
+                    putOrDelete(storageKey(addrHash, slot.getKey().getData()), slot.getValue());
+                }
+            }
+        }
+        for (Map.Entry<ByteArrayWrapper, byte[]> account : bottom.diff.accounts.entrySet()) {
+            putOrDelete(accountKey(account.getKey().getData()), account.getValue());
+        }
+
+        layers.remove(new ByteArrayWrapper(bottom.root));
+        db.delete(journalKey(bottom.root));
+        diskRoot = bottom.root;
+
+        // layers forked from the former disk state are not reachable anymore
+        List<DiffLayer> stale = new ArrayList<>();
+        for (DiffLayer layer : layers.values()) {
+            if (layer.parent == bottom) {
+                layer.parent = null;
+            } else if (layer.parent == null) {
+                stale.add(layer);
+            }
+        }
+        removeLayers(stale);
+    }
+
+    private void removeLayers(List<DiffLayer> removed) {
+        Set<DiffLayer> removedSet = new HashSet<>(removed);
+        boolean found = !removed.isEmpty();
+        while (found) {
+            found = false;
+            for (DiffLayer layer : layers.values()) {
+                if (layer.parent != null && removedSet.contains(layer.parent) && removedSet.add(layer)) {
+                    found = true;
+                }
+            }
+        }
+        for (DiffLayer layer : removedSet) {
+            layers.remove(new ByteArrayWrapper(layer.root));
+            db.delete(journalKey(layer.root));
+        }
+    }
+
+    /**
+     * A deleted value is stored as an empty one of the generation rather than deleted:
+     * the write may reach the DB after the next generation has written the key directly,
+     * it must be read as {@link #UNKNOWN} then rather than as no value
+     */
+    private void putOrDelete(byte[] key, byte[] value) {
+        db.put(key, tagged(generation, value == null ? EMPTY_BYTE_ARRAY : value));
+    }
+
+    /**
+     * @return the value of the disk layer, {@link #UNKNOWN} if it's left by another generation
+     */
+    private byte[] getDisk(byte[] key) {
+        byte[] value = db.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (value.length < 4 || ByteUtil.byteArrayToInt(Arrays.copyOf(value, 4)) != generation) {
+            return UNKNOWN;
+        }
+        return value.length == 4 ? null : Arrays.copyOfRange(value, 4, value.length);
+    }
+
+    private static byte[] tagged(int gen, byte[] value) {
+        return ByteUtil.merge(ByteUtil.intToBytes(gen), value);
+    }
+
+    private void startGeneration(final byte[] root) {
+        byte[] lastGeneration = generationDb.get(GENERATION_KEY);
+        final int gen = Math.max(generation, lastGeneration == null ? 0 : ByteUtil.byteArrayToInt(lastGeneration)) + 1;
+        generationDb.put(GENERATION_KEY, ByteUtil.intToBytes(gen));
+        generation = gen;
+        diskRoot = root;
+        diskReady = false;
+        generationFailed = false;
+        for (DiffLayer layer : layers.values()) {
+            db.delete(journalKey(layer.root));
+        }
+        layers.clear();
+        writeMeta();
+
+        logger.info("Generating the state snapshot for the state {}", Hex.toHexString(root));
+        Thread generator = new Thread(() -> generate(gen, root), "StateSnapshotGenerator");
+        generator.setDaemon(true);
+        generator.start();
+    }
+
+    private void generate(final int gen, byte[] root) {
+        long s = System.currentTimeMillis();
+        final long[] count = new long[1];
+        try {
+            scan(new TrieImpl(stateDS, root), (addrHash, account) -> {
+                checkGeneration(gen);
+                generationDb.put(accountKey(addrHash), tagged(gen, account));
+                count[0]++;
+                scanStorage(addrHash, new AccountState(account).getStateRoot(), (slotHash, value) -> {
+                    checkGeneration(gen);
+                    generationDb.put(storageKey(addrHash, slotHash), tagged(gen, value));
+                    count[0]++;
+                });
+            });
+        } catch (CancellationException e) {
+            return;
+        } catch (RuntimeException e) {
+            // the state is likely pruned meanwhile, generate for the next head
+            logger.warn("State snapshot generation failed, it will be restarted", e);
+            lock.writeLock().lock();
+            try {
+                if (generation == gen) {
+                    generationFailed = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (generation != gen) return;
+            diskReady = true;
+            DiffLayer head = layers.get(new ByteArrayWrapper(headRoot));
+            if (head != null) {
+                capLayers(head);
+            }
+            writeMeta();
+            logger.info("State snapshot generated in {} sec: {} entries", (System.currentTimeMillis() - s) / 1000, count[0]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkGeneration(int gen) {
+        if (closed || generation != gen) {
+            throw new CancellationException();
+        }
+    }
+
+    private void scanStorage(byte[] addrHash, byte[] storageRoot, Scanner scanner) {
+        if (equal(storageRoot, EMPTY_TRIE_HASH)) return;
+        Source<byte[], byte[]> storageDS = new SourceCodec.KeyOnly<>(stateDS, new NodeKeyCompositor(addrHash));
+        scan(new TrieImpl(storageDS, storageRoot), scanner);
+    }
+
+    private static void scan(TrieImpl trie, Scanner scanner) {
+        trie.scanTree(new TrieImpl.ScanAction() {
+            @Override
+            public void doOnNode(byte[] hash, TrieImpl.Node node) {
+            }
+
+            @Override
+            public void doOnValue(byte[] nodeHash, TrieImpl.Node node, byte[] key, byte[] value) {
+                scanner.accept(key, value);
+            }
+        });
+    }
+
+    private interface Scanner {
+        void accept(byte[] key, byte[] value);
+    }
+
+    private void loadJournal(RLPList roots) {
+        for (RLPElement root : roots) {
+            byte[] encoded = db.get(journalKey(root.getRLPData()));
+            if (encoded != null) {
+                DiffLayer layer = DiffLayer.decode(root.getRLPData(), encoded);
+                layers.put(new ByteArrayWrapper(layer.root), layer);
+            }
+        }
+
+        List<DiffLayer> broken = new ArrayList<>();
+        for (DiffLayer layer : layers.values()) {
+            layer.parent = layers.get(new ByteArrayWrapper(layer.parentRoot));
+            if (layer.parent == null && !equal(layer.parentRoot, diskRoot)) {
+                broken.add(layer);
+            }
+        }
+        removeLayers(broken);
+    }
+
+    private void writeMeta() {
+        byte[][] roots = new byte[layers.size()][];
+        int i = 0;
+        for (ByteArrayWrapper root : layers.keySet()) {
+            roots[i++] = RLP.encodeElement(root.getData());
+        }
+        db.put(META_KEY, RLP.encodeList(RLP.encodeInt(generation), RLP.encodeElement(diskRoot),
+                RLP.encodeInt(diskReady ? 1 : 0), RLP.encodeList(roots)));
+    }
+
+    private static byte[] accountKey(byte[] addrHash) {
+        return prefixed(ACCOUNT_PREFIX, addrHash, EMPTY_BYTE_ARRAY);
+    }
+
+    private static byte[] storageKey(byte[] addrHash, byte[] slotHash) {
+        return prefixed(STORAGE_PREFIX, addrHash, slotHash);
+    }
+
+    private static byte[] prefixed(byte prefix, byte[] addrHash, byte[] slotHash) {
+        byte[] ret = new byte[1 + addrHash.length + slotHash.length];
+        ret[0] = prefix;
+        System.arraycopy(addrHash, 0, ret, 1, addrHash.length);
+        System.arraycopy(slotHash, 0, ret, 1 + addrHash.length, slotHash.length);
+        return ret;
+    }
+
+    private static byte[] journalKey(byte[] root) {
+        byte[] ret = new byte[1 + root.length];
+        ret[0] = JOURNAL_PREFIX;
+        System.arraycopy(root, 0, ret, 1, root.length);
+        return ret;
+    }
+
+    private static byte[] normalize(byte[] root) {
+        return root == null ? EMPTY_TRIE_HASH : root;
+    }
+
+    private static boolean equal(byte[] a, byte[] b) {
+        return a != null && b != null && FastByteComparisons.equal(a, b);
+    }
+
+    /**
+     * Changes made to the state by a repository, collected until it is committed
+     */
+    public static class Diff {
+        // hashed address => account RLP, null if deleted
+        final Map<ByteArrayWrapper, byte[]> accounts = new HashMap<>();
+        final Map<ByteArrayWrapper, StorageDiff> storage = new HashMap<>();
+
+        public boolean hasAccount(byte[] addrHash) {
+            return accounts.containsKey(new ByteArrayWrapper(addrHash));
+        }
+
+        public byte[] getAccount(byte[] addrHash) {
+            return accounts.get(new ByteArrayWrapper(addrHash));
+        }
+
+        public void putAccount(byte[] addrHash, byte[] account) {
+            accounts.put(new ByteArrayWrapper(addrHash), account);
+        }
+
+        public void deleteAccount(byte[] addrHash) {
+            accounts.put(new ByteArrayWrapper(addrHash), null);
+            getStorage(addrHash).wipe();
+        }
+
+        public StorageDiff getStorage(byte[] addrHash) {
+            return storage.computeIfAbsent(new ByteArrayWrapper(addrHash), k -> new StorageDiff());
+        }
+
+        public StorageDiff findStorage(byte[] addrHash) {
+            return storage.get(new ByteArrayWrapper(addrHash));
+        }
+
+        public boolean isEmpty() {
+            return accounts.isEmpty() && storage.isEmpty();
+        }
+    }
+
+    /**
+     * Changes of the contract storage
+     */
+    public static class StorageDiff {
+        // hashed storage key => value RLP, null if deleted
+        final Map<ByteArrayWrapper, byte[]> slots = new HashMap<>();
+        // storage root the changes were made on, if it isn't the root of the previous state
+        byte[] base;
+        // the storage was cleared before the changes
+        boolean wiped;
+        // the storage was replaced with one which the snapshot doesn't know
+        boolean unknown;
+        // storage root the changes lead to, not journaled
+        byte[] root;
+
+        public boolean hasSlot(byte[] slotHash) {
+            return slots.containsKey(new ByteArrayWrapper(slotHash));
+        }
+
+        public byte[] getSlot(byte[] slotHash) {
+            return slots.get(new ByteArrayWrapper(slotHash));
+        }
+
+        public void putSlot(byte[] slotHash, byte[] value) {
+            slots.put(new ByteArrayWrapper(slotHash), value);
+        }
+
+        public byte[] getBase() {
+            return base;
+        }
+
+        public void setBase(byte[] base) {
+            this.base = base;
+        }
+
+        public byte[] getRoot() {
+            return root;
+        }
+
+        public void setRoot(byte[] root) {
+            this.root = root;
+        }
+
+        public boolean isWiped() {
+            return wiped;
+        }
+
+        public boolean isUnknown() {
+            return unknown;
+        }
+
+        public void wipe() {
+            slots.clear();
+            wiped = true;
+            unknown = false;
+        }
+
+        public void setUnknown() {
+            slots.clear();
+            unknown = true;
+        }
+    }
+
+    private static class DiffLayer {
+        final byte[] root;
+        final byte[] parentRoot;
+        // null if the layer is on top of the disk layer
+        DiffLayer parent;
+        final Diff diff;
+
+        DiffLayer(byte[] root, byte[] parentRoot, DiffLayer parent, Diff diff) {
+            this.root = root;
+            this.parentRoot = parentRoot;
+            this.parent = parent;
+            this.diff = diff;
+        }
+
+        byte[] encode() {
+            List<byte[]> accounts = new ArrayList<>();
+            for (Map.Entry<ByteArrayWrapper, byte[]> entry : diff.accounts.entrySet()) {
+                accounts.add(RLP.encodeList(RLP.encodeElement(entry.getKey().getData()), RLP.encodeElement(entry.getValue())));
+            }
+            List<byte[]> storage = new ArrayList<>();
+            for (Map.Entry<ByteArrayWrapper, StorageDiff> entry : diff.storage.entrySet()) {
+                StorageDiff storageDiff = entry.getValue();
+                List<byte[]> slots = new ArrayList<>();
+                for (Map.Entry<ByteArrayWrapper, byte[]> slot : storageDiff.slots.entrySet()) {
+                    slots.add(RLP.encodeList(RLP.encodeElement(slot.getKey().getData()), RLP.encodeElement(slot.getValue())));
+                }
+                int flags = (storageDiff.wiped ? WIPED : 0) | (storageDiff.unknown ? UNKNOWN_STORAGE : 0);
+                storage.add(RLP.encodeList(RLP.encodeElement(entry.getKey().getData()), RLP.encodeInt(flags),
+                        RLP.encodeList(slots.toArray(new byte[0][]))));
+            }
+            return RLP.encodeList(RLP.encodeElement(parentRoot), RLP.encodeList(accounts.toArray(new byte[0][])),
+                    RLP.encodeList(storage.toArray(new byte[0][])));
+        }
+
+        static DiffLayer decode(byte[] root, byte[] encoded) {
+            RLPList list = (RLPList) RLP.decode2(encoded).get(0);
+            Diff diff = new Diff();
+            for (RLPElement account : (RLPList) list.get(1)) {
+                RLPList pair = (RLPList) account;
+                diff.putAccount(pair.get(0).getRLPData(), pair.get(1).getRLPData());
+            }
+            for (RLPElement element : (RLPList) list.get(2)) {
+                RLPList storage = (RLPList) element;
+                StorageDiff storageDiff = diff.getStorage(storage.get(0).getRLPData());
+                int flags = ByteUtil.byteArrayToInt(storage.get(1).getRLPData());
+                storageDiff.wiped = (flags & WIPED) != 0;
+                storageDiff.unknown = (flags & UNKNOWN_STORAGE) != 0;
+                for (RLPElement slot : (RLPList) storage.get(2)) {
+                    RLPList pair = (RLPList) slot;
+                    storageDiff.putSlot(pair.get(0).getRLPData(), pair.get(1).getRLPData());
+                }
+            }
+            return new DiffLayer(root, list.get(0).getRLPData(), null, diff);
+        }
+    }
+}
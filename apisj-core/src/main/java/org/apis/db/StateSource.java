@@ -37,13 +37,20 @@ public class StateSource extends SourceChainBox<byte[], byte[], byte[], byte[]>
     JournalSource<byte[]> journalSource;
     NoDeleteSource<byte[], byte[]> noDeleteSource;
 
-    ReadCache<byte[], byte[]> readCache;
+    AbstractCachedSource<byte[], byte[]> readCache;
     AbstractCachedSource<byte[], byte[]> writeCache;
 
     public StateSource(Source<byte[], byte[]> src, boolean pruningEnabled) {
-        super(src);
+        this(new ReadCache.BytesKey<>(src).withMaxCapacity(16 * 1024 * 1024 / 512), pruningEnabled); // 512 - approx size of a node
+    }
+
+    /**
+     * @param readCache the read cache on top of the state DB source
+     */
+    public StateSource(AbstractCachedSource<byte[], byte[]> readCache, boolean pruningEnabled) {
+        super(readCache.getSource());
         INST = this;
-        add(readCache = new ReadCache.BytesKey<>(src).withMaxCapacity(16 * 1024 * 1024 / 512)); // 512 - approx size of a node
+        add(this.readCache = readCache);
         readCache.setFlushSource(true);
         writeCache = new AsyncWriteCache<byte[], byte[]>(readCache) {
             @Override
@@ -66,8 +73,10 @@ public class StateSource extends SourceChainBox<byte[], byte[], byte[], byte[]>
 
     @Autowired
     public void setConfig(SystemProperties config) {
-        int size = config.getConfig().getInt("cache.stateCacheSize");
-        readCache.withMaxCapacity(size * 1024 * 1024 / 512); // 512 - approx size of a node
+        if (readCache instanceof ReadCache) {
+            int size = config.getConfig().getInt("cache.stateCacheSize");
+            ((ReadCache<byte[], byte[]>) readCache).withConcurrentCache(size * 1024 * 1024 / 512); // 512 - approx size of a node
+        }
     }
 
     @Autowired
@@ -92,7 +101,10 @@ public class StateSource extends SourceChainBox<byte[], byte[], byte[], byte[]>
         return writeCache;
     }
 
+    /**
+     * @return the read cache, or null if the off-heap cache is used
+     */
     public ReadCache<byte[], byte[]> getReadCache() {
-        return readCache;
+        return readCache instanceof ReadCache ? (ReadCache<byte[], byte[]>) readCache : null;
     }
 }
\ No newline at end of file
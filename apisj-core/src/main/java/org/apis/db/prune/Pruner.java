@@ -59,9 +59,9 @@ public class Pruner {
 
     Source<byte[], JournalSource.Update> journal;
     Source<byte[], ?> storage;
-    QuotientFilter filter;
-    QuotientFilter distantFilter;
-    boolean ready = false;
+    volatile QuotientFilter filter;
+    volatile QuotientFilter distantFilter;
+    volatile boolean ready = false;
 
     private static class Stats {
         int collisions = 0;
@@ -156,6 +156,16 @@ public class Pruner {
             update.getInsertedKeys().forEach(filter::insert);
     }
 
+    /**
+     * Checks whether the node deleted by the pruner is still not referenced
+     * by the blocks fed since, used when deletions are applied to the storage later
+     */
+    public boolean isDeletable(byte[] key) {
+        if (!ready) return false;
+        QuotientFilter distantFilter = this.distantFilter;
+        return !filter.maybeContains(key) && (distantFilter == null || !distantFilter.maybeContains(key));
+    }
+
     public void prune(Segment segment) {
         if (!ready) return;
         assert segment.isComplete();
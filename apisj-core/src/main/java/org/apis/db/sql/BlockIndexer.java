@@ -0,0 +1,430 @@
+package org.apis.db.sql;
+
+import org.apis.core.Block;
+import org.apis.core.BlockSummary;
+import org.apis.core.Transaction;
+import org.apis.core.TransactionInfo;
+import org.apis.core.TransactionReceipt;
+import org.apis.facade.Apis;
+import org.apis.facade.Blockchain;
+import org.apis.listener.EthereumListenerAdapter;
+import org.apis.util.ConsoleUtil;
+import org.apis.util.FastByteComparisons;
+import org.apis.util.TimeUtils;
+import org.apis.vm.DataWord;
+import org.apis.vm.LogInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the `blocks`, `transactions` and `events` tables of the SQLite database in line with the main chain.
+ *
+ * While following the chain, blocks and their receipts are taken from onBlock(BlockSummary),
+ * so nothing is read back from the block and transaction stores.
+ * The stores are only read to catch up after a restart (or after summaries were dropped)
+ * and to pick up the blocks of a new branch after a rebranch.
+ * On a rebranch only the rolled back range above the common ancestor is deleted.
+ *
+ * All writes are done on a single thread through one set of prepared statements,
+ * on a connection of its own so that the indexer's transactions never include
+ * the wallet writes made through {@link DBManager} in the meantime.
+ */
+public class BlockIndexer extends EthereumListenerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger("SQLiteDBManager");
+
+    private static final int QUEUE_SIZE = 1000;
+    private static final int CATCH_UP_BATCH = 1000;
+
+    private final Apis apis;
+    private final DBManager dbManager;
+    private Connection connection;
+
+    private final BlockingQueue<BlockSummary> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private Thread indexerThread;
+    private volatile boolean running = false;
+    private boolean listening = false;
+
+    private PreparedStatement insertBlock;
+    private PreparedStatement insertTx;
+    private PreparedStatement insertEvent;
+    private PreparedStatement updateSync;
+    private PreparedStatement selectIndexed;
+    private PreparedStatement deleteEventsAbove;
+    private PreparedStatement deleteTxsAbove;
+    private PreparedStatement deleteBlocksAbove;
+
+    // last indexed block of the main chain
+    private volatile long indexedNumber = -1;
+    private byte[] indexedHash;
+    private BigInteger indexedRewardPoint = BigInteger.ZERO;
+
+    private volatile long lastKnownNumber = 0;
+
+    BlockIndexer(Apis apis, DBManager dbManager) {
+        this.apis = apis;
+        this.dbManager = dbManager;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // the previous run closes its connection first
+        if (indexerThread != null) {
+            try {
+                indexerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        running = true;
+        if (!listening) {
+            apis.addListener(this);
+            listening = true;
+        }
+
+        indexerThread = new Thread(this::run, "SqlBlockIndexer");
+        indexerThread.setDaemon(true);
+        indexerThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        indexerThread.interrupt();
+    }
+
+    /**
+     * Stops indexing and stops listening to the blocks
+     */
+    public synchronized void close() {
+        stop();
+        if (listening) {
+            apis.removeListener(this);
+            listening = false;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of the last block of the main chain stored in the database
+     */
+    public long getIndexedBlockNumber() {
+        return indexedNumber;
+    }
+
+    /**
+     * @return how many blocks the database is behind the best known block
+     */
+    public long getLag() {
+        return Math.max(0, lastKnownNumber - indexedNumber);
+    }
+
+    @Override
+    public void onBlock(BlockSummary blockSummary) {
+        if (!running) {
+            return;
+        }
+        lastKnownNumber = Math.max(lastKnownNumber, blockSummary.getBlock().getNumber());
+
+        // Missed summaries are picked up from the chain once the queue is drained
+        if (!queue.offer(blockSummary)) {
+            logger.debug("Indexer queue is full, block {} will be read from the chain", blockSummary.getBlock().getNumber());
+        }
+    }
+
+    private void run() {
+        try {
+            connection = dbManager.openConnection();
+            prepareStatements();
+            initIndexedBlock();
+
+            while (running && !Thread.currentThread().isInterrupted()) {
+                BlockSummary summary = queue.poll(1, TimeUnit.SECONDS);
+                if (summary == null) {
+                    lastKnownNumber = Math.max(lastKnownNumber, apis.getBlockchain().getBestBlock().getNumber());
+                    if (lastKnownNumber > indexedNumber) {
+                        catchUp(lastKnownNumber);
+                    }
+                    continue;
+                }
+
+                List<BlockSummary> summaries = new ArrayList<>();
+                summaries.add(summary);
+                queue.drainTo(summaries);
+
+                long started = TimeUtils.getRealTimestamp();
+                for (BlockSummary s : summaries) {
+                    index(s);
+                }
+                commit();
+
+                logger.debug("Indexed {} block(s) up to {} in {} ms, lag: {}",
+                        summaries.size(), indexedNumber, TimeUtils.getRealTimestamp() - started, getLag());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("SQL block indexer stopped", e);
+            rollback();
+        } finally {
+            running = false;
+            closeStatements();
+            closeConnection();
+        }
+    }
+
+    private void prepareStatements() throws SQLException {
+        insertBlock         = connection.prepareStatement("INSERT OR IGNORE INTO blocks (hash, blockNumber) VALUES (?, ?)");
+        insertTx            = connection.prepareStatement("INSERT OR REPLACE INTO transactions (txHash, receiver, sender, blockUid) VALUES (?, ?, ?, (SELECT uid FROM blocks WHERE hash = ?))");
+        insertEvent         = connection.prepareStatement("INSERT OR REPLACE INTO events (tx_hash, address, topic) VALUES (?, ?, ?)");
+        updateSync          = connection.prepareStatement("UPDATE `db_info` SET `last_synced_block` = ?");
+        selectIndexed       = connection.prepareStatement("SELECT COUNT(*) FROM blocks WHERE blockNumber = ? AND hash = ?");
+        deleteEventsAbove   = connection.prepareStatement("DELETE FROM events WHERE tx_hash IN (SELECT txhash FROM transactions WHERE blockUid IN (SELECT uid FROM blocks WHERE blockNumber > ?))");
+        deleteTxsAbove      = connection.prepareStatement("DELETE FROM transactions WHERE blockUid IN (SELECT uid FROM blocks WHERE blockNumber > ?)");
+        deleteBlocksAbove   = connection.prepareStatement("DELETE FROM blocks WHERE blockNumber > ?");
+    }
+
+    private void closeStatements() {
+        for (PreparedStatement statement : new PreparedStatement[] {insertBlock, insertTx, insertEvent, updateSync,
+                selectIndexed, deleteEventsAbove, deleteTxsAbove, deleteBlocksAbove}) {
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                logger.debug("Failed to close statement", e);
+            }
+        }
+    }
+
+    private void closeConnection() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.debug("Failed to close connection", e);
+        }
+        connection = null;
+    }
+
+    /**
+     * Finds the last indexed block that is still on the main chain
+     * and drops whatever was indexed above it while the node was down.
+     */
+    private void initIndexedBlock() throws SQLException {
+        Blockchain blockchain = apis.getBlockchain();
+        long number = Math.min(dbManager.selectDBLastSyncedBlock(), blockchain.getBestBlock().getNumber());
+
+        Block block = null;
+        for (; number >= 0; number--) {
+            block = blockchain.getBlockByNumber(number);
+            if (block != null && isIndexed(block)) {
+                break;
+            }
+        }
+
+        beginTransaction();
+        deleteAbove(number);
+        if (number >= 0) {
+            setIndexed(block);
+        }
+        commit();
+
+        lastKnownNumber = blockchain.getBestBlock().getNumber();
+        logger.info("SQL block indexer starts from block {}, lag: {}", indexedNumber, getLag());
+    }
+
+    /**
+     * Indexes blocks of the main chain from the store up to the given number
+     */
+    private void catchUp(long toNumber) throws SQLException {
+        Blockchain blockchain = apis.getBlockchain();
+
+        while (indexedNumber < toNumber && running) {
+            long started = TimeUtils.getRealTimestamp();
+            long batchEnd = Math.min(toNumber, indexedNumber + CATCH_UP_BATCH);
+
+            for (long number = indexedNumber + 1; number <= batchEnd; number++) {
+                Block block = blockchain.getBlockByNumber(number);
+                if (block == null) {
+                    commit();
+                    return;
+                }
+                if (indexedHash != null && !FastByteComparisons.equal(block.getParentHash(), indexedHash)) {
+                    // the chain has switched under us, continue from the common ancestor
+                    rebranch(block, getStoredReceipts(block));
+                } else {
+                    insert(block, getStoredReceipts(block));
+                }
+            }
+            commit();
+
+            ConsoleUtil.printlnYellow("The last block inserted into the SQL database : %d (%d ms)", indexedNumber, (TimeUtils.getRealTimestamp() - started));
+        }
+    }
+
+    private void index(BlockSummary summary) throws SQLException {
+        Block block = summary.getBlock();
+
+        if (block.getNumber() > indexedNumber + 1) {
+            catchUp(block.getNumber() - 1);
+        }
+
+        if (indexedHash == null || FastByteComparisons.equal(block.getParentHash(), indexedHash)) {
+            insert(block, summary.getReceipts());
+        } else if (block.getCumulativeRewardPoint().compareTo(indexedRewardPoint) > 0) {
+            rebranch(block, summary.getReceipts());
+        } else {
+            logger.debug("Skipping block {} not on the main chain", block.getShortDescr());
+        }
+    }
+
+    /**
+     * Deletes the blocks above the common ancestor with the new branch and
+     * indexes the new branch from the store up to the given block
+     */
+    private void rebranch(Block newBest, List<TransactionReceipt> newBestReceipts) throws SQLException {
+        Blockchain blockchain = apis.getBlockchain();
+
+        List<Block> branch = new ArrayList<>();
+        Block ancestor = blockchain.getBlockByHash(newBest.getParentHash());
+        while (ancestor != null && ancestor.getNumber() > 0 && !isIndexed(ancestor)) {
+            branch.add(ancestor);
+            ancestor = blockchain.getBlockByHash(ancestor.getParentHash());
+        }
+        if (ancestor == null) {
+            logger.warn("Common ancestor of block {} is not found, skipping", newBest.getShortDescr());
+            return;
+        }
+
+        logger.info("Rebranching SQL database: {} ~> {}, rolling back {} block(s)",
+                indexedNumber, newBest.getNumber(), indexedNumber - ancestor.getNumber());
+
+        deleteAbove(ancestor.getNumber());
+        setIndexed(ancestor);
+
+        Collections.reverse(branch);
+        for (Block block : branch) {
+            insert(block, getStoredReceipts(block));
+        }
+        insert(newBest, newBestReceipts);
+    }
+
+    private List<TransactionReceipt> getStoredReceipts(Block block) {
+        List<TransactionReceipt> receipts = new ArrayList<>();
+        for (Transaction tx : block.getTransactionsList()) {
+            TransactionInfo info = apis.getBlockchain().getTransactionStore().get(tx.getHash(), block.getHash());
+            receipts.add(info == null ? null : info.getReceipt());
+        }
+        return receipts;
+    }
+
+    private void insert(Block block, List<TransactionReceipt> receipts) throws SQLException {
+        beginTransaction();
+
+        insertBlock.setBytes(1, block.getHash());
+        insertBlock.setLong(2, block.getNumber());
+        insertBlock.executeUpdate();
+
+        List<Transaction> txs = block.getTransactionsList();
+        for (int i = 0; i < txs.size(); i++) {
+            Transaction tx = txs.get(i);
+            insertTx.setBytes(1, tx.getHash());            // txHash
+            insertTx.setBytes(2, tx.getReceiveAddress());  // receiver
+            insertTx.setBytes(3, tx.getSender());          // sender
+            insertTx.setBytes(4, block.getHash());
+            insertTx.addBatch();
+
+            TransactionReceipt receipt = i < receipts.size() ? receipts.get(i) : null;
+            if (receipt == null) {
+                continue;
+            }
+            for (LogInfo logInfo : receipt.getLogInfoList()) {
+                for (DataWord topic : logInfo.getTopics()) {
+                    insertEvent.setBytes(1, tx.getHash());
+                    insertEvent.setBytes(2, logInfo.getAddress());
+                    insertEvent.setBytes(3, topic.getData());
+                    insertEvent.addBatch();
+                }
+            }
+        }
+        insertTx.executeBatch();
+        insertEvent.executeBatch();
+
+        updateSync.setLong(1, block.getNumber());
+        updateSync.executeUpdate();
+
+        setIndexed(block);
+    }
+
+    private void deleteAbove(long number) throws SQLException {
+        deleteEventsAbove.setLong(1, number);
+        deleteEventsAbove.executeUpdate();
+        deleteTxsAbove.setLong(1, number);
+        deleteTxsAbove.executeUpdate();
+        deleteBlocksAbove.setLong(1, number);
+        deleteBlocksAbove.executeUpdate();
+
+        updateSync.setLong(1, Math.max(number, 0));
+        updateSync.executeUpdate();
+    }
+
+    private boolean isIndexed(Block block) throws SQLException {
+        selectIndexed.setLong(1, block.getNumber());
+        selectIndexed.setBytes(2, block.getHash());
+        try (ResultSet result = selectIndexed.executeQuery()) {
+            return result.next() && result.getLong(1) > 0;
+        }
+    }
+
+    private void setIndexed(Block block) {
+        indexedNumber = block.getNumber();
+        indexedHash = block.getHash();
+        indexedRewardPoint = block.getCumulativeRewardPoint();
+    }
+
+    private void beginTransaction() throws SQLException {
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+    }
+
+    private void commit() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private void rollback() {
+        try {
+            if (connection != null && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to rollback", e);
+        }
+    }
+}
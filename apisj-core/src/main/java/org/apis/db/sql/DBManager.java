@@ -1,15 +1,11 @@
 package org.apis.db.sql;
 
 import org.apis.config.SystemProperties;
-import org.apis.core.Block;
 import org.apis.core.Transaction;
 import org.apis.core.TransactionInfo;
 import org.apis.core.TransactionReceipt;
-import org.apis.facade.Apis;
 import org.apis.util.ByteUtil;
 import org.apis.util.TimeUtils;
-import org.apis.vm.DataWord;
-import org.apis.vm.LogInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.DecoderException;
@@ -35,6 +31,8 @@ public class DBManager {
     
     private Logger logger = LoggerFactory.getLogger("SQLiteDBManager");
     private static int DB_VERSION = 2;
+    // ms to wait for the write lock held by the other connection
+    private static final int BUSY_TIMEOUT = 10000;
     private Connection connection;
     private static final String DB_URL = "jdbc:sqlite:" + SystemProperties.getDefault().databaseDir() + "/storage.db";
     private boolean isOpen = false;
@@ -56,6 +54,7 @@ public class DBManager {
                 logger.debug("Driver version: " + dm.getDriverVersion());
                 logger.debug("Product name: " + dm.getDatabaseProductName());
                 logger.debug("Product version: " + dm.getDatabaseProductVersion());
+                enableWriteAheadLog(connection);
                 createOrUpdate(connection);
             }
         } catch (ClassNotFoundException | SQLException e) {
@@ -63,6 +62,33 @@ public class DBManager {
         }
     }
 
+    /**
+     * The block indexer keeps writing on its own connection while the wallet and RPC use this one,
+     * WAL lets the readers go on without waiting for the writer.
+     * A writer waits for the other connection's write lock instead of failing with SQLITE_BUSY.
+     */
+    private void enableWriteAheadLog(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT);
+        }
+    }
+
+    /**
+     * Opens a separate connection to the database, so that its transactions are not shared
+     * with the statements executed through this manager. The caller closes it.
+     * 별도의 연결을 연다. 이 매니저의 연결과 트랜잭션을 공유하지 않는다
+     */
+    Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(DB_URL);
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT);
+        }
+        return conn;
+    }
+
     private void createOrUpdate(Connection conn) throws SQLException {
         long currentVersion = selectDBVersion();
 
@@ -1180,193 +1206,4 @@ public class DBManager {
             close(result);
         }
     }
-
-
-
-    private boolean isExistBlock(Block block) {
-        byte[] blockHash = block.getHash();
-        PreparedStatement state = null;
-        ResultSet result = null;
-
-        // 같은 번호인데, 해시가 다른 블록을 조사한다.
-        // 그 경우는 re-branch 된 것일 수 있으므로 기존 블록 정보와 트랜잭션 정보를 삭제한다.
-        try {
-            state = this.connection.prepareStatement("SELECT * FROM blocks WHERE blockNumber = ? AND hash != ?");
-            state.setLong(1, block.getNumber());
-            state.setBytes(2, block.getHash());
-            result = state.executeQuery();
-
-            while(result.next()) {
-                deleteBlock(result.getBytes("hash"));
-                deleteTxInBlock(result.getLong("uid"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(state);
-            close(result);
-        }
-
-
-        try {
-            state = this.connection.prepareStatement("SELECT * FROM blocks WHERE hash = ?");
-            state.setBytes(1, blockHash);
-            result = state.executeQuery();
-
-            if(result.next()) {
-                return true;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(state);
-            close(result);
-        }
-
-        return false;
-    }
-
-
-    synchronized void insertBlocks(List<Block> blocks, Apis apis) {
-        try {
-            connection.setAutoCommit(false);
-
-            PreparedStatement insertBlock   = connection.prepareStatement("INSERT OR IGNORE INTO blocks (hash, blockNumber) VALUES (?, ?)");
-            PreparedStatement insertTx      = connection.prepareStatement("INSERT OR REPLACE INTO transactions (txHash, receiver, sender, blockUid) VALUES (?, ?, ?, (SELECT uid FROM blocks WHERE hash = ?))");
-            PreparedStatement insertEvent   = connection.prepareStatement("INSERT OR REPLACE INTO events (tx_hash, address, topic) VALUES (?, ?, ?)");
-            PreparedStatement updateSync    = connection.prepareStatement("UPDATE `db_info` SET `last_synced_block` = ?");
-
-            // block이 존재하면 패스
-            try {
-                long lastBlockNumber = 0;
-                for(Block block : blocks) {
-                    // Block Insert
-                    insertBlock.setBytes(1, block.getHash());
-                    insertBlock.setLong(2, block.getNumber());
-                    insertBlock.addBatch();
-                }
-                insertBlock.executeBatch();
-
-                for (Block block : blocks) {
-                    // Transaction Insert
-                    for (Transaction tx : block.getTransactionsList()) {
-                        insertTx.setBytes(1, tx.getHash());            // txHash
-                        insertTx.setBytes(2, tx.getReceiveAddress());  // receiver
-                        insertTx.setBytes(3, tx.getSender());          // sender
-                        insertTx.setBytes(4, block.getHash());
-                        insertTx.addBatch();
-
-                        TransactionReceipt txReceipt = apis.getTransactionInfo(tx.getHash()).getReceipt();
-                        for(LogInfo logInfo : txReceipt.getLogInfoList()) {
-                            for(DataWord topic : logInfo.getTopics()) {
-                                byte[] topicBytes = topic.getData();
-
-                                insertEvent.setBytes(1, tx.getHash());
-                                insertEvent.setBytes(2, logInfo.getAddress());
-                                insertEvent.setBytes(3, topicBytes);
-                                insertEvent.addBatch();
-                            }
-                        }
-                    }
-
-                    lastBlockNumber = block.getNumber();
-                }
-                insertTx.executeBatch();
-                insertEvent.executeBatch();
-
-                // Sync status update
-                updateSync.setLong(1, lastBlockNumber);
-                updateSync.execute();
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                connection.rollback();
-            } finally {
-                connection.commit();
-                connection.setAutoCommit(true);
-
-                close(insertBlock);
-                close(insertTx);
-                close(insertEvent);
-                close(updateSync);
-            }
-
-        } catch(SQLException e){
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * onBlock 이벤트로 전달받은 블록들을 INSERT 하다보면
-     * 더 우수한 체인의 블록을 전달받아서 같은 번호의 다른 블록이 저장될 수 있다.
-     * 한 번호에 다수의 블록이 저장된 경우, 최고가 아닌 블록 정보는 삭제하도록 한다.
-     */
-    void trimBlocks(Apis apis) {
-        PreparedStatement selectDuplicatedBlocks = null;
-        PreparedStatement selectNotBestBlocks = null;
-        ResultSet result = null;
-
-        try {
-            selectDuplicatedBlocks = connection.prepareStatement("SELECT blockNumber, COUNT(blockNumber) AS count FROM blocks where blockNumber > ? GROUP BY blockNumber HAVING COUNT(blockNumber) > 1");
-            selectNotBestBlocks = connection.prepareStatement("SELECT uid, blockNumber, hash FROM blocks WHERE blockNumber = ? AND hash != ?");
-
-            long startCondition = Math.max(apis.getBlockchain().getBestBlock().getNumber() - 100, 0);
-            selectDuplicatedBlocks.setLong(1, startCondition);
-
-            result = selectDuplicatedBlocks.executeQuery();
-
-            while(result.next()) {
-                long blockNumber = result.getLong(1);
-                Block bestBlock = apis.getBlockchain().getBlockByNumber(blockNumber);
-
-                selectNotBestBlocks.setLong(1, bestBlock.getNumber());
-                selectNotBestBlocks.setBytes(2, bestBlock.getHash());
-                ResultSet notBestResult = selectNotBestBlocks.executeQuery();
-
-                while(notBestResult.next()) {
-                    long blockUid = notBestResult.getLong(1);
-                    byte[] blockHash = notBestResult.getBytes(3);
-
-                    deleteTxInBlock(blockUid);
-                    deleteBlock(blockHash);
-                }
-
-                close(notBestResult);
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(selectDuplicatedBlocks);
-            close(selectNotBestBlocks);
-            close(result);
-        }
-    }
-
-    private void deleteBlock(byte[] hash) {
-        PreparedStatement state = null;
-        try {
-            state = this.connection.prepareStatement("DELETE FROM blocks WHERE hash = ?");
-            state.setBytes(1, hash);
-            state.execute();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(state);
-        }
-    }
-
-    private void deleteTxInBlock(long blockUid) {
-        PreparedStatement state = null;
-        try {
-            state = this.connection.prepareStatement("DELETE FROM transactions WHERE blockUid = ?");
-            state.setLong(1, blockUid);
-            state.execute();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(state);
-        }
-
-    }
 }
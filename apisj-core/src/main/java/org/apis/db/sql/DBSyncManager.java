@@ -1,12 +1,8 @@
 package org.apis.db.sql;
 
-import org.apis.core.Block;
 import org.apis.facade.Apis;
-import org.apis.util.ConsoleUtil;
 import org.apis.util.FastByteComparisons;
-import org.apis.util.TimeUtils;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,84 +19,62 @@ public class DBSyncManager {
 
     private Apis apis;
 
-    private static boolean isSyncing = false;
-
     private DBManager dbManager;
 
+    private BlockIndexer indexer;
+
     private DBSyncManager(Apis apis) {
         this.apis = apis;
         this.dbManager = DBManager.getInstance();
     }
 
-    public void setApis(Apis apis) {
-        if(apis != null) {
+    public synchronized void setApis(Apis apis) {
+        if(apis != null && apis != this.apis) {
             this.apis = apis;
+
+            // the indexer listens to the previous instance, it is replaced by one following the new instance
+            if(indexer != null) {
+                boolean running = indexer.isRunning();
+                indexer.close();
+                indexer = new BlockIndexer(apis, dbManager);
+                if(running) {
+                    indexer.start();
+                }
+            }
         }
     }
 
 
-    // UI가 멈추는 현상을 방지하기 위해 스레드를 추가했음
-    public void syncThreadStart() {
-        if(isSyncing) {
+    /**
+     * Starts the block indexer if it is not running yet.
+     * It catches up from the last synced block on its own thread and then follows the imported blocks.
+     */
+    public synchronized void syncThreadStart() {
+        if(indexer != null && indexer.isRunning()) {
             return;
         }
 
-        new Thread(() -> {
-            if(!isSyncing) {
-                startSync();
-            }
-        }).start();
-    }
-
-    private synchronized void  startSync() {
-        if(isSyncing) {
-            return;
+        if(indexer == null) {
+            indexer = new BlockIndexer(apis, dbManager);
         }
-        isSyncing = true;
-
-        long currentBlockNumber = dbManager.selectDBLastSyncedBlock();
-        List<Block> blocks = new ArrayList<>();
-
-
-        while(isSyncing) {
-            long tt = TimeUtils.getRealTimestamp();
-
-            if(currentBlockNumber <= apis.getBlockchain().getBestBlock().getNumber()) {
-                Block currentBlock = apis.getBlockchain().getBlockByNumber(currentBlockNumber);
-
-                if (currentBlock != null) {
-                    blocks.add(currentBlock);
-
-                    if (blocks.size() < 1000) {
-                        currentBlockNumber += 1;
-                        continue;
-                    }
-                }
-            }
-
-            if(blocks.size() == 0) {
-                break;
-            }
-
-            dbManager.insertBlocks(blocks, apis);
-
-            // 중복된 블록을 정리한다.
-            dbManager.trimBlocks(apis);
-
-            ConsoleUtil.printlnYellow("The last block inserted into the SQL database : %d (%d ms)", blocks.get(blocks.size() - 1).getNumber(), (TimeUtils.getRealTimestamp() - tt));
+        indexer.start();
+    }
 
-            blocks.clear();
-            currentBlockNumber += 1;
+    public synchronized void stopSync() {
+        if(indexer != null) {
+            indexer.stop();
         }
+    }
 
-        isSyncing = false;
+    /**
+     * @return How many blocks the SQL database is behind the best known block
+     */
+    public long getSyncLag() {
+        return indexer == null ? 0 : indexer.getLag();
     }
 
-    public void stopSync() {
-        if(!isSyncing) {
-            return;
-        }
-        isSyncing = false;
+    public long getLastSyncedBlock() {
+        return indexer == null ? dbManager.selectDBLastSyncedBlock() : indexer.getIndexedBlockNumber();
     }
 
 
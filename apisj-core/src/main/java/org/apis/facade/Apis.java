@@ -29,6 +29,7 @@ import org.apis.core.*;
 import org.apis.listener.EthereumListener;
 import org.apis.manager.AdminInfo;
 import org.apis.manager.BlockLoader;
+import org.apis.manager.StateArchiveLoader;
 
 import java.math.BigInteger;
 import java.net.InetAddress;
@@ -196,6 +197,8 @@ public interface Apis {
 
     BlockLoader getBlockLoader();
 
+    StateArchiveLoader getStateArchiveLoader();
+
     /**
      * @return Whisper implementation if the protocol is available
      */
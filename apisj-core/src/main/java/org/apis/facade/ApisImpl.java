@@ -26,6 +26,7 @@ import org.apis.core.*;
 import org.apis.core.PendingState;
 import org.apis.core.Repository;
 import org.apis.crypto.ECKey;
+import org.apis.db.BloomBitsIndex;
 import org.apis.db.sql.DBManager;
 import org.apis.mine.BlockMiner;
 import org.apis.net.client.PeerClient;
@@ -44,6 +45,7 @@ import org.apis.listener.EthereumListenerAdapter;
 import org.apis.listener.GasPriceTracker;
 import org.apis.manager.AdminInfo;
 import org.apis.manager.BlockLoader;
+import org.apis.manager.StateArchiveLoader;
 import org.apis.manager.WorldManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,6 +88,9 @@ public class ApisImpl implements Apis, SmartLifecycle {
     @Autowired
     BlockLoader blockLoader;
 
+    @Autowired
+    StateArchiveLoader stateArchiveLoader;
+
     @Autowired
     ProgramInvokeFactory programInvokeFactory;
 
@@ -98,6 +103,9 @@ public class ApisImpl implements Apis, SmartLifecycle {
     @Autowired
     SyncManager syncManager;
 
+    @Autowired
+    BloomBitsIndex bloomBitsIndex;
+
     @Autowired
     CommonConfig commonConfig = CommonConfig.getDefault();
 
@@ -192,6 +200,8 @@ public class ApisImpl implements Apis, SmartLifecycle {
 
     public SyncManager getSyncManager() { return syncManager; }
 
+    public BloomBitsIndex getBloomBitsIndex() { return bloomBitsIndex; }
+
     @Override
     public PeerClient getDefaultPeer() {
         return worldManager.getActivePeer();
@@ -418,6 +428,11 @@ public class ApisImpl implements Apis, SmartLifecycle {
         return blockLoader;
     }
 
+    @Override
+    public StateArchiveLoader getStateArchiveLoader() {
+        return stateArchiveLoader;
+    }
+
     @Override
     public Whisper getWhisper() {
         return whisper;
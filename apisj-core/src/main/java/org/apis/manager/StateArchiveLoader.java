@@ -0,0 +1,111 @@
+package org.apis.manager;
+
+import org.apis.config.SystemProperties;
+import org.apis.core.Block;
+import org.apis.core.BlockchainImpl;
+import org.apis.db.DbFlushManager;
+import org.apis.db.StateArchive;
+import org.apis.db.StateSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exports the state of the best block to a {@link StateArchive} file, or restores it
+ * into an empty database, so that a new node doesn't need to sync the state from the network.
+ *
+ * Like the fast sync only the recent blocks are restored along with the state
+ */
+@Component
+public class StateArchiveLoader {
+    private static final Logger logger = LoggerFactory.getLogger("general");
+
+    // the same number of blocks as the fast sync downloads prior to the pivot block
+    private static final int RECENT_BLOCKS = 260;
+
+    @Autowired
+    SystemProperties config;
+
+    @Autowired
+    private BlockchainImpl blockchain;
+
+    @Autowired
+    private StateSource stateSource;
+
+    @Autowired
+    DbFlushManager dbFlushManager;
+
+    public void exportState() {
+        String file = config.stateArchiveExport();
+        try {
+            List<Block> blocks = new ArrayList<>();
+            Block block = blockchain.getBestBlock();
+            while (block != null && blocks.size() < RECENT_BLOCKS) {
+                blocks.add(block);
+                block = block.getNumber() == 0 ? null : blockchain.getBlockStore().getBlockByHash(block.getParentHash());
+            }
+            Collections.reverse(blocks);
+
+            System.out.println("Exporting the state of the block " + blockchain.getBestBlock().getShortDescr() + " to " + file);
+            long s = System.currentTimeMillis();
+            long entries;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024)) {
+                entries = new StateArchive(stateSource).export(out, blocks);
+            }
+            System.out.println("Exported " + entries + " entries in " + (System.currentTimeMillis() - s) / 1000 + " sec");
+        } catch (Exception e) {
+            logger.error("Failed to export the state", e);
+            System.exit(1);
+        }
+
+        System.out.println(" * Done * ");
+        System.exit(0);
+    }
+
+    public void importState() {
+        String file = config.stateArchiveImport();
+        if (blockchain.getBestBlock().getNumber() > 0) {
+            System.out.println("The database is not empty, the state can be imported into a new database only");
+            System.exit(1);
+        }
+
+        try {
+            System.out.println("Importing the state from " + file);
+            long s = System.currentTimeMillis();
+            List<Block> blocks;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1024 * 1024)) {
+                // the restored nodes are not journaled, they are not pruned
+                blocks = new StateArchive(stateSource.getNoJournalSource())
+                        .restore(in, Runtime.getRuntime().availableProcessors(), dbFlushManager::commit);
+            }
+
+            for (Block block : blocks) {
+                blockchain.getBlockStore().saveBlock(block, block.getCumulativeRewardPoint(), true);
+            }
+            Block pivot = blocks.get(blocks.size() - 1);
+            blockchain.setBestBlock(pivot);
+            blockchain.setTotalRewardPoint(pivot.getCumulativeRewardPoint());
+            dbFlushManager.flushSync();
+
+            System.out.println("Imported the state of the block " + pivot.getShortDescr() + " in " +
+                    (System.currentTimeMillis() - s) / 1000 + " sec");
+        } catch (Exception e) {
+            logger.error("Failed to import the state", e);
+            System.exit(1);
+        }
+
+        System.out.println(" * Done * ");
+        System.exit(0);
+    }
+}
@@ -17,12 +17,15 @@
  */
 package org.apis.manager;
 
+import org.apis.config.CommonConfig;
 import org.apis.config.SystemProperties;
 import org.apis.contract.ContractLoader;
 import org.apis.core.*;
 import org.apis.crypto.HashUtil;
 import org.apis.db.BlockStore;
+import org.apis.db.BloomBitsIndex;
 import org.apis.db.DbFlushManager;
+import org.apis.db.StateSnapshot;
 import org.apis.facade.SyncStatus;
 import org.apis.net.client.PeerClient;
 import org.apis.net.rlpx.discover.NodeManager;
@@ -92,6 +95,12 @@ public class WorldManager {
     @Autowired
     private DbFlushManager dbFlushManager;
 
+    @Autowired
+    private BloomBitsIndex bloomBitsIndex;
+
+    @Autowired
+    private CommonConfig commonConfig;
+
     @Autowired
     private ApplicationContext ctx;
 
@@ -119,6 +128,10 @@ public class WorldManager {
 
     @PostConstruct
     private void init() {
+        StateSnapshot stateSnapshot = commonConfig.stateSnapshot();
+        if (stateSnapshot != null) {
+            stateSnapshot.init(blockchain.getBestBlock().getStateRoot());
+        }
         syncManager.init(channelManager, pool);
     }
 
@@ -267,10 +280,17 @@ public class WorldManager {
         activePeer.close();
         logger.info("close: shutting down event dispatch thread used by EventBus ...");
         eventDispatchThread.shutdown();
+        logger.info("close: stopping bloom bits indexer ...");
+        bloomBitsIndex.close();
         logger.info("close: closing Blockchain instance ...");
         blockchain.close();
         logger.info("close: closing main repository ...");
         repository.close();
+        StateSnapshot stateSnapshot = commonConfig.stateSnapshot();
+        if (stateSnapshot != null) {
+            logger.info("close: stopping state snapshot ...");
+            stateSnapshot.close();
+        }
         logger.info("close: database flush manager ...");
         dbFlushManager.close();
     }
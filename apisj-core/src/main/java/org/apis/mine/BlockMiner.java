@@ -20,7 +20,6 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
@@ -148,21 +147,19 @@ public class BlockMiner {
 
 
     private List<Transaction> getAllPendingTransactions() {
-        PendingStateImpl.TransactionSortedSet ret = new PendingStateImpl.TransactionSortedSet();
-        ret.addAll(pendingState.getPendingTransactions());
-
-        Iterator<Transaction> it = ret.iterator();
-
-        while(it.hasNext()) {
-            Transaction tx = it.next();
+        // 보류중인 트랜잭션 목록은 이미 nonce 순서로 정렬되어 있다.
+        List<Transaction> pendingTxs = pendingState.getPendingTransactions();
+        List<Transaction> ret = new ArrayList<>(pendingTxs.size());
 
+        for (Transaction tx : pendingTxs) {
             // 최소 요구 가스값보다 낮으면 포함되지 않는다
             if (!isAcceptableTx(tx)) {
                 logger.debug("Miner excluded the transaction: {}", tx);
-                it.remove();
+            } else {
+                ret.add(tx);
             }
         }
-        return new ArrayList<>(ret);
+        return ret;
     }
 
 
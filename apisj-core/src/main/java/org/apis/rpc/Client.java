@@ -12,7 +12,7 @@ public class Client {
     private byte[] token;
     private long lastDiscoveredTime;
     // 추가
-    private long id; // 명령어 받을때 마다 증가
+    private long id; // 마지막으로 처리한 요청의 ID
 
     Client (WebSocket webSocket, byte[] auth, InetSocketAddress ipAddress, byte[] token) {
         this.webSocket = webSocket;
@@ -55,5 +55,5 @@ public class Client {
 
 
     public long getID() { return id; }
-    public void addID() { id++; }
+    public synchronized void updateID(long id) { this.id = Math.max(this.id, id); }
 }
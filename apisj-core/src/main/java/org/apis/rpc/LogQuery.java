@@ -0,0 +1,127 @@
+package org.apis.rpc;
+
+import org.apis.core.Block;
+import org.apis.core.Bloom;
+import org.apis.core.Transaction;
+import org.apis.core.TransactionInfo;
+import org.apis.core.TransactionReceipt;
+import org.apis.crypto.HashUtil;
+import org.apis.db.BloomBitsIndex;
+import org.apis.db.TransactionStore;
+import org.apis.facade.Apis;
+import org.apis.facade.Blockchain;
+import org.apis.rpc.listener.LastLogHttpListener;
+import org.apis.rpc.template.LogsPageData;
+import org.apis.util.FastByteComparisons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches the logs of apis_getLogs page by page.
+ *
+ * Only the blocks picked by the {@link BloomBitsIndex} are loaded, and only the receipts of
+ * the transactions sent to the filtered addresses are read from the {@link TransactionStore}.
+ * A page ends once {@link #limit} results are found or {@link #MAX_LOADED_BLOCKS} blocks are loaded,
+ * the next page starts from {@link LogsPageData#getNextBlock()}.
+ */
+class LogQuery {
+
+    static final int DEFAULT_LIMIT = 1000;
+    static final int MAX_LOADED_BLOCKS = 10_000;
+
+    private final Apis apis;
+    private final BloomBitsIndex bloomBitsIndex;
+    private final List<byte[]> addresses;
+    private final List<byte[]> topics;
+    private final int limit;
+
+    LogQuery(Apis apis, BloomBitsIndex bloomBitsIndex, List<byte[]> addresses, List<byte[]> topics, int limit) {
+        this.apis = apis;
+        this.bloomBitsIndex = bloomBitsIndex;
+        this.addresses = addresses;
+        this.topics = topics;
+        this.limit = limit > 0 ? limit : DEFAULT_LIMIT;
+    }
+
+    LogsPageData run(long id, String method, long fromBlock, long toBlock) {
+        LastLogHttpListener listener = new LastLogHttpListener(method, id, addresses, topics, apis);
+
+        Blockchain blockchain = apis.getBlockchain();
+        toBlock = Math.min(toBlock, blockchain.getBestBlock().getNumber());
+
+        // Nothing can match without a filter
+        if(addresses.isEmpty() && topics.isEmpty()) {
+            return new LogsPageData(listener.getResult(), fromBlock, toBlock, -1);
+        }
+
+        BloomBitsIndex.Matcher matcher = bloomBitsIndex.matcher(getTopicsBloom());
+        TransactionStore transactionStore = blockchain.getTransactionStore();
+
+        int loadedBlocks = 0;
+        long number = matcher.next(fromBlock, toBlock);
+        while(number >= 0) {
+            Block block = blockchain.getBlockByNumber(number);
+            if(block == null) {
+                break;
+            }
+
+            List<TransactionReceipt> receipts = new ArrayList<>();
+            for(Transaction tx : block.getTransactionsList()) {
+                if(!isFilteredReceiver(tx)) {
+                    continue;
+                }
+                TransactionInfo info = transactionStore.get(tx.getHash(), block.getHash());
+                if(info == null) {
+                    continue;
+                }
+                TransactionReceipt receipt = info.getReceipt();
+                receipt.setTransaction(tx);
+                receipts.add(receipt);
+            }
+            if(!receipts.isEmpty()) {
+                listener.onBlock(block, receipts);
+            }
+
+            loadedBlocks += 1;
+            if(number >= toBlock) {
+                break;
+            }
+            if(listener.getResultSize() >= limit || loadedBlocks >= MAX_LOADED_BLOCKS) {
+                return new LogsPageData(listener.getResult(), fromBlock, number, number + 1);
+            }
+            number = matcher.next(number + 1, toBlock);
+        }
+
+        return new LogsPageData(listener.getResult(), fromBlock, toBlock, -1);
+    }
+
+    /**
+     * @return bloom with the bits of all filtered topics, the block bloom has to contain all of them
+     */
+    private Bloom getTopicsBloom() {
+        Bloom bloom = new Bloom();
+        for(byte[] topic : topics) {
+            if(topic != null) {
+                bloom.or(Bloom.create(HashUtil.sha3(topic)));
+            }
+        }
+        return bloom;
+    }
+
+    private boolean isFilteredReceiver(Transaction tx) {
+        if(addresses.isEmpty()) {
+            return true;
+        }
+        byte[] receiver = tx.getReceiveAddress();
+        if(receiver == null) {
+            return false;
+        }
+        for(byte[] address : addresses) {
+            if(FastByteComparisons.equal(receiver, address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
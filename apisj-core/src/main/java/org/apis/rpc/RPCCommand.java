@@ -16,7 +16,6 @@ import org.apis.facade.Apis;
 import org.apis.facade.ApisImpl;
 import org.apis.facade.SyncStatus;
 import org.apis.keystore.*;
-import org.apis.listener.BlockReplay;
 import org.apis.listener.EthereumListener;
 import org.apis.listener.EthereumListenerAdapter;
 import org.apis.net.rlpx.EncryptionHandshake;
@@ -30,6 +29,7 @@ import org.spongycastle.util.encoders.DecoderException;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apis.rpc.RPCJsonUtil.createJson;
 
@@ -131,11 +131,16 @@ public class RPCCommand {
     static final int ERROR_CODE_WITHOUT_PERMISSION_CLIENT = 113;
     public static final int ERROR_CODE_WITHOUT_PERMISSION_IP = 114;
     static final int ERROR_CODE_NULL_ID = 120;
+    static final int ERROR_CODE_TOO_MANY_REQUESTS = 122;
+    static final int ERROR_CODE_INVALID_REQUEST = -32600;
     //static final int ERROR_CODE_DUPLICATE_IP = 102;
     //static final int ERROR_CODE_WITHOUT_PERMISSION_TYPE = 115;
     //static final int ERROR_CODE_TIMEOUT = 121;
 
     static final String ERROR_MESSAGE_UNKNOWN = "unknown message.";
+    static final String ERROR_MESSAGE_TOO_MANY_REQUESTS = "Too many requests in flight.";
+    static final String ERROR_MESSAGE_INVALID_REQUEST = "Invalid Request";
+    private static final String ERROR_MESSAGE_INVALID_BATCH = "A batch must contain 1 to 1000 requests.";
     private static final String ERROR_MESSAGE_UNKNOWN_ADDRESS = "unknown Address.";
     private static final String ERROR_MESSAGE_INVALID_ADDRESS = "Invalid Address format.";
     private static final String ERROR_MESSAGE_UNKNOWN_HASH = "unknown Hash.";
@@ -186,21 +191,40 @@ public class RPCCommand {
     private static final String ERROR_NULL_MASTERNODE_ADDRESS = "There is no address registered as masternode.";*/
 
 
-    private static final HashMap<BigInteger, EthereumListener> mListeners = new HashMap<>();
-    private static final HashMap<ByteArrayWrapper, UnlockedAccount> unlockedAccounts = new HashMap<>();
+    private static final Map<BigInteger, EthereumListener> mListeners = new ConcurrentHashMap<>();
+    private static final Map<ByteArrayWrapper, UnlockedAccount> unlockedAccounts = new ConcurrentHashMap<>();
+
+    /**
+     * 실행 시간이 긴 명령어들. 웹소켓 서버에서는 별도의 스레드 풀에서 실행되어 다른 명령어를 지연시키지 않는다.
+     */
+    static final Set<String> SLOW_COMMANDS = new HashSet<>(Arrays.asList(
+            COMMAND_APIS_CALL,
+            COMMAND_APIS_ESTIMATE_GAS,
+            COMMAND_APIS_SENDTRANSACTION,
+            COMMAND_APIS_GETTRANSACTIONBYKEYWORD,
+            COMMAND_APIS_GET_LOGS,
+            COMMAND_PERSONAL_UNLOCK_ACCOUNT,
+            COMMAND_PERSONAL_SEND_TRANSACTION,
+            COMMAND_PERSONAL_SIGN_TRANSACTION));
+
+    static final String COMMAND_BATCH = "batch";
+    static final int MAX_BATCH_SIZE = 1000;
 
 
 
     static void conduct(Apis apis, WebSocket conn, String token, String payload, boolean isEncrypt) {
+        if(RPCJsonUtil.isBatchPayload(payload)) {
+            registerPendingTxListener(apis);
+            send(conn, token, conductBatch(apis, RPCJsonUtil.parseBatchPayload(payload), conn, token, isEncrypt), isEncrypt);
+            return;
+        }
+
         MessageApp3 message = parseMessage(payload);
         long id = message.getId();
         String method = message.getMethod();
         Object[] params = message.getParams().toArray();
 
-        if(!isPendingTxListenerRegistered) {
-            isPendingTxListenerRegistered = true;
-            apis.addListener(pendingTxListener);
-        }
+        registerPendingTxListener(apis);
 
         conduct(apis, conn, token, id, method, params, isEncrypt);
     }
@@ -211,10 +235,7 @@ public class RPCCommand {
         String method = message.getMethod();
         Object[] params = message.getParams().toArray();
 
-        if(!isPendingTxListenerRegistered) {
-            isPendingTxListenerRegistered = true;
-            apis.addListener(pendingTxListener);
-        }
+        registerPendingTxListener(apis);
 
         String command = getCommand(apis, id, method, params);
 
@@ -226,15 +247,17 @@ public class RPCCommand {
     }
 
     public static String conduct(Apis apis, String payload) {
+        if(RPCJsonUtil.isBatchPayload(payload)) {
+            registerPendingTxListener(apis);
+            return conductBatch(apis, RPCJsonUtil.parseBatchPayload(payload), null, null, false);
+        }
+
         MessageApp3 message = parseMessage(payload);
         long id = message.getId();
         String method = message.getMethod();
         Object[] params = message.getParams().toArray();
 
-        if(!isPendingTxListenerRegistered) {
-            isPendingTxListenerRegistered = true;
-            apis.addListener(pendingTxListener);
-        }
+        registerPendingTxListener(apis);
 
         String command = getCommand(apis, id, method, params);
 
@@ -245,6 +268,54 @@ public class RPCCommand {
         }
     }
 
+    /**
+     * JSON-RPC 배치 요청을 처리한다.
+     *
+     * 모든 요청은 같은 저장소 스냅샷과 최신 블록을 기준으로 조회되고, 응답은 요청의 순서대로 하나의 배열로 반환된다.
+     * 스냅샷의 조회는 동기화되어 있으므로 요청들은 하나의 스레드에서 순서대로 실행된다.
+     *
+     * @param conn 구독 요청을 처리할 웹소켓 연결, HTTP 요청이면 null
+     * @return 응답 배열
+     */
+    private static String conductBatch(Apis apis, List<MessageApp3> messages, WebSocket conn, String token, boolean isEncrypt) {
+        if(messages.isEmpty() || messages.size() > MAX_BATCH_SIZE) {
+            return createJson(0, COMMAND_BATCH, null, ERROR_MESSAGE_INVALID_BATCH);
+        }
+
+        Block bestBlock = apis.getBlockchain().getBestBlock();
+        Repository latestRepo = ((Repository) apis.getRepository()).getSnapshotTo(bestBlock.getStateRoot());
+
+        String[] results = new String[messages.size()];
+        for(int i = 0; i < results.length; i++) {
+            results[i] = conductBatchEntry(apis, latestRepo, bestBlock, messages.get(i), conn, token, isEncrypt);
+        }
+
+        return "[" + String.join(",", results) + "]";
+    }
+
+    private static String conductBatchEntry(Apis apis, Repository latestRepo, Block bestBlock, MessageApp3 message, WebSocket conn, String token, boolean isEncrypt) {
+        if(message == null) {
+            return createJson(0, null, null, ERROR_CODE_INVALID_REQUEST, ERROR_MESSAGE_INVALID_REQUEST);
+        }
+
+        long id = message.getId();
+        String method = message.getMethod();
+        Object[] params = message.getParams() == null ? new Object[0] : message.getParams().toArray();
+
+        try {
+            String command = getCommand(apis, latestRepo, bestBlock, id, method, params);
+            if(command == null && conn != null) {
+                command = subscribe(apis, conn, token, id, method, params, isEncrypt);
+            }
+            if(command == null) {
+                command = createJson(id, method, null, ERROR_MESSAGE_UNKNOWN);
+            }
+            return command;
+        } catch (RuntimeException e) {
+            return createJson(id, method, null, e);
+        }
+    }
+
     public static MessageApp3 parseMessage(String payload) {
         ConsoleUtil.printlnYellow("Payload:" + payload);
         return new GsonBuilder().create().fromJson(payload, MessageApp3.class);
@@ -266,9 +337,16 @@ public class RPCCommand {
 
 
     private static String getCommand(Apis apis, long id, String method, Object[] params) {
-        String command = null;
-        Repository latestRepo = (Repository) apis.getLastRepositorySnapshot();
         Block bestBlock = apis.getBlockchain().getBestBlock();
+        return getCommand(apis, ((Repository) apis.getRepository()).getSnapshotTo(bestBlock.getStateRoot()), bestBlock, id, method, params);
+    }
+
+    /**
+     * @param latestRepo bestBlock 의 상태, 배치 요청에서는 모든 요청이 같은 상태를 조회한다.
+     * @param bestBlock latest 로 조회할 블록
+     */
+    private static String getCommand(Apis apis, Repository latestRepo, Block bestBlock, long id, String method, Object[] params) {
+        String command = null;
 
         SystemProperties config = SystemProperties.getDefault();
         if(config == null) {
@@ -342,7 +420,7 @@ public class RPCCommand {
                 }
 
                 try {
-                    long lastBlockNumber = getBlockNumber(apis, DEFAULT_PARAMETER_BLOCK_LATEST);
+                    long lastBlockNumber = getBlockNumber(bestBlock.getNumber(), DEFAULT_PARAMETER_BLOCK_LATEST);
                     int index = 0;
                     for (KeyStoreData keyStoreData : keyStoreDataList) {
                         int walletIndex = index++;
@@ -377,14 +455,14 @@ public class RPCCommand {
             }
 
             case COMMAND_APIS_BLOCKNUMBER: {
-                long blockNumber = apis.getBlockchain().getBestBlock().getNumber();
+                long blockNumber = bestBlock.getNumber();
                 String blockNumberHexString = ByteUtil.toHexString0x(ByteUtil.longToBytes(blockNumber));
                 command = createJson(id, method, blockNumberHexString);
                 break;
             }
 
             case COMMAND_TOTAL_COINS: {
-                long blockNumber = apis.getBlockchain().getBestBlock().getNumber();
+                long blockNumber = bestBlock.getNumber();
                 BigInteger totalCoins = config.getBlockchainConfig().getConfigForBlock(blockNumber).getConstants().getTotalAPIS(blockNumber);
                 command = createJson(id, method, ApisUtil.readableApis(totalCoins, true));
                 break;
@@ -404,15 +482,15 @@ public class RPCCommand {
                     blockNumberParam = (String) params[1];
                 }
 
-                long blockNumber = getBlockNumber(apis, blockNumberParam);
+                long blockNumber = getBlockNumber(bestBlock.getNumber(), blockNumberParam);
                 if (blockNumber == 0) { // block data null
                     return createJson(id, method, null, ERROR_MESSAGE_NULL_BLOCKDATA);
                 }
 
 
                 try {
-                    Block block = apis.getBlockchain().getBlockByNumber(blockNumber);
-                    Repository repository = ((Repository) apis.getRepository()).getSnapshotTo(block.getStateRoot());
+                    Block block = getBlock(apis, bestBlock, blockNumber);
+                    Repository repository = getRepository(apis, latestRepo, bestBlock, block);
                     byte[] address = getAddressByte(repository, (String)params[0]);
                     if (address == null) {
                         return createJson(id, method, null, ERROR_MESSAGE_UNKNOWN_ADDRESS);
@@ -487,7 +565,7 @@ public class RPCCommand {
                 }
 
                 try {
-                    long blockNumber = getBlockNumber(apis, (String) params[0]);
+                    long blockNumber = getBlockNumber(bestBlock.getNumber(), (String) params[0]);
                     if (blockNumber == 0) { // block data null
                         return createJson(id, method, null, ERROR_MESSAGE_NULL_BLOCKDATA);
                     }
@@ -518,13 +596,13 @@ public class RPCCommand {
                 }
 
                 // getblocknumber
-                long blockNumber = getBlockNumber(apis, defaultBlockParameter);
+                long blockNumber = getBlockNumber(bestBlock.getNumber(), defaultBlockParameter);
                 if (blockNumber == 0) { // block data null
                     return createJson(id, method, null, ERROR_MESSAGE_NULL_BLOCKDATA);
                 }
 
                 try {
-                    Repository repository = ((Repository) apis.getRepository()).getSnapshotTo(apis.getBlockchain().getBlockByNumber(blockNumber).getStateRoot());
+                    Repository repository = getRepository(apis, latestRepo, bestBlock, getBlock(apis, bestBlock, blockNumber));
                     byte[] address = getAddressByte(repository, (String)params[0]);
                     if (address == null) {
                         return createJson(id, method, null, ERROR_MESSAGE_UNKNOWN_ADDRESS);
@@ -649,7 +727,7 @@ public class RPCCommand {
 
             case COMMAND_APIS_CALL: {
                 try {
-                    EstimateTransactionResult estimateResult = estimateTransaction(params, (ApisImpl) apis, true);
+                    EstimateTransactionResult estimateResult = estimateTransaction(params, (ApisImpl) apis, latestRepo, bestBlock, true);
                     byte[] result = estimateResult.getReceipt().getExecutionResult();
                     command = createJson(id, method, ByteUtil.toHexString0x(result));
                 } catch (Exception e) {
@@ -661,7 +739,7 @@ public class RPCCommand {
 
             case COMMAND_APIS_ESTIMATE_GAS: {
                 try {
-                    EstimateTransactionResult estimateResult = estimateTransaction(params, (ApisImpl) apis, false);
+                    EstimateTransactionResult estimateResult = estimateTransaction(params, (ApisImpl) apis, latestRepo, bestBlock, false);
 
                     if(estimateResult.isSuccess()) {
                         command = createJson(id, method, ByteUtil.toHexString0x(ByteUtil.longToBytes(estimateResult.getGasUsed())));
@@ -679,29 +757,7 @@ public class RPCCommand {
                     return createJson(id, method, null, "You must enter the address or topic you want to subscribe to.");
                 }
 
-                LinkedTreeMap paramsMap = (LinkedTreeMap) params[0];
-
-                List<byte[]> addresses = getBytesListFromParam(paramsMap.get("address"));
-                List<byte[]> topics = getBytesListFromParam(paramsMap.get("topics"));
-                String fromBlock = (String) paramsMap.get("fromBlock");
-                String toBlock = (String) paramsMap.get("toBlock");
-                long fromBlockNumber = 0;
-                long toBlockNumber = Long.MAX_VALUE;
-                if(fromBlock != null) {
-                    try {
-                        fromBlockNumber = ByteUtil.byteArrayToLong(ByteUtil.hexStringToBytes(fromBlock));
-                    } catch (NumberFormatException ignored) {}
-                }
-                if(toBlock != null) {
-                    toBlockNumber = getBlockNumber(apis, toBlock);
-                }
-
-
-                LastLogHttpListener listener = new LastLogHttpListener(method, id, addresses, topics, apis);
-                BlockReplay blockReplay = new BlockReplay(apis.getBlockchain().getBlockStore(), apis.getBlockchain().getTransactionStore(), listener, fromBlockNumber, toBlockNumber);
-                blockReplay.replaySync();
-
-                command = listener.getCommand();
+                command = getLogs(apis, id, method, (LinkedTreeMap) params[0]);
                 break;
             }
 
@@ -764,7 +820,7 @@ public class RPCCommand {
 
 
                 try {
-                    long blockNumber = getBlockNumber(apis, (String)params[0]);
+                    long blockNumber = getBlockNumber(bestBlock.getNumber(), (String)params[0]);
                     Block block = apis.getBlockchain().getBlockByNumber(blockNumber);
 
                     byte[] coinbase = block.getCoinbase();
@@ -929,7 +985,7 @@ public class RPCCommand {
                         } catch (NumberFormatException | DecoderException ignored) {}
                     }
 
-                    Block currentBlock = apis.getBlockchain().getBestBlock();
+                    Block currentBlock = bestBlock;
 
                     for(int i = 0; i < offset && currentBlock.getNumber() > 1; i++) {
                         currentBlock = apis.getBlockchain().getBlockByHash(currentBlock.getParentHash());
@@ -953,7 +1009,7 @@ public class RPCCommand {
             }
             case COMMAND_APIS_GET_TRANSACTION_COUNT_ON_BLOCKS: {
                 long fromBlock = 1;
-                long toBlock = apis.getBlockchain().getBestBlock().getNumber() - 1;
+                long toBlock = bestBlock.getNumber() - 1;
                 long txCount = 0;
 
                 if(params.length > 0 && params[0] != null) {
@@ -1035,22 +1091,16 @@ public class RPCCommand {
             }
 
             case COMMAND_APIS_GET_MASTERNODE_COUNT: {
-                List<byte[]> mnGeneralEarly = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_GENERAL_BASE_EARLY_RUN()));
-                List<byte[]> mnMajorEarly = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_MAJOR_BASE_EARLY_RUN()));
-                List<byte[]> mnPrivateEarly = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_PRIVATE_BASE_EARLY_RUN()));
-
-                List<byte[]> mnGeneralNormal = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_GENERAL_BASE_NORMAL()));
-                List<byte[]> mnMajorNormal = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_MAJOR_BASE_NORMAL()));
-                List<byte[]> mnPrivateNormal = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_PRIVATE_BASE_NORMAL()));
-
-                List<byte[]> mnGeneralLate = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_GENERAL_BASE_LATE()));
-                List<byte[]> mnMajorLate = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_MAJOR_BASE_LATE()));
-                List<byte[]> mnPrivateLate = new ArrayList<>(latestRepo.getMasterNodeList(latestConstants.getMASTERNODE_PRIVATE_BASE_LATE()));
-
                 MasternodeCountData countData = new MasternodeCountData(
-                        mnGeneralEarly.size(), mnMajorEarly.size(), mnPrivateEarly.size(),
-                        mnGeneralNormal.size(), mnMajorNormal.size(), mnPrivateNormal.size(),
-                        mnGeneralLate.size(), mnMajorLate.size(), mnPrivateLate.size());
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_GENERAL_BASE_EARLY_RUN()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_MAJOR_BASE_EARLY_RUN()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_PRIVATE_BASE_EARLY_RUN()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_GENERAL_BASE_NORMAL()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_MAJOR_BASE_NORMAL()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_PRIVATE_BASE_NORMAL()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_GENERAL_BASE_LATE()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_MAJOR_BASE_LATE()).getSize(),
+                        latestRepo.sizeofMasterNode(latestConstants.getMASTERNODE_PRIVATE_BASE_LATE()).getSize());
 
                 command = createJson(id, method, countData);
                 break;
@@ -1169,7 +1219,7 @@ public class RPCCommand {
                         state = new AccountState(config);
                     }
 
-                    long blockNumber = apis.getBlockchain().getBestBlock().getNumber();
+                    long blockNumber = bestBlock.getNumber();
                     BigInteger nonce = apis.getPendingState().getNonce(address);
                     WalletInfo walletInfo = new WalletInfo(-1, address, state, blockNumber, nonce);
 
@@ -1427,14 +1477,14 @@ public class RPCCommand {
                     blockNumberParam = (String) params[0];
                 }
 
-                long blockNumber = getBlockNumber(apis, blockNumberParam);
+                long blockNumber = getBlockNumber(bestBlock.getNumber(), blockNumberParam);
                 if (blockNumber == 0) { // block data null
                     return createJson(id, method, null, ERROR_MESSAGE_NULL_BLOCKDATA);
                 }
 
                 try {
-                    Block block = apis.getBlockchain().getBlockByNumber(blockNumber);
-                    Repository repository = ((Repository) apis.getRepository()).getSnapshotTo(block.getStateRoot());
+                    Block block = getBlock(apis, bestBlock, blockNumber);
+                    Repository repository = getRepository(apis, latestRepo, bestBlock, block);
 
                     final Constants constants = config.getBlockchainConfig().getConfigForBlock(blockNumber).getConstants();
 
@@ -1702,38 +1752,7 @@ public class RPCCommand {
                     return createJson(id, method, null, "You must enter the address or topic you want to subscribe to.");
                 }
 
-                LinkedTreeMap paramsMap = (LinkedTreeMap) params[0];
-
-                List<byte[]> addresses = getBytesListFromParam(paramsMap.get("address"));
-                List<byte[]> topics = getBytesListFromParam(paramsMap.get("topics"));
-                String fromBlock = (String) paramsMap.get("fromBlock");
-                String toBlock = (String) paramsMap.get("toBlock");
-                long fromBlockNumber = 0;
-                long toBlockNumber = Long.MAX_VALUE;
-                if(fromBlock != null) {
-                    try {
-                        fromBlockNumber = ByteUtil.byteArrayToLong(ByteUtil.hexStringToBytes(fromBlock));
-                    } catch (NumberFormatException ignored) {}
-                }
-                if(toBlock != null) {
-                    toBlockNumber = getBlockNumber(apis, toBlock);
-                }
-
-                LastLogListener listener;
-                switch(subscribeType) {
-                    case SUBSCRIBE_TYPE_WEBSOCKET:
-                        listener = new LastLogListener(method, id, conn, token, isEncrypt, addresses, topics, apis);
-                        break;
-                    case SUBSCRIBE_TYPE_SCC:
-                        listener = new LastLogListener(method, id, addresses, topics, apis, canvasAdapter);
-                        break;
-                    default:
-                        return null;
-                }
-
-                BlockReplay blockReplay = new BlockReplay(apis.getBlockchain().getBlockStore(), apis.getBlockchain().getTransactionStore(), listener, fromBlockNumber, toBlockNumber);
-                blockReplay.replayAsync();
-                break;
+                return getLogs(apis, id, method, (LinkedTreeMap) params[0]);
             }
         }
 
@@ -1741,6 +1760,40 @@ public class RPCCommand {
     }
 
 
+    /**
+     * Returns one page of the logs matching the filter.
+     * Pass "nextBlock" of the result as "fromBlock" to get the next page.
+     */
+    private static String getLogs(Apis apis, long id, String method, LinkedTreeMap paramsMap) {
+        List<byte[]> addresses = getBytesListFromParam(paramsMap.get("address"));
+        List<byte[]> topics = getBytesListFromParam(paramsMap.get("topics"));
+        String fromBlock = (String) paramsMap.get("fromBlock");
+        String toBlock = (String) paramsMap.get("toBlock");
+        long fromBlockNumber = 0;
+        long toBlockNumber = Long.MAX_VALUE;
+        if(fromBlock != null) {
+            try {
+                fromBlockNumber = ByteUtil.byteArrayToLong(ByteUtil.hexStringToBytes(fromBlock));
+            } catch (NumberFormatException ignored) {}
+        }
+        if(toBlock != null) {
+            toBlockNumber = getBlockNumber(apis, toBlock);
+        }
+
+        int limit = 0;
+        Object limitParam = paramsMap.get("limit");
+        if(limitParam instanceof Number) {
+            limit = ((Number) limitParam).intValue();
+        } else if(limitParam instanceof String) {
+            try {
+                limit = (int) ByteUtil.byteArrayToLong(ByteUtil.hexStringToBytes((String) limitParam));
+            } catch (NumberFormatException ignored) {}
+        }
+
+        LogQuery query = new LogQuery(apis, ((ApisImpl) apis).getBloomBitsIndex(), addresses, topics, limit);
+        return createJson(id, method, query.run(id, method, fromBlockNumber, toBlockNumber));
+    }
+
     private static byte[] generateListenerKeyRandom() {
         return HashUtil.sha3omit12(HashUtil.randomHash());
     }
@@ -1786,7 +1839,10 @@ public class RPCCommand {
         return createJson(id, method, new TransactionData(tx, block));
     }
 
-    private static EstimateTransactionResult estimateTransaction(Object[] params, ApisImpl ethereum, boolean isCall) throws Exception {
+    /**
+     * latestRepo 의 상태에서 bestBlock 을 기준으로 트랜잭션을 실행한다.
+     */
+    private static EstimateTransactionResult estimateTransaction(Object[] params, ApisImpl ethereum, Repository latestRepo, Block bestBlock, boolean isCall) throws Exception {
         if (params.length == 0) {
             throw new Exception(ERROR_MESSAGE_UNKNOWN);
         }
@@ -1800,7 +1856,7 @@ public class RPCCommand {
 
         // 컨트렉트 콜 인 경우, from 주소가 실재로 존재하지 않아도 확인할 필요가 있다.
         if(isCall) {
-            return estimateTransaction.estimate(inputTx.getFrom(), inputTx.getTo(), inputTx.getNonce(), inputTx.getValue(), inputTx.getGas(), inputTx.getData());
+            return estimateTransaction.estimate(latestRepo, bestBlock, inputTx.getFrom(), inputTx.getTo(), inputTx.getNonce(), inputTx.getValue(), inputTx.getGas(), inputTx.getData());
         }
 
 
@@ -1823,7 +1879,7 @@ public class RPCCommand {
                 try {
                     byte[] addressBytes = inputTx.getFrom();
                     ECKey key = keyStoreManager.findKeyStoreFile(addressBytes, inputTx.getKeystorePassword());
-                    return estimateTransaction.estimate(key, inputTx.getTo(), inputTx.getNonce(), inputTx.getValue(), inputTx.getGas(), inputTx.getData(), false);
+                    return estimateTransaction.estimate(latestRepo, bestBlock, key, inputTx.getTo(), inputTx.getNonce(), inputTx.getValue(), inputTx.getGas(), inputTx.getData(), false);
                 }catch (InvalidPasswordException e) {
                     return new EstimateTransactionResult(ERROR_MESSAGE_INVALID_PASSWORD);
                 } catch (KeystoreVersionException e) {
@@ -1841,11 +1897,25 @@ public class RPCCommand {
         }
         // 지갑이 풀려있으면, 풀린 지갑으로 트랜잭션을 실행한다
         else {
-            return estimateTransaction.estimate(unlockedAccount.getKey(), inputTx.getTo(), inputTx.getNonce(), inputTx.getValue(), inputTx.getGas(), inputTx.getData(), false);
+            return estimateTransaction.estimate(latestRepo, bestBlock, unlockedAccount.getKey(), inputTx.getTo(), inputTx.getNonce(), inputTx.getValue(), inputTx.getGas(), inputTx.getData(), false);
         }
     }
 
 
+    private static Block getBlock(Apis apis, Block bestBlock, long blockNumber) {
+        return blockNumber == bestBlock.getNumber() ? bestBlock : apis.getBlockchain().getBlockByNumber(blockNumber);
+    }
+
+    /**
+     * 최신 블록의 상태는 latestRepo 에서 조회하고, 이전 블록의 상태는 새로운 스냅샷에서 조회한다.
+     */
+    private static Repository getRepository(Apis apis, Repository latestRepo, Block bestBlock, Block block) {
+        if(block == bestBlock) {
+            return latestRepo;
+        }
+        return ((Repository) apis.getRepository()).getSnapshotTo(block.getStateRoot());
+    }
+
     private static byte[] getAddressByte(Repository repository, String addressOrMask) {
         byte[] address = null;
         try {
@@ -1873,8 +1943,11 @@ public class RPCCommand {
      * @return 기본 값은 latest
      */
     private static long getBlockNumber(Apis apis, String blockParameter) {
+        return getBlockNumber(apis.getBlockchain().getBestBlock().getNumber(), blockParameter);
+    }
+
+    private static long getBlockNumber(long best, String blockParameter) {
         long blockNumber;
-        long best = apis.getBlockchain().getBestBlock().getNumber();
 
         switch (blockParameter) {
             case DEFAULTBLOCK_PARAMETER_EARLIEST:
@@ -1924,17 +1997,24 @@ public class RPCCommand {
 
 
 
-    private static LinkedHashMap<BigInteger, TransactionPendingResult> txPendingResults = new LinkedHashMap<BigInteger, TransactionPendingResult>() {
+    private static Map<BigInteger, TransactionPendingResult> txPendingResults = Collections.synchronizedMap(new LinkedHashMap<BigInteger, TransactionPendingResult>() {
         final int maxSize= 1000;
 
         @Override
         protected boolean removeEldestEntry(Map.Entry<BigInteger, TransactionPendingResult> eldest) {
             return size() > maxSize;
         }
-    };
+    });
 
 
     private static boolean isPendingTxListenerRegistered = false;
+
+    private static synchronized void registerPendingTxListener(Apis apis) {
+        if(!isPendingTxListenerRegistered) {
+            isPendingTxListenerRegistered = true;
+            apis.addListener(pendingTxListener);
+        }
+    }
     private static EthereumListener pendingTxListener = new EthereumListenerAdapter() {
         @Override
         public void onPendingTransactionUpdate(TransactionReceipt txReceipt, PendingTransactionState state, Block block) {
@@ -0,0 +1,259 @@
+package org.apis.rpc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.java_websocket.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 웹소켓으로 받은 요청을 셀렉터 스레드 밖의 스레드 풀에서 처리한다.
+ *
+ * <p>
+ *     한 연결의 요청들은 받은 순서대로 하나씩 처리되므로 응답의 순서가 유지되고,
+ *     요청 ID 검증도 기존과 같이 동작한다. 서로 다른 연결의 요청들은 동시에 처리된다.
+ *     한 연결에 처리되지 않은 요청이 maxInFlight 개 이상 쌓이면 새 요청은 거부된다.
+ *
+ * <p>
+ *     {@link RPCCommand#SLOW_COMMANDS} 에 속한 명령어는 별도의 스레드 풀에서 실행되어,
+ *     오래 걸리는 요청들이 일반 요청을 처리할 스레드를 모두 차지하지 않도록 한다.
+ */
+public class RPCDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger("rpc");
+
+    private static final long STATS_PERIOD_SECONDS = 60;
+
+    /**
+     * 웹소켓으로 받은 요청 하나
+     */
+    interface Request {
+        /**
+         * 메시지를 복호화하고 검증한다.
+         * @return 실행할 명령어, 실행할 필요가 없으면 null
+         */
+        String prepare();
+
+        /**
+         * @return 별도의 스레드 풀에서 실행해야 하면 true
+         */
+        default boolean isSlow(String method) {
+            return RPCCommand.SLOW_COMMANDS.contains(method);
+        }
+
+        void execute();
+    }
+
+    private final ExecutorService executor;
+    private final ExecutorService slowExecutor;
+    private final ScheduledExecutorService statsExecutor;
+    private final int maxInFlight;
+
+    private final Map<WebSocket, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final Map<String, MethodStats> methodStats = new ConcurrentHashMap<>();
+
+    RPCDispatcher(int threads, int slowThreads, int maxInFlight) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rpc-worker-%d").build());
+        this.slowExecutor = Executors.newFixedThreadPool(Math.max(1, slowThreads),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rpc-slow-worker-%d").build());
+        this.maxInFlight = Math.max(1, maxInFlight);
+
+        this.statsExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rpc-stats-%d").build());
+        this.statsExecutor.scheduleAtFixedRate(this::logStats, STATS_PERIOD_SECONDS, STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return 요청이 처리 대기열에 추가되었으면 true, 연결의 대기열이 가득 찼으면 false
+     */
+    boolean dispatch(WebSocket conn, Request request) {
+        return lanes.computeIfAbsent(conn, c -> new Lane()).offer(request);
+    }
+
+    /**
+     * 연결이 종료되면 아직 처리되지 않은 요청들을 버린다.
+     */
+    void remove(WebSocket conn) {
+        Lane lane = lanes.remove(conn);
+        if(lane != null) {
+            lane.clear();
+        }
+    }
+
+    void shutdown() {
+        statsExecutor.shutdownNow();
+        executor.shutdownNow();
+        slowExecutor.shutdownNow();
+        lanes.clear();
+    }
+
+    /**
+     * @return 처리를 기다리는 요청의 수
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return 명령어 별 처리 시간
+     */
+    public Map<String, MethodStats> getMethodStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(methodStats));
+    }
+
+    private void execute(Request request, String method) {
+        long start = System.nanoTime();
+        try {
+            request.execute();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to execute RPC method " + method, e);
+        } finally {
+            methodStats.computeIfAbsent(method, m -> new MethodStats()).add(System.nanoTime() - start);
+        }
+    }
+
+    private void logStats() {
+        if(methodStats.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("RPC queue depth: ").append(getQueueDepth());
+        for(Map.Entry<String, MethodStats> entry : getMethodStats().entrySet()) {
+            sb.append(", ").append(entry.getKey()).append(' ').append(entry.getValue());
+        }
+        logger.info(sb.toString());
+    }
+
+    /**
+     * 한 연결의 요청들을 순서대로 실행한다.
+     */
+    private class Lane {
+        private final Queue<Request> requests = new ArrayDeque<>();
+        private int inFlight = 0;
+        private boolean running = false;
+
+        synchronized boolean offer(Request request) {
+            if(inFlight >= maxInFlight) {
+                return false;
+            }
+            requests.add(request);
+            inFlight += 1;
+            queueDepth.incrementAndGet();
+
+            if(!running) {
+                running = true;
+                submit(executor, this::runNext);
+            }
+            return true;
+        }
+
+        synchronized void clear() {
+            queueDepth.addAndGet(-requests.size());
+            inFlight -= requests.size();
+            requests.clear();
+        }
+
+        private void runNext() {
+            Request request;
+            synchronized (this) {
+                request = requests.poll();
+                if(request == null) {
+                    running = false;
+                    return;
+                }
+            }
+            queueDepth.decrementAndGet();
+
+            String method = null;
+            try {
+                method = request.prepare();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to read RPC request", e);
+            }
+
+            if(method != null && request.isSlow(method)) {
+                String slowMethod = method;
+                submit(slowExecutor, () -> {
+                    try {
+                        execute(request, slowMethod);
+                    } finally {
+                        done();
+                    }
+                });
+            } else {
+                try {
+                    if(method != null) {
+                        execute(request, method);
+                    }
+                } finally {
+                    done();
+                }
+            }
+        }
+
+        private void done() {
+            synchronized (this) {
+                inFlight -= 1;
+            }
+            submit(executor, this::runNext);
+        }
+
+        private void submit(ExecutorService service, Runnable task) {
+            try {
+                service.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The server has been stopped
+                synchronized (this) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 명령어 하나의 처리 횟수와 처리 시간
+     */
+    public static class MethodStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getAverageMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count: %d, avg: %.2fms, max: %.2fms", getCount(), getAverageMillis(), getMaxMillis());
+        }
+    }
+}
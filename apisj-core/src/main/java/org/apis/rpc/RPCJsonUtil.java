@@ -11,6 +11,11 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.spongycastle.util.encoders.Hex;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 public class RPCJsonUtil {
 
     /***********************
@@ -70,20 +75,34 @@ public class RPCJsonUtil {
     /**
      * Web3에서 전달받은 payload 내용으로부터 고유 해시값을 추출해낸다.
      * 전달받은 메시지의 해시값과 여기서 생성한 해시값이 일치해야만 인증된 사용자로 판단한다.
+     * payload 가 배치 요청이면 모든 요청의 내용으로 하나의 해시값을 만든다. 유효하지 않은 요청은 해시에 포함되지 않는다.
      *
      * @param payload web3 연결로부터 전달받은 JSON 메시지
      * @param token 사용자와 공유하는 토큰
      * @return 고유 해시 값
      */
     static String createTokenHash(String payload, String token) {
-        MessageApp3 message = new GsonBuilder().create().fromJson(payload, MessageApp3.class);
+        List<MessageApp3> messages;
+        if(isBatchPayload(payload)) {
+            messages = parseBatchPayload(payload);
+        } else {
+            messages = Collections.singletonList(new GsonBuilder().create().fromJson(payload, MessageApp3.class));
+        }
 
-        byte[] methodByte = message.getMethodBytes();
-        byte[] paramsByte = message.getMergedParamsBytes();
-        byte[] idByte = message.getIdBytes();
+        // 배치 요청은 각 요청의 내용을 순서대로 이어 붙인다.
+        byte[] tokenHashByte = new byte[0];
+        for(MessageApp3 message : messages) {
+            if(message == null) {
+                continue;
+            }
+            byte[] methodByte = message.getMethodBytes();
+            byte[] paramsByte = message.getMergedParamsBytes();
+            byte[] idByte = message.getIdBytes();
+            tokenHashByte = ByteUtil.merge(tokenHashByte, methodByte, paramsByte, idByte);
+        }
         byte[] tokenByte = Hex.decode(token);
 
-        byte[] tokenHashByte = ByteUtil.merge(methodByte, paramsByte, idByte, tokenByte);
+        tokenHashByte = ByteUtil.merge(tokenHashByte, tokenByte);
         tokenHashByte = HashUtil.sha3(tokenHashByte);
 
         return ByteUtil.toHexString(tokenHashByte);
@@ -105,6 +124,11 @@ public class RPCJsonUtil {
         return new Gson().toJson(rpcResultData);
     }
 
+    public static String createJson(long id, String method, Object result, int errorCode, String error) {
+        RPCResultData rpcResultData = new RPCResultData(id, method, result, errorCode, error);
+        return new Gson().toJson(rpcResultData);
+    }
+
     public static String createJson(long id, String method, Object result, Exception error) {
         RPCResultData rpcResultData = new RPCResultData(id, method, result, error);
         return new Gson().toJson(rpcResultData);
@@ -163,8 +187,60 @@ public class RPCJsonUtil {
         return params;
     }
 
-    public static long getDecodeMessageId(String msg) throws ParseException {
-        return getDecodeMessageLong(msg, RPCCommand.TAG_ID);
+    /**
+     * @return 메시지의 ID, 배치 요청이면 유효한 요청들의 ID 를 요청의 순서대로 반환한다.
+     */
+    public static long[] getDecodeMessageIds(String msg) throws ParseException {
+        if(isBatchPayload(msg)) {
+            long[] ids = parseBatchPayload(msg).stream()
+                    .filter(Objects::nonNull)
+                    .mapToLong(MessageApp3::getId)
+                    .toArray();
+            if(ids.length == 0) {
+                throw new NumberFormatException("No valid request in the batch");
+            }
+            return ids;
+        }
+        return new long[] {getDecodeMessageLong(msg, RPCCommand.TAG_ID)};
+    }
+
+    /**
+     * JSON-RPC 배치 요청은 요청 객체들의 배열로 전달된다.
+     * @return payload 가 배치 요청이면 true
+     */
+    public static boolean isBatchPayload(String payload) {
+        return payload != null && payload.trim().startsWith("[");
+    }
+
+    /**
+     * 배치 요청의 각 요소를 요청 객체로 변환한다.
+     * 객체가 아니거나 method 가 없는 요소는 null 로 반환되고, 해당 요소에는 Invalid Request 오류가 응답된다.
+     *
+     * @return 요청의 순서대로 나열된 요청 객체, 유효하지 않은 요청은 null
+     */
+    public static List<MessageApp3> parseBatchPayload(String payload) {
+        JsonElement batch = new JsonParser().parse(payload);
+        if(!batch.isJsonArray()) {
+            return Collections.emptyList();
+        }
+
+        Gson gson = new GsonBuilder().create();
+        List<MessageApp3> messages = new ArrayList<>();
+        for(JsonElement element : batch.getAsJsonArray()) {
+            MessageApp3 message = null;
+            if(element.isJsonObject()) {
+                try {
+                    message = gson.fromJson(element, MessageApp3.class);
+                } catch (JsonParseException | NumberFormatException e) {
+                    // 필드의 형식이 맞지 않는 요청
+                }
+            }
+            if(message != null && (message.getMethod() == null || message.getMethod().isEmpty())) {
+                message = null;
+            }
+            messages.add(message);
+        }
+        return messages;
     }
 
 
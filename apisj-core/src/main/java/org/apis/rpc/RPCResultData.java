@@ -41,6 +41,13 @@ public class RPCResultData {
         }
     }
 
+    public RPCResultData(long id, String method, Object result, int code, String error) {
+        this(id, method, result, error);
+        if(this.error != null) {
+            this.error.code = code;
+        }
+    }
+
     public RPCResultData(long id, String method, Object result, Exception error) {
         this.id = id;
         this.jsonrpc = RPCCommand.COMMAND_RPC_VERSION;
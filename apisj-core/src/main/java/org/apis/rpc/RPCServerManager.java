@@ -23,6 +23,9 @@ public class RPCServerManager {
     private int maxConnection;
     private int maxPeers;
     private String whitelist;
+    private int wsThread;
+    private int wsSlowThread;
+    private int wsMaxInFlight;
 
     private String PATH_PROPERTIES = "config/rpc.properties";
 
@@ -38,7 +41,16 @@ public class RPCServerManager {
     public static final String KEY_HTTP_PORT = "http_port";
     public static final String KEY_HTTP_THREAD = "http_thread";
 
+    public static final String KEY_WS_THREAD = "ws_thread";
+    public static final String KEY_WS_SLOW_THREAD = "ws_slow_thread";
+    public static final String KEY_WS_MAX_INFLIGHT = "ws_max_inflight";
+
+    private static final int DEFAULT_WS_THREAD = 8;
+    private static final int DEFAULT_WS_SLOW_THREAD = 2;
+    private static final int DEFAULT_WS_MAX_INFLIGHT = 16;
+
     private RPCWebSocketServer rpcServer = null;
+    private RPCDispatcher dispatcher = null;
     private boolean isRun = false;
 
     public static RPCServerManager getInstance() throws IOException {
@@ -98,6 +110,21 @@ public class RPCServerManager {
         } catch(NumberFormatException e) {
             this.maxPeers = 30;
         }
+        try {
+            this.wsThread = Integer.parseInt(prop.getProperty(KEY_WS_THREAD));
+        } catch(NumberFormatException e) {
+            this.wsThread = DEFAULT_WS_THREAD;
+        }
+        try {
+            this.wsSlowThread = Integer.parseInt(prop.getProperty(KEY_WS_SLOW_THREAD));
+        } catch(NumberFormatException e) {
+            this.wsSlowThread = DEFAULT_WS_SLOW_THREAD;
+        }
+        try {
+            this.wsMaxInFlight = Integer.parseInt(prop.getProperty(KEY_WS_MAX_INFLIGHT));
+        } catch(NumberFormatException e) {
+            this.wsMaxInFlight = DEFAULT_WS_MAX_INFLIGHT;
+        }
     }
 
     /**
@@ -189,7 +216,8 @@ public class RPCServerManager {
         if(isRun) {
             return;
         }
-        rpcServer = new RPCWebSocketServer(port, id, password, apis);
+        dispatcher = new RPCDispatcher(wsThread, wsSlowThread, wsMaxInFlight);
+        rpcServer = new RPCWebSocketServer(port, id, password, apis, dispatcher);
         rpcServer.setConnectionRule(whitelist, maxConnection);
         rpcServer.setReuseAddr(true);
 
@@ -209,6 +237,13 @@ public class RPCServerManager {
         isRun = false;
     }
 
+    /**
+     * @return 웹소켓 서버의 요청 처리 현황, 서버가 실행 중이 아니면 null
+     */
+    public RPCDispatcher getDispatcher() {
+        return isRun ? dispatcher : null;
+    }
+
 
     public boolean isHttpServerEnabled() {
         return Boolean.parseBoolean(prop.getProperty(KEY_HTTP_AVAILABLE_RPC));
@@ -6,6 +6,7 @@ import com.google.gson.JsonSyntaxException;
 import org.apache.commons.validator.routines.InetAddressValidator;
 import org.apis.crypto.HashUtil;
 import org.apis.facade.Apis;
+import org.apis.rpc.template.MessageApp3;
 import org.apis.util.ByteUtil;
 import org.apis.util.ConsoleUtil;
 import org.java_websocket.WebSocket;
@@ -21,9 +22,9 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RPCWebSocketServer extends WebSocketServer {
     private Logger logger = LoggerFactory.getLogger("rpc");
@@ -33,7 +34,8 @@ public class RPCWebSocketServer extends WebSocketServer {
 
     private List<String> allowedAddressList = new ArrayList<>();
     private int maxConnections;
-    private Map<String, Client> userMap = new HashMap<>();
+    private Map<String, Client> userMap = new ConcurrentHashMap<>();
+    private final RPCDispatcher dispatcher;
 
     private int errorCode = RPCCommand.ERROR_CODE_UNNKOWN;
     private String errorMsg = RPCCommand.ERROR_DEPORT_UNKNOWN;
@@ -42,11 +44,12 @@ public class RPCWebSocketServer extends WebSocketServer {
 
     private static Apis mApis;
 
-    RPCWebSocketServer(int port, String id, String pw, Apis apis) {
+    RPCWebSocketServer(int port, String id, String pw, Apis apis, RPCDispatcher dispatcher) {
         super(new InetSocketAddress(port));
         serverID = id;
         serverPW = pw;
         mApis = apis;
+        this.dispatcher = dispatcher;
 //        mDisportThread.start();
     }
 
@@ -62,13 +65,14 @@ public class RPCWebSocketServer extends WebSocketServer {
         this.maxConnections = max;
     }
 
-    private void deportClient(WebSocket conn) {
+    private synchronized void deportClient(WebSocket conn) {
+        deportClient(conn, errorCode, errorMsg);
+    }
+
+    private void deportClient(WebSocket conn, int errorCode, String errorMsg) {
         if (conn.isOpen()) {
             // send error message
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.addProperty(RPCCommand.TAG_CODE, errorCode);
-            jsonObject.addProperty(RPCCommand.TAG_ERROR, errorMsg);
-            conn.send(new Gson().toJson(jsonObject));
+            conn.send(createErrorJson(errorCode, errorMsg));
 
             // close
             conn.close();
@@ -81,9 +85,16 @@ public class RPCWebSocketServer extends WebSocketServer {
         }
     }
 
+    private String createErrorJson(int errorCode, String errorMsg) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty(RPCCommand.TAG_CODE, errorCode);
+        jsonObject.addProperty(RPCCommand.TAG_ERROR, errorMsg);
+        return new Gson().toJson(jsonObject);
+    }
+
     // header check
     @Override
-    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+    public synchronized void onOpen(WebSocket conn, ClientHandshake handshake) {
         String hostAddress = conn.getRemoteSocketAddress().toString();
         logger.debug(ConsoleUtil.colorCyan("Websocket client connected : " + hostAddress));
 
@@ -163,6 +174,7 @@ public class RPCWebSocketServer extends WebSocketServer {
         else {
             userMap.remove(hostAddress);
         }
+        dispatcher.remove(conn);
     }
 
     @Override
@@ -172,69 +184,121 @@ public class RPCWebSocketServer extends WebSocketServer {
         logger.debug(ConsoleUtil.colorCyan("[onMessage] Received from [{}] : {}"), clientAddress, message);
 
         // ID와 PW 인증된 사용자가 아니면 접속을 종료한다.
-        if (!isApprovedClient(clientAddress)) {
-            errorCode = RPCCommand.ERROR_CODE_WITHOUT_PERMISSION_CLIENT;
-            errorMsg = RPCCommand.ERROR_DEPORT_WITHOUT_PERMISSION_CLIENT;
-            deportClient(conn);
+        if (client == null) {
+            deportClient(conn, RPCCommand.ERROR_CODE_WITHOUT_PERMISSION_CLIENT, RPCCommand.ERROR_DEPORT_WITHOUT_PERMISSION_CLIENT);
             return;
         }
 
-        // 메시지가 암호화 되어있는지 여부를 검사한다.
-        boolean isEncrypted = true;
-        try {
-            isEncrypted = RPCJsonUtil.isEncrypRequestMessage(message);
-        } catch (JsonSyntaxException | JSONException e) {
-            logger.trace(ConsoleUtil.colorCyan("[onMessage] Received messages are encrypted."));
+        // 복호화와 명령어 실행은 셀렉터 스레드를 막지 않도록 dispatcher 의 스레드에서 진행한다.
+        if (!dispatcher.dispatch(conn, new MessageRequest(conn, client, message))) {
+            logger.warn(ConsoleUtil.colorBRed("Too many requests in flight from [{}]"), clientAddress);
+            conn.send(createErrorJson(RPCCommand.ERROR_CODE_TOO_MANY_REQUESTS, RPCCommand.ERROR_MESSAGE_TOO_MANY_REQUESTS));
         }
+    }
 
+    /**
+     * 클라이언트가 보낸 메시지 하나. dispatcher 의 스레드에서 복호화, 검증 후 실행된다.
+     */
+    private class MessageRequest implements RPCDispatcher.Request {
+        private final WebSocket conn;
+        private final Client client;
+        private String message;
+
+        private String token;
+        private String payload;
+        private boolean isEncrypted;
+        private long lastId;
+        private boolean slowBatch = false;
+
+        MessageRequest(WebSocket conn, Client client, String message) {
+            this.conn = conn;
+            this.client = client;
+            this.message = message;
+        }
 
-        byte[] tokenByte = client.getToken();
-        String token = ByteUtil.toHexString(tokenByte);
+        @Override
+        public String prepare() {
+            // 메시지가 암호화 되어있는지 여부를 검사한다.
+            isEncrypted = true;
+            try {
+                isEncrypted = RPCJsonUtil.isEncrypRequestMessage(message);
+            } catch (JsonSyntaxException | JSONException e) {
+                logger.trace(ConsoleUtil.colorCyan("[onMessage] Received messages are encrypted."));
+            }
 
-        // 암호화 된 메시지는 복호화를 진행한다.
-        if (isEncrypted) {
-            message = RPCJsonUtil.AESDecrypt(token, message);
-            logger.debug(ConsoleUtil.colorCyan("[onMessage] The decrypted message is: {}"), message);
-        }
+            token = ByteUtil.toHexString(client.getToken());
 
-        // payload
-        String payload;
-        try {
-            payload = RPCJsonUtil.getDecodeMessagePayload(message);
-        } catch (ParseException | IllegalStateException e) {
-            e.printStackTrace();
-            conn.send(RPCCommand.ERROR_MESSAGE_UNKNOWN);
-            return;
-        }
+            // 암호화 된 메시지는 복호화를 진행한다.
+            if (isEncrypted) {
+                message = RPCJsonUtil.AESDecrypt(token, message);
+                logger.debug(ConsoleUtil.colorCyan("[onMessage] The decrypted message is: {}"), message);
+            }
 
-        // check id
-        if (!isValidId(client, payload)) {
-            deportClient(conn);
-            return;
-        }
+            // payload
+            try {
+                payload = RPCJsonUtil.getDecodeMessagePayload(message);
+            } catch (ParseException | IllegalStateException e) {
+                e.printStackTrace();
+                conn.send(RPCCommand.ERROR_MESSAGE_UNKNOWN);
+                return null;
+            }
 
-        // check token
-        if (!checkTokenHash(client, message)) {
-            deportClient(conn);
-            return;
-        }
+            // errorCode, errorMsg 는 모든 연결이 함께 사용하므로 검증과 종료를 한 번에 진행한다.
+            synchronized (RPCWebSocketServer.this) {
+                // check id
+                lastId = checkId(client, payload);
+                if (lastId == 0) {
+                    deportClient(conn);
+                    return null;
+                }
 
-        // check message
-        try {
-            String method = RPCJsonUtil.getDecodeMessageMethod(payload);
+                // check token
+                if (!checkTokenHash(client, message)) {
+                    deportClient(conn);
+                    return null;
+                }
+            }
 
-            if (method != null && !method.isEmpty()) {
-                // 정상적 json 파일을 받은 경우 접속기간을 증가
-                client.refreshLastDiscoveredTime();
+            // 배치 요청은 하나의 메시지로 복호화, 검증된 뒤 같은 스냅샷에서 실행된다.
+            if (RPCJsonUtil.isBatchPayload(payload)) {
+                List<MessageApp3> messages = RPCJsonUtil.parseBatchPayload(payload);
+                for (MessageApp3 message : messages) {
+                    if (message != null && RPCCommand.SLOW_COMMANDS.contains(message.getMethod())) {
+                        slowBatch = true;
+                        break;
+                    }
+                }
+                return RPCCommand.COMMAND_BATCH;
+            }
 
-                // conduct
-                RPCCommand.conduct(mApis, conn, token, payload, isEncrypted);
-                client.addID();
+            // check message
+            try {
+                String method = RPCJsonUtil.getDecodeMessageMethod(payload);
+                if (method == null || method.isEmpty()) {
+                    return null;
+                }
+                return method;
+            } catch (ParseException | IllegalStateException e) {
+                e.printStackTrace();
+                conn.send(RPCCommand.ERROR_MESSAGE_UNKNOWN);
+                deportClient(conn);
+                return null;
             }
-        } catch (ParseException | IllegalStateException e) {
-            e.printStackTrace();
-            conn.send(RPCCommand.ERROR_MESSAGE_UNKNOWN);
-            deportClient(conn);
+        }
+
+        @Override
+        public boolean isSlow(String method) {
+            return slowBatch || RPCCommand.SLOW_COMMANDS.contains(method);
+        }
+
+        @Override
+        public void execute() {
+            // 정상적 json 파일을 받은 경우 접속기간을 증가
+            client.refreshLastDiscoveredTime();
+
+            // conduct
+            RPCCommand.conduct(mApis, conn, token, payload, isEncrypted);
+            client.updateID(lastId);
         }
     }
 
@@ -247,6 +311,12 @@ public class RPCWebSocketServer extends WebSocketServer {
         }
     }
 
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        super.stop(timeout);
+        dispatcher.shutdown();
+    }
+
     @Override
     public void onStart() {
         logger.debug(ConsoleUtil.colorCyan("RPC Server started!"));
@@ -287,37 +357,23 @@ public class RPCWebSocketServer extends WebSocketServer {
         userMap.put(hostAddress, clientInfo); // register
     }
 
-    // 등록된 client 인지 체크
-
     /**
-     * 입력된 IP:PORT 주소가 승인된 사용자 목록에 존재하는지 확인한다.
-     * @param clientAddress 승인되었는지 확인하려는 주소
-     * @return TRUE : 승인된 주소, FALSE : 승인되지 않은 주소
+     * 요청의 ID 는 이전에 처리한 요청의 ID 보다 커야 한다. 배치 요청은 모든 요청의 ID 가 순서대로 증가해야 한다.
+     * @return 마지막 요청의 ID, 유효하지 않으면 0
      */
-    private boolean isApprovedClient(String clientAddress) {
-        for (String user : userMap.keySet()) {
-            if (user.equals(clientAddress)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    // check id
-    private boolean isValidId(Client client, String msg) {
-        boolean result = false;
+    private long checkId(Client client, String msg) {
+        long result = 0;
         try {
-            long currentId = client.getID();
-            long messageId = RPCJsonUtil.getDecodeMessageId(msg);
-
-            if (currentId >= messageId) {
-                errorCode = RPCCommand.ERROR_CODE_WRONG_ID;
-                errorMsg = RPCCommand.ERROR_DEPORT_WRONG_ID;
-            }
-            else {
-                result = true;
+            long previousId = client.getID();
+            for (long messageId : RPCJsonUtil.getDecodeMessageIds(msg)) {
+                if (previousId >= messageId) {
+                    errorCode = RPCCommand.ERROR_CODE_WRONG_ID;
+                    errorMsg = RPCCommand.ERROR_DEPORT_WRONG_ID;
+                    return 0;
+                }
+                previousId = messageId;
             }
+            result = previousId;
         } catch (ParseException e) {
             errorCode = RPCCommand.ERROR_CODE_WRONG_ID;
             errorMsg = RPCCommand.ERROR_DEPORT_WRONG_ID;
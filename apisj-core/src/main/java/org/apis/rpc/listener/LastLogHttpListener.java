@@ -112,6 +112,22 @@ public class LastLogHttpListener extends EthereumListenerAdapter {
         return command;
     }
 
+    /**
+     * @return TransactionReceiptData list if only addresses are filtered, LogInfoData list otherwise
+     */
+    public List<?> getResult() {
+        if(listTransactionReceipt != null) {
+            return listTransactionReceipt;
+        } else if(listLogInfo != null) {
+            return listLogInfo;
+        }
+        return new ArrayList<>();
+    }
+
+    public int getResultSize() {
+        return getResult().size();
+    }
+
     /**
      * 필터링 조건으로 등록된 토픽들이 입력되는 블룸필터에 포함되는지 확인한다.
      * @param bigBloom 필터가 포함되어있을 것으로 예상되는 블룸필터
@@ -0,0 +1,43 @@
+package org.apis.rpc.template;
+
+import org.apis.util.ByteUtil;
+
+import java.util.List;
+
+public class LogsPageData {
+    private List<?> logs;
+    private long fromBlock;
+    private long toBlock;
+
+    /**
+     * fromBlock of the next page, null if the whole range has been searched
+     */
+    private String nextBlock;
+
+    public LogsPageData(List<?> logs, long fromBlock, long toBlock, long nextBlock) {
+        this.logs = logs;
+        this.fromBlock = fromBlock;
+        this.toBlock = toBlock;
+        if(nextBlock >= 0) {
+            this.nextBlock = ByteUtil.toHexString0x(ByteUtil.longToBytesNoLeadZeroes(nextBlock));
+        }
+    }
+
+    public List<?> getLogs() {
+        return logs;
+    }
+
+    public String getNextBlock() {
+        return nextBlock;
+    }
+
+    @Override
+    public String toString() {
+        return "LogsPageData{" +
+                "logs=" + logs +
+                ", fromBlock=" + fromBlock +
+                ", toBlock=" + toBlock +
+                ", nextBlock='" + nextBlock + '\'' +
+                '}';
+    }
+}
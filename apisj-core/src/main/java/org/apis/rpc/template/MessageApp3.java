@@ -44,6 +44,9 @@ public class MessageApp3 {
      */
     public String getMergedParams() {
         StringBuilder merged = new StringBuilder();
+        if(params == null) {
+            return "";
+        }
         for(Object param : params) {
             if(param instanceof LinkedTreeMap) {
                 LinkedTreeMap treeMap = (LinkedTreeMap) param;
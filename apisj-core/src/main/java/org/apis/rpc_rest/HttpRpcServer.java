@@ -191,11 +191,12 @@ public class HttpRpcServer {
      * @throws IOException If an error occurs during HTTP response creation
      */
     private void writeResponse(HttpExchange httpExchange, String response) throws IOException {
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
         httpExchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-        httpExchange.sendResponseHeaders(200, response.length());
+        httpExchange.sendResponseHeaders(200, body.length);
 
         OutputStream os = httpExchange.getResponseBody();
-        os.write(response.getBytes(StandardCharsets.UTF_8));
+        os.write(body);
         os.close();
     }
 
@@ -174,8 +174,12 @@ public class BlockBodiesDownloader extends BlockDownloader {
      * Fallbacks to any peer when low number of active peers available
      */
     @Override
-    Channel getAnyPeer() {
-        return syncPool.getActivePeersCount() > 2 ? syncPool.getNotLastIdle() : syncPool.getAnyIdle();
+    List<Channel> getIdlePeers() {
+        List<Channel> idle = syncPool.getAllIdle();
+        if (syncPool.getActivePeersCount() > 2 && !idle.isEmpty()) {
+            idle.remove(idle.size() - 1);
+        }
+        return idle;
     }
 
     @Override
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apis.core.*;
+import org.apis.db.ByteArrayWrapper;
 import org.apis.net.server.Channel;
 import org.apis.validator.BlockHeaderValidator;
 import org.slf4j.Logger;
@@ -30,8 +31,10 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.ToDoubleFunction;
 
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.apis.util.ByteUtil.toHexString;
@@ -48,7 +51,15 @@ public abstract class BlockDownloader {
 
     // Max number of Blocks / Headers in one request
     public static int MAX_IN_REQUEST = 256;
-    private static int REQUESTS = 32;
+    // Blocks in a request to the peer which throughput is not measured yet
+    private static int INITIAL_IN_REQUEST = 64;
+    private static int MIN_IN_REQUEST = 16;
+
+    // Block bodies requests are sized to be answered by the peer within this time (ms)
+    // 블록 바디 요청은 피어가 이 시간 안에 응답할 수 있는 크기로 정한다
+    private static final long TARGET_RTT = 1000;
+    // Block bodies not received within this time are requested from other peers (ms)
+    private static final long STRAGGLER_TIMEOUT = 3 * TARGET_RTT;
 
     private BlockHeaderValidator headerValidator;
 
@@ -75,6 +86,24 @@ public abstract class BlockDownloader {
     private long estimatedBlockSize = 0;
     private final CircularFifoQueue<Long> lastBlockSizes = new CircularFifoQueue<>(10 * MAX_IN_REQUEST);
 
+    /**
+     * Block bodies request sent to a peer and not answered yet
+     */
+    private static class BodiesRequest {
+        final Channel peer;
+        final List<BlockHeaderWrapper> headers;
+        final long sentAt = System.currentTimeMillis();
+
+        BodiesRequest(Channel peer, List<BlockHeaderWrapper> headers) {
+            this.peer = peer;
+            this.headers = headers;
+        }
+    }
+
+    // headers of the bodies being downloaded, guarded by bodiesRequests
+    private final Map<ByteArrayWrapper, BodiesRequest> requestedBodies = new HashMap<>();
+    private final Set<BodiesRequest> bodiesRequests = new LinkedHashSet<>();
+
     public BlockDownloader(BlockHeaderValidator headerValidator) {
         this.headerValidator = headerValidator;
     }
@@ -170,16 +199,19 @@ public abstract class BlockDownloader {
                     }
                 }
                 int reqHeadersCounter = 0;
+                // the peers answering faster are asked first, the peers not measured yet are tried too
+                Iterator<Channel> peers = sortPeers(getIdlePeers(), p -> p.getSyncStats().getRoundTripTime()).iterator();
                 for (Iterator<SyncQueueIfc.HeadersRequest> it = hReq.iterator(); it.hasNext();) {
                     SyncQueueIfc.HeadersRequest headersRequest = it.next();
 
-                    final Channel any = getAnyPeer();
+                    final Channel any = peers.hasNext() ? peers.next() : null;
 
                     if (any == null) {
                         logger.debug("{} headerRetrieveLoop: No IDLE peers found", name);
                         break;
                     } else {
                         logger.debug("{} headerRetrieveLoop: request headers (" + headersRequest.toString() + ") from " + any.getNode(), name);
+                        final long sentAt = System.currentTimeMillis();
                         ListenableFuture<List<BlockHeader>> futureHeaders = headersRequest.getHash() == null ?
                                 any.getEthHandler().sendGetBlockHeaders(headersRequest.getStart(), headersRequest.getCount(), headersRequest.isReverse()) :
                                 any.getEthHandler().sendGetBlockHeaders(headersRequest.getHash(), headersRequest.getCount(), headersRequest.getStep(), headersRequest.isReverse());
@@ -187,6 +219,7 @@ public abstract class BlockDownloader {
                             Futures.addCallback(futureHeaders, new FutureCallback<List<BlockHeader>>() {
                                 @Override
                                 public void onSuccess(List<BlockHeader> result) {
+                                    any.getSyncStats().addRoundTrip(0, System.currentTimeMillis() - sentAt);
                                     if (!validateAndAddHeaders(result, any.getNodeId())) {
                                         onFailure(new RuntimeException("Received headers validation failed"));
                                     }
@@ -215,96 +248,58 @@ public abstract class BlockDownloader {
     }
 
     private void blockRetrieveLoop() {
-        class BlocksCallback implements FutureCallback<List<Block>> {
-            private Channel peer;
-
-            public BlocksCallback(Channel peer) {
-                this.peer = peer;
-            }
-
-            @Override
-            public void onSuccess(List<Block> result) {
-                addBlocks(result, peer.getNodeId());
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-                logger.debug("{}: Error receiving Blocks. Dropping the peer.", name, t);
-                peer.getEthHandler().dropConnection();
-            }
-        }
-
-        List<SyncQueueIfc.BlocksRequest> bReqs = emptyList();
         while(!Thread.currentThread().isInterrupted()) {
             try {
-                if (bReqs.isEmpty() || bReqs.size() == 1) {
-                    bReqs = syncQueue.requestBlocks(16 * 1024).split(MAX_IN_REQUEST);
-                }
+                releaseStragglers();
+                List<BlockHeaderWrapper> missing = syncQueue.requestBlocks(16 * 1024).getBlockHeaders();
 
-                if (bReqs.isEmpty() && headersDownloadComplete) {
+                if (missing.isEmpty() && headersDownloadComplete) {
                     logger.info("{}: Block download complete.", name);
                     finishDownload();
                     downloadComplete = true;
                     return;
                 }
 
-                int blocksToAsk = getBlockQueueFreeSize();
-                if (blocksToAsk > MAX_IN_REQUEST) {
-//                    SyncQueueIfc.BlocksRequest bReq = syncQueue.requestBlocks(maxBlocks);
+                int blocksToAsk = getBlockQueueFreeSize() - getRequestedBodiesCount();
+                if (blocksToAsk > MIN_IN_REQUEST) {
+                    receivedBlocksLatch = new CountDownLatch(1);
 
-                    boolean fewHeadersReqMode = false;
-                    if (bReqs.size() == 1 && bReqs.get(0).getBlockHeaders().size() <= 3) {
+                    List<BlockHeaderWrapper> headers = getNotRequested(missing);
+                    if (!headers.isEmpty() && headers.size() <= 3) {
                         // new blocks are better to request from the header senders first
                         // to get more chances to receive block body promptly
-                        for (BlockHeaderWrapper blockHeaderWrapper : bReqs.get(0).getBlockHeaders()) {
+                        for (BlockHeaderWrapper blockHeaderWrapper : headers) {
                             Channel channel = pool.getByNodeId(blockHeaderWrapper.getNodeId());
-                            if (channel != null) {
-                                ListenableFuture<List<Block>> futureBlocks =
-                                        channel.getEthHandler().sendGetBlockBodies(singletonList(blockHeaderWrapper));
-                                if (futureBlocks != null) {
-                                    Futures.addCallback(futureBlocks, new BlocksCallback(channel),
-                                            MoreExecutors.directExecutor());
-                                    fewHeadersReqMode = true;
+                            if (channel != null && channel.isIdle()) {
+                                BodiesRequest request = sendBodiesRequest(channel, singletonList(blockHeaderWrapper));
+                                if (request != null) {
+                                    blocksToAsk--;
                                 }
                             }
                         }
+                        headers = getNotRequested(headers);
                     }
 
-                    int maxRequests = blocksToAsk / MAX_IN_REQUEST;
-                    int maxBlocks = MAX_IN_REQUEST * Math.min(maxRequests, REQUESTS);
-                    int reqBlocksCounter = 0;
-                    int blocksRequested = 0;
-                    Iterator<SyncQueueIfc.BlocksRequest> it = bReqs.iterator();
-                    while (it.hasNext() && blocksRequested < maxBlocks) {
-//                    for (SyncQueueIfc.BlocksRequest blocksRequest : bReq.split(MAX_IN_REQUEST)) {
-                        SyncQueueIfc.BlocksRequest blocksRequest = it.next();
-                        Channel any = getAnyPeer();
-                        if (any == null) {
-                            logger.debug("{} blockRetrieveLoop: No IDLE peers found", name);
-                            break;
-                        } else {
-                            logger.debug("{} blockRetrieveLoop: Requesting " + blocksRequest.getBlockHeaders().size() + " blocks from " + any.getNode(), name);
-                            ListenableFuture<List<Block>> futureBlocks =
-                                    any.getEthHandler().sendGetBlockBodies(blocksRequest.getBlockHeaders());
-                            blocksRequested += blocksRequest.getBlockHeaders().size();
-                            if (futureBlocks != null) {
-                                Futures.addCallback(futureBlocks, new BlocksCallback(any),
-                                        MoreExecutors.directExecutor());
-                                reqBlocksCounter++;
-                                it.remove();
-                            }
+                    // the best peers get the lowest blocks, the import waits for them first
+                    // 가장 빠른 피어에게 가장 낮은 번호의 블록을 요청한다. 임포트는 이 블록들을 먼저 기다린다
+                    int pos = 0;
+                    for (Channel peer : sortPeers(getIdlePeers(), BlockDownloader::throughputOrder)) {
+                        if (pos >= headers.size() || blocksToAsk <= 0) break;
+
+                        int count = peer.getSyncStats().getBlocksCapacity(TARGET_RTT, INITIAL_IN_REQUEST, MIN_IN_REQUEST, MAX_IN_REQUEST);
+                        count = min(count, min(blocksToAsk, headers.size() - pos));
+                        logger.debug("{} blockRetrieveLoop: Requesting " + count + " blocks from " + peer.getNode(), name);
+                        if (sendBodiesRequest(peer, new ArrayList<>(headers.subList(pos, pos + count))) != null) {
+                            pos += count;
+                            blocksToAsk -= count;
                         }
                     }
-
-                    // Case when we have requested few headers and was not able
-                    // to remove request from the list in above cycle because
-                    // there were no idle peers or whatever
-                    if (fewHeadersReqMode && !bReqs.isEmpty()) {
-                        bReqs.clear();
+                    if (pos < headers.size()) {
+                        logger.debug("{} blockRetrieveLoop: No IDLE peers found", name);
                     }
 
-                    receivedBlocksLatch = new CountDownLatch(max(reqBlocksCounter - 2, 1));
-                    receivedBlocksLatch.await(1000, TimeUnit.MILLISECONDS);
+                    // a response frees the peer for the next request
+                    receivedBlocksLatch.await(200, TimeUnit.MILLISECONDS);
                 } else {
                     logger.debug("{} blockRetrieveLoop: BlockQueue is full", name);
                     Thread.sleep(200);
@@ -317,6 +312,117 @@ public abstract class BlockDownloader {
         }
     }
 
+    private class BlocksCallback implements FutureCallback<List<Block>> {
+        private BodiesRequest request;
+
+        public BlocksCallback(BodiesRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void onSuccess(List<Block> result) {
+            request.peer.getSyncStats().addRoundTrip(result.size(), System.currentTimeMillis() - request.sentAt);
+            finishRequest(request);
+            addBlocks(result, request.peer.getNodeId());
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            finishRequest(request);
+            logger.debug("{}: Error receiving Blocks. Dropping the peer.", name, t);
+            request.peer.getEthHandler().dropConnection();
+        }
+    }
+
+    private BodiesRequest sendBodiesRequest(Channel peer, List<BlockHeaderWrapper> headers) {
+        BodiesRequest request = new BodiesRequest(peer, headers);
+        // registered before sending as the response may come before the future is returned
+        synchronized (bodiesRequests) {
+            bodiesRequests.add(request);
+            for (BlockHeaderWrapper header : headers) {
+                requestedBodies.put(new ByteArrayWrapper(header.getHash()), request);
+            }
+        }
+
+        ListenableFuture<List<Block>> futureBlocks = peer.getEthHandler().sendGetBlockBodies(headers);
+        if (futureBlocks == null) {
+            finishRequest(request);
+            return null;
+        }
+        Futures.addCallback(futureBlocks, new BlocksCallback(request), MoreExecutors.directExecutor());
+        return request;
+    }
+
+    private void finishRequest(BodiesRequest request) {
+        synchronized (bodiesRequests) {
+            if (!bodiesRequests.remove(request)) return;
+            for (BlockHeaderWrapper header : request.headers) {
+                requestedBodies.remove(new ByteArrayWrapper(header.getHash()), request);
+            }
+        }
+    }
+
+    /**
+     * Gives the bodies requested from the slow peers to the other peers.
+     * The late response is still accepted
+     * 응답이 늦은 피어의 요청은 다른 피어에게 다시 요청한다. 늦게 도착한 응답도 받아들인다
+     */
+    private void releaseStragglers() {
+        long now = System.currentTimeMillis();
+        List<BodiesRequest> stragglers = new ArrayList<>();
+        synchronized (bodiesRequests) {
+            // the requests are in the sending order
+            for (BodiesRequest request : bodiesRequests) {
+                if (now - request.sentAt <= STRAGGLER_TIMEOUT) break;
+                stragglers.add(request);
+            }
+        }
+        for (BodiesRequest request : stragglers) {
+            logger.debug("{}: {} blocks are not received in {} ms from {}, requesting from other peers",
+                    name, request.headers.size(), now - request.sentAt, request.peer.getNode());
+            request.peer.getSyncStats().addTimeout(now - request.sentAt);
+            finishRequest(request);
+        }
+    }
+
+    private int getRequestedBodiesCount() {
+        synchronized (bodiesRequests) {
+            return requestedBodies.size();
+        }
+    }
+
+    private List<BlockHeaderWrapper> getNotRequested(List<BlockHeaderWrapper> headers) {
+        List<BlockHeaderWrapper> ret = new ArrayList<>(headers.size());
+        synchronized (bodiesRequests) {
+            for (BlockHeaderWrapper header : headers) {
+                if (!requestedBodies.containsKey(new ByteArrayWrapper(header.getHash()))) {
+                    ret.add(header);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The peers which throughput is not measured yet come first to be measured
+     */
+    private static double throughputOrder(Channel peer) {
+        double throughput = peer.getSyncStats().getBlocksThroughput();
+        return throughput < 0 ? Double.NEGATIVE_INFINITY : -throughput;
+    }
+
+    /**
+     * Sorts the peers by the key taken once per peer, as the measurements change while sorting
+     */
+    private static List<Channel> sortPeers(List<Channel> peers, ToDoubleFunction<Channel> key) {
+        Map<Channel, Double> keys = new IdentityHashMap<>();
+        for (Channel peer : peers) {
+            keys.put(peer, key.applyAsDouble(peer));
+        }
+        peers.sort(Comparator.comparingDouble(keys::get));
+        return peers;
+    }
+
     /**
      * Adds a list of blocks to the queue
      *
@@ -413,9 +519,11 @@ public abstract class BlockDownloader {
         return headerValidator.validateAndLog(header, logger);
     }
 
-    Channel getAnyPeer() {
-        //return pool.getAnyIdle();     // 바꿔봤다. 20180531 테스트 진행 중...
-        return pool.getAnyPeer();
+    /**
+     * @return peers which can take a request now, the list may be modified
+     */
+    List<Channel> getIdlePeers() {
+        return pool.getAllIdle();
     }
 
     public boolean isSyncDone() {
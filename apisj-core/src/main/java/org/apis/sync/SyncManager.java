@@ -62,12 +62,11 @@ public class SyncManager extends BlockDownloader {
     private final static int BLOCK_BYTES_ADDON = 4;
 
     // Transaction.getSender() is quite heavy operation so we are prefetching this value on several threads
-    // to unload the main block importing cycle
+    // to unload the main block importing cycle. Transactions of a single block are spread over
+    // the shared recovery pool so large blocks don't end up on a single thread either
     private ExecutorPipeline<BlockWrapper,BlockWrapper> exec1 = new ExecutorPipeline<>
             (4, 1000, true, blockWrapper -> {
-                for (Transaction tx : blockWrapper.getBlock().getTransactionsList()) {
-                    tx.getSender();
-                }
+                TransactionSenderRecovery.recover(blockWrapper.getBlock().getTransactionsList());
                 return blockWrapper;
             }, throwable -> logger.error("Unexpected exception: ", throwable));
 
@@ -21,8 +21,7 @@ import org.apis.core.Block;
 import org.apis.core.BlockHeader;
 import org.apis.core.BlockHeaderWrapper;
 import org.apis.core.Blockchain;
-import org.apis.db.ByteArrayWrapper;
-import org.apis.util.ByteArrayMap;
+import org.apis.util.FastByteComparisons;
 import org.spongycastle.util.encoders.Hex;
 
 import java.util.*;
@@ -156,17 +155,15 @@ public class SyncQueueImpl implements SyncQueueIfc {
         }
 
         public HeaderElement getParent() {
-            Map<ByteArrayWrapper, HeaderElement> genHeaders = headers.get(header.getNumber() - 1);
-            if (genHeaders == null) return null;
-            return genHeaders.get(new ByteArrayWrapper(header.getHeader().getParentHash()));
+            return findElement(headers.get(header.getNumber() - 1), header.getHeader().getParentHash());
         }
 
         public List<HeaderElement> getChildren() {
             List<HeaderElement> ret = new ArrayList<>();
-            Map<ByteArrayWrapper, HeaderElement> childGenHeaders = headers.get(header.getNumber() + 1);
+            HeaderElement[] childGenHeaders = headers.get(header.getNumber() + 1);
             if (childGenHeaders != null) {
-                for (HeaderElement child : childGenHeaders.values()) {
-                    if (Arrays.equals(child.header.getHeader().getParentHash(), header.getHash())) {
+                for (HeaderElement child : childGenHeaders) {
+                    if (isChild(child, this)) {
                         ret.add(child);
                     }
                 }
@@ -175,7 +172,60 @@ public class SyncQueueImpl implements SyncQueueIfc {
         }
     }
 
-    Map<Long, Map<ByteArrayWrapper, HeaderElement>> headers = new HashMap<>();
+    /**
+     * Header generations indexed by the block number.
+     * The queue holds a window of consecutive numbers and nearly every generation has a single header,
+     * so the generations are plain arrays kept in a ring which grows with the window
+     * 큐는 연속된 번호의 구간을 갖고 대부분 세대에 헤더가 하나뿐이므로, 해시 맵 대신 번호로 바로 찾는 배열 링에 보관한다
+     */
+    static class HeightIndex {
+        private HeaderElement[][] ring = new HeaderElement[1024][];
+        private long lo = Long.MAX_VALUE;
+        private long hi = Long.MIN_VALUE;
+
+        HeaderElement[] get(long num) {
+            if (num < lo || num > hi) return null;
+            return ring[slot(num)];
+        }
+
+        void put(long num, HeaderElement[] gen) {
+            long newLo = Math.min(lo, num);
+            long newHi = Math.max(hi, num);
+            if (newHi - newLo >= ring.length) {
+                grow(newHi - newLo + 1);
+            }
+            lo = newLo;
+            hi = newHi;
+            ring[slot(num)] = gen;
+        }
+
+        void remove(long num) {
+            if (num < lo || num > hi) return;
+            ring[slot(num)] = null;
+            while (lo <= hi && ring[slot(lo)] == null) lo++;
+            while (hi >= lo && ring[slot(hi)] == null) hi--;
+            if (lo > hi) {
+                lo = Long.MAX_VALUE;
+                hi = Long.MIN_VALUE;
+            }
+        }
+
+        private void grow(long span) {
+            int size = ring.length;
+            while (size < span) size <<= 1;
+            HeaderElement[][] old = ring;
+            ring = new HeaderElement[size][];
+            for (long i = lo; i <= hi; i++) {
+                ring[slot(i)] = old[(int) (i & (old.length - 1))];
+            }
+        }
+
+        private int slot(long num) {
+            return (int) (num & (ring.length - 1));
+        }
+    }
+
+    HeightIndex headers = new HeightIndex();
 
     long minNum = Integer.MAX_VALUE;
     long maxNum = 0;
@@ -222,28 +272,44 @@ public class SyncQueueImpl implements SyncQueueIfc {
         darkZoneNum = initBlocks.get(0).getNumber();
     }
 
-    private void putGenHeaders(long num, Map<ByteArrayWrapper, HeaderElement> genHeaders) {
+    private static HeaderElement findElement(HeaderElement[] genHeaders, byte[] hash) {
+        if (genHeaders == null) return null;
+        for (HeaderElement element : genHeaders) {
+            if (FastByteComparisons.equal(element.header.getHash(), hash)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isChild(HeaderElement child, HeaderElement parent) {
+        return FastByteComparisons.equal(child.header.getHeader().getParentHash(), parent.header.getHash());
+    }
+
+    private void putGenHeaders(long num, HeaderElement[] genHeaders) {
         minNum = min(minNum, num);
         maxNum = Math.max(maxNum, num);
         headers.put(num, genHeaders);
     }
 
     List<HeaderElement> getLongestChain() {
-        Map<ByteArrayWrapper, HeaderElement> lastValidatedGen = headers.get(darkZoneNum);
-        assert lastValidatedGen.size() == 1;
-        HeaderElement lastHeader = lastValidatedGen.values().iterator().next();
+        HeaderElement[] lastValidatedGen = headers.get(darkZoneNum);
+        assert lastValidatedGen.length == 1;
+        HeaderElement lastHeader = lastValidatedGen[0];
 
-        Map<byte[], HeaderElement> chainedParents = new ByteArrayMap<>();
-        chainedParents.put(lastHeader.header.getHash(), lastHeader);
+        List<HeaderElement> chainedParents = Collections.singletonList(lastHeader);
 
         for(long curNum = darkZoneNum + 1; ; curNum++) {
             // keep track of blocks chained to lastHeader until no children
-            Map<byte[], HeaderElement> chainedBlocks = new ByteArrayMap<>();
-            Map<ByteArrayWrapper, HeaderElement> curLevel = headers.get(curNum);
+            HeaderElement[] curLevel = headers.get(curNum);
             if (curLevel == null) break;
-            for (HeaderElement element : curLevel.values()) {
-                if (chainedParents.containsKey(element.header.getHeader().getParentHash())) {
-                    chainedBlocks.put(element.header.getHash(), element);
+            List<HeaderElement> chainedBlocks = new ArrayList<>(curLevel.length);
+            for (HeaderElement element : curLevel) {
+                for (HeaderElement parent : chainedParents) {
+                    if (isChild(element, parent)) {
+                        chainedBlocks.add(element);
+                        break;
+                    }
                 }
             }
             if (chainedBlocks.isEmpty()) break;
@@ -252,9 +318,10 @@ public class SyncQueueImpl implements SyncQueueIfc {
 
         // reconstruct the chain back from the last block in the longest path
         List<HeaderElement> ret = new ArrayList<>();
-        for (HeaderElement el = chainedParents.values().iterator().next(); el != lastHeader.getParent(); el = el.getParent()) {
-            ret.add(0, el);
+        for (HeaderElement el = chainedParents.get(0); el != lastHeader.getParent(); el = el.getParent()) {
+            ret.add(el);
         }
+        Collections.reverse(ret);
         return ret;
     }
 
@@ -266,10 +333,9 @@ public class SyncQueueImpl implements SyncQueueIfc {
     private void trimChain() {
         List<HeaderElement> longestChain = getLongestChain();
         if (longestChain.size() > MAX_CHAIN_LEN) {
-            long newTrimNum = getLongestChain().get(longestChain.size() - MAX_CHAIN_LEN).header.getNumber();
+            long newTrimNum = longestChain.get(longestChain.size() - MAX_CHAIN_LEN).header.getNumber();
             for (int i = 0; darkZoneNum < newTrimNum; darkZoneNum++, i++) {
-                ByteArrayWrapper wHash = new ByteArrayWrapper(longestChain.get(i).header.getHash());
-                putGenHeaders(darkZoneNum, Collections.singletonMap(wHash, longestChain.get(i)));
+                putGenHeaders(darkZoneNum, new HeaderElement[] {longestChain.get(i)});
             }
             darkZoneNum--;
         }
@@ -277,9 +343,9 @@ public class SyncQueueImpl implements SyncQueueIfc {
 
     private void trimExported() {
         for (; minNum < darkZoneNum; minNum++) {
-            Map<ByteArrayWrapper, HeaderElement> genHeaders = headers.get(minNum);
-            assert genHeaders.size() == 1;
-            HeaderElement headerElement = genHeaders.values().iterator().next();
+            HeaderElement[] genHeaders = headers.get(minNum);
+            assert genHeaders.length == 1;
+            HeaderElement headerElement = genHeaders[0];
             if (headerElement.exported) {
                 headers.remove(minNum);
             } else {
@@ -299,17 +365,17 @@ public class SyncQueueImpl implements SyncQueueIfc {
 
     private boolean addHeaderPriv(BlockHeaderWrapper header) {
         long num = header.getNumber();
-        Map<ByteArrayWrapper, HeaderElement> genHeaders = headers.get(num);
+        HeaderElement[] genHeaders = headers.get(num);
+        if (findElement(genHeaders, header.getHash()) != null) return false;
+
+        HeaderElement headerElement = new HeaderElement(header);
         if (genHeaders == null) {
-            genHeaders = new HashMap<>();
-            putGenHeaders(num, genHeaders);
+            genHeaders = new HeaderElement[] {headerElement};
+        } else {
+            genHeaders = Arrays.copyOf(genHeaders, genHeaders.length + 1);
+            genHeaders[genHeaders.length - 1] = headerElement;
         }
-        ByteArrayWrapper wHash = new ByteArrayWrapper(header.getHash());
-        HeaderElement headerElement = genHeaders.get(wHash);
-        if (headerElement != null) return false;
-
-        headerElement = new HeaderElement(header);
-        genHeaders.put(wHash, headerElement);
+        putGenHeaders(num, genHeaders);
 
         return true;
     }
@@ -377,9 +443,9 @@ public class SyncQueueImpl implements SyncQueueIfc {
 
         outer:
         for (long i = minNum; i <= maxNum; i++) {
-            Map<ByteArrayWrapper, HeaderElement> gen = headers.get(i);
+            HeaderElement[] gen = headers.get(i);
             if (gen != null) {
-                for (HeaderElement element : gen.values()) {
+                for (HeaderElement element : gen) {
                     if (element.block == null) {
                         ret.getBlockHeaders().add(element.header);
                         if (ret.getBlockHeaders().size() >= maxSize) break outer;
@@ -391,9 +457,7 @@ public class SyncQueueImpl implements SyncQueueIfc {
     }
 
     HeaderElement findHeaderElement(BlockHeader bh) {
-        Map<ByteArrayWrapper, HeaderElement> genHeaders = headers.get(bh.getNumber());
-        if (genHeaders == null) return null;
-        return genHeaders.get(new ByteArrayWrapper(bh.getHash()));
+        return findElement(headers.get(bh.getNumber()), bh.getHash());
     }
 
     private HeaderElement addBlock(Block block) {
@@ -415,11 +479,11 @@ public class SyncQueueImpl implements SyncQueueIfc {
     private List<Block> exportBlocks() {
         List<Block> ret = new ArrayList<>();
         for (long i = minNum; i <= maxNum; i++) {
-            Map<ByteArrayWrapper, HeaderElement> gen = headers.get(i);
+            HeaderElement[] gen = headers.get(i);
             if (gen == null) break;
 
             boolean hasAny = false;
-            for (HeaderElement element : gen.values()) {
+            for (HeaderElement element : gen) {
                 HeaderElement parent = element.getParent();
                 if (element.block != null && (i == minNum || parent != null && parent.exported)) {
                     if (!element.exported) {
@@ -26,11 +26,19 @@ import org.apis.util.TimeUtils;
  * @since 20.08.2015
  */
 public class SyncStatistics {
+    // weight of the last measurement in the moving averages
+    private static final double MEASURE_WEIGHT = 0.1;
+
     private long updatedAt;
     private long blocksCount;
     private long headersCount;
     private int headerBunchesCount;
 
+    // round trip and throughput of the sync requests, not reset with the counters
+    // 동기화 요청의 왕복 시간과 처리량. 카운터와 달리 reset 되지 않는다
+    private double roundTripTime = -1;
+    private double blocksThroughput = -1;
+
     public SyncStatistics() {
         reset();
     }
@@ -72,4 +80,57 @@ public class SyncStatistics {
     public int getHeaderBunchesCount() {
         return headerBunchesCount;
     }
+
+    /**
+     * Measures the response to a sync request
+     *
+     * @param blocks number of the block bodies received, 0 for the other requests
+     * @param millis time since the request was sent
+     */
+    public synchronized void addRoundTrip(int blocks, long millis) {
+        millis = Math.max(millis, 1);
+        roundTripTime = average(roundTripTime, millis);
+        if (blocks > 0) {
+            blocksThroughput = average(blocksThroughput, blocks * 1000.0 / millis);
+        }
+    }
+
+    /**
+     * The request has not been answered within the given time,
+     * the throughput is halved so that the peer gets smaller requests
+     */
+    public synchronized void addTimeout(long millis) {
+        roundTripTime = Math.max(roundTripTime, millis);
+        if (blocksThroughput > 0) {
+            blocksThroughput /= 2;
+        }
+    }
+
+    /**
+     * @return average round trip time in milliseconds or -1 if not measured yet
+     */
+    public synchronized double getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    /**
+     * @return average number of the block bodies received per second or -1 if not measured yet
+     */
+    public synchronized double getBlocksThroughput() {
+        return blocksThroughput;
+    }
+
+    /**
+     * @return number of the block bodies the peer is expected to deliver within the given time,
+     *          {@code initial} if the peer is not measured yet
+     */
+    public synchronized int getBlocksCapacity(long millis, int initial, int min, int max) {
+        if (blocksThroughput < 0) return initial;
+        long capacity = Math.round(blocksThroughput * millis / 1000);
+        return (int) Math.max(min, Math.min(max, capacity));
+    }
+
+    private static double average(double avg, double value) {
+        return avg < 0 ? value : avg + (value - avg) * MEASURE_WEIGHT;
+    }
 }
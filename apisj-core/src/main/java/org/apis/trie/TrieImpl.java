@@ -17,7 +17,6 @@
  */
 package org.apis.trie;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.text.StrBuilder;
 import org.apis.crypto.HashUtil;
 import org.apis.datasource.Source;
@@ -29,15 +28,13 @@ import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 
-import static org.apache.commons.lang3.concurrent.ConcurrentUtils.constantFuture;
 import static org.apis.crypto.HashUtil.EMPTY_TRIE_HASH;
 import static org.apis.util.ByteUtil.EMPTY_BYTE_ARRAY;
-import static org.apis.util.RLP.EMPTY_ELEMENT_RLP;
 import static org.apis.util.RLP.encodeElement;
-import static org.apis.util.RLP.encodeList;
 import static org.apis.util.ByteUtil.toHexString;
 
 /**
@@ -46,14 +43,18 @@ import static org.apis.util.ByteUtil.toHexString;
 public class TrieImpl implements Trie<byte[]> {
     private final static Object NULL_NODE = new Object();
     private final static int MIN_BRANCHES_CONCURRENTLY = 3;
-    private static ExecutorService executor;
+    public final static int DEFAULT_PARALLEL_DEPTH = 2;
+    private static ForkJoinPool executor;
 
     private static final Logger logger = LoggerFactory.getLogger("state");
 
-    public static ExecutorService getExecutor() {
+    public static synchronized ForkJoinPool getExecutor() {
         if (executor == null) {
-            executor = Executors.newFixedThreadPool(4,
-                    new ThreadFactoryBuilder().setNameFormat("trie-calc-thread-%d").build());
+            executor = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("trie-calc-thread-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
         }
         return executor;
     }
@@ -116,63 +117,40 @@ public class TrieImpl implements Trie<byte[]> {
         }
 
         public byte[] encode() {
-            return encode(1, true);
+            return encodeElement(encode(1, true));
         }
+
+        /**
+         * @return the node hash, or the node RLP when it is shorter than 32 bytes and hash is not forced
+         */
         private byte[] encode(final int depth, boolean forceHash) {
             if (!dirty) {
-                return hash != null ? encodeElement(hash) : rlp;
+                return hash != null ? hash : rlp;
             } else {
                 NodeType type = getType();
                 byte[] ret;
                 if (type == NodeType.BranchNode) {
-                    if (depth == 1 && async) {
-                        // parallelize encode() on the first trie level only and if there are at least
-                        // MIN_BRANCHES_CONCURRENTLY branches are modified
-                        final Object[] encoded = new Object[17];
-                        int encodeCnt = 0;
-                        for (int i = 0; i < 16; i++) {
-                            final Node child = branchNodeGetChild(i);
-                            if (child == null) {
-                                encoded[i] = EMPTY_ELEMENT_RLP;
-                            } else if (!child.dirty) {
-                                encoded[i] = child.encode(depth + 1, false);
-                            } else {
-                                encodeCnt++;
-                            }
-                        }
-                        for (int i = 0; i < 16; i++) {
-                            if (encoded[i] == null) {
-                                final Node child = branchNodeGetChild(i);
-                                if (encodeCnt >= MIN_BRANCHES_CONCURRENTLY) {
-                                    encoded[i] = getExecutor().submit(() -> child.encode(depth + 1, false));
-                                } else {
-                                    encoded[i] = child.encode(depth + 1, false);
-                                }
-                            }
-                        }
-                        byte[] value = branchNodeGetValue();
-                        encoded[16] = constantFuture(encodeElement(value));
-                        try {
-                            ret = encodeRlpListFutures(encoded);
-                        } catch (Exception e) {
-                            throw new RuntimeException(e);
-                        }
-                    } else {
-                        byte[][] encoded = new byte[17][];
-                        for (int i = 0; i < 16; i++) {
-                            Node child = branchNodeGetChild(i);
-                            encoded[i] = child == null ? EMPTY_ELEMENT_RLP : child.encode(depth + 1, false);
-                        }
-                        byte[] value = branchNodeGetValue();
-                        encoded[16] = encodeElement(value);
-                        ret = encodeList(encoded);
+                    byte[][] children = new byte[16][];
+                    encodeChildren(depth, children);
+                    byte[] value = branchNodeGetValue();
+                    NodeEncoder encoder = NodeEncoder.get();
+                    for (int i = 0; i < 16; i++) {
+                        encoder.writeReference(children[i]);
                     }
+                    encoder.writeElement(value);
+                    ret = encoder.toList();
                 } else if (type == NodeType.KVNodeNode) {
-                    ret = encodeList(encodeElement(kvNodeGetKey().toPacked()), kvNodeGetChildNode().encode(depth + 1, false));
+                    byte[] child = kvNodeGetChildNode().encode(depth + 1, false);
+                    NodeEncoder encoder = NodeEncoder.get();
+                    encoder.writeElement(kvNodeGetKey().toPacked());
+                    encoder.writeReference(child);
+                    ret = encoder.toList();
                 } else {
                     byte[] value = kvNodeGetValue();
-                    ret = encodeList(encodeElement(kvNodeGetKey().toPacked()),
-                            encodeElement(value == null ? EMPTY_BYTE_ARRAY : value));
+                    NodeEncoder encoder = NodeEncoder.get();
+                    encoder.writeElement(kvNodeGetKey().toPacked());
+                    encoder.writeElement(value == null ? EMPTY_BYTE_ARRAY : value);
+                    ret = encoder.toList();
                 }
                 if (hash != null) {
                     deleteHash(hash);
@@ -184,22 +162,36 @@ public class TrieImpl implements Trie<byte[]> {
                 } else {
                     hash = HashUtil.sha3(ret);
                     addHash(hash, ret);
-                    return encodeElement(hash);
+                    return hash;
                 }
             }
         }
 
-        @SafeVarargs
-        private final byte[] encodeRlpListFutures(Object... list) throws ExecutionException, InterruptedException {
-            byte[][] vals = new byte[list.length][];
-            for (int i = 0; i < list.length; i++) {
-                if (list[i] instanceof Future) {
-                    vals[i] = ((Future<byte[]>) list[i]).get();
+        private void encodeChildren(final int depth, final byte[][] encoded) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                final Node child = branchNodeGetChild(i);
+                if (child != null) {
+                    if (child.dirty && async && depth <= parallelDepth) {
+                        final int idx = i;
+                        tasks.add(ForkJoinTask.adapt(() -> encoded[idx] = child.encode(depth + 1, false)));
+                    } else {
+                        encoded[i] = child.encode(depth + 1, false);
+                    }
+                }
+            }
+
+            // subtrees are hashed in parallel only above the parallelDepth and if there are at least
+            // MIN_BRANCHES_CONCURRENTLY of them modified
+            if (tasks.size() >= MIN_BRANCHES_CONCURRENTLY) {
+                if (ForkJoinTask.inForkJoinPool()) {
+                    ForkJoinTask.invokeAll(tasks);
                 } else {
-                    vals[i] = (byte[]) list[i];
+                    getExecutor().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
                 }
+            } else {
+                tasks.forEach(ForkJoinTask::invoke);
             }
-            return encodeList(vals);
         }
 
         private void parse() {
@@ -435,6 +427,7 @@ public class TrieImpl implements Trie<byte[]> {
     private Source<byte[], byte[]> cache;
     private Node root;
     private boolean async = true;
+    private int parallelDepth = DEFAULT_PARALLEL_DEPTH;
 
     public TrieImpl() {
         this((byte[]) null);
@@ -456,6 +449,14 @@ public class TrieImpl implements Trie<byte[]> {
         this.async = async;
     }
 
+    /**
+     * Sets how many upper trie levels hash their modified subtrees in parallel,
+     * {@link #DEFAULT_PARALLEL_DEPTH} by default, 0 hashes on a single thread
+     */
+    public void setParallelDepth(int parallelDepth) {
+        this.parallelDepth = parallelDepth;
+    }
+
     private void encode() {
         if (root != null) {
             root.encode();
@@ -733,4 +734,104 @@ public class TrieImpl implements Trie<byte[]> {
         }
         return "\"" + ret + "\"";
     }
+
+    /**
+     * Writes RLP of a node into a per-thread buffer, so the resulting RLP is
+     * the only array allocated for a node
+     */
+    private static final class NodeEncoder {
+        private static final ThreadLocal<NodeEncoder> INSTANCE = ThreadLocal.withInitial(NodeEncoder::new);
+        // room for the longest list prefix
+        private static final int HEADER_SIZE = 5;
+
+        private byte[] buf = new byte[1024];
+        private int pos = HEADER_SIZE;
+
+        static NodeEncoder get() {
+            return INSTANCE.get();
+        }
+
+        /**
+         * Writes a child reference: its hash or its embedded RLP
+         */
+        void writeReference(byte[] ref) {
+            if (ref == null) {
+                ensureCapacity(1);
+                buf[pos++] = (byte) 0x80;
+            } else if (ref.length == 32) {
+                writeElement(ref);
+            } else {
+                write(ref, 0, ref.length);
+            }
+        }
+
+        /**
+         * Writes the same bytes as {@link RLP#encodeElement(byte[])}
+         */
+        void writeElement(byte[] data) {
+            if (data == null || data.length == 0) {
+                ensureCapacity(1);
+                buf[pos++] = (byte) 0x80;
+            } else if (data.length == 1 && (data[0] & 0xFF) < 0x80) {
+                write(data, 0, 1);
+            } else {
+                writeLength(data.length, 0x80);
+                write(data, 0, data.length);
+            }
+        }
+
+        /**
+         * @return RLP list of the elements written since the previous call
+         */
+        byte[] toList() {
+            int size = pos - HEADER_SIZE;
+            int prefixSize = size < 56 ? 1 : 1 + lengthOfLength(size);
+            byte[] ret = new byte[prefixSize + size];
+            if (size < 56) {
+                ret[0] = (byte) (0xc0 + size);
+            } else {
+                ret[0] = (byte) (0xf7 + prefixSize - 1);
+                for (int i = prefixSize - 1, len = size; i > 0; i--, len >>= 8) {
+                    ret[i] = (byte) len;
+                }
+            }
+            System.arraycopy(buf, HEADER_SIZE, ret, prefixSize, size);
+            pos = HEADER_SIZE;
+            return ret;
+        }
+
+        private void writeLength(int length, int offset) {
+            if (length < 56) {
+                ensureCapacity(1);
+                buf[pos++] = (byte) (offset + length);
+            } else {
+                int lengthOfLength = lengthOfLength(length);
+                ensureCapacity(1 + lengthOfLength);
+                buf[pos++] = (byte) (offset + 55 + lengthOfLength);
+                for (int i = lengthOfLength - 1; i >= 0; i--) {
+                    buf[pos++] = (byte) (length >> (i * 8));
+                }
+            }
+        }
+
+        private static int lengthOfLength(int length) {
+            int ret = 0;
+            for (; length != 0; length >>= 8) {
+                ret++;
+            }
+            return ret;
+        }
+
+        private void write(byte[] data, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(data, offset, buf, pos, length);
+            pos += length;
+        }
+
+        private void ensureCapacity(int size) {
+            if (pos + size > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + size));
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -1,19 +1,40 @@
 package org.apis.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apis.core.Block;
-import org.apis.core.Blockchain;
+import org.apis.core.BlockHeader;
 import org.apis.core.Repository;
 import org.apis.core.RewardPoint;
 import org.apis.crypto.HashUtil;
 import org.apis.db.BlockStore;
+import org.apis.db.ByteArrayWrapper;
 
 import java.math.BigInteger;
-import java.util.Comparator;
-import java.util.List;
-import java.util.TreeMap;
 
+/**
+ * RP 계산 함수들은 상태를 갖지 않으므로 잠금 없이 동시에 호출할 수 있다.
+ * 블록 검증과 채굴에서 반복되는 조상 블록 탐색과 RP 계산 결과는 캐시해서 재사용한다.
+ */
 public class RewardPointUtil {
 
+    /**
+     * RP 계산에 사용되는 잔고는 부모 블록으로부터 이 갯수만큼 앞선 블록의 상태에서 읽는다.
+     */
+    private static final int BALANCE_BLOCK_DEPTH = 10;
+
+    /**
+     * 최근에 탐색한 블록의 헤더 (block hash -> header)
+     */
+    private static final Cache<ByteArrayWrapper, BlockHeader> headers = CacheBuilder.newBuilder()
+            .maximumSize(4096).build();
+
+    /**
+     * 부모 블록과 채굴자 별로 계산된 RP (parent hash + coinbase -> RP)
+     */
+    private static final Cache<ByteArrayWrapper, RewardPoint> rewardPoints = CacheBuilder.newBuilder()
+            .maximumSize(1024).build();
+
     /**
      * RP 값을 계산하기 위한 seed를 생성한다.
      *
@@ -22,33 +43,75 @@ public class RewardPointUtil {
      * @param parentHash 부모 블록의 해시
      * @return seed 값
      */
-    public synchronized static byte[] calcSeed(byte[] coinbase, BigInteger balance, byte[] parentHash) {
+    public static byte[] calcSeed(byte[] coinbase, BigInteger balance, byte[] parentHash) {
         return HashUtil.sha3(HashUtil.sha3(coinbase, HashUtil.sha3(ByteUtil.bigIntegerToBytes(balance))), parentHash);
     }
 
-    public synchronized static BigInteger calcRewardPoint(byte[] seed, BigInteger balance) {
+    public static BigInteger calcRewardPoint(byte[] seed, BigInteger balance) {
         BigInteger seedNumber = new BigInteger(1, seed);
         BigInteger dav = seedNumber.mod(BigInteger.valueOf(27));
 
         return seedNumber.divide(BigInteger.valueOf(10).pow((int) (77 - dav.longValue()))).multiply(balance);
     }
 
-    public synchronized static BigInteger calcRewardPoint (byte[] coinbase, BigInteger balance, byte[] parentHash) {
+    public static BigInteger calcRewardPoint (byte[] coinbase, BigInteger balance, byte[] parentHash) {
         return calcRewardPoint(calcSeed(coinbase, balance, parentHash), balance);
     }
 
-    public synchronized static Repository getRewardPointBalanceRepo(Repository repo, Block parent, BlockStore blockchain) {
-        for(int i = 0 ; i < 10 ; i++) {
-            if(parent.getNumber() > 0) {
-                parent = blockchain.getBlockByHash(parent.getParentHash());
+    public static Repository getRewardPointBalanceRepo(Repository repo, Block parent, BlockStore blockchain) {
+        return repo.getSnapshotTo(getRewardPointBalanceRoot(parent, blockchain));
+    }
+
+    /**
+     * RP 계산에 사용되는 잔고를 읽을 상태의 루트를 반환한다.
+     *
+     * @param parent 부모 블록
+     * @param blockStore 조상 블록을 찾을 저장소
+     * @return 부모 블록으로부터 {@link #BALANCE_BLOCK_DEPTH}개 앞선 블록의 state root
+     */
+    public static byte[] getRewardPointBalanceRoot(Block parent, BlockStore blockStore) {
+        BlockHeader header = parent.getHeader();
+        for(int i = 0 ; i < BALANCE_BLOCK_DEPTH ; i++) {
+            if(header.getNumber() > 0) {
+                header = getHeader(header.getParentHash(), blockStore);
             } else {
                 break;
             }
         }
-        return repo.getSnapshotTo(parent.getStateRoot());
+        return header.getStateRoot();
+    }
+
+    private static BlockHeader getHeader(byte[] hash, BlockStore blockStore) {
+        ByteArrayWrapper key = new ByteArrayWrapper(hash);
+        BlockHeader header = headers.getIfPresent(key);
+        if(header == null) {
+            header = blockStore.getBlockByHash(hash).getHeader();
+            headers.put(key, header);
+        }
+        return header;
+    }
+
+    /**
+     * 부모 블록 위에서 coinbase가 생성하는 블록의 RP를 계산한다.
+     * 같은 부모와 채굴자에 대해서는 이전에 계산된 결과를 반환한다.
+     *
+     * @param repo 잔고를 읽을 상태의 스냅샷을 만들 저장소
+     * @param parent 부모 블록
+     * @param coinbase 블록 채굴자의 주소
+     * @param blockStore 조상 블록을 찾을 저장소
+     * @return 계산된 RP 정보
+     */
+    public static RewardPoint getRewardPoint(Repository repo, Block parent, byte[] coinbase, BlockStore blockStore) {
+        ByteArrayWrapper key = new ByteArrayWrapper(ByteUtil.merge(parent.getHash(), coinbase));
+        RewardPoint rewardPoint = rewardPoints.getIfPresent(key);
+        if(rewardPoint == null) {
+            rewardPoint = genRewardPoint(parent, coinbase, getRewardPointBalanceRepo(repo, parent, blockStore));
+            rewardPoints.put(key, rewardPoint);
+        }
+        return rewardPoint;
     }
 
-    public synchronized static RewardPoint genRewardPoint(Block parentBlock, byte[] coinbase, Repository repo) {
+    public static RewardPoint genRewardPoint(Block parentBlock, byte[] coinbase, Repository repo) {
         long parentNumber = parentBlock.getNumber();
 
         BigInteger balance = repo.getBalance(coinbase);
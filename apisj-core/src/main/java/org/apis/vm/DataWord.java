@@ -26,7 +26,6 @@ import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
-import java.nio.ByteBuffer;
 
 import static org.apis.util.ByteUtil.toHexString;
 
@@ -53,18 +52,14 @@ public class DataWord implements Comparable<DataWord> {
     }
 
     public DataWord(int num) {
-        this(ByteBuffer.allocate(4).putInt(num));
+        this((long) num & 0xFFFFFFFFL);
     }
 
     public DataWord(long num) {
-        this(ByteBuffer.allocate(8).putLong(num));
-    }
-
-    private DataWord(ByteBuffer buffer) {
-        final ByteBuffer data = ByteBuffer.allocate(32);
-        final byte[] array = buffer.array();
-        System.arraycopy(array, 0, data.array(), 32 - array.length, array.length);
-        this.data = data.array();
+        for (int i = 31; i >= 24; i--) {
+            this.data[i] = (byte) num;
+            num >>>= 8;
+        }
     }
 
     @JsonCreator
@@ -223,23 +218,11 @@ public class DataWord implements Comparable<DataWord> {
     }
 
     public void bnot() {
-        if (this.isZero()) {
-            this.data = ByteUtil.copyToArray(MAX_VALUE);
-            return;
-        }
-        this.data = ByteUtil.copyToArray(MAX_VALUE.subtract(this.value()));
+        this.data = new UInt256(data).not().getBytes();
     }
 
-    // By   : Holger
-    // From : http://stackoverflow.com/a/24023466/459349
     public void add(DataWord word) {
-        byte[] result = new byte[32];
-        for (int i = 31, overflow = 0; i >= 0; i--) {
-            int v = (this.data[i] & 0xff) + (word.data[i] & 0xff) + overflow;
-            result[i] = (byte) v;
-            overflow = v >>> 8;
-        }
-        this.data = result;
+        this.data = new UInt256(data).add(new UInt256(word.data)).getBytes();
     }
 
     // old add-method with BigInteger quick hack
@@ -248,15 +231,10 @@ public class DataWord implements Comparable<DataWord> {
         this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
     }
 
-    // TODO: mul can be done in more efficient way
-    // TODO:     with shift left shift right trick
-    // TODO      without BigInteger quick hack
     public void mul(DataWord word) {
-        BigInteger result = value().multiply(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        this.data = new UInt256(data).mul(new UInt256(word.data)).getBytes();
     }
 
-    // TODO: improve with no BigInteger
     public void div(DataWord word) {
 
         if (word.isZero()) {
@@ -264,11 +242,9 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().divide(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        this.data = new UInt256(data).div(new UInt256(word.data)).getBytes();
     }
 
-    // TODO: improve with no BigInteger
     public void sDiv(DataWord word) {
 
         if (word.isZero()) {
@@ -276,23 +252,17 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = sValue().divide(word.sValue());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        this.data = new UInt256(data).sDiv(new UInt256(word.data)).getBytes();
     }
 
-    // TODO: improve with no BigInteger
     public void sub(DataWord word) {
-        BigInteger result = value().subtract(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        this.data = new UInt256(data).sub(new UInt256(word.data)).getBytes();
     }
 
-    // TODO: improve with no BigInteger
     public void exp(DataWord word) {
-        BigInteger result = value().modPow(word.value(), _2_256);
-        this.data = ByteUtil.copyToArray(result);
+        this.data = new UInt256(data).exp(new UInt256(word.data)).getBytes();
     }
 
-    // TODO: improve with no BigInteger
     public void mod(DataWord word) {
 
         if (word.isZero()) {
@@ -300,8 +270,7 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().mod(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        this.data = new UInt256(data).mod(new UInt256(word.data)).getBytes();
     }
 
     public void sMod(DataWord word) {
@@ -311,12 +280,10 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = sValue().abs().mod(word.sValue().abs());
-        result = (sValue().signum() == -1) ? result.negate() : result;
-
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        this.data = new UInt256(data).sMod(new UInt256(word.data)).getBytes();
     }
 
+    // addmod and mulmod need the 512 bit intermediate, they are left to BigInteger
     public void addmod(DataWord word1, DataWord word2) {
         if (word2.isZero()) {
             this.data = new byte[32];
@@ -0,0 +1,406 @@
+package org.apis.vm;
+
+/**
+ * Unsigned 256-bit integer kept in four longs, {@code u0} being the least significant.
+ *
+ * The arithmetic is done in place and wraps modulo 2^256 the way the VM does,
+ * so {@link DataWord} can calculate without going through {@link java.math.BigInteger}.
+ */
+public final class UInt256 {
+
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    private long u0, u1, u2, u3;
+
+    public UInt256() {
+    }
+
+    /**
+     * @param data big-endian value, shorter arrays are right aligned
+     */
+    public UInt256(byte[] data) {
+        set(data);
+    }
+
+    public UInt256(long value) {
+        u0 = value;
+    }
+
+    public UInt256 set(byte[] data) {
+        int offset = data.length - 32;
+        u3 = readLong(data, offset);
+        u2 = readLong(data, offset + 8);
+        u1 = readLong(data, offset + 16);
+        u0 = readLong(data, offset + 24);
+        return this;
+    }
+
+    public UInt256 set(UInt256 other) {
+        u0 = other.u0;
+        u1 = other.u1;
+        u2 = other.u2;
+        u3 = other.u3;
+        return this;
+    }
+
+    public byte[] getBytes() {
+        byte[] data = new byte[32];
+        writeLong(data, 0, u3);
+        writeLong(data, 8, u2);
+        writeLong(data, 16, u1);
+        writeLong(data, 24, u0);
+        return data;
+    }
+
+    public boolean isZero() {
+        return (u0 | u1 | u2 | u3) == 0;
+    }
+
+    /**
+     * @return true if the value is negative as a two's complement signed number
+     */
+    public boolean isNegative() {
+        return u3 < 0;
+    }
+
+    public int compareTo(UInt256 other) {
+        if (u3 != other.u3) return Long.compareUnsigned(u3, other.u3);
+        if (u2 != other.u2) return Long.compareUnsigned(u2, other.u2);
+        if (u1 != other.u1) return Long.compareUnsigned(u1, other.u1);
+        return Long.compareUnsigned(u0, other.u0);
+    }
+
+    public UInt256 add(UInt256 other) {
+        long r0 = u0 + other.u0;
+        long c = Long.compareUnsigned(r0, u0) < 0 ? 1 : 0;
+        long r1 = u1 + other.u1 + c;
+        c = carry(u1, other.u1, r1, c);
+        long r2 = u2 + other.u2 + c;
+        c = carry(u2, other.u2, r2, c);
+        u3 = u3 + other.u3 + c;
+        u0 = r0;
+        u1 = r1;
+        u2 = r2;
+        return this;
+    }
+
+    public UInt256 sub(UInt256 other) {
+        long r0 = u0 - other.u0;
+        long b = Long.compareUnsigned(u0, other.u0) < 0 ? 1 : 0;
+        long r1 = u1 - other.u1 - b;
+        b = borrow(u1, other.u1, b);
+        long r2 = u2 - other.u2 - b;
+        b = borrow(u2, other.u2, b);
+        u3 = u3 - other.u3 - b;
+        u0 = r0;
+        u1 = r1;
+        u2 = r2;
+        return this;
+    }
+
+    public UInt256 negate() {
+        u0 = ~u0;
+        u1 = ~u1;
+        u2 = ~u2;
+        u3 = ~u3;
+        return add(ONE_VALUE);
+    }
+
+    public UInt256 not() {
+        u0 = ~u0;
+        u1 = ~u1;
+        u2 = ~u2;
+        u3 = ~u3;
+        return this;
+    }
+
+    public UInt256 mul(UInt256 other) {
+        long[] a = {u0, u1, u2, u3};
+        long[] b = {other.u0, other.u1, other.u2, other.u3};
+        long[] r = new long[4];
+
+        for (int i = 0; i < 4; i++) {
+            if (a[i] == 0) continue;
+            long carry = 0;
+            for (int j = 0; i + j < 4; j++) {
+                long lo = a[i] * b[j];
+                long hi = multiplyHighUnsigned(a[i], b[j]);
+
+                long sum = r[i + j] + lo;
+                long c1 = Long.compareUnsigned(sum, lo) < 0 ? 1 : 0;
+                long sum2 = sum + carry;
+                long c2 = Long.compareUnsigned(sum2, sum) < 0 ? 1 : 0;
+
+                r[i + j] = sum2;
+                // a * b + r + carry < 2^128, the high word can't overflow
+                carry = hi + c1 + c2;
+            }
+        }
+
+        u0 = r[0];
+        u1 = r[1];
+        u2 = r[2];
+        u3 = r[3];
+        return this;
+    }
+
+    /**
+     * Division by zero results in zero, as in the VM
+     */
+    public UInt256 div(UInt256 divisor) {
+        divMod(divisor, true);
+        return this;
+    }
+
+    /**
+     * Modulo by zero results in zero, as in the VM
+     */
+    public UInt256 mod(UInt256 divisor) {
+        divMod(divisor, false);
+        return this;
+    }
+
+    /**
+     * Signed division, rounding towards zero
+     */
+    public UInt256 sDiv(UInt256 divisor) {
+        boolean negative = isNegative() != divisor.isNegative();
+        UInt256 d = divisor.isNegative() ? new UInt256().set(divisor).negate() : divisor;
+        if (isNegative()) negate();
+        div(d);
+        if (negative) negate();
+        return this;
+    }
+
+    /**
+     * Signed modulo, the result has the sign of the dividend
+     */
+    public UInt256 sMod(UInt256 divisor) {
+        boolean negative = isNegative();
+        UInt256 d = divisor.isNegative() ? new UInt256().set(divisor).negate() : divisor;
+        if (negative) negate();
+        mod(d);
+        if (negative) negate();
+        return this;
+    }
+
+    public UInt256 exp(UInt256 exponent) {
+        UInt256 base = new UInt256().set(this);
+        set(ONE_VALUE);
+
+        long[] e = {exponent.u0, exponent.u1, exponent.u2, exponent.u3};
+        int bits = 256 - exponent.numberOfLeadingZeros();
+        for (int i = 0; i < bits; i++) {
+            if ((e[i >>> 6] >>> (i & 63) & 1) != 0) {
+                mul(base);
+            }
+            if (i + 1 < bits) {
+                base.mul(base);
+            }
+        }
+        return this;
+    }
+
+    public int numberOfLeadingZeros() {
+        if (u3 != 0) return Long.numberOfLeadingZeros(u3);
+        if (u2 != 0) return 64 + Long.numberOfLeadingZeros(u2);
+        if (u1 != 0) return 128 + Long.numberOfLeadingZeros(u1);
+        return 192 + Long.numberOfLeadingZeros(u0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UInt256)) return false;
+        UInt256 other = (UInt256) o;
+        return u0 == other.u0 && u1 == other.u1 && u2 == other.u2 && u3 == other.u3;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(u0) * 31 + Long.hashCode(u3);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x%016x%016x", u3, u2, u1, u0);
+    }
+
+    private static final UInt256 ONE_VALUE = new UInt256(1);
+
+    /**
+     * Knuth's algorithm D over 32-bit digits, see Hacker's Delight divmnu.
+     */
+    private void divMod(UInt256 divisor, boolean quotient) {
+        if (divisor.isZero()) {
+            u0 = u1 = u2 = u3 = 0;
+            return;
+        }
+        if (compareTo(divisor) < 0) {
+            if (quotient) {
+                u0 = u1 = u2 = u3 = 0;
+            }
+            return;
+        }
+        // both fit in a long
+        if ((u1 | u2 | u3 | divisor.u1 | divisor.u2 | divisor.u3) == 0) {
+            u0 = quotient ? Long.divideUnsigned(u0, divisor.u0) : Long.remainderUnsigned(u0, divisor.u0);
+            return;
+        }
+
+        int[] u = toDigits();
+        int[] v = divisor.toDigits();
+        int m = digitsLength(u);
+        int n = digitsLength(v);
+
+        int[] q = new int[8];
+        int[] r = new int[8];
+
+        if (n == 1) {
+            long d = v[0] & INT_MASK;
+            long k = 0;
+            for (int j = m - 1; j >= 0; j--) {
+                long num = (k << 32) | (u[j] & INT_MASK);
+                q[j] = (int) Long.divideUnsigned(num, d);
+                k = Long.remainderUnsigned(num, d);
+            }
+            r[0] = (int) k;
+        } else {
+            int s = Integer.numberOfLeadingZeros(v[n - 1]);
+            int[] vn = new int[n];
+            for (int i = n - 1; i > 0; i--) {
+                vn[i] = (v[i] << s) | (s == 0 ? 0 : v[i - 1] >>> (32 - s));
+            }
+            vn[0] = v[0] << s;
+
+            int[] un = new int[m + 1];
+            un[m] = s == 0 ? 0 : u[m - 1] >>> (32 - s);
+            for (int i = m - 1; i > 0; i--) {
+                un[i] = (u[i] << s) | (s == 0 ? 0 : u[i - 1] >>> (32 - s));
+            }
+            un[0] = u[0] << s;
+
+            long vTop = vn[n - 1] & INT_MASK;
+            long vNext = vn[n - 2] & INT_MASK;
+            for (int j = m - n; j >= 0; j--) {
+                long num = ((un[j + n] & INT_MASK) << 32) | (un[j + n - 1] & INT_MASK);
+                long qhat = Long.divideUnsigned(num, vTop);
+                long rhat = Long.remainderUnsigned(num, vTop);
+
+                while (qhat > INT_MASK
+                        || Long.compareUnsigned(qhat * vNext, (rhat << 32) | (un[j + n - 2] & INT_MASK)) > 0) {
+                    qhat -= 1;
+                    rhat += vTop;
+                    if (rhat > INT_MASK) break;
+                }
+
+                // multiply and subtract
+                long k = 0;
+                long t;
+                for (int i = 0; i < n; i++) {
+                    long p = qhat * (vn[i] & INT_MASK);
+                    t = (un[i + j] & INT_MASK) - k - (p & INT_MASK);
+                    un[i + j] = (int) t;
+                    k = (p >>> 32) - (t >> 32);
+                }
+                t = (un[j + n] & INT_MASK) - k;
+                un[j + n] = (int) t;
+
+                q[j] = (int) qhat;
+                if (t < 0) {
+                    // subtracted too much, add back
+                    q[j] -= 1;
+                    k = 0;
+                    for (int i = 0; i < n; i++) {
+                        t = (un[i + j] & INT_MASK) + (vn[i] & INT_MASK) + k;
+                        un[i + j] = (int) t;
+                        k = t >>> 32;
+                    }
+                    un[j + n] += (int) k;
+                }
+            }
+
+            if (!quotient) {
+                for (int i = 0; i < n - 1; i++) {
+                    r[i] = (un[i] >>> s) | (s == 0 ? 0 : un[i + 1] << (32 - s));
+                }
+                r[n - 1] = un[n - 1] >>> s;
+            }
+        }
+
+        fromDigits(quotient ? q : r);
+    }
+
+    private int[] toDigits() {
+        return new int[] {
+                (int) u0, (int) (u0 >>> 32), (int) u1, (int) (u1 >>> 32),
+                (int) u2, (int) (u2 >>> 32), (int) u3, (int) (u3 >>> 32)};
+    }
+
+    private void fromDigits(int[] d) {
+        u0 = (d[0] & INT_MASK) | ((long) d[1] << 32);
+        u1 = (d[2] & INT_MASK) | ((long) d[3] << 32);
+        u2 = (d[4] & INT_MASK) | ((long) d[5] << 32);
+        u3 = (d[6] & INT_MASK) | ((long) d[7] << 32);
+    }
+
+    private static int digitsLength(int[] digits) {
+        int length = digits.length;
+        while (length > 0 && digits[length - 1] == 0) {
+            length -= 1;
+        }
+        return length;
+    }
+
+    private static long carry(long a, long b, long sum, long carryIn) {
+        // carry out of a + b + carryIn
+        return ((a & b) | ((a | b) & ~sum)) >>> 63;
+    }
+
+    private static long borrow(long a, long b, long borrowIn) {
+        // borrow out of a - b - borrowIn
+        int cmp = Long.compareUnsigned(a, b);
+        return cmp < 0 || (cmp == 0 && borrowIn != 0) ? 1 : 0;
+    }
+
+    /**
+     * High 64 bits of the unsigned 128-bit product
+     */
+    static long multiplyHighUnsigned(long x, long y) {
+        long x0 = x & INT_MASK, x1 = x >>> 32;
+        long y0 = y & INT_MASK, y1 = y >>> 32;
+        long w0 = x0 * y0;
+        long t = x1 * y0 + (w0 >>> 32);
+        long w1 = (t & INT_MASK) + x0 * y1;
+        return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        if (offset >= 0) {
+            return (data[offset] & 0xFFL) << 56
+                    | (data[offset + 1] & 0xFFL) << 48
+                    | (data[offset + 2] & 0xFFL) << 40
+                    | (data[offset + 3] & 0xFFL) << 32
+                    | (data[offset + 4] & 0xFFL) << 24
+                    | (data[offset + 5] & 0xFFL) << 16
+                    | (data[offset + 6] & 0xFFL) << 8
+                    | (data[offset + 7] & 0xFFL);
+        }
+        long value = 0;
+        for (int i = Math.max(offset, 0); i < offset + 8; i++) {
+            value = (value << 8) | (data[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] data, int offset, long value) {
+        data[offset] = (byte) (value >>> 56);
+        data[offset + 1] = (byte) (value >>> 48);
+        data[offset + 2] = (byte) (value >>> 40);
+        data[offset + 3] = (byte) (value >>> 32);
+        data[offset + 4] = (byte) (value >>> 24);
+        data[offset + 5] = (byte) (value >>> 16);
+        data[offset + 6] = (byte) (value >>> 8);
+        data[offset + 7] = (byte) value;
+    }
+}
@@ -21,7 +21,8 @@ import org.apis.vm.DataWord;
 import org.apis.vm.program.listener.ProgramListener;
 import org.apis.vm.program.listener.ProgramListenerAware;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.ceil;
@@ -30,12 +31,19 @@ import static java.lang.String.format;
 import static org.apis.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.apis.util.ByteUtil.oneByteToHexString;
 
+/**
+ * The memory of a program, allocated in chunks of {@link #CHUNK_SIZE} bytes.
+ *
+ * The chunks are indexed by an array that doubles when it is full, so finding the chunk
+ * of an address is constant time and growing the memory never copies the allocated data.
+ */
 public class Memory implements ProgramListenerAware {
 
     private static final int CHUNK_SIZE = 1024;
     private static final int WORD_SIZE = 32;
 
-    private List<byte[]> chunks = new LinkedList<>();
+    private byte[][] chunks = new byte[16][];
+    private int chunksCount;
     private int softSize;
     private ProgramListener programListener;
 
@@ -53,6 +61,12 @@ public class Memory implements ProgramListenerAware {
         int chunkIndex = address / CHUNK_SIZE;
         int chunkOffset = address % CHUNK_SIZE;
 
+        // most reads are words inside one chunk
+        if (chunkOffset + size <= CHUNK_SIZE) {
+            System.arraycopy(chunks[chunkIndex], chunkOffset, data, 0, size);
+            return data;
+        }
+
         int toGrab = data.length;
         int start = 0;
 
@@ -140,7 +154,8 @@ public class Memory implements ProgramListenerAware {
         int chunkIndex = address / CHUNK_SIZE;
         int chunkOffset = address % CHUNK_SIZE;
 
-        byte[] chunk = chunks.get(chunkIndex);
+        if (chunkIndex >= chunksCount) throw new IndexOutOfBoundsException("Memory address: " + address);
+        byte[] chunk = chunks[chunkIndex];
 
         return chunk[chunkOffset];
     }
@@ -180,16 +195,16 @@ public class Memory implements ProgramListenerAware {
     }
 
     public int internalSize() {
-        return chunks.size() * CHUNK_SIZE;
+        return chunksCount * CHUNK_SIZE;
     }
 
     public List<byte[]> getChunks() {
-        return new LinkedList<>(chunks);
+        return new ArrayList<>(Arrays.asList(chunks).subList(0, chunksCount));
     }
 
     private int captureMax(int chunkIndex, int chunkOffset, int size, byte[] src, int srcPos) {
 
-        byte[] chunk = chunks.get(chunkIndex);
+        byte[] chunk = chunks[chunkIndex];
         int toCapture = min(size, chunk.length - chunkOffset);
 
         System.arraycopy(src, srcPos, chunk, chunkOffset, toCapture);
@@ -198,7 +213,7 @@ public class Memory implements ProgramListenerAware {
 
     private int grabMax(int chunkIndex, int chunkOffset, int size, byte[] dest, int destPos) {
 
-        byte[] chunk = chunks.get(chunkIndex);
+        byte[] chunk = chunks[chunkIndex];
         int toGrab = min(size, chunk.length - chunkOffset);
 
         System.arraycopy(chunk, chunkOffset, dest, destPos, toGrab);
@@ -207,8 +222,11 @@ public class Memory implements ProgramListenerAware {
     }
 
     private void addChunks(int num) {
+        if (chunksCount + num > chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunksCount + num, chunks.length * 2));
+        }
         for (int i = 0; i < num; ++i) {
-            chunks.add(new byte[CHUNK_SIZE]);
+            chunks[chunksCount++] = new byte[CHUNK_SIZE];
         }
     }
 }
\ No newline at end of file
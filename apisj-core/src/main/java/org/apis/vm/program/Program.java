@@ -76,7 +76,7 @@ public class Program {
     private static final int MAX_DEPTH = 1024;
 
     //Max size for stack checks
-    private static final int MAX_STACKSIZE = 1024;
+    private static final int MAX_STACKSIZE = Stack.MAX_SIZE;
 
     private Transaction transaction;
 
@@ -135,7 +135,8 @@ public class Program {
 
         traceListener = new ProgramTraceListener(config.vmTrace());
         this.memory = setupProgramListener(new Memory());
-        this.stack = setupProgramListener(new Stack());
+        // the stack is touched by every opcode, only the trace listens to it
+        this.stack = config.vmTrace() ? setupProgramListener(new Stack()) : new Stack();
         this.storage = setupProgramListener(new Storage(programInvoke));
         this.trace = new ProgramTrace(config, programInvoke);
         this.blockchainConfig = config.getBlockchainConfig().getConfigForBlock(programInvoke.getNumber().longValue());
@@ -143,6 +144,12 @@ public class Program {
 
     public ProgramPrecompile getProgramPrecompile() {
         if (programPrecompile == null) {
+            if (codeHash != null) {
+                programPrecompile = ProgramPrecompileCache.get(codeHash);
+                if (programPrecompile != null) {
+                    return programPrecompile;
+                }
+            }
             if (codeHash != null && commonConfig.precompileSource() != null) {
                 programPrecompile = commonConfig.precompileSource().get(codeHash);
             }
@@ -153,6 +160,9 @@ public class Program {
                     commonConfig.precompileSource().put(codeHash, programPrecompile);
                 }
             }
+            if (codeHash != null) {
+                ProgramPrecompileCache.put(codeHash, programPrecompile);
+            }
         }
         return programPrecompile;
     }
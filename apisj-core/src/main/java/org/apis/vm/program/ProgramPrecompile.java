@@ -22,8 +22,7 @@ import org.apis.util.ByteUtil;
 import org.apis.util.RLP;
 import org.apis.util.RLPList;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * Created by Anton Nashatyrev on 06.02.2017.
@@ -31,14 +30,19 @@ import java.util.Set;
 public class ProgramPrecompile {
     private static final int version = 1;
 
-    private Set<Integer> jumpdest = new HashSet<>();
+    /**
+     * JUMPDEST positions of the code as a bitmap
+     */
+    private long[] jumpdest = new long[0];
 
     public byte[] serialize() {
-        byte[][] jdBytes = new byte[jumpdest.size() + 1][];
+        byte[][] jdBytes = new byte[getJumpDestCount() + 1][];
         int cnt = 0;
         jdBytes[cnt++] = RLP.encodeInt(version);
-        for (Integer dst : jumpdest) {
-            jdBytes[cnt++] = RLP.encodeInt(dst);
+        for (int i = 0; i < jumpdest.length * 64; i++) {
+            if (hasJumpDest(i)) {
+                jdBytes[cnt++] = RLP.encodeInt(i);
+            }
         }
 
         return RLP.encodeList(jdBytes);
@@ -50,19 +54,20 @@ public class ProgramPrecompile {
         if (ver != version) return null;
         ProgramPrecompile ret = new ProgramPrecompile();
         for (int i = 1; i < l.size(); i++) {
-            ret.jumpdest.add(ByteUtil.byteArrayToInt(l.get(i).getRLPData()));
+            ret.addJumpDest(ByteUtil.byteArrayToInt(l.get(i).getRLPData()));
         }
         return ret;
     }
 
     public static ProgramPrecompile compile(byte[] ops) {
         ProgramPrecompile ret = new ProgramPrecompile();
+        ret.jumpdest = new long[(ops.length + 63) >>> 6];
         for (int i = 0; i < ops.length; ++i) {
 
             OpCode op = OpCode.code(ops[i]);
             if (op == null) continue;
 
-            if (op.equals(OpCode.JUMPDEST)) ret.jumpdest.add(i);
+            if (op.equals(OpCode.JUMPDEST)) ret.addJumpDest(i);
 
             if (op.asInt() >= OpCode.PUSH1.asInt() && op.asInt() <= OpCode.PUSH32.asInt()) {
                 i += op.asInt() - OpCode.PUSH1.asInt() + 1;
@@ -72,16 +77,23 @@ public class ProgramPrecompile {
     }
 
     public boolean hasJumpDest(int pc) {
-        return jumpdest.contains(pc);
+        int index = pc >>> 6;
+        return pc >= 0 && index < jumpdest.length && (jumpdest[index] & (1L << pc)) != 0;
     }
 
-    public static void main(String[] args) throws Exception {
-        ProgramPrecompile pp = new ProgramPrecompile();
-        pp.jumpdest.add(100);
-        pp.jumpdest.add(200);
-        byte[] bytes = pp.serialize();
+    public int getJumpDestCount() {
+        int count = 0;
+        for (long bits : jumpdest) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
 
-        ProgramPrecompile pp1 = ProgramPrecompile.deserialize(bytes);
-        System.out.println(pp1.jumpdest);
+    private void addJumpDest(int pc) {
+        int index = pc >>> 6;
+        if (index >= jumpdest.length) {
+            jumpdest = Arrays.copyOf(jumpdest, index + 1);
+        }
+        jumpdest[index] |= 1L << pc;
     }
 }
@@ -0,0 +1,73 @@
+package org.apis.vm.program;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apis.db.ByteArrayWrapper;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Jump destination analysis of recently executed contracts, by code hash.
+ *
+ * <p>
+ *     {@link Program} used to read the analysis from the state database and decode it on every call.
+ *     Contracts like tokens and the address masking contract are called many times per block,
+ *     so the decoded analysis is kept here and shared between all executors and threads.
+ *     The code hash identifies the code, so entries never become stale.
+ */
+public class ProgramPrecompileCache {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    private static final Map<ByteArrayWrapper, ProgramPrecompile> cache = Collections.synchronizedMap(new LRUMap<>(MAX_ENTRIES));
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private ProgramPrecompileCache() {}
+
+    /**
+     * @return cached analysis of the code, null if it has not been cached
+     */
+    static ProgramPrecompile get(byte[] codeHash) {
+        ProgramPrecompile precompile = cache.get(new ByteArrayWrapper(codeHash));
+        if (precompile == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return precompile;
+    }
+
+    static void put(byte[] codeHash, ProgramPrecompile precompile) {
+        cache.put(new ByteArrayWrapper(codeHash), precompile);
+    }
+
+    public static int size() {
+        return cache.size();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return ratio of the lookups that were found in the cache
+     */
+    public static double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    static void clear() {
+        cache.clear();
+        hits.reset();
+        misses.reset();
+    }
+}
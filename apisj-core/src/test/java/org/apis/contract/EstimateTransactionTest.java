@@ -0,0 +1,78 @@
+package org.apis.contract;
+
+import org.apis.core.Block;
+import org.apis.core.CallTransaction;
+import org.apis.core.Transaction;
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.db.BlockStoreDummy;
+import org.apis.db.RepositoryRoot;
+import org.apis.util.ByteUtil;
+import org.apis.vm.DataWord;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class EstimateTransactionTest {
+
+    private static final byte[] SENDER = Hex.decode("1111111111111111111111111111111111111111");
+    private static final byte[] RECEIVER = Hex.decode("2222222222222222222222222222222222222222");
+    private static final byte[] CONTRACT = Hex.decode("3333333333333333333333333333333333333333");
+
+    // PUSH1 0 PUSH1 0 SSTORE STOP : clears the storage slot 0 and gets a refund
+    private static final byte[] CLEAR_SLOT_CODE = Hex.decode("600060005500");
+
+    private RepositoryRoot repository;
+    private Block callBlock;
+
+    @Before
+    public void setup() {
+        repository = new RepositoryRoot(new HashMapDB<>());
+        repository.saveCode(CONTRACT, CLEAR_SLOT_CODE);
+        repository.addStorageRow(CONTRACT, DataWord.ZERO, new DataWord(1));
+        repository.commit();
+
+        callBlock = new Block(new byte[32], new byte[20], new byte[256], BigInteger.ONE, BigInteger.valueOf(1), 1,
+                ByteUtil.longToBytes(100_000_000L), 0, BigInteger.ZERO, 1, new byte[0], new byte[0], new byte[0],
+                new byte[0], new byte[0], repository.getRoot(), BigInteger.ZERO, new byte[0],
+                null, null, null, null, null, null, null);
+    }
+
+    @Test
+    public void testGasUsedIsEnough() {
+        EstimateTransactionResult result = estimate(RECEIVER, 1_000_000L, 50, 1000);
+        assertTrue(result.isSuccess());
+        long gasUsed = result.getGasUsed();
+
+        // the estimated gas limit is enough by itself
+        assertTrue(estimate(RECEIVER, gasUsed, 50, 1000).isSuccess());
+        assertEquals(gasUsed, estimate(RECEIVER, gasUsed, 50, 1000).getGasUsed());
+    }
+
+    @Test
+    public void testRefundNeedsMoreThanGasUsed() {
+        long gasUsed = estimate(CONTRACT, 1_000_000L, 0, 1000).getGasUsed();
+        assertFalse(estimate(CONTRACT, gasUsed, 0, 1000).isSuccess());
+
+        EstimateTransactionResult result = estimate(CONTRACT, 1_000_000L, 50, 0);
+        assertTrue(result.isSuccess());
+        long required = result.getGasUsed();
+        assertTrue(required > gasUsed);
+
+        // searched down to the exact limit
+        assertTrue(estimate(CONTRACT, required, 0, 0).isSuccess());
+        assertFalse(estimate(CONTRACT, required - 1, 0, 0).isSuccess());
+
+        // the searched limits are rolled back
+        assertEquals(new DataWord(1), repository.getStorageValue(CONTRACT, DataWord.ZERO));
+    }
+
+    private EstimateTransactionResult estimate(byte[] to, long gasLimit, int maxRepeat, long minOffset) {
+        Transaction tx = CallTransaction.createRawTransaction(0, 0, gasLimit, Hex.toHexString(to), BigInteger.ZERO, new byte[0]);
+        tx.setTempSender(SENDER);
+        return EstimateTransaction.getInstance(null).estimate(repository, new BlockStoreDummy(), callBlock, tx, maxRepeat, minOffset);
+    }
+}
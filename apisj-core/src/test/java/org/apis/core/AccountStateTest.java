@@ -18,6 +18,7 @@
 package org.apis.core;
 
 import org.apis.core.AccountState;
+import org.apis.util.blockchain.ApisUtil;
 import org.junit.Test;
 
 import org.spongycastle.util.encoders.Hex;
@@ -25,6 +26,7 @@ import org.spongycastle.util.encoders.Hex;
 import java.math.BigInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class AccountStateTest {
 
@@ -38,4 +40,22 @@ public class AccountStateTest {
         assertEquals(expected, Hex.toHexString(acct.getEncoded()));
     }
 
+    @Test
+    public void testMineral() {
+        // 10 APIS 잔고에는 블록마다 334 nAPIS가 모이고, nonce 0의 한도는 20 mAPIS 이다.
+        AccountState acct = new AccountState(BigInteger.ZERO, ApisUtil.convert(10, ApisUtil.Unit.APIS), BigInteger.valueOf(100));
+        BigInteger rate = ApisUtil.convert(334, ApisUtil.Unit.nAPIS);
+
+        assertEquals(BigInteger.ZERO, acct.getMineral(99));
+        assertEquals(rate.multiply(BigInteger.valueOf(10)), acct.getMineral(110));
+        assertSame(acct.getMineral(110), acct.getMineral(110));
+        assertEquals(ApisUtil.convert(20, ApisUtil.Unit.mAPIS), acct.getMineral(1_000_000));
+
+        // 미네랄을 바꾸면 새로 계산된다.
+        acct.getMineral(110);
+        AccountState changed = acct.withMineral(BigInteger.ONE).withLastBlock(BigInteger.valueOf(110));
+        assertEquals(BigInteger.ONE, changed.getMineral(110));
+        assertEquals(BigInteger.ONE.add(rate), changed.getMineral(111));
+    }
+
 }
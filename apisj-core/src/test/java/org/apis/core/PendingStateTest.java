@@ -578,6 +578,37 @@ public class PendingStateTest {
         }
     }
 
+    @Test
+    public void testReplacedIncluded() throws InterruptedException {
+        // a pending transaction is dropped when a block includes another one with the same nonce
+        StandaloneBlockchain bc = new StandaloneBlockchain();
+        PendingListener l = new PendingListener();
+        bc.addEthereumListener(l);
+        PendingStateImpl pendingState = (PendingStateImpl) bc.getBlockchain().getPendingState();
+
+        ECKey alice = new ECKey();
+        ECKey bob = new ECKey();
+        ECKey charlie = new ECKey();
+
+        bc.sendEther(bob.getAddress(), convert(100, ETHER));
+        bc.createBlock();
+
+        Transaction tx1 = bc.createTransaction(bob, 0, alice.getAddress(), BigInteger.valueOf(1000000), new byte[0]);
+        pendingState.addPendingTransaction(tx1);
+
+        Assert.assertEquals(l.pollTxUpdateState(tx1), NEW_PENDING);
+
+        Transaction tx1_ = bc.createTransaction(bob, 0, charlie.getAddress(), BigInteger.valueOf(1000000), new byte[0]);
+        bc.submitTransaction(tx1_);
+        Block b2 = bc.createBlock();
+
+        Triple<TransactionReceipt, EthereumListener.PendingTransactionState, Block> txUpd = l.pollTxUpdate(tx1);
+        Assert.assertEquals(txUpd.getMiddle(), DROPPED);
+        Assert.assertArrayEquals(txUpd.getRight().getHash(), b2.getHash());
+        Assert.assertTrue(l.getQueueFor(tx1).isEmpty());
+        Assert.assertTrue(pendingState.getPendingTransactions().isEmpty());
+    }
+
     @Test
     public void testIncludedRejected() throws InterruptedException {
         // check INCLUDED => DROPPED state transition when a new (long) fork without
@@ -0,0 +1,106 @@
+package org.apis.core;
+
+import org.apis.crypto.ECKey;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.apis.util.ByteUtil.byteArrayToLong;
+import static org.apis.util.ByteUtil.longToBytesNoLeadZeroes;
+import static org.junit.Assert.*;
+
+public class PendingTransactionPoolTest {
+
+    private static final byte[] RECEIVER = new ECKey().getAddress();
+
+    @Test
+    public void keepsTransactionsInNonceOrder() {
+        ECKey alice = new ECKey();
+        ECKey bob = new ECKey();
+        PendingTransactionPool pool = new PendingTransactionPool();
+
+        pool.add(new PendingTransaction(tx(alice, 1, 10), 1));
+        pool.add(new PendingTransaction(tx(bob, 0, 10), 1));
+        pool.add(new PendingTransaction(tx(alice, 0, 10), 1));
+
+        // nothing is visible until published
+        assertTrue(pool.getTransactions().isEmpty());
+        pool.publish();
+
+        List<Transaction> txs = pool.getTransactions();
+        assertEquals(3, txs.size());
+        assertEquals(0, nonce(txs.get(0)));
+        assertEquals(0, nonce(txs.get(1)));
+        assertEquals(1, nonce(txs.get(2)));
+        assertArrayEquals(alice.getAddress(), txs.get(2).getSender());
+
+        // same sender and nonce replaces the transaction
+        Transaction replacement = tx(alice, 1, 20);
+        pool.add(new PendingTransaction(replacement, 2));
+        assertEquals(3, pool.size());
+
+        assertNotNull(pool.remove(tx(alice, 0, 99)));
+        assertNull(pool.remove(tx(alice, 0, 99)));
+        pool.publish();
+        assertEquals(2, pool.getTransactions().size());
+        assertTrue(pool.getTransactions().contains(replacement));
+
+        // the list is not made again without changes
+        List<Transaction> published = pool.getTransactions();
+        pool.publish();
+        assertSame(published, pool.getTransactions());
+        assertNull(pool.remove(tx(bob, 5, 10)));
+        pool.publish();
+        assertSame(published, pool.getTransactions());
+    }
+
+    @Test
+    public void evictsCheapestTransactionsWithTheirSuccessors() {
+        ECKey alice = new ECKey();
+        ECKey bob = new ECKey();
+        PendingTransactionPool pool = new PendingTransactionPool();
+
+        pool.add(new PendingTransaction(tx(alice, 0, 50), 1));
+        pool.add(new PendingTransaction(tx(alice, 1, 5), 1));
+        pool.add(new PendingTransaction(tx(alice, 2, 100), 1));
+        pool.add(new PendingTransaction(tx(bob, 0, 10), 1));
+
+        assertFalse(pool.hasRoomFor(tx(bob, 1, 5), 4));
+        assertTrue(pool.hasRoomFor(tx(bob, 1, 6), 4));
+        assertTrue(pool.hasRoomFor(tx(bob, 1, 1), 5));
+
+        // alice's nonce 1 is the cheapest, nonce 2 can't be mined without it
+        List<PendingTransaction> evicted = pool.evict(3);
+        assertEquals(2, evicted.size());
+        assertEquals(2, pool.size());
+        assertFalse(pool.contains(tx(alice, 1, 0)));
+        assertFalse(pool.contains(tx(alice, 2, 0)));
+        assertTrue(pool.contains(tx(alice, 0, 0)));
+        assertTrue(pool.contains(tx(bob, 0, 0)));
+    }
+
+    @Test
+    public void removesOutdatedTransactions() {
+        ECKey alice = new ECKey();
+        PendingTransactionPool pool = new PendingTransactionPool();
+
+        pool.add(new PendingTransaction(tx(alice, 0, 10), 1));
+        pool.add(new PendingTransaction(tx(alice, 1, 10), 50));
+
+        List<PendingTransaction> outdated = pool.removeOutdated(100, 75);
+        assertEquals(1, outdated.size());
+        assertEquals(0, nonce(outdated.get(0).getTransaction()));
+        assertEquals(1, pool.size());
+    }
+
+    private static Transaction tx(ECKey sender, long nonce, long gasPrice) {
+        Transaction tx = new Transaction(longToBytesNoLeadZeroes(nonce), longToBytesNoLeadZeroes(gasPrice),
+                longToBytesNoLeadZeroes(21000), RECEIVER, longToBytesNoLeadZeroes(1), null, null);
+        tx.sign(sender);
+        return tx;
+    }
+
+    private static long nonce(Transaction tx) {
+        return byteArrayToLong(tx.getNonce());
+    }
+}
@@ -0,0 +1,115 @@
+package org.apis.core;
+
+import org.apis.config.Constants;
+import org.apis.config.SystemProperties;
+import org.apis.crypto.ECKey;
+import org.apis.crypto.HashUtil;
+import org.apis.util.ByteUtil;
+import org.apis.util.FastByteComparisons;
+import org.apis.util.blockchain.StandaloneBlockchain;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpeculativeBlockExecutorTest {
+
+    private static final BigInteger BALANCE = new BigInteger("1000000000000000000000000");
+
+    // PUSH1 0x2a PUSH1 0x00 SSTORE STOP
+    private static final byte[] STORE_INIT_CODE = Hex.decode("602a60005500");
+
+    private final ECKey[] senders = new ECKey[6];
+    private StandaloneBlockchain sb;
+
+    @Before
+    public void setup() {
+        SystemProperties.getDefault().setCoinbasePrivateKey(HashUtil.sha3("coinbase".getBytes()));
+
+        sb = new StandaloneBlockchain();
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = ECKey.fromPrivate(HashUtil.sha3(("sender" + i).getBytes()));
+            sb.withAccountBalance(senders[i].getAddress(), BALANCE);
+        }
+
+        // the expired masternodes are looked up on every block
+        Constants constants = StandaloneBlockchain.getEasyMiningConfig().getCommonConstants();
+        for (byte[] base : new byte[][] {
+                constants.getMASTERNODE_GENERAL_BASE_NORMAL(), constants.getMASTERNODE_GENERAL_BASE_LATE(),
+                constants.getMASTERNODE_MAJOR_BASE_NORMAL(), constants.getMASTERNODE_MAJOR_BASE_LATE(),
+                constants.getMASTERNODE_PRIVATE_BASE_NORMAL(), constants.getMASTERNODE_PRIVATE_BASE_LATE()}) {
+            sb.withAccountBalance(base, BigInteger.ONE);
+        }
+    }
+
+    @After
+    public void cleanup() {
+        SystemProperties.getDefault().overrideParams("blockchain.parallel.execution", "false");
+        SystemProperties.getDefault().setCoinbasePrivateKey(null);
+    }
+
+    @Test
+    public void testSameBlockAsSequentialExecution() {
+        byte[] shared = new ECKey().getAddress();
+        List<Transaction> txs = new ArrayList<>();
+
+        // independent transfers and a contract creation are taken from the speculative execution
+        for (int i = 0; i < 3; i++) {
+            txs.add(tx(senders[i], 0, new ECKey().getAddress(), BigInteger.valueOf(1000 + i), new byte[0]));
+        }
+        txs.add(tx(senders[3], 0, new byte[0], BigInteger.ZERO, STORE_INIT_CODE));
+
+        // the later transactions of a sender read the nonce and the balance changed by the earlier ones
+        for (int nonce = 1; nonce < 4; nonce++) {
+            txs.add(tx(senders[0], nonce, new ECKey().getAddress(), BigInteger.valueOf(nonce), new byte[0]));
+        }
+
+        // transfers to the same account read its balance
+        txs.add(tx(senders[4], 0, shared, BigInteger.valueOf(10), new byte[0]));
+        txs.add(tx(senders[5], 0, shared, BigInteger.valueOf(20), new byte[0]));
+
+        // reads the nonce changed by the first transaction and the balance changed by the two above
+        txs.add(tx(senders[1], 1, shared, BigInteger.valueOf(30), new byte[0]));
+
+        BlockchainImpl blockchain = sb.getBlockchain();
+        Block parent = blockchain.getBestBlock();
+        long time = parent.getTimestamp() + 10;
+
+        SystemProperties.getDefault().overrideParams("blockchain.parallel.execution", "false");
+        Block sequential = blockchain.createNewBlock(parent, txs, time);
+
+        SystemProperties.getDefault().overrideParams("blockchain.parallel.execution", "true");
+        Block parallel = blockchain.createNewBlock(parent, txs, time);
+        SpeculativeBlockExecutor speculative = blockchain.getLastSpeculativeExecutor();
+
+        assertFalse(FastByteComparisons.equal(parent.getStateRoot(), sequential.getStateRoot()));
+        assertTrue(sequential.getGasUsed() > 21_000 * txs.size());
+
+        assertArrayEquals(sequential.getStateRoot(), parallel.getStateRoot());
+        assertArrayEquals(sequential.getReceiptsRoot(), parallel.getReceiptsRoot());
+        assertArrayEquals(sequential.getLogBloom(), parallel.getLogBloom());
+        assertEquals(sequential.getGasUsed(), parallel.getGasUsed());
+        assertEquals(sequential.getMineralUsed(), parallel.getMineralUsed());
+
+        // the transfers to unrelated accounts, the contract creation and the first transfer to the shared account
+        // are taken from the speculative execution, the rest read values changed by the earlier transactions
+        assertNotNull(speculative);
+        assertEquals(5, speculative.getCommitted());
+        assertEquals(5, speculative.getReExecuted());
+    }
+
+    private Transaction tx(ECKey sender, long nonce, byte[] to, BigInteger value, byte[] data) {
+        Integer chainId = StandaloneBlockchain.getEasyMiningConfig().getChainId();
+        Transaction tx = new Transaction(ByteUtil.longToBytesNoLeadZeroes(nonce),
+                ByteUtil.longToBytesNoLeadZeroes(50_000_000_000L), ByteUtil.longToBytesNoLeadZeroes(1_000_000),
+                to, ByteUtil.bigIntegerToBytes(value), data, chainId);
+        tx.sign(sender);
+        return tx;
+    }
+}
@@ -0,0 +1,49 @@
+package org.apis.core;
+
+import org.apis.crypto.ECKey;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apis.util.ByteUtil.longToBytesNoLeadZeroes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class TransactionSenderRecoveryTest {
+
+    @Test
+    public void recoversAllSenders() {
+        List<ECKey> keys = new ArrayList<>();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ECKey key = new ECKey();
+            Transaction tx = new Transaction(longToBytesNoLeadZeroes(i), longToBytesNoLeadZeroes(1),
+                    longToBytesNoLeadZeroes(21000), new ECKey().getAddress(), longToBytesNoLeadZeroes(1), null, null);
+            tx.sign(key);
+            keys.add(key);
+            // a decoded copy doesn't have the sender cached yet
+            txs.add(new Transaction(tx.getEncoded()));
+        }
+
+        TransactionSenderRecovery.recover(txs);
+
+        for (int i = 0; i < txs.size(); i++) {
+            assertArrayEquals(keys.get(i).getAddress(), txs.get(i).getSender());
+        }
+    }
+
+    @Test
+    public void skipsUnsignedTransactions() {
+        Transaction tx = new Transaction(longToBytesNoLeadZeroes(0), longToBytesNoLeadZeroes(1),
+                longToBytesNoLeadZeroes(21000), new ECKey().getAddress(), longToBytesNoLeadZeroes(1), null, null);
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            txs.add(tx);
+        }
+
+        TransactionSenderRecovery.recover(txs);
+
+        assertNull(tx.getSender());
+    }
+}
@@ -0,0 +1,134 @@
+package org.apis.datasource;
+
+import org.apis.datasource.inmem.HashMapDB;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.apis.crypto.HashUtil.sha3;
+import static org.apis.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+
+public class OffHeapReadCacheTest {
+
+    @Test
+    public void testSimple() {
+        HashMapDB<byte[]> src = new HashMapDB<>();
+        OffHeapReadCache cache = new OffHeapReadCache(src, 1024 * 1024);
+
+        byte[] key = sha3(intToBytes(1));
+        assertNull(cache.get(key));
+        // null is cached as well
+        assertNotNull(cache.getCached(key));
+        assertNull(cache.getCached(key).value());
+
+        cache.put(key, intToBytes(1));
+        assertArrayEquals(intToBytes(1), src.get(key));
+        assertArrayEquals(intToBytes(1), cache.getCached(key).value());
+
+        cache.put(key, new byte[0]);
+        assertArrayEquals(new byte[0], cache.get(key));
+
+        cache.delete(key);
+        assertNull(cache.getCached(key));
+        assertNull(src.get(key));
+
+        // entries put directly to the source are read through
+        src.put(key, intToBytes(2));
+        assertArrayEquals(intToBytes(2), cache.get(key));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSizeLimit() {
+        HashMapDB<byte[]> src = new HashMapDB<>();
+        long maxSize = 256 * 1024;
+        OffHeapReadCache cache = new OffHeapReadCache(src, maxSize);
+
+        byte[] hotKey = sha3(intToBytes(-1));
+        cache.put(hotKey, new byte[100]);
+        for (int i = 0; i < 20000; i++) {
+            cache.put(sha3(intToBytes(i)), new byte[100]);
+            assertNotNull(cache.get(hotKey));
+        }
+
+        assertTrue(cache.estimateCacheSize() <= maxSize);
+        assertTrue(cache.size() < 20000);
+        assertTrue(cache.size() > 1000);
+        assertNotNull(cache.getCached(hotKey));
+        // old entries are purged
+        assertNull(cache.getCached(sha3(intToBytes(0))));
+
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(100, cache.get(sha3(intToBytes(i))).length);
+        }
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        HashMapDB<byte[]> src = new HashMapDB<>();
+        OffHeapReadCache cache = new OffHeapReadCache(src, 64 * 1024);
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 200; i++) {
+                byte[] key = sha3(intToBytes(i));
+                if (i % 3 == 0) {
+                    cache.delete(key);
+                } else {
+                    cache.put(key, intToBytes(round * 1000 + i));
+                }
+            }
+            for (int i = 0; i < 200; i++) {
+                byte[] value = cache.get(sha3(intToBytes(i)));
+                if (i % 3 == 0) {
+                    assertNull(value);
+                } else {
+                    assertArrayEquals(intToBytes(round * 1000 + i), value);
+                }
+            }
+        }
+        assertTrue(cache.estimateCacheSize() <= 64 * 1024);
+    }
+
+    @Test
+    public void testKeyWithWrapHash() {
+        byte[] wrapKey = keyWithHash(-1);
+        assertEquals(-1, OffHeapReadCache.hash(wrapKey));
+
+        HashMapDB<byte[]> src = new HashMapDB<>();
+        OffHeapReadCache cache = new OffHeapReadCache(src, 16 * 1024);
+        // the key ends up at the head of its segment over and over while the ring wraps
+        for (int i = 0; i < 2000; i++) {
+            cache.put(wrapKey, intToBytes(i));
+            for (int j = 0; j < 16; j++) {
+                cache.put(sha3(intToBytes(i * 16 + j)), new byte[100]);
+            }
+            assertArrayEquals(intToBytes(i), cache.get(wrapKey));
+            assertTrue(cache.estimateCacheSize() <= 16 * 1024);
+        }
+        assertTrue(cache.size() < 16 * 1024 / 100);
+        for (int i = 0; i < 2000 * 16; i++) {
+            assertEquals(100, cache.get(sha3(intToBytes(i))).length);
+        }
+    }
+
+    /**
+     * Appends to a prefix 7 bytes which make {@link java.util.Arrays#hashCode(byte[])} the value
+     * which {@link OffHeapReadCache#hash} turns into the given one
+     */
+    private static byte[] keyWithHash(int hash) {
+        // h ^ (h >>> 16) == hash
+        int high = hash >>> 16;
+        int target = (high << 16) | ((hash ^ high) & 0xFFFF);
+
+        byte[] key = sha3(intToBytes(hash));
+        key = Arrays.copyOf(key, key.length + 7);
+        int prefixHash = Arrays.hashCode(Arrays.copyOf(key, key.length - 7));
+        long rest = (target - prefixHash * 27512614111L) & 0xFFFFFFFFL;  // 31^7 > 2^32
+        for (int i = key.length - 1; i >= key.length - 7; i--) {
+            key[i] = (byte) (rest % 31);
+            rest /= 31;
+        }
+        return key;
+    }
+}
@@ -90,4 +90,108 @@ public class ReadCacheTest {
         assertEquals(str(intToValue(9_901)), str(readCache.getCached(intToKey(9_901)).value()));
         assertNull(readCache.getCached(intToKey(9_900)));
     }
+
+    @Test
+    public void testConcurrentCache() {
+        Source<byte[], byte[]> src = new HashMapDB<>();
+        ReadCache<byte[], byte[]> readCache = new ReadCache.BytesKey<>(src).withConcurrentCache(1000);
+        for (int i = 0; i < 10_000; ++i) {
+            src.put(intToKey(i), intToValue(i));
+        }
+
+        // frequently read entries
+        for (int n = 0; n < 5; n++) {
+            for (int i = 0; i < 500; ++i) {
+                assertEquals(str(intToValue(i)), str(readCache.get(intToKey(i))));
+            }
+        }
+        // a scan over the rest doesn't purge them
+        for (int i = 500; i < 10_000; ++i) {
+            assertEquals(str(intToValue(i)), str(readCache.get(intToKey(i))));
+        }
+        int cached = 0;
+        for (int i = 0; i < 500; ++i) {
+            if (readCache.getCached(intToKey(i)) != null) cached++;
+        }
+        assertTrue(cached > 450);
+
+        int total = 0;
+        for (int i = 0; i < 10_000; ++i) {
+            if (readCache.getCached(intToKey(i)) != null) total++;
+        }
+        assertTrue(total <= 1000);
+
+        assertEquals(2000, readCache.getHitCount());
+        assertEquals(10_000, readCache.getMissCount());
+        assertEquals(2000.0 / 12_000, readCache.getHitRatio(), 1e-9);
+        assertTrue(readCache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testConcurrentCacheWrites() {
+        Source<byte[], byte[]> src = new HashMapDB<>();
+        ReadCache<byte[], byte[]> readCache = new ReadCache.BytesKey<>(src).withConcurrentCache(1000);
+
+        // the written entries are cached up to the capacity
+        for (int i = 0; i < 256; ++i) {
+            readCache.put(intToKey(i), intToValue(i));
+        }
+        for (int i = 0; i < 256; ++i) {
+            assertNotNull(readCache.getCached(intToKey(i)));
+        }
+
+        // frequently read entries are kept over the new ones written
+        for (int n = 0; n < 5; n++) {
+            for (int i = 0; i < 256; ++i) {
+                readCache.get(intToKey(i));
+            }
+        }
+        for (int i = 256; i < 10_000; ++i) {
+            readCache.put(intToKey(i), intToValue(i));
+        }
+        int cached = 0;
+        for (int i = 0; i < 256; ++i) {
+            if (readCache.getCached(intToKey(i)) != null) cached++;
+        }
+        assertTrue(cached > 240);
+
+        // the recent entries written are in the window
+        assertNotNull(readCache.getCached(intToKey(9_999)));
+    }
+
+    @Test
+    public void testConcurrentCacheMultiThread() throws Exception {
+        final Source<byte[], byte[]> src = new HashMapDB<>();
+        final ReadCache<byte[], byte[]> readCache = new ReadCache.BytesKey<>(src).withConcurrentCache(100);
+        for (int i = 0; i < 1000; ++i) {
+            src.put(intToKey(i), intToValue(i));
+        }
+
+        final Throwable[] exception = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20_000; i++) {
+                        int k = (i * 31 + seed) % 1000;
+                        assertEquals(str(intToValue(k)), str(readCache.get(intToKey(k))));
+                    }
+                } catch (Throwable e) {
+                    exception[0] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (exception[0] != null) throw new RuntimeException(exception[0]);
+
+        int total = 0;
+        for (int i = 0; i < 1000; ++i) {
+            if (readCache.getCached(intToKey(i)) != null) total++;
+        }
+        assertTrue(total <= 100);
+    }
 }
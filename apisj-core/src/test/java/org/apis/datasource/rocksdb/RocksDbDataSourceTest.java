@@ -0,0 +1,105 @@
+package org.apis.datasource.rocksdb;
+
+import org.apis.config.SystemProperties;
+import org.apis.datasource.DbSettings;
+import org.apis.datasource.FamilyKeySource;
+import org.apis.datasource.NodeKeyCompositor;
+import org.apis.datasource.PrefixLookupSource;
+import org.apis.datasource.Source;
+import org.apis.util.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apis.crypto.HashUtil.sha3;
+import static org.junit.Assert.*;
+
+public class RocksDbDataSourceTest {
+
+    private SystemProperties config;
+    private String dbDir;
+
+    @Before
+    public void setup() throws Exception {
+        dbDir = Files.createTempDirectory("rocksdb-test").toString();
+        config = new SystemProperties();
+        config.setDataBaseDir(dbDir);
+    }
+
+    @After
+    public void cleanup() {
+        FileUtil.recursiveDelete(dbDir);
+    }
+
+    @Test
+    public void testColumnFamilies() {
+        RocksDbDataSource db = open(familySettings());
+        Source<byte[], byte[]> state = new FamilyKeySource<>(new PrefixLookupSource<>(db, NodeKeyCompositor.PREFIX_BYTES), (byte) 1);
+        Source<byte[], byte[]> block = new FamilyKeySource<>(db, (byte) 2);
+        Source<byte[], byte[]> other = new FamilyKeySource<>(db, (byte) 0);
+
+        byte[] key = sha3(new byte[] {1});
+        Map<byte[], byte[]> batch = new HashMap<>();
+        batch.put(withFamily((byte) 1, key), new byte[] {1});
+        batch.put(withFamily((byte) 2, key), new byte[] {2});
+        batch.put(withFamily((byte) 0, key), new byte[] {3});
+        db.updateBatch(batch);
+
+        // the same key in each family
+        assertArrayEquals(new byte[] {1}, state.get(key));
+        assertArrayEquals(new byte[] {2}, block.get(key));
+        assertArrayEquals(new byte[] {3}, other.get(key));
+        assertEquals(3, db.keys().size());
+
+        // prefix lookup inside the family
+        byte[] prefixKey = key.clone();
+        prefixKey[31] ^= 1;
+        assertArrayEquals(new byte[] {1}, state.get(prefixKey));
+
+        block.delete(key);
+        assertNull(block.get(key));
+        assertArrayEquals(new byte[] {1}, state.get(key));
+        assertTrue(db.getMemoryUsage() > 0);
+        db.close();
+
+        // families are kept across restarts
+        db = open(familySettings());
+        assertArrayEquals(new byte[] {1}, db.get(withFamily((byte) 1, key)));
+        db.close();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testChangedColumnFamiliesAreRejected() {
+        RocksDbDataSource db = open(DbSettings.newInstance());
+        db.put(sha3(new byte[] {1}), new byte[] {1});
+        db.close();
+
+        open(familySettings());
+    }
+
+    private RocksDbDataSource open(DbSettings settings) {
+        RocksDbDataSource db = new RocksDbDataSource("blockchain");
+        db.config = config;
+        db.init(settings);
+        return db;
+    }
+
+    private static DbSettings familySettings() {
+        return DbSettings.newInstance()
+                .withWriteBufferSize(16 * 1024 * 1024)
+                .withColumnFamily("state", new DbSettings.ColumnFamily().withPrefixLookup(true))
+                .withColumnFamily("block", new DbSettings.ColumnFamily().withBloomBits(0)
+                        .withCompression(DbSettings.ColumnFamily.Compression.NONE));
+    }
+
+    private static byte[] withFamily(byte family, byte[] key) {
+        byte[] ret = new byte[key.length + 1];
+        ret[0] = family;
+        System.arraycopy(key, 0, ret, 1, key.length);
+        return ret;
+    }
+}
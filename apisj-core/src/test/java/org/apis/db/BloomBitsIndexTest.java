@@ -0,0 +1,131 @@
+package org.apis.db;
+
+import org.apis.core.Block;
+import org.apis.core.Bloom;
+import org.apis.crypto.HashUtil;
+import org.apis.datasource.inmem.HashMapDB;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apis.db.BloomBitsIndex.CONFIRMATIONS;
+import static org.apis.db.BloomBitsIndex.SECTION_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BloomBitsIndexTest {
+
+    private static final byte[] TOPIC_A = HashUtil.sha3("Transfer".getBytes());
+    private static final byte[] TOPIC_B = HashUtil.sha3("Approval".getBytes());
+
+    private ChainStore blockStore;
+    private HashMapDB<byte[]> source;
+
+    @Before
+    public void setup() {
+        blockStore = new ChainStore();
+        for (int i = 0; i < SECTION_SIZE + CONFIRMATIONS + 1000; i++) {
+            Bloom bloom = new Bloom();
+            if (i % 1000 == 7) {
+                bloom.or(Bloom.create(HashUtil.sha3(TOPIC_A)));
+            }
+            if (i == 5000) {
+                bloom.or(Bloom.create(HashUtil.sha3(TOPIC_B)));
+            }
+            blockStore.add(bloom, 0);
+        }
+        source = new HashMapDB<>();
+    }
+
+    @Test
+    public void testIndexedAndUnindexedBlocks() {
+        BloomBitsIndex index = new BloomBitsIndex(source, blockStore);
+        index.update();
+        assertEquals(SECTION_SIZE, index.getIndexedBlocks());
+
+        BloomBitsIndex.Matcher matcher = index.matcher(Bloom.create(HashUtil.sha3(TOPIC_A)));
+        List<Long> found = new ArrayList<>();
+        long number = matcher.next(0, blockStore.getMaxNumber());
+        while (number >= 0) {
+            found.add(number);
+            number = matcher.next(number + 1, blockStore.getMaxNumber());
+        }
+        List<Long> expected = new ArrayList<>();
+        for (long i = 7; i <= blockStore.getMaxNumber(); i += 1000) {
+            expected.add(i);
+        }
+        assertEquals(expected, found);
+
+        assertEquals(5000, index.matcher(Bloom.create(HashUtil.sha3(TOPIC_B))).next(0, blockStore.getMaxNumber()));
+        assertEquals(-1, index.matcher(Bloom.create(HashUtil.sha3(TOPIC_B))).next(0, 4999));
+        assertEquals(100, index.matcher(new Bloom()).next(100, 200));
+    }
+
+    @Test
+    public void testCloseWaitsForTheIndexer() {
+        BloomBitsIndex index = new BloomBitsIndex(source, blockStore);
+        index.start();
+        index.close();
+
+        // the section being indexed is complete and nothing is written after close
+        int written = source.keys().size();
+        assertTrue(index.getIndexedBlocks() == 0 || index.getIndexedBlocks() == SECTION_SIZE);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertFalse(thread.getName().startsWith("BloomBitsIndexer"));
+        }
+        assertEquals(written, source.keys().size());
+    }
+
+    @Test
+    public void testSectionsAreRestoredAndReindexedAfterReorg() {
+        BloomBitsIndex index = new BloomBitsIndex(source, blockStore);
+        index.update();
+
+        assertEquals(SECTION_SIZE, new BloomBitsIndex(source, blockStore).getIndexedBlocks());
+
+        // The section head has been replaced by a block of another branch
+        blockStore.replace(SECTION_SIZE - 1, Bloom.create(HashUtil.sha3(TOPIC_B)), 1);
+        index.update();
+        assertEquals(SECTION_SIZE, index.getIndexedBlocks());
+        assertEquals(SECTION_SIZE - 1, index.matcher(Bloom.create(HashUtil.sha3(TOPIC_B))).next(0, blockStore.getMaxNumber()));
+        assertEquals(1007, index.matcher(Bloom.create(HashUtil.sha3(TOPIC_A))).next(8, blockStore.getMaxNumber()));
+    }
+
+    private static class ChainStore extends BlockStoreDummy {
+        private final List<Block> blocks = new ArrayList<>();
+
+        void add(Bloom bloom, long nonce) {
+            blocks.add(createBlock(blocks.size(), bloom, nonce));
+        }
+
+        void replace(int number, Bloom bloom, long nonce) {
+            blocks.set(number, createBlock(number, bloom, nonce));
+        }
+
+        private Block createBlock(long number, Bloom bloom, long nonce) {
+            byte[] parentHash = number == 0 ? new byte[32] : blocks.get((int) number - 1).getHash();
+            return new Block(parentHash, new byte[20], bloom.getData(), BigInteger.ONE, BigInteger.valueOf(number), number,
+                    new byte[] {0}, 0, BigInteger.ZERO, number, new byte[0], new byte[0], BigInteger.valueOf(nonce).toByteArray(),
+                    BigInteger.ZERO, new byte[0], null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public byte[] getBlockHashByNumber(long blockNumber) {
+            return blockNumber < blocks.size() ? blocks.get((int) blockNumber).getHash() : null;
+        }
+
+        @Override
+        public Block getChainBlockByNumber(long blockNumber) {
+            return blockNumber < blocks.size() ? blocks.get((int) blockNumber) : null;
+        }
+
+        @Override
+        public long getMaxNumber() {
+            return blocks.size() - 1;
+        }
+    }
+}
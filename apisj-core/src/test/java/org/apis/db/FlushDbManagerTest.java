@@ -18,7 +18,10 @@
 package org.apis.db;
 
 import org.apis.config.SystemProperties;
+import org.apis.datasource.AsyncWriteCache;
+import org.apis.datasource.BatchSourceWriter;
 import org.apis.datasource.DbSource;
+import org.apis.datasource.Source;
 import org.apis.datasource.WriteCache;
 import org.apis.datasource.inmem.HashMapDB;
 import org.apis.db.DbFlushManager;
@@ -26,7 +29,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.apis.datasource.MemSizeEstimator.ByteArrayEstimator;
 import static org.apis.util.ByteUtil.intToBytes;
@@ -120,4 +125,66 @@ public class FlushDbManagerTest {
 
         if (exception[0] != null) throw exception[0];
     }
+
+    @Test
+    public void testBackPressure() throws Throwable {
+        // check that the import isn't blocked by a slow flush until the pending limit is reached
+
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        final CountDownLatch releaseWrite = new CountDownLatch(1);
+        final HashMapDB<byte[]> db = new HashMapDB<byte[]>() {
+            @Override
+            public void updateBatch(Map<byte[], byte[]> rows) {
+                writeStarted.countDown();
+                try {
+                    releaseWrite.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.updateBatch(rows);
+            }
+        };
+        final AsyncWriteCache<byte[], byte[]> cache = new AsyncWriteCache<byte[], byte[]>(new BatchSourceWriter<>(db)) {
+            @Override
+            protected WriteCache<byte[], byte[]> createCache(Source<byte[], byte[]> source) {
+                WriteCache.BytesKey<byte[]> ret = new WriteCache.BytesKey<>(source, WriteCache.CacheType.SIMPLE);
+                ret.withSizeEstimators(ByteArrayEstimator, ByteArrayEstimator);
+                ret.setFlushSource(true);
+                return ret;
+            }
+        };
+
+        final DbFlushManager dbFlushManager = new DbFlushManager(SystemProperties.getDefault(), Collections.<DbSource>emptySet(), null);
+        dbFlushManager.addCache(cache);
+        dbFlushManager.setSizeThreshold(1);
+        dbFlushManager.setMaxPendingSize(Long.MAX_VALUE);
+
+        dbFlushManager.commit(() -> cache.put(intToBytes(0), intToBytes(0)));
+        Assert.assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+        // the writer is busy, the flush is postponed
+        for (int i = 1; i < 10; i++) {
+            final int i_ = i;
+            dbFlushManager.commit(() -> cache.put(intToBytes(i_), intToBytes(i_)));
+        }
+        Assert.assertEquals(0, dbFlushManager.getStallCount());
+
+        // the writer falls behind, the import waits for it
+        dbFlushManager.setMaxPendingSize(1);
+        final CountDownLatch committed = new CountDownLatch(1);
+        new Thread(() -> {
+            dbFlushManager.commit(() -> cache.put(intToBytes(10), intToBytes(10)));
+            committed.countDown();
+        }).start();
+        Assert.assertFalse(committed.await(200, TimeUnit.MILLISECONDS));
+
+        releaseWrite.countDown();
+        Assert.assertTrue(committed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, dbFlushManager.getStallCount());
+
+        dbFlushManager.flushSync();
+        for (int i = 0; i <= 10; i++) {
+            Assert.assertArrayEquals(intToBytes(i), db.get(intToBytes(i)));
+        }
+    }
 }
@@ -0,0 +1,176 @@
+package org.apis.db;
+
+import org.apis.config.Constants;
+import org.apis.config.SystemProperties;
+import org.apis.core.AccountState;
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.util.MasternodeSize;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MasternodeRegistryTest {
+
+    private static final byte[] MN1 = new byte[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+    private static final byte[] MN2 = new byte[] {2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2};
+    private static final byte[] MN3 = new byte[] {3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3};
+    private static final byte[] OTHER = new byte[] {9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9};
+
+    private Constants constants;
+    private HashMapDB<byte[]> stateDS;
+    private RepositoryRoot repository;
+
+    @Before
+    public void setup() {
+        constants = SystemProperties.getDefault().getBlockchainConfig().getCommonConstants();
+        stateDS = new HashMapDB<>();
+        repository = new RepositoryRoot(stateDS);
+
+        RepositoryImpl track = repository.startTracking();
+        track.insertMnState(constants.getMASTERNODE_GENERAL_BASE_LATE(), MN1, 10, BigInteger.ONE, OTHER);
+        track.insertMnState(MN1, MN2, 20, BigInteger.ONE, OTHER);
+        track.commit();
+        repository.commit();
+    }
+
+    @Test
+    public void testListsAndSizes() {
+        byte[] base = constants.getMASTERNODE_GENERAL_BASE_LATE();
+
+        List<byte[]> nodes = repository.getMasterNodeList(base);
+        assertEquals(2, nodes.size());
+        assertArrayEquals(MN1, nodes.get(0));
+        assertArrayEquals(MN2, nodes.get(1));
+
+        MasternodeSize size = repository.sizeofMasterNode(base);
+        assertEquals(2, size.getSize());
+        assertArrayEquals(MN2, size.getLastNode());
+
+        long period = constants.getMASTERNODE_REWARD_PERIOD();
+        assertEquals(1, repository.getMasterNodeList(base, 15 + period).size());
+        assertEquals(2, repository.getMasterNodeList(base, 20 + period).size());
+
+        MasternodeSize empty = repository.sizeofMasterNode(MN2);
+        assertEquals(0, empty.getSize());
+        assertArrayEquals(MN2, empty.getLastNode());
+    }
+
+    @Test
+    public void testSnapshotIsHandedOverUntilMasternodesChange() {
+        byte[] base = constants.getMASTERNODE_GENERAL_BASE_LATE();
+        byte[] root1 = repository.getRoot();
+        assertEquals(2, repository.getMasterNodeList(base).size());
+
+        // Not a masternode change, the lists are reused for the new root
+        repository.addBalance(OTHER, BigInteger.TEN);
+        byte[] root2 = repository.getRoot();
+        assertFalse(Arrays.equals(root1, root2));
+        assertSame(MasternodeRegistry.getSnapshot(root1), MasternodeRegistry.getSnapshot(root2));
+
+        // The change is only visible in the track until it is committed
+        RepositoryImpl track = repository.startTracking();
+        track.insertMnState(MN2, MN3, 30, BigInteger.ONE, OTHER);
+        assertEquals(3, track.getMasterNodeList(base).size());
+        assertEquals(2, repository.getMasterNodeList(base).size());
+
+        track.commit();
+        assertEquals(3, repository.getMasterNodeList(base).size());
+
+        byte[] root3 = repository.getRoot();
+        assertNotSame(MasternodeRegistry.getSnapshot(root2), MasternodeRegistry.getSnapshot(root3));
+
+        repository.commit();
+        assertEquals(3, new RepositoryRoot(stateDS, root3).getMasterNodeList(base).size());
+        assertEquals(2, new RepositoryRoot(stateDS, root2).getMasterNodeList(base).size());
+    }
+
+    @Test
+    public void testListsAreDerivedFromChanges() {
+        byte[] base = constants.getMASTERNODE_GENERAL_BASE_LATE();
+        assertEquals(2, repository.getMasterNodeList(base).size());
+
+        RepositoryImpl track = repository.startTracking();
+        track.insertMnState(MN2, MN3, 30, BigInteger.ONE, OTHER);
+        track.setMnStartBlock(MN1, 15);
+        track.commit();
+        byte[] root = repository.getRoot();
+        repository.commit();
+
+        // the list is in the snapshot of the new root without walking it
+        MasternodeRegistry.MasternodeList list = MasternodeRegistry.getSnapshot(root).get(base, b -> {
+            throw new AssertionError("The list should not be walked");
+        });
+        assertEquals(3, list.size());
+        assertArrayEquals(MN3, list.get(2));
+        assertEquals(15, list.getStartBlock(0));
+        assertEquals(30, list.getStartBlock(2));
+        assertListsEqual(base, root);
+
+        // removing the masternode in the middle
+        track = repository.startTracking();
+        // the balance is below the collateral
+        track.checkMasternodeCollateral(MN2, 40);
+        track.commit();
+        root = repository.getRoot();
+        repository.commit();
+        list = MasternodeRegistry.getSnapshot(root).get(base, b -> {
+            throw new AssertionError("The list should not be walked");
+        });
+        assertEquals(2, list.size());
+        assertArrayEquals(MN1, list.get(0));
+        assertArrayEquals(MN3, list.get(1));
+        assertListsEqual(base, root);
+    }
+
+    @Test
+    public void testAllAccountWritesChangeLists() {
+        byte[] base = constants.getMASTERNODE_GENERAL_BASE_LATE();
+        assertEquals(2, repository.getMasterNodeList(base).size());
+
+        // the account is created again over the masternode
+        long period = constants.getMASTERNODE_REWARD_PERIOD();
+        assertEquals(1, repository.getMasterNodeList(base, 15 + period).size());
+        RepositoryImpl track = repository.startTracking();
+        track.createAccount(MN2, 50);
+        assertEquals(2, track.getMasterNodeList(base, 15 + period).size());
+        track.commit();
+        byte[] root = repository.getRoot();
+        repository.commit();
+        assertEquals(2, repository.getMasterNodeList(base, 15 + period).size());
+        assertListsEqual(base, root);
+
+        // the states are written in a batch
+        HashMap<ByteArrayWrapper, AccountState> states = new HashMap<>();
+        states.put(new ByteArrayWrapper(MN1), repository.getAccountState(MN1).withMnNextNode(null));
+        track = repository.startTracking();
+        track.updateBatch(states, new HashMap<>());
+        assertEquals(1, track.getMasterNodeList(base).size());
+        track.commit();
+        root = repository.getRoot();
+        repository.commit();
+        assertEquals(1, repository.getMasterNodeList(base).size());
+        assertListsEqual(base, root);
+
+        // and the base node is deleted
+        track = repository.startTracking();
+        track.delete(base);
+        track.commit();
+        assertEquals(0, repository.getMasterNodeList(base).size());
+    }
+
+    private void assertListsEqual(byte[] base, byte[] root) {
+        List<byte[]> expected = new RepositoryImpl(new RepositoryRoot(stateDS, root).accountStateCache, null, null, null)
+                .getMasterNodeList(base);
+        List<byte[]> actual = repository.getMasterNodeList(base);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.apis.db;
+
+import org.apis.core.Block;
+import org.apis.crypto.ECKey;
+import org.apis.datasource.JournalSource;
+import org.apis.datasource.inmem.HashMapDB;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.apis.crypto.HashUtil.sha3;
+import static org.apis.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+
+public class PruneManagerTest {
+
+    private static final ECKey KEY = new ECKey();
+    private static final int PRUNE_DEPTH = 192;
+    private static final int BLOCKS = 1000;
+
+    @Test
+    public void testPrune() {
+        HashMapDB<byte[]> storage = new HashMapDB<>();
+        Chain chain = new Chain(storage);
+        chain.run(new PruneManager(chain.blockStore, chain.journalSource, storage, PRUNE_DEPTH), BLOCKS);
+
+        // only the nodes of the last PRUNE_DEPTH blocks and of the fork among them are left
+        assertEquals(PRUNE_DEPTH + 2, storage.getStorage().size());
+        assertNotNull(storage.get(forkNode(900)));
+        assertNull(storage.get(forkNode(100)));
+    }
+
+    @Test
+    public void testBackgroundPrune() throws InterruptedException {
+        HashMapDB<byte[]> storage = new HashMapDB<>();
+        Chain chain = new Chain(storage);
+        PruneManager pruneManager = new PruneManager(chain.blockStore, chain.journalSource, storage, PRUNE_DEPTH, 10);
+        chain.run(pruneManager, BLOCKS);
+
+        // once the pruner catches up the same nodes are left as with the pruning on the import thread
+        pruneManager.awaitPruned();
+        pruneManager.close();
+        assertEquals(PRUNE_DEPTH + 2, storage.getStorage().size());
+        assertNotNull(storage.get(forkNode(900)));
+        assertNull(storage.get(forkNode(100)));
+    }
+
+    @Test
+    public void testBackgroundPruneRestart() throws InterruptedException {
+        HashMapDB<byte[]> storage = new HashMapDB<>();
+        Chain chain = new Chain(storage);
+
+        // the pruner is stopped with the deletes not applied yet, as if the node crashed
+        PruneManager pruneManager = new PruneManager(chain.blockStore, chain.journalSource, storage, PRUNE_DEPTH, 10);
+        chain.run(pruneManager, BLOCKS / 2);
+        pruneManager.close();
+
+        // the new pruner rebuilds its filters from the journal and never breaks the recent states
+        pruneManager = new PruneManager(chain.blockStore, chain.journalSource, storage, PRUNE_DEPTH, 10);
+        chain.run(pruneManager, BLOCKS / 2);
+        pruneManager.awaitPruned();
+        pruneManager.close();
+
+        // some garbage of the first run may be left
+        int size = storage.getStorage().size();
+        assertTrue(size >= PRUNE_DEPTH + 2);
+        assertTrue(size < BLOCKS / 2);
+        assertNull(storage.get(forkNode(600)));
+    }
+
+    private static class Chain {
+        final HashMapDB<byte[]> storage;
+        final IndexedBlockStore blockStore = new IndexedBlockStore();
+        final JournalSource<byte[]> journalSource;
+        Block parent = null;
+        int number = 0;
+
+        Chain(HashMapDB<byte[]> storage) {
+            this.storage = storage;
+            this.journalSource = new JournalSource<>(storage);
+            blockStore.init(new HashMapDB<>(), new HashMapDB<>());
+        }
+
+        void run(PruneManager pruneManager, int blocks) {
+            for (int end = number + blocks; number < end; number++) {
+                int i = number;
+                // a fork block replacing a node of the parent state
+                if (i % 100 == 0 && parent != null) {
+                    journalSource.put(forkNode(i), intToBytes(i));
+                    journalSource.delete(node(i - 1));
+                    Block fork = createBlock(parent, i, 1);
+                    blockStore.saveBlock(fork, BigInteger.valueOf(i), false);
+                    pruneManager.blockCommitted(fork.getHeader());
+                }
+
+                journalSource.put(node(i), intToBytes(i));
+                if (i > 0) {
+                    journalSource.delete(node(i - 1));
+                }
+                Block block = createBlock(parent, i, 0);
+                blockStore.saveBlock(block, BigInteger.valueOf(i), true);
+                pruneManager.blockCommitted(block.getHeader());
+                parent = block;
+
+                // states within the prune depth are never broken
+                for (int j = Math.max(0, i - PRUNE_DEPTH); j <= i; j++) {
+                    assertNotNull("block " + i + ", node " + j, storage.get(node(j)));
+                }
+            }
+        }
+    }
+
+    private static byte[] node(int i) {
+        return sha3(intToBytes(i));
+    }
+
+    private static byte[] forkNode(int i) {
+        return sha3(intToBytes(-i));
+    }
+
+    private static Block createBlock(Block parent, long number, int fork) {
+        byte[] parentHash = parent == null ? new byte[32] : parent.getHash();
+        Block block = new Block(parentHash, new byte[20], new byte[256], BigInteger.ONE, BigInteger.valueOf(number), number,
+                new byte[] {0}, 0, BigInteger.ZERO, number, new byte[] {(byte) fork}, new byte[0], new byte[0],
+                new byte[0], new byte[0], new byte[32], BigInteger.ZERO, new byte[0],
+                null, null, null, null, null, null, null);
+        block.getHeader().sign(KEY);
+        // the same hash as the block read from the store
+        return new Block(block.getEncoded());
+    }
+}
@@ -0,0 +1,103 @@
+package org.apis.db;
+
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.vm.DataWord;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class SpeculativeTrackTest {
+
+    private static final byte[] ALICE = address(1);
+    private static final byte[] BOB = address(2);
+    private static final byte[] CAROL = address(3);
+    private static final byte[] CONTRACT = address(4);
+
+    @Test
+    public void testCommitToGivesSameRootAsSequentialExecution() {
+        RepositoryRoot repository = createRepository();
+        byte[] root = repository.getRoot();
+
+        // sequential
+        RepositoryRoot sequential = (RepositoryRoot) repository.getSnapshotTo(root);
+        RepositoryImpl blockTrack = sequential.startTracking();
+        RepositoryImpl txTrack = blockTrack.startTracking();
+        transfer(txTrack, ALICE, BOB, 10);
+        txTrack.addStorageRow(CONTRACT, new DataWord(1), new DataWord(7));
+        txTrack.commit();
+        txTrack = blockTrack.startTracking();
+        transfer(txTrack, CAROL, CAROL, 5);
+        txTrack.commit();
+        blockTrack.commit();
+
+        // speculative
+        RepositoryRoot speculative = (RepositoryRoot) repository.getSnapshotTo(root);
+        SpeculativeTrack first = new SpeculativeTrack((RepositoryImpl) repository.getSnapshotTo(root));
+        transfer(first, ALICE, BOB, 10);
+        first.addStorageRow(CONTRACT, new DataWord(1), new DataWord(7));
+        SpeculativeTrack second = new SpeculativeTrack((RepositoryImpl) repository.getSnapshotTo(root));
+        transfer(second, CAROL, CAROL, 5);
+
+        blockTrack = speculative.startTracking();
+        txTrack = blockTrack.startTracking();
+        assertTrue(first.isValidOn(txTrack));
+        first.commitTo(txTrack);
+        txTrack.commit();
+        txTrack = blockTrack.startTracking();
+        assertTrue(second.isValidOn(txTrack));
+        second.commitTo(txTrack);
+        txTrack.commit();
+        blockTrack.commit();
+
+        assertArrayEquals(sequential.getRoot(), speculative.getRoot());
+        assertEquals(BigInteger.valueOf(110), speculative.getBalance(BOB));
+        assertEquals(new DataWord(7), speculative.getStorageValue(CONTRACT, new DataWord(1)));
+    }
+
+    @Test
+    public void testConflictingReadsAreNotValid() {
+        RepositoryRoot repository = createRepository();
+        byte[] root = repository.getRoot();
+
+        SpeculativeTrack transfer = new SpeculativeTrack((RepositoryImpl) repository.getSnapshotTo(root));
+        transfer(transfer, BOB, CAROL, 1);
+        SpeculativeTrack storage = new SpeculativeTrack((RepositoryImpl) repository.getSnapshotTo(root));
+        storage.getStorageValue(CONTRACT, new DataWord(1));
+
+        RepositoryImpl blockTrack = ((RepositoryRoot) repository.getSnapshotTo(root)).startTracking();
+        assertTrue(transfer.isValidOn(blockTrack));
+        assertTrue(storage.isValidOn(blockTrack));
+
+        // an earlier transaction of the block pays BOB and writes the row
+        transfer(blockTrack, ALICE, BOB, 10);
+        blockTrack.addStorageRow(CONTRACT, new DataWord(1), new DataWord(9));
+
+        assertFalse(transfer.isValidOn(blockTrack));
+        assertFalse(storage.isValidOn(blockTrack));
+    }
+
+    private static RepositoryRoot createRepository() {
+        RepositoryRoot repository = new RepositoryRoot(new HashMapDB<>());
+        repository.addBalance(ALICE, BigInteger.valueOf(100));
+        repository.addBalance(BOB, BigInteger.valueOf(100));
+        repository.addBalance(CAROL, BigInteger.valueOf(100));
+        repository.createAccount(CONTRACT);
+        repository.addStorageRow(CONTRACT, new DataWord(1), new DataWord(3));
+        repository.commit();
+        return repository;
+    }
+
+    private static void transfer(RepositoryImpl track, byte[] from, byte[] to, long value) {
+        track.increaseNonce(from);
+        track.addBalance(from, BigInteger.valueOf(-value));
+        track.addBalance(to, BigInteger.valueOf(value));
+    }
+
+    private static byte[] address(int n) {
+        byte[] address = new byte[20];
+        address[19] = (byte) n;
+        return address;
+    }
+}
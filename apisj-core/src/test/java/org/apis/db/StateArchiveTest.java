@@ -0,0 +1,228 @@
+package org.apis.db;
+
+import org.apis.core.AccountState;
+import org.apis.core.Block;
+import org.apis.crypto.ECKey;
+import org.apis.datasource.NoDeleteSource;
+import org.apis.datasource.Source;
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.util.ByteUtil;
+import org.apis.util.RLP;
+import org.apis.util.RLPElement;
+import org.apis.util.RLPList;
+import org.apis.vm.DataWord;
+import org.junit.Test;
+import org.xerial.snappy.Snappy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.apis.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+
+public class StateArchiveTest {
+
+    private static final ECKey KEY = new ECKey();
+    private static final int ACCOUNTS = 100;
+    private static final int SLOTS = 20;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        byte[] root = createState(stateDS);
+        List<Block> blocks = createBlocks(root, 10);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // small chunks to check the parallel verification
+        long entries = new StateArchive(stateDS).withChunkSize(4 * 1024).export(out, blocks);
+        assertTrue(entries > ACCOUNTS);
+
+        HashMapDB<byte[]> restoredDS = new HashMapDB<>();
+        AtomicInteger chunks = new AtomicInteger();
+        List<Block> restored = new StateArchive(restoredDS)
+                .restore(new ByteArrayInputStream(out.toByteArray()), 4, chunks::incrementAndGet);
+        assertTrue(chunks.get() > 1);
+
+        assertEquals(blocks.size(), restored.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            assertArrayEquals(blocks.get(i).getHash(), restored.get(i).getHash());
+        }
+
+        RepositoryRoot expected = new RepositoryRoot(stateDS, root);
+        RepositoryRoot actual = new RepositoryRoot(restoredDS, root);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            byte[] addr = address(i);
+            AccountState expectedState = expected.getAccountState(addr);
+            assertArrayEquals(expectedState.getEncoded(), actual.getAccountState(addr).getEncoded());
+            assertArrayEquals(expected.getCode(addr), actual.getCode(addr));
+            for (int j = 0; j < SLOTS; j++) {
+                assertEquals(expected.getStorageValue(addr, new DataWord(j)), actual.getStorageValue(addr, new DataWord(j)));
+            }
+        }
+        assertArrayEquals(address(7), actual.getAddressByMask("seven@me"));
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        byte[] root = createState(stateDS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StateArchive(stateDS).withChunkSize(4 * 1024).export(out, createBlocks(root, 3));
+        byte[] archive = out.toByteArray();
+
+        byte[] truncated = Arrays.copyOf(archive, archive.length / 2);
+        assertRestoreFails(truncated);
+
+        // a changed trie node is stored under other key, the original node is then missing
+        assertRestoreFails(rewriteEntries(archive, entries -> {
+            RLPList entry = (RLPList) RLP.decode2(entries.get(0)).get(0);
+            byte[] node = entry.get(1).getRLPData().clone();
+            node[node.length - 1] ^= 0x55;
+            entries.set(0, RLP.encodeList(RLP.encodeInt(0), RLP.encodeElement(node)));
+        }));
+
+        // a dropped entry is noticed by the entries count
+        assertRestoreFails(rewriteEntries(archive, entries -> entries.remove(entries.size() - 1)));
+
+        // the state which is not in the source is not exported
+        try {
+            new StateArchive(stateDS).export(new ByteArrayOutputStream(), createBlocks(new byte[32], 3));
+            fail("Export should fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTamperedMask() throws IOException {
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        byte[] root = createState(stateDS);
+        List<Block> blocks = createBlocks(root, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StateArchive(stateDS).export(out, blocks);
+        byte[] archive = out.toByteArray();
+
+        // a mask of no account could overwrite any trie node, here the root one
+        assertRestoreFails(rewriteEntries(archive, entries -> entries.add(RLP.encodeList(RLP.encodeInt(3),
+                RLP.encodeElement(stateDS.get(root)), RLP.encodeElement(address(1))))));
+
+        // the mask of the account pointing to another address
+        assertRestoreFails(rewriteEntries(archive, entries -> {
+            for (int i = 0; i < entries.size(); i++) {
+                RLPList entry = (RLPList) RLP.decode2(entries.get(i)).get(0);
+                if (ByteUtil.byteArrayToInt(entry.get(0).getRLPData()) == 3) {
+                    entries.set(i, RLP.encodeList(RLP.encodeInt(3), RLP.encodeElement(entry.get(1).getRLPData()),
+                            RLP.encodeElement(address(8))));
+                }
+            }
+        }));
+
+        // the untouched archive is still fine
+        new StateArchive(new HashMapDB<>()).restore(new ByteArrayInputStream(archive), 2, () -> {});
+    }
+
+    /**
+     * Changes the entries of the archive keeping the format valid
+     */
+    private static byte[] rewriteEntries(byte[] archive, Consumer<List<byte[]>> change) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(archive));
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ret);
+        byte[] prefix = new byte[12];   // magic, version
+        in.readFully(prefix);
+        out.write(prefix);
+
+        List<byte[]> entries = new ArrayList<>();
+        while (true) {
+            int type = in.readUnsignedByte();
+            int size = in.readInt();
+            byte[] compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+            byte[] data = Snappy.uncompress(compressed);
+            assertEquals(size, data.length);
+            if (type == 2) {
+                for (RLPElement entry : (RLPList) RLP.decode2(data).get(0)) {
+                    entries.add(entry.getRLPData());
+                }
+                continue;
+            }
+            if (type == 3) {
+                change.accept(entries);
+                writeChunk(out, 2, RLP.encodeList(entries.toArray(new byte[0][])));
+                data = RLP.encodeList(RLP.encodeElement(ByteUtil.longToBytesNoLeadZeroes(entries.size())));
+            }
+            writeChunk(out, type, data);
+            if (type == 3) break;
+        }
+        return ret.toByteArray();
+    }
+
+    private static void writeChunk(DataOutputStream out, int type, byte[] data) throws IOException {
+        byte[] compressed = Snappy.compress(data);
+        out.writeByte(type);
+        out.writeInt(data.length);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+    }
+
+    private static void assertRestoreFails(byte[] archive) {
+        try {
+            new StateArchive(new HashMapDB<>()).restore(new ByteArrayInputStream(archive), 2, () -> {});
+            fail("Restore should fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static byte[] createState(Source<byte[], byte[]> stateDS) {
+        Random rnd = new Random(1);
+        RepositoryRoot repo = new RepositoryRoot(stateDS, null);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            byte[] addr = address(i);
+            repo.addBalance(addr, BigInteger.valueOf(rnd.nextInt(1000) + 1));
+            if (i % 3 == 0) {
+                for (int j = 0; j < SLOTS; j++) {
+                    repo.addStorageRow(addr, new DataWord(j), new DataWord(rnd.nextInt()));
+                }
+                // contracts with the same code share it
+                repo.saveCode(addr, intToBytes(i % 2));
+            }
+        }
+        repo.setAddressMask(address(7), "seven@me");
+        repo.commit();
+        return repo.getRoot();
+    }
+
+    private static List<Block> createBlocks(byte[] stateRoot, int count) {
+        List<Block> blocks = new ArrayList<>();
+        Block parent = null;
+        for (int i = 0; i < count; i++) {
+            byte[] parentHash = parent == null ? new byte[32] : parent.getHash();
+            long number = 100 + i;
+            Block block = new Block(parentHash, new byte[20], new byte[256], BigInteger.ONE, BigInteger.valueOf(number), number,
+                    new byte[] {0}, 0, BigInteger.ZERO, number, new byte[0], new byte[0], new byte[0],
+                    new byte[0], new byte[0], stateRoot, BigInteger.ZERO, new byte[0],
+                    null, null, null, null, null, null, null);
+            block.getHeader().sign(KEY);
+            parent = new Block(block.getEncoded());
+            blocks.add(parent);
+        }
+        return blocks;
+    }
+
+    private static byte[] address(int i) {
+        byte[] ret = new byte[20];
+        System.arraycopy(intToBytes(i), 0, ret, 16, 4);
+        return ret;
+    }
+}
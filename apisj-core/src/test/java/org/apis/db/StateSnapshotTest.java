@@ -0,0 +1,241 @@
+package org.apis.db;
+
+import org.apis.core.AccountState;
+import org.apis.datasource.NoDeleteSource;
+import org.apis.datasource.Source;
+import org.apis.datasource.WriteCache;
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.vm.DataWord;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.apis.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+
+public class StateSnapshotTest {
+
+    private static final int ACCOUNTS = 30;
+    private static final int SLOTS = 8;
+    private static final int DIFF_LAYERS = 16;
+
+    @Test
+    public void testReads() throws InterruptedException {
+        // old states are kept like with the pruning journal
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        Source<byte[], byte[]> plainDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        HashMapDB<byte[]> snapshotDS = new HashMapDB<>();
+        StateSnapshot snapshot = new StateSnapshot(snapshotDS, snapshotDS, stateDS, DIFF_LAYERS);
+        snapshot.init(null);
+        waitReady(snapshot);
+
+        Random rnd = new Random(1);
+        List<byte[]> roots = new ArrayList<>();
+        byte[] root = null;
+        for (int i = 0; i < 200; i++) {
+            RepositoryRoot repo = new RepositoryRoot(stateDS, root, snapshot);
+            RepositoryRoot plain = new RepositoryRoot(plainDS, root);
+            for (int j = 0; j < 10; j++) {
+                change(rnd, repo, plain);
+            }
+            repo.commit();
+            plain.commit();
+            assertArrayEquals(plain.getRoot(), repo.getRoot());
+            root = repo.getRoot();
+            roots.add(root);
+
+            // the trie nodes are not needed to read the recent states
+            assertSameState(new RepositoryRoot(plainDS, root), new RepositoryRoot(new HashMapDB<>(), root, snapshot));
+            byte[] recent = roots.get(Math.max(0, roots.size() - DIFF_LAYERS));
+            assertSameState(new RepositoryRoot(plainDS, recent), new RepositoryRoot(new HashMapDB<>(), recent, snapshot));
+        }
+
+        // older states are read from the trie
+        byte[] old = roots.get(10);
+        assertSameState(new RepositoryRoot(plainDS, old), new RepositoryRoot(stateDS, old, snapshot));
+
+        // diff layers are restored from the journal
+        snapshot.close();
+        StateSnapshot restored = new StateSnapshot(snapshotDS, snapshotDS, stateDS, DIFF_LAYERS);
+        restored.init(root);
+        assertTrue(restored.isReady());
+        byte[] recent = roots.get(roots.size() - DIFF_LAYERS / 2);
+        assertSameState(new RepositoryRoot(plainDS, recent), new RepositoryRoot(new HashMapDB<>(), recent, restored));
+    }
+
+    @Test
+    public void testGeneration() throws InterruptedException {
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        HashMapDB<byte[]> snapshotDS = new HashMapDB<>();
+
+        Random rnd = new Random(2);
+        byte[] root = null;
+        for (int i = 0; i < 50; i++) {
+            RepositoryRoot repo = new RepositoryRoot(stateDS, root);
+            for (int j = 0; j < 10; j++) {
+                change(rnd, repo);
+            }
+            repo.commit();
+            root = repo.getRoot();
+        }
+
+        StateSnapshot snapshot = new StateSnapshot(snapshotDS, snapshotDS, stateDS, DIFF_LAYERS);
+        snapshot.init(root);
+        waitReady(snapshot);
+        assertSameState(new RepositoryRoot(stateDS, root), new RepositoryRoot(new HashMapDB<>(), root, snapshot));
+
+        for (int i = 0; i < 50; i++) {
+            RepositoryRoot repo = new RepositoryRoot(stateDS, root, snapshot);
+            for (int j = 0; j < 10; j++) {
+                change(rnd, repo);
+            }
+            repo.commit();
+            root = repo.getRoot();
+            assertSameState(new RepositoryRoot(stateDS, root), new RepositoryRoot(new HashMapDB<>(), root, snapshot));
+        }
+
+        // the snapshot which doesn't lead to the head is generated again
+        snapshot.close();
+        StateSnapshot regenerated = new StateSnapshot(snapshotDS, snapshotDS, stateDS, DIFF_LAYERS);
+        byte[] head = nextRoot(stateDS, root, rnd);
+        regenerated.init(head);
+        waitReady(regenerated);
+        assertSameState(new RepositoryRoot(stateDS, head), new RepositoryRoot(new HashMapDB<>(), head, regenerated));
+
+        // the previous generation is overwritten, the meta and the generation number are the only other entries
+        assertTrue(snapshotDS.getStorage().size() <= ACCOUNTS * (SLOTS + 1) + 2);
+    }
+
+    @Test
+    public void testUnknownParent() throws InterruptedException {
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        HashMapDB<byte[]> snapshotDS = new HashMapDB<>();
+        StateSnapshot snapshot = new StateSnapshot(snapshotDS, snapshotDS, stateDS, DIFF_LAYERS);
+        snapshot.init(null);
+        waitReady(snapshot);
+
+        Random rnd = new Random(3);
+        List<byte[]> roots = new ArrayList<>();
+        byte[] root = null;
+        for (int i = 0; i < DIFF_LAYERS * 2; i++) {
+            RepositoryRoot repo = new RepositoryRoot(stateDS, root, snapshot);
+            for (int j = 0; j < 10; j++) {
+                change(rnd, repo);
+            }
+            repo.commit();
+            root = repo.getRoot();
+            roots.add(root);
+        }
+
+        // the state built on the one merged into the disk layer long ago
+        RepositoryRoot repo = new RepositoryRoot(stateDS, roots.get(0), snapshot);
+        for (int j = 0; j < 10; j++) {
+            change(rnd, repo);
+        }
+        repo.commit();
+        byte[] fork = repo.getRoot();
+
+        // the snapshot is generated again for it
+        waitReady(snapshot);
+        assertSameState(new RepositoryRoot(stateDS, fork), new RepositoryRoot(new HashMapDB<>(), fork, snapshot));
+    }
+
+    @Test
+    public void testBufferedDeleteAfterGeneration() throws InterruptedException {
+        // the diff layers are merged through a write cache, the generator writes directly
+        Source<byte[], byte[]> stateDS = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        HashMapDB<byte[]> snapshotDS = new HashMapDB<>();
+        WriteCache.BytesKey<byte[]> cache = new WriteCache.BytesKey<>(snapshotDS, WriteCache.CacheType.SIMPLE);
+        StateSnapshot snapshot = new StateSnapshot(cache, snapshotDS, stateDS, 2);
+        snapshot.init(null);
+        waitReady(snapshot);
+        cache.flush();
+
+        byte[] addr = address(1);
+        DataWord slot = new DataWord(1);
+        byte[] root = null;
+        for (int i = 0; i < 5; i++) {
+            RepositoryRoot repo = new RepositoryRoot(stateDS, root, snapshot);
+            if (i == 0) {
+                repo.addStorageRow(addr, slot, new DataWord(1));
+            } else if (i == 1) {
+                // zeroed slot, the deletion is merged into the disk layer but stays in the cache
+                repo.addStorageRow(addr, slot, DataWord.ZERO);
+            } else {
+                repo.addBalance(addr, BigInteger.ONE);
+            }
+            repo.commit();
+            root = repo.getRoot();
+        }
+        assertTrue(cache.hasModified());
+
+        // the slot is set again in a state the snapshot is generated for
+        RepositoryRoot repo = new RepositoryRoot(stateDS, root);
+        repo.addStorageRow(addr, slot, new DataWord(5));
+        repo.commit();
+        byte[] head = repo.getRoot();
+        snapshot.update(new byte[32], head, new StateSnapshot.Diff());
+        waitReady(snapshot);
+
+        // the deletion reaches the DB after the generated value
+        cache.flush();
+        assertEquals(new DataWord(5), new RepositoryRoot(stateDS, head, snapshot).getStorageValue(addr, slot));
+        assertSameState(new RepositoryRoot(stateDS, head), new RepositoryRoot(stateDS, head, snapshot));
+    }
+
+    private static byte[] nextRoot(Source<byte[], byte[]> stateDS, byte[] root, Random rnd) {
+        RepositoryRoot repo = new RepositoryRoot(stateDS, root);
+        change(rnd, repo);
+        repo.commit();
+        return repo.getRoot();
+    }
+
+    private static void change(Random rnd, RepositoryRoot... repos) {
+        byte[] addr = address(rnd.nextInt(ACCOUNTS));
+        int op = rnd.nextInt(10);
+        BigInteger balance = BigInteger.valueOf(rnd.nextInt(1000) + 1);
+        DataWord key = new DataWord(rnd.nextInt(SLOTS));
+        DataWord value = rnd.nextInt(3) == 0 ? DataWord.ZERO : new DataWord(rnd.nextInt());
+        for (RepositoryRoot repo : repos) {
+            if (op == 0) {
+                repo.delete(addr);
+            } else if (op < 5) {
+                repo.addBalance(addr, balance);
+            } else {
+                repo.addStorageRow(addr, key, value);
+            }
+        }
+    }
+
+    private static void assertSameState(RepositoryRoot expected, RepositoryRoot actual) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            byte[] addr = address(i);
+            AccountState expectedState = expected.getAccountState(addr);
+            AccountState actualState = actual.getAccountState(addr);
+            if (expectedState == null) {
+                assertNull(actualState);
+                continue;
+            }
+            assertArrayEquals(expectedState.getEncoded(), actualState.getEncoded());
+            for (int j = 0; j < SLOTS; j++) {
+                assertEquals(expected.getStorageValue(addr, new DataWord(j)), actual.getStorageValue(addr, new DataWord(j)));
+            }
+        }
+    }
+
+    private static byte[] address(int i) {
+        byte[] ret = new byte[20];
+        System.arraycopy(intToBytes(i), 0, ret, 16, 4);
+        return ret;
+    }
+
+    private static void waitReady(StateSnapshot snapshot) throws InterruptedException {
+        for (int i = 0; i < 100 && !snapshot.isReady(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(snapshot.isReady());
+    }
+}
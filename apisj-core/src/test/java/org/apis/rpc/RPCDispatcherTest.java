@@ -0,0 +1,113 @@
+package org.apis.rpc;
+
+import org.java_websocket.WebSocket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class RPCDispatcherTest {
+
+    private RPCDispatcher dispatcher;
+
+    @Before
+    public void setup() {
+        dispatcher = new RPCDispatcher(2, 1, 3);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testRequestsOfConnectionAreOrderedAndLimited() throws InterruptedException {
+        WebSocket conn = mock(WebSocket.class);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+
+        assertTrue(dispatcher.dispatch(conn, new TestRequest("apis_call", () -> await(release), executed, 0, finished)));
+        assertTrue(dispatcher.dispatch(conn, new TestRequest("apis_blockNumber", null, executed, 1, finished)));
+        assertTrue(dispatcher.dispatch(conn, new TestRequest("apis_getBalance", null, executed, 2, finished)));
+
+        // the connection has 3 requests in flight
+        assertFalse(dispatcher.dispatch(conn, new TestRequest("apis_getBalance", null, executed, 3, finished)));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2), executed);
+        assertEquals(0, dispatcher.getQueueDepth());
+
+        // slots are released after the requests are done
+        CountDownLatch next = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch(conn, new TestRequest("apis_getBalance", null, executed, 4, next)));
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, dispatcher.getMethodStats().get("apis_call").getCount());
+        assertEquals(1, dispatcher.getMethodStats().get("apis_blockNumber").getCount());
+    }
+
+    @Test
+    public void testSlowRequestDoesNotBlockOtherConnections() throws InterruptedException {
+        WebSocket slowConn = mock(WebSocket.class);
+        WebSocket conn = mock(WebSocket.class);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.dispatch(slowConn, new TestRequest("apis_call", () -> await(release), executed, 0, new CountDownLatch(1)));
+        dispatcher.dispatch(conn, new TestRequest("apis_blockNumber", null, executed, 1, finished));
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(1), executed);
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestRequest implements RPCDispatcher.Request {
+        private final String method;
+        private final Runnable work;
+        private final List<Integer> executed;
+        private final int index;
+        private final CountDownLatch finished;
+
+        TestRequest(String method, Runnable work, List<Integer> executed, int index, CountDownLatch finished) {
+            this.method = method;
+            this.work = work;
+            this.executed = executed;
+            this.index = index;
+            this.finished = finished;
+        }
+
+        @Override
+        public String prepare() {
+            return method;
+        }
+
+        @Override
+        public void execute() {
+            if (work != null) {
+                work.run();
+            }
+            executed.add(index);
+            finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.apis.rpc;
+
+import org.apis.rpc.template.MessageApp3;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RPCJsonUtilTest {
+
+    private static final String TOKEN = "0102030405060708";
+
+    private static final String BALANCE = "{\"jsonrpc\":\"2.0\",\"id\":7,\"method\":\"apis_getBalance\",\"params\":[\"0x1111111111111111111111111111111111111111\",\"latest\"]}";
+    private static final String RECEIPT = "{\"jsonrpc\":\"2.0\",\"id\":5,\"method\":\"apis_getTransactionReceipt\",\"params\":[\"0xabcd\"]}";
+
+    @Test
+    public void testBatchPayload() throws Exception {
+        String batch = " [" + BALANCE + "," + RECEIPT + "]";
+        assertTrue(RPCJsonUtil.isBatchPayload(batch));
+        assertFalse(RPCJsonUtil.isBatchPayload(BALANCE));
+
+        List<MessageApp3> messages = RPCJsonUtil.parseBatchPayload(batch);
+        assertEquals(2, messages.size());
+        assertEquals("apis_getBalance", messages.get(0).getMethod());
+        assertEquals("apis_getTransactionReceipt", messages.get(1).getMethod());
+
+        // every id of the batch is checked against the client in the order of the requests
+        assertArrayEquals(new long[] {7, 5}, RPCJsonUtil.getDecodeMessageIds(batch));
+        assertArrayEquals(new long[] {7}, RPCJsonUtil.getDecodeMessageIds(BALANCE));
+    }
+
+    @Test
+    public void testBatchTokenHash() {
+        // a batch with one request has the hash of the request
+        assertEquals(RPCJsonUtil.createTokenHash(BALANCE, TOKEN), RPCJsonUtil.createTokenHash("[" + BALANCE + "]", TOKEN));
+
+        String batch = RPCJsonUtil.createTokenHash("[" + BALANCE + "," + RECEIPT + "]", TOKEN);
+        String reversed = RPCJsonUtil.createTokenHash("[" + RECEIPT + "," + BALANCE + "]", TOKEN);
+        assertNotEquals(batch, reversed);
+        assertNotEquals(batch, RPCJsonUtil.createTokenHash("[" + BALANCE + "," + RECEIPT + "]", "0102030405060709"));
+    }
+
+    @Test
+    public void testInvalidBatchEntries() throws Exception {
+        String batch = "[null,1,\"x\"," + BALANCE + ",{\"id\":\"abc\",\"method\":\"apis_getBalance\"},{\"id\":9}," + RECEIPT + "]";
+        List<MessageApp3> messages = RPCJsonUtil.parseBatchPayload(batch);
+        assertEquals(7, messages.size());
+        for (int i : new int[] {0, 1, 2, 4, 5}) {
+            assertNull(messages.get(i));
+        }
+        assertEquals("apis_getBalance", messages.get(3).getMethod());
+        assertEquals("apis_getTransactionReceipt", messages.get(6).getMethod());
+
+        // the invalid requests get an error and are not part of the id and the token hash
+        assertArrayEquals(new long[] {7, 5}, RPCJsonUtil.getDecodeMessageIds(batch));
+        assertEquals(RPCJsonUtil.createTokenHash("[" + BALANCE + "," + RECEIPT + "]", TOKEN), RPCJsonUtil.createTokenHash(batch, TOKEN));
+        try {
+            RPCJsonUtil.getDecodeMessageIds("[null,2]");
+            fail("A batch without valid requests has no id");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+
+        String error = RPCJsonUtil.createJson(0, null, null, RPCCommand.ERROR_CODE_INVALID_REQUEST, RPCCommand.ERROR_MESSAGE_INVALID_REQUEST);
+        assertTrue(error.contains("\"code\":-32600"));
+        assertTrue(error.contains("\"message\":\"Invalid Request\""));
+    }
+}
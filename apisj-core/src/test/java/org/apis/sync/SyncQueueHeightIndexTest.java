@@ -0,0 +1,119 @@
+package org.apis.sync;
+
+import org.apis.core.Block;
+import org.apis.core.BlockHeaderWrapper;
+import org.apis.crypto.ECKey;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SyncQueueHeightIndexTest {
+
+    private static final ECKey KEY = new ECKey();
+    private static final byte[] PEER = new byte[64];
+
+    @Test
+    public void testHeightIndex() {
+        SyncQueueImpl.HeightIndex index = new SyncQueueImpl.HeightIndex();
+        assertNull(index.get(0));
+
+        SyncQueueImpl.HeaderElement[][] gens = new SyncQueueImpl.HeaderElement[5000][];
+        for (int i = 0; i < gens.length; i++) {
+            gens[i] = new SyncQueueImpl.HeaderElement[1];
+        }
+
+        // the window grows both ways
+        for (int i = 2500; i < gens.length; i++) {
+            index.put(1_000_000 + i, gens[i]);
+        }
+        for (int i = 2499; i >= 0; i--) {
+            index.put(1_000_000 + i, gens[i]);
+        }
+        for (int i = 0; i < gens.length; i++) {
+            assertSame(gens[i], index.get(1_000_000 + i));
+        }
+        assertNull(index.get(1_000_000 - 1));
+        assertNull(index.get(1_000_000 + gens.length));
+
+        // the window moves on as the lowest generations are removed
+        for (int i = 0; i < 4000; i++) {
+            index.remove(1_000_000 + i);
+            assertNull(index.get(1_000_000 + i));
+        }
+        for (int i = 0; i < 4000; i++) {
+            index.put(1_000_000 + gens.length + i, gens[i]);
+        }
+        for (int i = 0; i < 4000; i++) {
+            assertSame(gens[i], index.get(1_000_000 + gens.length + i));
+        }
+        for (int i = 4000; i < gens.length; i++) {
+            assertSame(gens[i], index.get(1_000_000 + i));
+        }
+    }
+
+    @Test
+    public void testGapFreeExport() {
+        List<Block> chain = createChain(600);
+        SyncQueueImpl syncQueue = new SyncQueueImpl(chain.subList(0, 1));
+
+        // headers come from different peers in any order
+        List<List<Block>> batches = new ArrayList<>();
+        for (int i = 1; i < chain.size(); i += 50) {
+            batches.add(chain.subList(i, Math.min(i + 50, chain.size())));
+        }
+        Collections.shuffle(batches, new Random(1));
+        for (List<Block> batch : batches) {
+            syncQueue.addHeaders(headers(batch));
+        }
+
+        List<BlockHeaderWrapper> requested = syncQueue.requestBlocks(1000).getBlockHeaders();
+        assertEquals(chain.size() - 1, requested.size());
+        for (int i = 0; i < requested.size(); i++) {
+            assertArrayEquals(chain.get(i + 1).getHash(), requested.get(i).getHash());
+        }
+
+        // blocks are exported only without the gaps
+        List<Block> first = batches.stream().filter(b -> b.get(0).getNumber() == 1).findFirst().get();
+        for (List<Block> batch : batches) {
+            if (batch != first) {
+                assertTrue(syncQueue.addBlocks(batch).isEmpty());
+            }
+        }
+        List<Block> exported = syncQueue.addBlocks(first);
+        assertEquals(chain.size() - 1, exported.size());
+        for (int i = 0; i < exported.size(); i++) {
+            assertEquals(i + 1, exported.get(i).getNumber());
+        }
+        assertTrue(syncQueue.requestBlocks(1000).getBlockHeaders().isEmpty());
+    }
+
+    private static List<BlockHeaderWrapper> headers(List<Block> blocks) {
+        List<BlockHeaderWrapper> ret = new ArrayList<>();
+        for (Block block : blocks) {
+            ret.add(new BlockHeaderWrapper(block.getHeader(), PEER));
+        }
+        return ret;
+    }
+
+    private static List<Block> createChain(int count) {
+        List<Block> blocks = new ArrayList<>();
+        Block parent = null;
+        for (long number = 0; number < count; number++) {
+            byte[] parentHash = parent == null ? new byte[32] : parent.getHash();
+            Block block = new Block(parentHash, new byte[20], new byte[256], BigInteger.ONE, BigInteger.valueOf(number), number,
+                    new byte[] {0}, 0, BigInteger.ZERO, number, new byte[0], new byte[0], new byte[0],
+                    new byte[0], new byte[0], new byte[32], BigInteger.ZERO, new byte[0],
+                    null, null, null, null, null, null, null);
+            block.getHeader().sign(KEY);
+            parent = new Block(block.getEncoded());
+            blocks.add(parent);
+        }
+        return blocks;
+    }
+}
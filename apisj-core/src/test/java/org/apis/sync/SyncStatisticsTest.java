@@ -0,0 +1,42 @@
+package org.apis.sync;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SyncStatisticsTest {
+
+    @Test
+    public void testBlocksCapacity() {
+        SyncStatistics stats = new SyncStatistics();
+        assertEquals(64, stats.getBlocksCapacity(1000, 64, 16, 256));
+        assertEquals(-1, stats.getRoundTripTime(), 0);
+
+        // 100 blocks per second
+        stats.addRoundTrip(50, 500);
+        assertEquals(100, stats.getBlocksCapacity(1000, 64, 16, 256));
+        assertEquals(500, stats.getRoundTripTime(), 0);
+
+        // the headers requests measure the round trip only
+        stats.addRoundTrip(0, 1500);
+        assertEquals(100, stats.getBlocksThroughput(), 0.001);
+        assertEquals(600, stats.getRoundTripTime(), 0.001);
+
+        // faster responses grow the requests up to the limit
+        for (int i = 0; i < 100; i++) {
+            stats.addRoundTrip(256, 200);
+        }
+        assertEquals(256, stats.getBlocksCapacity(1000, 64, 16, 256));
+
+        // the timeouts shrink them down to the minimum
+        for (int i = 0; i < 10; i++) {
+            stats.addTimeout(3000);
+        }
+        assertEquals(16, stats.getBlocksCapacity(1000, 64, 16, 256));
+        assertTrue(stats.getRoundTripTime() >= 3000);
+
+        // the measurements are kept on reset
+        stats.reset();
+        assertEquals(16, stats.getBlocksCapacity(1000, 64, 16, 256));
+    }
+}
@@ -1109,6 +1109,38 @@ public class TrieTest {
         assertEquals("36e350d9a1d9c02d5bc4539a05e51890784ea5d2b675a0b26725dbbdadb4d6e2", Hex.toHexString(trie.getRootHash()));
     }
 
+    @Test
+    public void testParallelRootHash() {
+        HashMapDB<byte[]> db1 = new HashMapDB<>();
+        HashMapDB<byte[]> db2 = new HashMapDB<>();
+        TrieImpl trie1 = new TrieImpl(db1, null);
+        trie1.setAsync(false);
+        TrieImpl trie2 = new TrieImpl(db2, null);
+        trie2.setParallelDepth(3);
+
+        Random rnd = new Random(1);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 5000; i++) {
+                byte[] key = sha3(intToBytes(rnd.nextInt(20000)));
+                // short values make embedded nodes, long ones need the long RLP form
+                byte[] value = new byte[rnd.nextInt(3) == 0 ? 1 + rnd.nextInt(4) : rnd.nextInt(100)];
+                rnd.nextBytes(value);
+                if (rnd.nextInt(10) == 0) {
+                    trie1.delete(key);
+                    trie2.delete(key);
+                } else {
+                    trie1.put(key, value);
+                    trie2.put(key, value);
+                }
+            }
+            assertArrayEquals(trie1.getRootHash(), trie2.getRootHash());
+            assertEquals(db1.keys().size(), db2.keys().size());
+        }
+
+        TrieImpl trie3 = new TrieImpl(db2, trie2.getRootHash());
+        assertArrayEquals(trie1.getRootHash(), trie3.getRootHash());
+    }
+
     @Ignore
     @Test
     public void perfTestGet() {
@@ -0,0 +1,71 @@
+package org.apis.util;
+
+import org.apis.core.Block;
+import org.apis.core.RewardPoint;
+import org.apis.datasource.inmem.HashMapDB;
+import org.apis.db.BlockStoreDummy;
+import org.apis.db.ByteArrayWrapper;
+import org.apis.db.RepositoryRoot;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RewardPointUtilTest {
+
+    private static final byte[] COINBASE = new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20};
+
+    @Test
+    public void testBalanceIsReadTenBlocksBeforeParent() {
+        RepositoryRoot repository = new RepositoryRoot(new HashMapDB<>());
+        byte[] emptyRoot = repository.getRoot();
+        repository.addBalance(COINBASE, BigInteger.valueOf(1000));
+        repository.commit();
+        byte[] balanceRoot = repository.getRoot();
+
+        ChainStore store = new ChainStore();
+        for (int i = 0; i < 15; i++) {
+            store.add(i == 4 ? balanceRoot : emptyRoot);
+        }
+        Block parent = store.blocks.get(14);
+
+        assertArrayEquals(balanceRoot, RewardPointUtil.getRewardPointBalanceRoot(parent, store));
+
+        RewardPoint rewardPoint = RewardPointUtil.getRewardPoint(repository, parent, COINBASE, store);
+        assertEquals(BigInteger.valueOf(1000), rewardPoint.getBalanceBI());
+        assertArrayEquals(RewardPointUtil.calcSeed(COINBASE, BigInteger.valueOf(1000), parent.getHash()), rewardPoint.getSeed());
+        assertEquals(RewardPointUtil.calcRewardPoint(COINBASE, BigInteger.valueOf(1000), parent.getHash()), rewardPoint.getRP());
+
+        // the result for the same parent and coinbase is reused
+        assertSame(rewardPoint, RewardPointUtil.getRewardPoint(repository, parent, COINBASE, store));
+
+        // near the genesis the walk stops at the genesis block
+        assertArrayEquals(emptyRoot, RewardPointUtil.getRewardPointBalanceRoot(store.blocks.get(3), store));
+    }
+
+    private static class ChainStore extends BlockStoreDummy {
+        private final List<Block> blocks = new ArrayList<>();
+        private final Map<ByteArrayWrapper, Block> byHash = new HashMap<>();
+
+        void add(byte[] stateRoot) {
+            long number = blocks.size();
+            byte[] parentHash = number == 0 ? new byte[32] : blocks.get((int) number - 1).getHash();
+            Block block = new Block(parentHash, new byte[20], new byte[256], BigInteger.ONE, BigInteger.valueOf(number), number,
+                    new byte[] {0}, 0, BigInteger.ZERO, number, new byte[0], new byte[0], new byte[0],
+                    new byte[0], new byte[0], stateRoot, BigInteger.ZERO, new byte[0],
+                    null, null, null, null, null, null, null);
+            blocks.add(block);
+            byHash.put(new ByteArrayWrapper(block.getHash()), block);
+        }
+
+        @Override
+        public Block getBlockByHash(byte[] hash) {
+            return byHash.get(new ByteArrayWrapper(hash));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.apis.vm;
+
+import org.apis.util.ByteUtil;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UInt256Test {
+
+    private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(256);
+    private static final BigInteger MAX_VALUE = MODULUS.subtract(BigInteger.ONE);
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testArithmeticMatchesBigInteger() {
+        for (int i = 0; i < 20000; i++) {
+            BigInteger a = randomValue();
+            BigInteger b = randomValue();
+
+            assertValue(a.add(b), of(a).add(of(b)));
+            assertValue(a.subtract(b), of(a).sub(of(b)));
+            assertValue(a.multiply(b), of(a).mul(of(b)));
+            assertValue(b.signum() == 0 ? BigInteger.ZERO : a.divide(b), of(a).div(of(b)));
+            assertValue(b.signum() == 0 ? BigInteger.ZERO : a.mod(b), of(a).mod(of(b)));
+            assertValue(MAX_VALUE.subtract(a), of(a).not());
+            assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(of(a).compareTo(of(b))));
+        }
+    }
+
+    @Test
+    public void testSignedDivisionMatchesBigInteger() {
+        for (int i = 0; i < 20000; i++) {
+            BigInteger a = randomValue();
+            BigInteger b = randomValue();
+            BigInteger sa = new BigInteger(ByteUtil.copyToArray(a));
+            BigInteger sb = new BigInteger(ByteUtil.copyToArray(b));
+
+            assertValue(sb.signum() == 0 ? BigInteger.ZERO : sa.divide(sb), of(a).sDiv(of(b)));
+            BigInteger expectedMod = sb.signum() == 0 ? BigInteger.ZERO : sa.abs().mod(sb.abs());
+            assertValue(sa.signum() < 0 ? expectedMod.negate() : expectedMod, of(a).sMod(of(b)));
+        }
+
+        // -2^255 / -1 overflows back to -2^255
+        BigInteger minValue = BigInteger.ONE.shiftLeft(255);
+        assertValue(minValue, of(minValue).sDiv(of(MAX_VALUE)));
+    }
+
+    @Test
+    public void testExpMatchesBigInteger() {
+        for (int i = 0; i < 2000; i++) {
+            BigInteger a = randomValue();
+            BigInteger e = random.nextInt(4) == 0 ? randomValue() : BigInteger.valueOf(random.nextInt(300));
+            assertValue(a.modPow(e, MODULUS), of(a).exp(of(e)));
+        }
+        assertValue(BigInteger.ONE, of(BigInteger.ZERO).exp(of(BigInteger.ZERO)));
+        assertValue(BigInteger.ONE.shiftLeft(255), of(BigInteger.valueOf(2)).exp(of(BigInteger.valueOf(255))));
+    }
+
+    @Test
+    public void testBytes() {
+        BigInteger value = randomValue();
+        byte[] bytes = ByteUtil.copyToArray(value);
+        assertArrayEquals(bytes, new UInt256(bytes).getBytes());
+        assertArrayEquals(ByteUtil.copyToArray(BigInteger.valueOf(0x1234)), new UInt256(new byte[] {0x12, 0x34}).getBytes());
+        assertTrue(new UInt256(new byte[0]).isZero());
+    }
+
+    private BigInteger randomValue() {
+        // Mix short and long values so every branch of the division is taken
+        int bits = 1 + random.nextInt(256);
+        BigInteger value = new BigInteger(bits, random);
+        if (random.nextInt(8) == 0) {
+            value = value.shiftLeft(256 - bits);
+        }
+        return value.and(MAX_VALUE);
+    }
+
+    private static UInt256 of(BigInteger value) {
+        return new UInt256(ByteUtil.copyToArray(value.and(MAX_VALUE)));
+    }
+
+    private static void assertValue(BigInteger expected, UInt256 actual) {
+        assertArrayEquals(ByteUtil.copyToArray(expected.and(MAX_VALUE)), actual.getBytes());
+    }
+}
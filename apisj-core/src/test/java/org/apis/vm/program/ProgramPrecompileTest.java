@@ -0,0 +1,48 @@
+package org.apis.vm.program;
+
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import static org.junit.Assert.*;
+
+public class ProgramPrecompileTest {
+
+    // PUSH1 0x5b JUMPDEST PUSH2 0x5b5b JUMPDEST STOP
+    private static final byte[] CODE = Hex.decode("605b5b615b5b5b00");
+
+    @Test
+    public void testJumpDestsSkipPushData() {
+        ProgramPrecompile precompile = ProgramPrecompile.compile(CODE);
+        assertFalse(precompile.hasJumpDest(1));
+        assertTrue(precompile.hasJumpDest(2));
+        assertFalse(precompile.hasJumpDest(4));
+        assertFalse(precompile.hasJumpDest(5));
+        assertTrue(precompile.hasJumpDest(6));
+        assertFalse(precompile.hasJumpDest(-1));
+        assertFalse(precompile.hasJumpDest(1000));
+        assertEquals(2, precompile.getJumpDestCount());
+
+        ProgramPrecompile decoded = ProgramPrecompile.deserialize(precompile.serialize());
+        assertEquals(2, decoded.getJumpDestCount());
+        assertTrue(decoded.hasJumpDest(2));
+        assertTrue(decoded.hasJumpDest(6));
+        assertFalse(decoded.hasJumpDest(64 + 6));
+    }
+
+    @Test
+    public void testCacheStats() {
+        ProgramPrecompileCache.clear();
+        byte[] codeHash = new byte[32];
+        assertNull(ProgramPrecompileCache.get(codeHash));
+
+        ProgramPrecompile precompile = ProgramPrecompile.compile(CODE);
+        ProgramPrecompileCache.put(codeHash, precompile);
+        assertSame(precompile, ProgramPrecompileCache.get(codeHash));
+        assertSame(precompile, ProgramPrecompileCache.get(codeHash.clone()));
+
+        assertEquals(1, ProgramPrecompileCache.size());
+        assertEquals(2, ProgramPrecompileCache.getHits());
+        assertEquals(1, ProgramPrecompileCache.getMisses());
+        assertEquals(2 / 3d, ProgramPrecompileCache.getHitRatio(), 1e-9);
+    }
+}
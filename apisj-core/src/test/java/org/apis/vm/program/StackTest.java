@@ -0,0 +1,77 @@
+package org.apis.vm.program;
+
+import org.apis.vm.DataWord;
+import org.apis.vm.program.listener.ProgramListenerAdaptor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StackTest {
+
+    @Test
+    public void testPushPopSwap() {
+        Stack stack = new Stack();
+        for (int i = 0; i < Stack.MAX_SIZE; i++) {
+            stack.push(new DataWord(i));
+        }
+        assertEquals(Stack.MAX_SIZE, stack.size());
+        assertEquals(new DataWord(Stack.MAX_SIZE - 1), stack.peek());
+        assertEquals(new DataWord(5), stack.get(5));
+
+        stack.swap(stack.size() - 1, 0);
+        assertEquals(new DataWord(0), stack.pop());
+        assertEquals(new DataWord(Stack.MAX_SIZE - 1), stack.get(0));
+        assertEquals(Stack.MAX_SIZE - 1, stack.toArray().length);
+
+        List<DataWord> items = new ArrayList<>();
+        for (DataWord item : stack) {
+            items.add(item);
+        }
+        assertEquals(stack.size(), items.size());
+        assertEquals(new DataWord(1), items.get(1));
+
+        while (!stack.isEmpty()) {
+            stack.pop();
+        }
+        try {
+            stack.pop();
+            fail();
+        } catch (EmptyStackException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testListener() {
+        List<String> events = new ArrayList<>();
+        Stack stack = new Stack();
+        stack.setProgramListener(new ProgramListenerAdaptor() {
+            @Override
+            public void onStackPush(DataWord value) {
+                events.add("push " + value.intValue());
+            }
+
+            @Override
+            public void onStackPop() {
+                events.add("pop");
+            }
+
+            @Override
+            public void onStackSwap(int from, int to) {
+                events.add("swap " + from + " " + to);
+            }
+        });
+
+        stack.push(new DataWord(1));
+        stack.push(new DataWord(2));
+        stack.swap(1, 0);
+        stack.swap(1, 1);
+        stack.pop();
+
+        assertEquals("[push 1, push 2, swap 1 0, pop]", events.toString());
+    }
+}